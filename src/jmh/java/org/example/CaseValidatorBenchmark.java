@@ -0,0 +1,88 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of whole-payload validation over the test plan fixtures. Each invocation validates
+ * one body, cycling through the selected fixtures. Run with {@code -prof gc} (the profile default)
+ * to confirm the hot path stays at 0 B/op; see {@link FieldRuleBenchmark} for the rules alone.
+ * {@code cachedPayload} measures the same bodies answered by a warm {@link ValidationCache}, and
+ * {@code binaryPayload} the same cases in the {@link BinaryCase} encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseValidatorBenchmark {
+
+    /** Which fixtures feed the whole-payload benchmark. */
+    @Param({"all", "valid", "invalid"})
+    public String payloads;
+
+    private final CaseValidator validator = new CaseValidator();
+    private final CaseVerdict verdict = new CaseVerdict();
+    private final ValidationCache cache = new ValidationCache(validator, 1024, Duration.ZERO);
+
+    private byte[][] bodies;
+    private byte[][] encoded;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() {
+        bodies = switch (payloads) {
+            case "valid" -> FixtureCorpus.payloads(true);
+            case "invalid" -> FixtureCorpus.payloads(false);
+            default -> FixtureCorpus.payloads().toArray(byte[][]::new);
+        };
+        encoded = new byte[bodies.length][];
+        for (int i = 0; i < bodies.length; i++) {
+            encoded[i] = BinaryCase.encode(bodies[i]);
+        }
+        // Twice, so that every body is frequent enough to be admitted.
+        for (int i = 0; i < 2 * bodies.length; i++) {
+            cache.validate(bodies[i % bodies.length], verdict);
+        }
+    }
+
+    @Benchmark
+    public int payload() {
+        byte[] body = pick(bodies);
+        return validator.validate(body, 0, body.length, verdict).status();
+    }
+
+    @Benchmark
+    public int cachedPayload() {
+        byte[] body = pick(bodies);
+        return cache.validate(body, 0, body.length, verdict).status();
+    }
+
+    @Benchmark
+    public int binaryPayload() {
+        byte[] body = pick(encoded);
+        return validator.validateBinary(body, 0, body.length, verdict).status();
+    }
+
+    private byte[] pick(byte[][] corpus) {
+        byte[] value = corpus[next];
+        if (++next >= corpus.length) {
+            next = 0;
+        }
+        return value;
+    }
+}
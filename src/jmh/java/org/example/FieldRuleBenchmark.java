@@ -0,0 +1,85 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each field rule in isolation. The inputs are the values of that field across all
+ * test plan fixtures, so the invalid values from the 2.2 and 3.x scenarios are mixed in with the
+ * valid ones. Each invocation checks one value, cycling through the corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldRuleBenchmark {
+
+    private final CaseValidator validator = new CaseValidator();
+
+    private byte[][] caseIds;
+    private byte[][] patientIds;
+    private byte[][] patientNames;
+    private byte[][] dobs;
+    private byte[][] tissueTypes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() {
+        caseIds = FixtureCorpus.values(CaseField.CASE_ID);
+        patientIds = FixtureCorpus.values(CaseField.PATIENT_ID);
+        patientNames = FixtureCorpus.values(CaseField.PATIENT_NAME);
+        dobs = FixtureCorpus.values(CaseField.DOB);
+        tissueTypes = FixtureCorpus.values(CaseField.TISSUE_TYPE);
+    }
+
+    @Benchmark
+    public boolean caseId() {
+        byte[] value = pick(caseIds);
+        return validator.isCaseId(value, 0, value.length);
+    }
+
+    @Benchmark
+    public boolean patientId() {
+        byte[] value = pick(patientIds);
+        return validator.isPatientId(value, 0, value.length);
+    }
+
+    @Benchmark
+    public boolean patientName() {
+        byte[] value = pick(patientNames);
+        return validator.isPatientName(value, 0, value.length);
+    }
+
+    @Benchmark
+    public boolean dob() {
+        byte[] value = pick(dobs);
+        return validator.isDob(value, 0, value.length);
+    }
+
+    @Benchmark
+    public boolean tissueType() {
+        byte[] value = pick(tissueTypes);
+        return validator.isTissueType(value, 0, value.length);
+    }
+
+    private byte[] pick(byte[][] corpus) {
+        byte[] value = corpus[next];
+        if (++next >= corpus.length) {
+            next = 0;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,103 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar against SIMD {@link FieldScans} on the test plan values, plus the newline search that
+ * splits an NDJSON export into records, the bulk validator's share of the scanning.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldScansBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String scans;
+
+    private FieldScans impl;
+    private byte[][] caseIds;
+    private byte[][] patientIds;
+    private byte[][] patientNames;
+    private byte[] export;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() {
+        impl = scans.equals("vector")
+                ? FieldScans.vector().orElseThrow(() -> new IllegalStateException("Vector API not available"))
+                : FieldScans.SCALAR;
+        caseIds = FixtureCorpus.values(CaseField.CASE_ID);
+        patientIds = FixtureCorpus.values(CaseField.PATIENT_ID);
+        patientNames = FixtureCorpus.values(CaseField.PATIENT_NAME);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<byte[]> payloads = FixtureCorpus.payloads();
+        while (out.size() < 1 << 20) {
+            for (byte[] payload : payloads) {
+                for (byte b : payload) {
+                    if (b != '\n' && b != '\r') {
+                        out.write(b);
+                    }
+                }
+                out.write('\n');
+            }
+        }
+        export = out.toByteArray();
+    }
+
+    @Benchmark
+    public boolean caseId() {
+        byte[] value = pick(caseIds);
+        return impl.isCaseId(value, 0, value.length);
+    }
+
+    @Benchmark
+    public boolean patientName() {
+        byte[] value = pick(patientNames);
+        return impl.isPatientName(value, 0, value.length);
+    }
+
+    /** The REQ-4 delimiter scans: the leading digit run, then the next two carets. */
+    @Benchmark
+    public int patientIdDelimiters() {
+        byte[] value = pick(patientIds);
+        int p = impl.skipDigits(value, 0, value.length);
+        p = impl.indexOf(value, Math.min(p + 1, value.length), value.length, (byte) '^');
+        return p < 0 ? p : impl.indexOf(value, p + 1, value.length, (byte) '^');
+    }
+
+    /** One whole 1 MiB export split at its newlines per operation. */
+    @Benchmark
+    public int splitExport() {
+        int records = 0;
+        for (int p = 0, newline; (newline = impl.indexOf(export, p, export.length, (byte) '\n')) >= 0; p = newline + 1) {
+            records++;
+        }
+        return records;
+    }
+
+    private byte[] pick(byte[][] corpus) {
+        byte[] value = corpus[next];
+        if (++next >= corpus.length) {
+            next = 0;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,90 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The test plan fixtures ({@code src/test/resources/1-1.json} to {@code 4-1.json}) loaded as raw
+ * bytes for benchmarking. Set {@code -Dfixtures.dir} when running from another directory.
+ */
+final class FixtureCorpus {
+
+    private static final CaseValidator VALIDATOR = new CaseValidator();
+
+    private FixtureCorpus() {
+    }
+
+    /** Every fixture body, sorted by scenario number. */
+    static List<byte[]> payloads() {
+        Path dir = Path.of(System.getProperty("fixtures.dir", "src/test/resources"));
+        try (Stream<Path> files = Files.list(dir)) {
+            List<byte[]> payloads = new ArrayList<>();
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                payloads.add(Files.readAllBytes(file));
+            }
+            if (payloads.isEmpty()) {
+                throw new IllegalStateException("No fixtures in " + dir.toAbsolutePath());
+            }
+            return payloads;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Payloads whose verdict is (or is not) "Case valid". */
+    static byte[][] payloads(boolean valid) {
+        CaseVerdict verdict = new CaseVerdict();
+        return payloads().stream()
+                .filter(p -> VALIDATOR.validate(p, verdict).isValid() == valid)
+                .toArray(byte[][]::new);
+    }
+
+    /**
+     * The raw string values of {@code field} across the corpus, valid and invalid alike. Fixtures
+     * that omit the field contribute nothing.
+     */
+    static byte[][] values(CaseField field) {
+        byte[] key = ('"' + field.jsonName() + '"').getBytes(StandardCharsets.US_ASCII);
+        List<byte[]> values = new ArrayList<>();
+        for (byte[] payload : payloads()) {
+            int at = indexOf(payload, key);
+            if (at < 0) {
+                continue;
+            }
+            int open = indexOf(payload, (byte) '"', indexOf(payload, (byte) ':', at + key.length) + 1);
+            int close = indexOf(payload, (byte) '"', open + 1);
+            byte[] value = new byte[close - open - 1];
+            System.arraycopy(payload, open + 1, value, 0, value.length);
+            values.add(value);
+        }
+        return values.toArray(byte[][]::new);
+    }
+
+    private static int indexOf(byte[] buf, byte[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= buf.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buf[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] buf, byte b, int from) {
+        for (int i = from; i < buf.length; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,222 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control for the checkcase server: caps the requests in flight at a limit that follows
+ * the observed latency, and sheds whatever is over the limit instead of queueing it.
+ * <p>
+ * The limit moves once per window of at least {@value #MIN_WINDOW_SAMPLES} completed requests
+ * spanning about one request time, by a latency gradient: the ratio of the baseline request time,
+ * which stands for the time without queueing, to the window's average. While the window stays
+ * within {@code tolerance} of the baseline the limit grows by {@code sqrt(limit)}; once the server
+ * starts queueing and requests slow down beyond that, the limit shrinks in proportion, by at most
+ * half per window. A window in which the server used less than half its limit says nothing about
+ * its capacity and leaves the limit alone. The limit therefore settles where the server is busy but
+ * requests do not yet wait for one another, and tail latency stays close to the unloaded one
+ * however hard the server is pushed.
+ * <p>
+ * A request over the limit may wait up to {@link Options#maxWait} in a short FIFO queue of
+ * {@link Options#maxQueue} for a permit, which absorbs small bursts; beyond that it is shed at
+ * once and answered {@code 503} with {@code Retry-After}, costing the server almost nothing.
+ */
+public final class AdaptiveLimiter {
+
+    /** Settings for an {@link AdaptiveLimiter}; the defaults suit a single node. */
+    public static final class Options {
+        public int initialLimit = 64;
+        public int minLimit = 4;
+        public int maxLimit = 4_096;
+        /** How many times slower than the baseline requests may get before the limit drops. */
+        public double tolerance = 2.0;
+        public int maxQueue = 64;
+        public Duration maxWait = Duration.ofMillis(20);
+        public LongSupplier clock = System::nanoTime;
+    }
+
+    /** A slot in flight; release it exactly once when the request is answered. */
+    public final class Permit {
+
+        private final long start;
+
+        private Permit(long start) {
+            this.start = start;
+        }
+
+        /** Releases the slot and feeds the request time to the limit. */
+        public void release() {
+            complete(clock.getAsLong() - start, true);
+        }
+
+        /** Releases the slot without a sample, for requests whose time says nothing about load, such as streams. */
+        public void releaseIgnored() {
+            complete(0, false);
+        }
+    }
+
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final int BASELINE_WINDOWS = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final LongAdder shed = new LongAdder();
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double baseline;
+    private long windowStart;
+    private long windowSum;
+    private int windowSamples;
+    private int windowInFlight;
+
+    public AdaptiveLimiter() {
+        this(new Options());
+    }
+
+    public AdaptiveLimiter(Options options) {
+        if (options.minLimit < 1 || options.initialLimit < options.minLimit || options.maxLimit < options.initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        minLimit = options.minLimit;
+        maxLimit = options.maxLimit;
+        tolerance = options.tolerance;
+        maxQueue = options.maxQueue;
+        maxWaitNanos = options.maxWait.toNanos();
+        clock = options.clock;
+        limit = options.initialLimit;
+    }
+
+    /**
+     * Takes a slot, waiting in the queue for one if the limit is reached and the queue is not full.
+     *
+     * @return the permit, or {@code null} if the request is to be shed
+     */
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            // Arrivals queue behind waiters rather than overtake them.
+            if (queued == 0 && inFlight < (int) limit) {
+                inFlight++;
+                return new Permit(clock.getAsLong());
+            }
+            if (queued >= maxQueue || maxWaitNanos <= 0) {
+                shed.increment();
+                return null;
+            }
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        shed.increment();
+                        return null;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+                // Time spent queued counts: it is part of the latency the limit is meant to bound.
+                return new Permit(clock.getAsLong() - (maxWaitNanos - remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shed.increment();
+                return null;
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Requests turned away since the limiter was created. */
+    public long shed() {
+        return shed.sum();
+    }
+
+    private void complete(long rttNanos, boolean sample) {
+        lock.lock();
+        try {
+            if (sample && rttNanos > 0) {
+                update(rttNanos);
+            }
+            inFlight--;
+            released.signal();
+            if (inFlight < (int) limit - 1) {
+                // The limit may have grown by more than the one slot just freed.
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Adds a sample to the window, and once the window spans a round trip, moves the limit. */
+    private void update(long rtt) {
+        long now = clock.getAsLong();
+        if (windowSamples == 0) {
+            windowStart = now;
+        }
+        windowSum += rtt;
+        windowSamples++;
+        windowInFlight = Math.max(windowInFlight, inFlight);
+        double average = (double) windowSum / windowSamples;
+        if (windowSamples < MIN_WINDOW_SAMPLES || now - windowStart < average) {
+            return;
+        }
+        boolean used = windowInFlight >= limit / 2;
+        windowSum = 0;
+        windowSamples = 0;
+        windowInFlight = 0;
+
+        // A faster window lowers the baseline at once. A slower one only counts while the server is
+        // lightly used, when nothing is queued, so that overload cannot raise its own baseline.
+        if (baseline == 0 || average < baseline) {
+            baseline = average;
+        } else if (!used) {
+            baseline += (average - baseline) / BASELINE_WINDOWS;
+        }
+        if (!used) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baseline / average));
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * gradient + Math.sqrt(limit)));
+    }
+}
@@ -0,0 +1,293 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@code POST /.netlify/functions/checkcase/batch}: a (typically chunked) stream of
+ * newline-delimited case objects in, one result line per case out, e.g.
+ * <pre>
+ *   {"line":1,"status":200,"message":"Case valid"}
+ *   {"line":2,"status":422,"message":"Invalid dob"}
+ * </pre>
+ * Memory is bounded by one fixed buffer per exchange regardless of the stream length. Each case is
+ * validated in place and its result written before more input is read, so a client that stops
+ * reading results stalls its own upload through TCP flow control instead of growing a queue here.
+ * Blank lines are skipped; a line longer than {@link CheckCaseHandler#MAX_BODY_BYTES} gets a 413
+ * result and is discarded. Duplicates are checked against the same {@link CaseIdIndex} as single
+ * cases, so a case_id repeated within a batch, or across batch and single requests, gets a 409;
+ * in cluster mode, each valid line that another node owns is answered by that node.
+ * With {@code ?report=all}, each 400 or 422 line also lists every violation of its case. Metrics
+ * and JFR events are recorded per case line; the request duration covers the whole stream. A
+ * stream holds one {@link AdaptiveLimiter} slot while it lasts. The {@link RequestGate} in front
+ * checks the media type and disconnects a stream that stalls. With a {@link PatientIndex}, a valid
+ * line whose patient_id came earlier with another patient_name or dob keeps its 200 but is flagged,
+ * e.g. {@code {"line":3,"status":200,"message":"Case valid","patient":"Inconsistent dob"}}.
+ */
+final class BatchHandler implements HttpHandler {
+
+    static final String NDJSON = "application/x-ndjson";
+
+    private static final int BUFFER_BYTES = 2 * CheckCaseHandler.MAX_BODY_BYTES;
+    // Large enough for the longest result line: an unexpected key may be almost a whole case, and a
+    // full report repeats it in the message and in the violation list.
+    private static final int OUTPUT_BYTES = 2 * CheckCaseHandler.MAX_BODY_BYTES + 512;
+
+    private static final byte[] LINE = "{\"line\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STATUS = ",\"status\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PATIENT = ",\"patient\":\"".getBytes(StandardCharsets.US_ASCII);
+
+    private static final CaseMetrics.Endpoint ENDPOINT = CaseMetrics.Endpoint.BATCH;
+
+    private final CaseServer.Options options;
+
+    BatchHandler(CaseServer.Options options) {
+        this.options = options;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                reject(exchange, 405, CheckCaseHandler.METHOD_NOT_ALLOWED_MESSAGE, CheckCaseHandler.METHOD_NOT_ALLOWED);
+                return;
+            }
+            AdaptiveLimiter.Permit permit = null;
+            if (options.limiter != null) {
+                permit = options.limiter.tryAcquire();
+                if (permit == null) {
+                    CheckCaseEvent event = new CheckCaseEvent();
+                    event.begin();
+                    CheckCaseHandler.shed(exchange, options, ENDPOINT, event);
+                    return;
+                }
+            }
+            try {
+                exchange.getResponseHeaders().set("Content-Type", NDJSON);
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    stream(exchange.getRequestBody(), out, ViolationReport.requested(exchange.getRequestURI()));
+                }
+            } finally {
+                if (permit != null) {
+                    // A stream lasts as long as the client keeps sending, so its time is no latency sample.
+                    permit.releaseIgnored();
+                }
+            }
+        } finally {
+            if (options.metrics != null) {
+                options.metrics.request(ENDPOINT, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void reject(HttpExchange exchange, int status, String message, byte[] body) throws IOException {
+        CheckCaseEvent event = new CheckCaseEvent();
+        event.begin();
+        CheckCaseHandler.reject(exchange, options, ENDPOINT, status, message, body, event);
+    }
+
+    /**
+     * Validates every line of {@code in} and writes one result line per case to {@code out}, with
+     * the full {@link ViolationReport} of each rejected case if {@code report} is set.
+     */
+    void stream(InputStream in, OutputStream out, boolean report) throws IOException {
+        ResultWriter results = new ResultWriter(out, report);
+        CaseVerdict verdict = new CaseVerdict();
+        byte[] buf = new byte[BUFFER_BYTES];
+        int start = 0;
+        int limit = 0;
+        int scanned = 0;
+        long line = 0;
+        boolean discarding = false;
+
+        while (true) {
+            int newline = indexOf(buf, (byte) '\n', scanned, limit);
+            if (newline >= 0) {
+                if (discarding) {
+                    discarding = false;
+                } else if (newline - start > CheckCaseHandler.MAX_BODY_BYTES) {
+                    // A line can arrive whole in one read before the check below ever sees it.
+                    results.tooLarge(++line);
+                } else {
+                    results.write(++line, verdict, buf, start, trimCr(buf, start, newline));
+                }
+                start = newline + 1;
+                scanned = start;
+                continue;
+            }
+            scanned = limit;
+            if (limit - start > CheckCaseHandler.MAX_BODY_BYTES) {
+                // The current line cannot fit: report it now and drop bytes until its newline.
+                if (!discarding) {
+                    results.tooLarge(++line);
+                    discarding = true;
+                }
+                start = limit;
+                scanned = limit;
+            }
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, limit - start);
+                limit -= start;
+                scanned -= start;
+                start = 0;
+            }
+            if (in.available() == 0) {
+                results.flush();
+            }
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                break;
+            }
+            limit += n;
+        }
+        if (!discarding && limit > start) {
+            results.write(++line, verdict, buf, start, limit);
+        }
+        results.flush();
+    }
+
+    private static int trimCr(byte[] buf, int start, int end) {
+        return end > start && buf[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    private static int indexOf(byte[] buf, byte b, int from, int to) {
+        return FieldScans.PREFERRED.indexOf(buf, from, to, b);
+    }
+
+    /** Encodes result lines straight into a fixed output buffer. */
+    private final class ResultWriter {
+
+        private final OutputStream out;
+        private final boolean report;
+        private final byte[] buf = new byte[OUTPUT_BYTES];
+        private int pos;
+
+        ResultWriter(OutputStream out, boolean report) {
+            this.out = out;
+            this.report = report;
+        }
+
+        void write(long line, CaseVerdict verdict, byte[] in, int start, int end) throws IOException {
+            if (isBlank(in, start, end)) {
+                return;
+            }
+            CheckCaseEvent event = new CheckCaseEvent();
+            event.begin();
+            CheckCaseHandler.validate(options, in, start, end - start, verdict);
+            CaseCluster.Forwarded forwarded = CheckCaseHandler.route(options, in, start, end - start, verdict);
+            if (forwarded != null) {
+                result(line, forwarded.status(), forwarded.body());
+                event.end(ENDPOINT, forwarded.status(), forwarded.message(), end - start);
+                return;
+            }
+            CheckCaseHandler.admit(options, ENDPOINT, in, start, end - start, verdict);
+            if (report && ViolationReport.applies(verdict)) {
+                head(line, verdict.status(), ViolationReport.length(verdict));
+                pos = ViolationReport.write(verdict, 1, buf, pos);
+                buf[pos++] = '\n';
+            } else {
+                byte[] message = CheckCaseHandler.responseBody(verdict, in);
+                int mismatch = options.patients != null && verdict.isValid()
+                        ? options.patients.check(in, start, end - start) : 0;
+                if (mismatch != 0) {
+                    flagged(line, verdict.status(), message, PatientIndex.message(mismatch));
+                } else {
+                    result(line, verdict.status(), message);
+                }
+            }
+            event.end(ENDPOINT, verdict, end - start);
+        }
+
+        void tooLarge(long line) throws IOException {
+            result(line, 413, CheckCaseHandler.TOO_LARGE);
+            if (options.metrics != null) {
+                options.metrics.rejected(ENDPOINT, 413);
+            }
+        }
+
+        /** Writes {@code {"line":N,"status":S,"message":"..."}}, reusing the single-case body. */
+        private void result(long line, int status, byte[] body) throws IOException {
+            head(line, status, body.length);
+            System.arraycopy(body, 1, buf, pos, body.length - 1);
+            pos += body.length - 1;
+            buf[pos++] = '\n';
+        }
+
+        /** Writes a result with a {@code "patient"} member after the message. */
+        private void flagged(long line, int status, byte[] body, String patient) throws IOException {
+            head(line, status, body.length + PATIENT.length + patient.length() + 2);
+            System.arraycopy(body, 1, buf, pos, body.length - 2);
+            pos += body.length - 2;
+            put(PATIENT);
+            put(patient.getBytes(StandardCharsets.US_ASCII));
+            buf[pos++] = '"';
+            buf[pos++] = '}';
+            buf[pos++] = '\n';
+        }
+
+        /** Makes room for a line with a body of {@code bodyLength} bytes and writes its line and status. */
+        private void head(long line, int status, int bodyLength) throws IOException {
+            ensure(LINE.length + 20 + STATUS.length + 3 + bodyLength + 1);
+            put(LINE);
+            putLong(line);
+            put(STATUS);
+            putLong(status);
+            buf[pos++] = ',';
+        }
+
+        private void put(byte[] bytes) {
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private void putLong(long value) {
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) {
+                digits++;
+            }
+            for (int i = pos + digits - 1; i >= pos; i--) {
+                buf[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            pos += digits;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.length - pos < bytes) {
+                flushBuffer();
+            }
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        private void flushBuffer() throws IOException {
+            if (options.log != null) {
+                // One group commit per output buffer rather than per line.
+                options.log.sync();
+            }
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        private boolean isBlank(byte[] in, int start, int end) {
+            for (int i = start; i < end; i++) {
+                byte b = in[i];
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
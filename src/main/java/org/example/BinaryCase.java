@@ -0,0 +1,620 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of a case, accepted at {@link CaseServer#BINARY_PATH} as
+ * {@value #MEDIA_TYPE} and answered exactly as the JSON endpoint answers the same case.
+ * <pre>
+ *   0xCA 0x01                      magic and version
+ *   entry*                         one per member of the JSON object, in document order
+ *
+ *   entry = kind &lt;&lt; 3 | field ordinal, then
+ *     PACKED      case_id        16 bytes, the UUID big-endian
+ *                 patient_id     a component count byte, then each component as a length byte and its bytes
+ *                 patient_name   the same
+ *                 dob            int32 big-endian, YYYYMMDD
+ *                 tissue_type    one byte, the code's position in the tissue_type reference list
+ *     TEXT        uint16 length, then the string value as it appeared in JSON, escapes included
+ *     OTHER       nothing; the value was not a string
+ *     UNEXPECTED  (field bits 0) uint16 length, then the key as it appeared in JSON
+ * </pre>
+ * Keeping every member, in order, is what makes the verdicts identical: the first violation in
+ * document order is the one reported, a repeated field is invalid, and an unexpected key is named
+ * in the message. The encoder packs whatever fits a packed form, valid or not, and falls back to
+ * TEXT for the rest, so any JSON object can be encoded; only malformed JSON cannot. A malformed
+ * binary body is a 400 "Malformed JSON", like malformed JSON.
+ * <p>
+ * Validation reads the packed forms in place: no hex to parse, no separators to scan for, no
+ * digits to convert and no vocabulary to hash, which makes a case a fraction of the JSON work.
+ * Tissue type codes are positions in a reference list, so producers must encode with the same
+ * reference data as the server; a code outside the list is an invalid tissue_type. The
+ * {@link CaseLog} keeps a case with its tissue type resolved to the code, as TEXT, since the list
+ * can be reloaded long before the record is read.
+ */
+public final class BinaryCase {
+
+    public static final String MEDIA_TYPE = "application/x-checkcase";
+
+    static final byte MAGIC = (byte) 0xCA;
+    static final byte VERSION = 1;
+
+    static final int PACKED = 1;
+    static final int TEXT = 2;
+    static final int OTHER = 3;
+    static final int UNEXPECTED = 4;
+
+    private static final int FIELDS = CaseField.values().length;
+    private static final int HEADER = 2;
+    private static final int UUID_BYTES = 16;
+    private static final int MAX_COMPONENT = 0xFF;
+    private static final int MAX_TEXT = 0xFFFF;
+    private static final int PATIENT_ID_COMPONENTS = 5;
+    private static final int MIN_NAME_COMPONENTS = 2;
+    private static final int MAX_NAME_COMPONENTS = 3;
+    private static final int MAX_DOB = 99_999_999;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private BinaryCase() {
+    }
+
+    /** Whether a body is in this encoding rather than JSON, which never starts with {@code 0xCA}. */
+    public static boolean isBinary(byte[] buf, int off, int len) {
+        return len > 0 && buf[off] == MAGIC;
+    }
+
+    /** Encodes a JSON case, with tissue types coded against the built-in reference data. */
+    public static byte[] encode(byte[] json) {
+        return encode(json, ReferenceData.defaults());
+    }
+
+    /**
+     * Encodes a JSON case; a blank body encodes to an empty one, which is answered
+     * "Missing request body" like a blank JSON body.
+     *
+     * @throws IllegalArgumentException if the body is not one JSON object
+     */
+    public static byte[] encode(byte[] json, ReferenceData reference) {
+        int end = json.length;
+        int p = CaseValidator.skipSpace(json, CaseValidator.skipBom(json, 0, end), end);
+        if (p == end) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream out = header();
+        if (json[p] != '{') {
+            throw malformed();
+        }
+        p = CaseValidator.skipSpace(json, p + 1, end);
+        if (p < end && json[p] == '}') {
+            p++;
+        } else {
+            while (true) {
+                if (p >= end || json[p] != '"') {
+                    throw malformed();
+                }
+                int keyStart = p + 1;
+                int keyEnd = CaseValidator.scanString(json, keyStart, end);
+                if (keyEnd < 0) {
+                    throw malformed();
+                }
+                p = CaseValidator.skipSpace(json, keyEnd + 1, end);
+                if (p >= end || json[p] != ':') {
+                    throw malformed();
+                }
+                p = CaseValidator.skipSpace(json, p + 1, end);
+                CaseField field = CaseField.match(json, keyStart, keyEnd - keyStart);
+                if (field != null && p < end && json[p] == '"') {
+                    int valueEnd = CaseValidator.scanString(json, p + 1, end);
+                    if (valueEnd < 0) {
+                        throw malformed();
+                    }
+                    value(out, field, json, p + 1, valueEnd, reference);
+                    p = valueEnd + 1;
+                } else {
+                    p = CaseValidator.skipValue(json, p, end, 0);
+                    if (p < 0) {
+                        throw malformed();
+                    }
+                    if (field != null) {
+                        out.write(OTHER << 3 | field.ordinal());
+                    } else {
+                        text(out, UNEXPECTED << 3, json, keyStart, keyEnd);
+                    }
+                }
+                p = CaseValidator.skipSpace(json, p, end);
+                if (p < end && json[p] == ',') {
+                    p = CaseValidator.skipSpace(json, p + 1, end);
+                } else if (p < end && json[p] == '}') {
+                    p++;
+                    break;
+                } else {
+                    throw malformed();
+                }
+            }
+        }
+        if (CaseValidator.skipSpace(json, p, end) != end) {
+            throw malformed();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a case from its field values, as a producer that never builds JSON would; a
+     * {@code null} value leaves the field out.
+     */
+    public static byte[] encode(UUID caseId, String patientId, String patientName, String dob, String tissueType) {
+        ReferenceData reference = ReferenceData.defaults();
+        ByteArrayOutputStream out = header();
+        if (caseId != null) {
+            out.write(PACKED << 3 | CaseField.CASE_ID.ordinal());
+            putLong(out, caseId.getMostSignificantBits());
+            putLong(out, caseId.getLeastSignificantBits());
+        }
+        String[] values = {null, patientId, patientName, dob, tissueType};
+        for (int ordinal = CaseField.PATIENT_ID.ordinal(); ordinal < values.length; ordinal++) {
+            if (values[ordinal] != null) {
+                byte[] raw = escape(values[ordinal]);
+                value(out, CaseField.of(ordinal), raw, 0, raw.length, reference);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Decodes a case to JSON, with tissue type codes resolved against the built-in reference data. */
+    public static byte[] toJson(byte[] buf, int off, int len) {
+        return toJson(buf, off, len, ReferenceData.defaults());
+    }
+
+    /**
+     * Decodes a case to a JSON body that the JSON endpoint answers as the binary one answers this
+     * case; a tissue type code outside the list becomes {@code null}, which is just as invalid.
+     *
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    public static byte[] toJson(byte[] buf, int off, int len, ReferenceData reference) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len * 2);
+        if (len == 0) {
+            return out.toByteArray();
+        }
+        int end = off + len;
+        if (len < HEADER || buf[off] != MAGIC || buf[off + 1] != VERSION) {
+            throw malformed();
+        }
+        out.write('{');
+        for (int p = off + HEADER; p < end; ) {
+            int kind = (buf[p] & 0xFF) >>> 3;
+            int ordinal = buf[p] & 7;
+            int next = skip(buf, p + 1, end, kind, ordinal);
+            if (next < 0) {
+                throw malformed();
+            }
+            if (p > off + HEADER) {
+                out.write(',');
+            }
+            out.write('"');
+            if (kind == UNEXPECTED) {
+                out.write(buf, p + 3, next - p - 3);
+                out.writeBytes("\":null".getBytes(StandardCharsets.US_ASCII));
+                p = next;
+                continue;
+            }
+            CaseField field = CaseField.of(ordinal);
+            out.writeBytes((field.jsonName() + "\":").getBytes(StandardCharsets.US_ASCII));
+            p++;
+            if (kind == OTHER) {
+                out.writeBytes("null".getBytes(StandardCharsets.US_ASCII));
+            } else if (kind == TEXT) {
+                out.write('"');
+                out.write(buf, p + 2, next - p - 2);
+                out.write('"');
+            } else if (field == CaseField.TISSUE_TYPE && (buf[p] & 0xFF) >= reference.tissueTypes().size()) {
+                out.writeBytes("null".getBytes(StandardCharsets.US_ASCII));
+            } else {
+                packedJson(out, field, buf, p, reference);
+            }
+            p = next;
+        }
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    /**
+     * The case with a packed tissue_type rewritten as the code it stands for in {@code reference},
+     * so that it decodes the same once the reference list has changed; a code outside the list
+     * becomes a non-string value, which is just as invalid. Every other entry is copied as is.
+     *
+     * @return the rewritten case, or {@code null} if it has no packed tissue_type or is malformed
+     */
+    static byte[] resolveTissueType(byte[] buf, int off, int len, ReferenceData reference) {
+        int end = off + len;
+        if (len < HEADER || buf[off] != MAGIC || buf[off + 1] != VERSION) {
+            return null;
+        }
+        for (int p = off + HEADER; p < end; ) {
+            int kind = (buf[p] & 0xFF) >>> 3;
+            int ordinal = buf[p] & 7;
+            int next = skip(buf, p + 1, end, kind, ordinal);
+            if (next < 0) {
+                return null;
+            }
+            if (kind == PACKED && ordinal == CaseField.TISSUE_TYPE.ordinal()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(len + 32);
+                out.write(buf, off, p - off);
+                int code = buf[p + 1] & 0xFF;
+                if (code < reference.tissueTypes().size()) {
+                    byte[] value = reference.tissueTypes().codes().get(code).getBytes(StandardCharsets.US_ASCII);
+                    text(out, TEXT << 3 | ordinal, value, 0, value.length);
+                } else {
+                    out.write(OTHER << 3 | ordinal);
+                }
+                out.write(buf, next, end - next);
+                return out.toByteArray();
+            }
+            p = next;
+        }
+        return null;
+    }
+
+    /**
+     * Validates an encoded case with the same precedence as {@link CaseValidator#validate}: a
+     * malformed body, then a missing field, then the first violation in document order.
+     */
+    static CaseVerdict validate(CaseValidator validator, ReferenceData data, byte[] buf, int off, int len,
+                                CaseVerdict out) {
+        if (len == 0) {
+            out.empty();
+            return out;
+        }
+        int end = off + len;
+        if (len < HEADER || buf[off] != MAGIC || buf[off + 1] != VERSION) {
+            out.malformed();
+            return out;
+        }
+        int seen = 0;
+        int invalid = 0;
+        int violation = -1;          // ordinal of the first invalid field, or -2 for an unexpected key
+        int unexpectedOffset = -1;
+        int unexpectedLength = 0;
+        int caseId = -1;             // offset of the case_id entry's value
+        boolean packedCaseId = false;
+
+        for (int p = off + HEADER; p < end; ) {
+            int kind = (buf[p] & 0xFF) >>> 3;
+            int ordinal = buf[p] & 7;
+            int value = p + 1;
+            int next = skip(buf, value, end, kind, ordinal);
+            if (next < 0) {
+                out.malformed();
+                return out;
+            }
+            p = next;
+            if (kind == UNEXPECTED) {
+                if (unexpectedOffset < 0) {
+                    unexpectedOffset = value + 2;
+                    unexpectedLength = next - value - 2;
+                }
+                if (violation == -1) {
+                    violation = -2;
+                }
+                continue;
+            }
+            CaseField field = CaseField.of(ordinal);
+            boolean passed = false;
+            if ((seen & field.bit()) == 0) {
+                seen |= field.bit();
+                passed = switch (kind) {
+                    case PACKED -> checkPacked(data, field, buf, value);
+                    case TEXT -> validator.check(data, field, buf, value + 2, next - value - 2);
+                    default -> false;
+                };
+                if (field == CaseField.CASE_ID) {
+                    caseId = kind == PACKED ? value : value + 2;
+                    packedCaseId = kind == PACKED;
+                }
+            }
+            if (!passed) {
+                invalid |= field.bit();
+                if (violation == -1) {
+                    violation = ordinal;
+                }
+            }
+        }
+
+        int missing = ~seen & CaseField.ALL;
+        if (missing != 0) {
+            out.missing(CaseField.of(Integer.numberOfTrailingZeros(missing)));
+        } else if (violation == -2) {
+            out.unexpected(buf, unexpectedOffset, unexpectedLength);
+        } else if (violation >= 0) {
+            out.invalid(CaseField.of(violation));
+        } else if (packedCaseId) {
+            out.valid(getLong(buf, caseId), getLong(buf, caseId + 8));
+        } else {
+            out.valid(buf, caseId);
+        }
+        out.violations(missing, invalid);
+        if (unexpectedOffset >= 0 && !out.isUnexpectedField()) {
+            out.unexpectedKey(buf, unexpectedOffset, unexpectedLength);
+        }
+        return out;
+    }
+
+    /**
+     * Finds the end of an entry whose value starts at {@code p}.
+     *
+     * @return the index just past the entry, or -1 if it is unknown or runs past {@code end}
+     */
+    private static int skip(byte[] buf, int p, int end, int kind, int ordinal) {
+        if (kind == UNEXPECTED ? ordinal != 0 : ordinal >= FIELDS) {
+            return -1;
+        }
+        int next = switch (kind) {
+            case TEXT, UNEXPECTED -> p + 2 > end ? -1 : p + 2 + getShort(buf, p);
+            case OTHER -> p;
+            case PACKED -> switch (CaseField.of(ordinal)) {
+                case CASE_ID -> p + UUID_BYTES;
+                case DOB -> p + Integer.BYTES;
+                case TISSUE_TYPE -> p + 1;
+                case PATIENT_ID, PATIENT_NAME -> skipComponents(buf, p, end);
+            };
+            default -> -1;
+        };
+        return next > end ? -1 : next;
+    }
+
+    private static int skipComponents(byte[] buf, int p, int end) {
+        if (p >= end) {
+            return -1;
+        }
+        int count = buf[p++] & 0xFF;
+        for (int i = 0; i < count; i++) {
+            if (p >= end) {
+                return -1;
+            }
+            p += 1 + (buf[p] & 0xFF);
+        }
+        return p;
+    }
+
+    private static boolean checkPacked(ReferenceData data, CaseField field, byte[] buf, int p) {
+        return switch (field) {
+            case CASE_ID -> true;
+            case PATIENT_ID -> isPatientId(data, buf, p);
+            case PATIENT_NAME -> isPatientName(buf, p);
+            case DOB -> isDob(getInt(buf, p));
+            case TISSUE_TYPE -> (buf[p] & 0xFF) < data.tissueTypes().size();
+        };
+    }
+
+    /** {@link CaseValidator#isPatientId}, one component at a time; no component may hold the {@code ^} separator. */
+    private static boolean isPatientId(ReferenceData data, byte[] buf, int p) {
+        if (buf[p++] != PATIENT_ID_COMPONENTS) {
+            return false;
+        }
+        int len = buf[p++] & 0xFF;
+        if (len == 0 || len > CaseValidator.MAX_ID_DIGITS || CaseValidator.SCANS.skipDigits(buf, p, p + len) != p + len) {
+            return false;
+        }
+        p += len;
+        len = buf[p++] & 0xFF;
+        if (len != 1 || (buf[p] != '0' && buf[p] != '1')) {
+            return false;
+        }
+        p += len;
+        len = buf[p++] & 0xFF;
+        if (!isCode(data.authorities(), buf, p, len)) {
+            return false;
+        }
+        p += len;
+        len = buf[p++] & 0xFF;
+        int end = p + len;
+        int digits = p;
+        while (digits < end && buf[digits] != '^' && (CaseValidator.CLASS[buf[digits] & 0xFF] & CaseValidator.DIGIT) == 0) {
+            digits++;
+        }
+        if (!data.idTypes().contains(buf, p, digits - p)
+                || digits == end || CaseValidator.SCANS.skipDigits(buf, digits, end) != end) {
+            return false;
+        }
+        p = end;
+        len = buf[p++] & 0xFF;
+        return isCode(data.facilities(), buf, p, len);
+    }
+
+    private static boolean isCode(Vocabulary codes, byte[] buf, int p, int len) {
+        return codes.contains(buf, p, len) && CaseValidator.SCANS.indexOf(buf, p, p + len, (byte) '^') < 0;
+    }
+
+    /** {@link CaseValidator#isPatientName}, one component at a time. */
+    private static boolean isPatientName(byte[] buf, int p) {
+        int count = buf[p++] & 0xFF;
+        if (count < MIN_NAME_COMPONENTS || count > MAX_NAME_COMPONENTS) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int end = p + 1 + (buf[p] & 0xFF);
+            p++;
+            if (p == end || (CaseValidator.CLASS[buf[p] & 0xFF] & CaseValidator.LETTER) == 0) {
+                return false;
+            }
+            for (p++; p < end; p++) {
+                if ((CaseValidator.CLASS[buf[p] & 0xFF] & CaseValidator.NAME) == 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDob(int value) {
+        return value >= 0 && value <= MAX_DOB && CaseValidator.isDate(value);
+    }
+
+    /** Writes a string value in its packed form if it has one, or as TEXT. */
+    private static void value(ByteArrayOutputStream out, CaseField field, byte[] buf, int off, int end,
+                              ReferenceData reference) {
+        int len = end - off;
+        int packed = PACKED << 3 | field.ordinal();
+        switch (field) {
+            case CASE_ID -> {
+                if (CaseValidator.SCANS.isCaseId(buf, off, len)) {
+                    out.write(packed);
+                    putLong(out, CaseIdIndex.mostSignificantBits(buf, off));
+                    putLong(out, CaseIdIndex.leastSignificantBits(buf, off));
+                    return;
+                }
+            }
+            case PATIENT_ID, PATIENT_NAME -> {
+                if (components(out, packed, buf, off, end)) {
+                    return;
+                }
+            }
+            case DOB -> {
+                if (len == 8 && CaseValidator.SCANS.skipDigits(buf, off, end) == end) {
+                    out.write(packed);
+                    putInt(out, Integer.parseInt(new String(buf, off, len, StandardCharsets.US_ASCII)));
+                    return;
+                }
+            }
+            case TISSUE_TYPE -> {
+                if (reference.tissueTypes().contains(buf, off, len)) {
+                    int code = reference.tissueTypes().codes().indexOf(new String(buf, off, len, StandardCharsets.US_ASCII));
+                    if (code <= MAX_COMPONENT) {
+                        out.write(packed);
+                        out.write(code);
+                        return;
+                    }
+                }
+            }
+        }
+        text(out, TEXT << 3 | field.ordinal(), buf, off, end);
+    }
+
+    /** Writes the {@code ^}-separated components of a value, unless one of them is too long to be packed. */
+    private static boolean components(ByteArrayOutputStream out, int entry, byte[] buf, int off, int end) {
+        int count = 1;
+        int start = off;
+        for (int p = off; p <= end; p++) {
+            if (p == end || buf[p] == '^') {
+                if (p - start > MAX_COMPONENT) {
+                    return false;
+                }
+                start = p + 1;
+                count += p < end ? 1 : 0;
+            }
+        }
+        if (count > MAX_COMPONENT) {
+            return false;
+        }
+        out.write(entry);
+        out.write(count);
+        start = off;
+        for (int p = off; p <= end; p++) {
+            if (p == end || buf[p] == '^') {
+                out.write(p - start);
+                out.write(buf, start, p - start);
+                start = p + 1;
+            }
+        }
+        return true;
+    }
+
+    private static void packedJson(ByteArrayOutputStream out, CaseField field, byte[] buf, int p,
+                                   ReferenceData reference) {
+        out.write('"');
+        switch (field) {
+            case CASE_ID -> {
+                for (int i = 0; i < UUID_BYTES; i++) {
+                    if (i == 4 || i == 6 || i == 8 || i == 10) {
+                        out.write('-');
+                    }
+                    out.write(HEX_DIGITS[(buf[p + i] & 0xFF) >>> 4]);
+                    out.write(HEX_DIGITS[buf[p + i] & 0xF]);
+                }
+            }
+            case PATIENT_ID, PATIENT_NAME -> {
+                int count = buf[p++] & 0xFF;
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) {
+                        out.write('^');
+                    }
+                    int len = buf[p++] & 0xFF;
+                    out.write(buf, p, len);
+                    p += len;
+                }
+            }
+            case DOB -> {
+                int value = getInt(buf, p);
+                String text = value >= 0 && value <= MAX_DOB ? String.format("%08d", value) : Integer.toString(value);
+                out.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+            }
+            case TISSUE_TYPE -> out.writeBytes(reference.tissueTypes().codes().get(buf[p] & 0xFF)
+                    .getBytes(StandardCharsets.US_ASCII));
+        }
+        out.write('"');
+    }
+
+    private static void text(ByteArrayOutputStream out, int entry, byte[] buf, int off, int end) {
+        int len = end - off;
+        if (len > MAX_TEXT) {
+            throw new IllegalArgumentException("Value of " + len + " bytes is too long to encode");
+        }
+        out.write(entry);
+        out.write(len >>> 8);
+        out.write(len);
+        out.write(buf, off, len);
+    }
+
+    /** The value as it would appear inside a JSON string. */
+    private static byte[] escape(String value) {
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ByteArrayOutputStream header() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        out.write(MAGIC);
+        out.write(VERSION);
+        return out;
+    }
+
+    private static IllegalArgumentException malformed() {
+        return new IllegalArgumentException(CaseVerdict.MALFORMED_MESSAGE);
+    }
+
+    private static void putLong(ByteArrayOutputStream out, long value) {
+        putInt(out, (int) (value >>> 32));
+        putInt(out, (int) value);
+    }
+
+    private static void putInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static int getShort(byte[] buf, int p) {
+        return (buf[p] & 0xFF) << 8 | buf[p + 1] & 0xFF;
+    }
+
+    private static int getInt(byte[] buf, int p) {
+        return (buf[p] & 0xFF) << 24 | (buf[p + 1] & 0xFF) << 16 | (buf[p + 2] & 0xFF) << 8 | buf[p + 3] & 0xFF;
+    }
+
+    private static long getLong(byte[] buf, int p) {
+        return (long) getInt(buf, p) << 32 | getInt(buf, p + 4) & 0xFFFFFFFFL;
+    }
+}
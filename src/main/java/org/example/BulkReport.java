@@ -0,0 +1,125 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Outcome of a {@link BulkValidator} run: totals, a count per rejection reason and the file offset
+ * of every rejected record, and likewise for valid records flagged as inconsistent with another
+ * record of the same patient. Failures and flags are kept as parallel primitive arrays (offset,
+ * reason index) sorted by offset, so a report over millions of records stays compact.
+ */
+public final class BulkReport {
+
+    private final Path file;
+    private final String format;
+    private final long bytes;
+    private final long records;
+    private final long[] offsets;
+    private final int[] reasons;
+    private final long[] flaggedOffsets;
+    private final int[] flaggedReasons;
+    private final List<String> messages;
+    private final long elapsedNanos;
+
+    BulkReport(Path file, String format, long bytes, long records, long[] offsets, int[] reasons,
+               long[] flaggedOffsets, int[] flaggedReasons, List<String> messages, long elapsedNanos) {
+        this.file = file;
+        this.format = format;
+        this.bytes = bytes;
+        this.records = records;
+        this.offsets = offsets;
+        this.reasons = reasons;
+        this.flaggedOffsets = flaggedOffsets;
+        this.flaggedReasons = flaggedReasons;
+        this.messages = messages;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public long invalid() {
+        return offsets.length;
+    }
+
+    public long valid() {
+        return records - offsets.length;
+    }
+
+    /** Valid records flagged as inconsistent with another record of the same patient_id. */
+    public long flagged() {
+        return flaggedOffsets.length;
+    }
+
+    /** File offset of the {@code i}-th flagged record. */
+    public long flaggedOffset(int i) {
+        return flaggedOffsets[i];
+    }
+
+    /** Why the {@code i}-th flagged record was flagged, e.g. {@code "Inconsistent dob"}. */
+    public String flaggedMessage(int i) {
+        return messages.get(flaggedReasons[i]);
+    }
+
+    /** File offset of the {@code i}-th rejected record. */
+    public long failureOffset(int i) {
+        return offsets[i];
+    }
+
+    /** Response message of the {@code i}-th rejected record, e.g. {@code "Invalid dob"}. */
+    public String failureMessage(int i) {
+        return messages.get(reasons[i]);
+    }
+
+    /** Prints totals, a count per rejection reason, and a count per flag if any record was flagged. */
+    public void printSummary(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("file:    %s (%s, %,d bytes)%n", file, format, bytes);
+        out.printf("records: %,d  valid: %,d  invalid: %,d%n", records, valid(), invalid());
+        out.printf("elapsed: %.3f s  (%,.0f records/s, %,.1f MB/s)%n",
+                seconds, records / seconds, bytes / seconds / 1e6);
+        printCounts(reasons, out);
+        if (flagged() > 0) {
+            out.printf("flagged: %,d valid records%n", flagged());
+            printCounts(flaggedReasons, out);
+        }
+    }
+
+    private void printCounts(int[] reasons, PrintStream out) {
+        long[] counts = new long[messages.size()];
+        for (int reason : reasons) {
+            counts[reason]++;
+        }
+        Integer[] order = new Integer[counts.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        for (int reason : order) {
+            if (counts[reason] > 0) {
+                out.printf("  %-24s %,d%n", messages.get(reason), counts[reason]);
+            }
+        }
+    }
+
+    /** Prints one {@code offset<TAB>message} line per rejected record, in file order. */
+    public void printFailures(PrintStream out) {
+        printLines(offsets, reasons, out);
+    }
+
+    /** Prints one {@code offset<TAB>message} line per flagged record, in file order. */
+    public void printFlagged(PrintStream out) {
+        printLines(flaggedOffsets, flaggedReasons, out);
+    }
+
+    private void printLines(long[] offsets, int[] reasons, PrintStream out) {
+        StringBuilder line = new StringBuilder(64);
+        for (int i = 0; i < offsets.length; i++) {
+            line.setLength(0);
+            line.append(offsets[i]).append('\t').append(messages.get(reasons[i]));
+            out.println(line);
+        }
+    }
+}
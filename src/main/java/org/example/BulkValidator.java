@@ -0,0 +1,514 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Validates a case export file on all cores.
+ * <p>
+ * Three layouts are accepted: NDJSON (one case per line), a JSON array of case objects and HL7 v2
+ * messages, plain or MLLP-framed, whose PID segments are checked by {@link Hl7Reader}. The file
+ * is memory-mapped and split recursively with fork-join into chunks that end on record
+ * boundaries; each leaf streams its chunk through a fixed window and validates records in place.
+ * <p>
+ * NDJSON chunks split after any newline, which is always exact because JSON strings cannot contain
+ * a raw newline. Array chunks split at a newline that follows a {@code ,} and precedes a
+ * {@code {}, which is exact for exports that start every record on a new line, pretty-printed or
+ * not. A record that cannot be parsed is reported as "Malformed JSON" at its offset and the scan
+ * resumes at the next line starting with {@code {}. A record longer than the single-case endpoint
+ * accepts is reported as "Payload too large" in every format, whether or not it fits the window.
+ * <p>
+ * HL7 chunks split where a message starts: at an MSH segment or an MLLP start of block. Each PID
+ * segment is one record, reported at the offset of its message.
+ * <p>
+ * With a {@link PatientIndex}, a valid record that contradicts another record with the same
+ * patient_id, by its patient_name or dob, is flagged, e.g. as "Inconsistent dob": it still counts
+ * as valid. Of two contradicting records, whichever is checked second is flagged: the later one
+ * within a chunk, but either one when they are in different chunks, since chunks run in parallel.
+ */
+public final class BulkValidator {
+
+    public static final int DEFAULT_CHUNK_BYTES = 8 << 20;
+
+    static final String TOO_LARGE_MESSAGE = "Payload too large";
+
+    private static final int MAX_RECORD_BYTES = CheckCaseHandler.MAX_BODY_BYTES;
+    private static final int WINDOW_BYTES = 1 << 20;
+
+    private enum Layout {
+        NDJSON, ARRAY, HL7
+    }
+
+    private final CaseValidator validator;
+    private final int chunkBytes;
+    private final ForkJoinPool pool;
+    private final PatientIndex patients;
+
+    public BulkValidator(CaseValidator validator) {
+        this(validator, DEFAULT_CHUNK_BYTES, ForkJoinPool.commonPool());
+    }
+
+    public BulkValidator(CaseValidator validator, int chunkBytes, ForkJoinPool pool) {
+        this(validator, chunkBytes, pool, null);
+    }
+
+    /** A validator that also checks each valid record against {@code patients}, if not null. */
+    public BulkValidator(CaseValidator validator, int chunkBytes, ForkJoinPool pool, PatientIndex patients) {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("chunkBytes must be positive: " + chunkBytes);
+        }
+        this.validator = validator;
+        this.chunkBytes = chunkBytes;
+        this.pool = pool;
+        this.patients = patients;
+    }
+
+    public BulkReport validate(Path file) throws IOException {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedFile mapped = MappedFile.map(channel);
+            Reasons reasons = new Reasons();
+            long start = firstByte(mapped);
+            byte first = start < mapped.size() ? mapped.get(start) : 0;
+            Layout layout = first == '[' ? Layout.ARRAY
+                    : first == Hl7Reader.START_BLOCK || isMsh(mapped, start, mapped.size()) ? Layout.HL7
+                    : Layout.NDJSON;
+            Chunk result = pool.invoke(new ChunkTask(mapped, layout, layout == Layout.ARRAY ? start + 1 : 0,
+                    mapped.size(), reasons));
+            String format = switch (layout) {
+                case NDJSON -> "ndjson";
+                case ARRAY -> "json-array";
+                case HL7 -> first == Hl7Reader.START_BLOCK ? "hl7-mllp" : "hl7";
+            };
+            return new BulkReport(file, format, mapped.size(), result.records,
+                    Arrays.copyOf(result.failures.offsets, result.failures.count),
+                    Arrays.copyOf(result.failures.reasons, result.failures.count),
+                    Arrays.copyOf(result.flags.offsets, result.flags.count),
+                    Arrays.copyOf(result.flags.reasons, result.flags.count),
+                    reasons.messages(), System.nanoTime() - started);
+        }
+    }
+
+    private static long firstByte(MappedFile mapped) {
+        long p = 0;
+        if (mapped.size() >= 3 && mapped.get(0) == (byte) 0xEF && mapped.get(1) == (byte) 0xBB && mapped.get(2) == (byte) 0xBF) {
+            p = 3;
+        }
+        while (p < mapped.size() && isSpace(mapped.get(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isMsh(MappedFile mapped, long p, long to) {
+        return p + 3 < to && mapped.get(p) == 'M' && mapped.get(p + 1) == 'S' && mapped.get(p + 2) == 'H';
+    }
+
+    /** Maps each distinct rejection message to a small index shared by all chunks. */
+    private static final class Reasons {
+
+        private final ConcurrentHashMap<String, Integer> index = new ConcurrentHashMap<>();
+        private final List<String> messages = new ArrayList<>();
+
+        int of(String message) {
+            Integer i = index.get(message);
+            return i != null ? i : index.computeIfAbsent(message, this::add);
+        }
+
+        private synchronized Integer add(String message) {
+            messages.add(message);
+            return messages.size() - 1;
+        }
+
+        synchronized List<String> messages() {
+            return List.copyOf(messages);
+        }
+    }
+
+    /** Record count plus the failures and flagged records of one chunk, in file order. */
+    private static final class Chunk {
+
+        long records;
+        final Marks failures = new Marks();
+        final Marks flags = new Marks();
+
+        void fail(long offset, int reason) {
+            failures.add(offset, reason);
+        }
+
+        void flag(long offset, int reason) {
+            flags.add(offset, reason);
+        }
+
+        /** Appends {@code next}, which covers the bytes right after this chunk. */
+        Chunk append(Chunk next) {
+            records += next.records;
+            failures.append(next.failures);
+            flags.append(next.flags);
+            return this;
+        }
+    }
+
+    /** File offsets of records and the index of the reason for each, as parallel arrays. */
+    private static final class Marks {
+
+        long[] offsets = new long[16];
+        int[] reasons = new int[16];
+        int count;
+
+        void add(long offset, int reason) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                reasons = Arrays.copyOf(reasons, count * 2);
+            }
+            offsets[count] = offset;
+            reasons[count] = reason;
+            count++;
+        }
+
+        void append(Marks next) {
+            if (next.count > 0) {
+                int total = count + next.count;
+                if (total > offsets.length) {
+                    offsets = Arrays.copyOf(offsets, total);
+                    reasons = Arrays.copyOf(reasons, total);
+                }
+                System.arraycopy(next.offsets, 0, offsets, count, next.count);
+                System.arraycopy(next.reasons, 0, reasons, count, next.count);
+                count = total;
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveTask<Chunk> {
+
+        private final MappedFile mapped;
+        private final Layout layout;
+        private final long from;
+        private final long to;
+        private final Reasons reasons;
+
+        ChunkTask(MappedFile mapped, Layout layout, long from, long to, Reasons reasons) {
+            this.mapped = mapped;
+            this.layout = layout;
+            this.from = from;
+            this.to = to;
+            this.reasons = reasons;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (to - from > chunkBytes) {
+                long split = boundary(from + (to - from) / 2);
+                if (split > from && split < to) {
+                    ChunkTask left = new ChunkTask(mapped, layout, from, split, reasons);
+                    left.fork();
+                    Chunk right = new ChunkTask(mapped, layout, split, to, reasons).compute();
+                    return left.join().append(right);
+                }
+            }
+            return layout == Layout.HL7 ? scanHl7() : new Leaf(this).scan();
+        }
+
+        private Chunk scanHl7() {
+            Chunk chunk = new Chunk();
+            CaseVerdict verdict = new CaseVerdict();
+            Hl7Reader reader = new Hl7Reader(new InputStream() {
+                private long position = from;
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    int n = (int) Math.min(len, to - position);
+                    if (n <= 0) {
+                        return -1;
+                    }
+                    mapped.get(position, b, off, n);
+                    position += n;
+                    return n;
+                }
+
+                @Override
+                public int read() {
+                    return position < to ? mapped.get(position++) & 0xFF : -1;
+                }
+            }, WINDOW_BYTES);
+            try {
+                while (reader.next()) {
+                    chunk.records++;
+                    if (reader.isTooLarge()) {
+                        chunk.fail(from + reader.messageOffset(), reasons.of(TOO_LARGE_MESSAGE));
+                    } else if (!reader.validate(validator, verdict).isValid()) {
+                        chunk.fail(from + reader.messageOffset(), reasons.of(verdict.message()));
+                    } else if (patients != null) {
+                        int mismatch = reader.check(patients);
+                        if (mismatch != 0) {
+                            chunk.flag(from + reader.messageOffset(), reasons.of(PatientIndex.message(mismatch)));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return chunk;
+        }
+
+        /** The first record start at or after {@code position}, or {@code to} if there is none. */
+        private long boundary(long position) {
+            for (long p = position; p < to; p++) {
+                if (layout == Layout.HL7) {
+                    if (Hl7Reader.isEnd(mapped.get(p)) && p + 1 < to
+                            && (mapped.get(p + 1) == Hl7Reader.START_BLOCK || isMsh(mapped, p + 1, to))) {
+                        return p + 1;
+                    }
+                    continue;
+                }
+                if (mapped.get(p) != '\n') {
+                    continue;
+                }
+                if (layout == Layout.NDJSON) {
+                    return p + 1;
+                }
+                long next = p + 1;
+                while (next < to && isSpace(mapped.get(next))) {
+                    next++;
+                }
+                long previous = p - 1;
+                while (previous > from && isSpace(mapped.get(previous))) {
+                    previous--;
+                }
+                if (next < to && mapped.get(next) == '{' && mapped.get(previous) == ',') {
+                    return next;
+                }
+            }
+            return to;
+        }
+    }
+
+    /** Streams one chunk through a fixed window and validates each record in place. */
+    private final class Leaf {
+
+        private final ChunkTask task;
+        private final Chunk chunk = new Chunk();
+        private final CaseVerdict verdict = new CaseVerdict();
+        private final byte[] buf = new byte[WINDOW_BYTES];
+        private long base;       // file offset of buf[0]
+        private long readAt;     // next file offset to copy into the window
+        private int limit;
+
+        Leaf(ChunkTask task) {
+            this.task = task;
+            this.base = task.from;
+            this.readAt = task.from;
+        }
+
+        Chunk scan() {
+            if (task.layout == Layout.ARRAY) {
+                scanArray();
+            } else {
+                scanLines();
+            }
+            return chunk;
+        }
+
+        private void scanLines() {
+            int p = 0;
+            int scanned = 0;
+            boolean discarding = false;
+            while (true) {
+                int newline = indexOf((byte) '\n', scanned, limit);
+                if (newline >= 0) {
+                    if (!discarding && newline - p > MAX_RECORD_BYTES) {
+                        chunk.records++;
+                        chunk.fail(base + p, task.reasons.of(TOO_LARGE_MESSAGE));
+                    } else if (!discarding) {
+                        int end = newline > p && buf[newline - 1] == '\r' ? newline - 1 : newline;
+                        record(p, end);
+                    }
+                    discarding = false;
+                    p = newline + 1;
+                    scanned = p;
+                    continue;
+                }
+                scanned = limit;
+                if (limit - p > MAX_RECORD_BYTES) {
+                    if (!discarding) {
+                        chunk.records++;
+                        chunk.fail(base + p, task.reasons.of(TOO_LARGE_MESSAGE));
+                        discarding = true;
+                    }
+                    p = limit;
+                    scanned = limit;
+                }
+                int shift = refill(p);
+                if (shift < 0) {
+                    break;
+                }
+                p -= shift;
+                scanned -= shift;
+            }
+            if (!discarding && limit > p) {
+                record(p, limit);
+            }
+        }
+
+        private void scanArray() {
+            int p = 0;
+            boolean resync = false;
+            boolean lineStart = false;
+            boolean oversized = false;  // skipping a record over MAX_RECORD_BYTES to its closing brace
+            int depth = 0;
+            boolean quoted = false;
+            boolean escaped = false;
+            while (true) {
+                if (oversized) {
+                    while (p < limit && oversized) {
+                        byte b = buf[p++];
+                        if (quoted) {
+                            if (escaped) {
+                                escaped = false;
+                            } else if (b == '\\') {
+                                escaped = true;
+                            } else if (b == '"') {
+                                quoted = false;
+                            }
+                        } else if (b == '"') {
+                            quoted = true;
+                        } else if (b == '{' || b == '[') {
+                            depth++;
+                        } else if ((b == '}' || b == ']') && --depth == 0) {
+                            oversized = false;
+                        }
+                    }
+                    if (!oversized) {
+                        continue;
+                    }
+                } else if (resync) {
+                    while (p < limit && resync) {
+                        byte b = buf[p];
+                        if (b == '\n') {
+                            lineStart = true;
+                        } else if (lineStart && b == '{') {
+                            resync = false;
+                            break;
+                        } else if (!isSpace(b)) {
+                            lineStart = false;
+                        }
+                        p++;
+                    }
+                } else {
+                    while (p < limit && (isSpace(buf[p]) || buf[p] == ',')) {
+                        p++;
+                    }
+                }
+                if (p == limit) {
+                    int shift = refill(p);
+                    if (shift < 0) {
+                        return;
+                    }
+                    p -= shift;
+                    continue;
+                }
+                if (resync) {
+                    continue;
+                }
+                if (buf[p] == ']') {
+                    return;
+                }
+                int end = buf[p] == '{' ? CaseValidator.skipValue(buf, p, limit, 0) : -1;
+                if (end < 0 && buf[p] == '{' && limit - p <= MAX_RECORD_BYTES && readAt < task.to) {
+                    int shift = refill(p);
+                    if (shift >= 0) {
+                        p -= shift;
+                        continue;
+                    }
+                }
+                if (end - p > MAX_RECORD_BYTES || end < 0 && buf[p] == '{' && limit - p > MAX_RECORD_BYTES) {
+                    chunk.records++;
+                    chunk.fail(base + p, task.reasons.of(TOO_LARGE_MESSAGE));
+                    if (end >= 0) {
+                        p = end;
+                    } else {
+                        oversized = true;
+                        depth = 0;
+                        quoted = false;
+                        escaped = false;
+                    }
+                    continue;
+                }
+                if (end < 0) {
+                    chunk.records++;
+                    chunk.fail(base + p, task.reasons.of(CaseVerdict.MALFORMED_MESSAGE));
+                    resync = true;
+                    lineStart = false;
+                    p++;
+                    continue;
+                }
+                record(p, end);
+                p = end;
+            }
+        }
+
+        private void record(int start, int end) {
+            if (isBlank(start, end)) {
+                return;
+            }
+            chunk.records++;
+            validator.validate(buf, start, end - start, verdict);
+            if (!verdict.isValid()) {
+                chunk.fail(base + start, task.reasons.of(verdict.message()));
+            } else if (patients != null) {
+                int mismatch = patients.check(buf, start, end - start);
+                if (mismatch != 0) {
+                    chunk.flag(base + start, task.reasons.of(PatientIndex.message(mismatch)));
+                }
+            }
+        }
+
+        /**
+         * Drops the bytes before {@code keep} and copies more of the chunk into the window.
+         *
+         * @return how far the window moved, or -1 at the end of the chunk
+         */
+        private int refill(int keep) {
+            if (readAt >= task.to) {
+                return -1;
+            }
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            limit -= keep;
+            base += keep;
+            int n = (int) Math.min(buf.length - limit, task.to - readAt);
+            task.mapped.get(readAt, buf, limit, n);
+            readAt += n;
+            limit += n;
+            return keep;
+        }
+
+        private int indexOf(byte b, int from, int to) {
+            return FieldScans.PREFERRED.indexOf(buf, from, to, b);
+        }
+
+        private boolean isBlank(int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (!isSpace(buf[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cluster mode of the local server: every node accepts cases, but the state kept per case_id (the
+ * {@link CaseIdIndex} and the {@link CaseLog}) is partitioned across nodes by a {@link HashRing}.
+ * <p>
+ * A node validates each case itself, since validation needs no state; an invalid case is answered
+ * at once. A valid case owned by another node is forwarded to the owner's checkcase endpoint (its
+ * binary endpoint for a {@link BinaryCase}) over a pooled keep-alive connection, with
+ * {@value #FORWARDED_HEADER} set so that the owner admits it rather than forwarding it on, and the
+ * owner's answer is relayed. Validation work therefore scales
+ * with the number of nodes, and each case_id is only ever admitted by one of them.
+ * <p>
+ * Membership is served at {@value #MEMBERS_PATH}. A node {@link #join joins} through any member
+ * and announces itself to the rest; a node that closes announces that it leaves; a node that
+ * refuses the connection for a forwarded case is dropped from the forwarding node's ring, and the
+ * case goes to the next owner. Once a case has been sent, a failure or timeout is answered with a
+ * 503 instead: the owner may have admitted it already, and another owner would admit it twice.
+ * Every {@value #SYNC_SECONDS} seconds each node {@link #sync syncs}: it re-announces itself to
+ * every member and dropped node, takes back the dropped nodes that answer and learns the members
+ * they know, so rings that drifted apart converge again. Whenever the ring changes, only the keys
+ * of the node that came or went change owner. Ids admitted before a change stay with their old
+ * owner, so a duplicate submitted across a change can be accepted once.
+ */
+public final class CaseCluster implements AutoCloseable {
+
+    public static final String MEMBERS_PATH = "/cluster/members";
+
+    static final String FORWARDED_HEADER = "X-Checkcase-Forwarded";
+
+    static final String UNAVAILABLE_MESSAGE = "Owner unavailable";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final int SYNC_SECONDS = 10;
+    private static final Forwarded UNAVAILABLE = new Forwarded(503, CheckCaseHandler.body(UNAVAILABLE_MESSAGE));
+
+    /** An owner's answer to a forwarded case: its status and {@code {"message":...}} body. */
+    record Forwarded(int status, byte[] body) {
+
+        String message() {
+            try {
+                return CaseValidationClient.field(new String(body, StandardCharsets.UTF_8), "message");
+            } catch (IOException e) {
+                return "";
+            }
+        }
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client;
+    private volatile URI self;
+    private volatile HashRing ring = new HashRing(List.of());
+    private final Set<URI> dropped = new LinkedHashSet<>();
+    private volatile Thread syncer;
+
+    /** A node advertised at the address the server listens on, as {@code http://localhost:<port>}. */
+    public CaseCluster() {
+        this(null);
+    }
+
+    /** A node advertised to its peers as {@code self}, e.g. {@code http://10.0.0.5:8080}. */
+    public CaseCluster(URI self) {
+        this.self = self;
+        this.client = LoadGenerator.client(URI.create("http://localhost"), executor);
+    }
+
+    /** Called by {@link CaseServer#start(CaseServer.Options)} once the server listens on {@code listening}. */
+    void start(URI listening) {
+        if (self == null) {
+            self = listening;
+        }
+        add(self);
+        syncer = Thread.ofVirtual().name("cluster-sync").start(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(Duration.ofSeconds(SYNC_SECONDS));
+                    sync();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    public URI self() {
+        return self;
+    }
+
+    public List<URI> members() {
+        return ring.nodes();
+    }
+
+    /** Joins the cluster that {@code seed} belongs to and announces this node to every member. */
+    public void join(URI seed) throws IOException {
+        List<URI> members = post(seed);
+        for (URI member : members) {
+            add(member);
+        }
+        for (URI member : members) {
+            if (!member.equals(self) && !member.equals(seed)) {
+                try {
+                    post(member);
+                } catch (IOException e) {
+                    drop(member);
+                }
+            }
+        }
+    }
+
+    /** Tells every other member that this node is leaving; members that do not answer are skipped. */
+    public void leave() {
+        for (URI member : members()) {
+            if (member.equals(self)) {
+                continue;
+            }
+            try {
+                send(HttpRequest.newBuilder(member.resolve(MEMBERS_PATH))
+                        .method("DELETE", HttpRequest.BodyPublishers.ofString(self.toString())));
+            } catch (IOException e) {
+                // It learns when it next forwards to this node.
+            }
+        }
+    }
+
+    /**
+     * Re-announces this node to every member and every dropped node. A dropped node that answers is
+     * a member again, and the members each node lists are added, except those dropped here.
+     */
+    public void sync() {
+        List<URI> nodes;
+        synchronized (this) {
+            nodes = new ArrayList<>(ring.nodes());
+            nodes.addAll(dropped);
+        }
+        for (URI node : nodes) {
+            if (node.equals(self)) {
+                continue;
+            }
+            try {
+                List<URI> known = post(node);
+                add(node);
+                for (URI member : known) {
+                    addUnlessDropped(member);
+                }
+            } catch (ConnectException | HttpConnectTimeoutException e) {
+                drop(node);
+            } catch (IOException e) {
+                // Busy, slow or interrupted: try again on the next round.
+            }
+        }
+    }
+
+    /**
+     * Hands a valid case to its owner, retrying on the next owner only if a node refuses the connection.
+     *
+     * @return the owner's answer, a 503 if the owner failed once the case was sent, or {@code null}
+     * if this node owns the case
+     */
+    Forwarded route(byte[] buf, int off, int len, CaseVerdict verdict) throws IOException {
+        long msb = verdict.caseIdMostSignificantBits();
+        long lsb = verdict.caseIdLeastSignificantBits();
+        while (true) {
+            URI owner = ring.owner(msb, lsb);
+            if (owner == null || owner.equals(self)) {
+                return null;
+            }
+            try {
+                boolean binary = BinaryCase.isBinary(buf, off, len);
+                HttpResponse<byte[]> response = send(HttpRequest.newBuilder(
+                                owner.resolve(binary ? CaseServer.BINARY_PATH : CaseServer.CHECKCASE_PATH))
+                        .header("Content-Type", binary ? BinaryCase.MEDIA_TYPE : "application/json")
+                        .header(FORWARDED_HEADER, self.toString())
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(buf, off, len)));
+                return new Forwarded(response.statusCode(), response.body());
+            } catch (ConnectException | HttpConnectTimeoutException e) {
+                // Nothing was sent, so the next owner can safely take the case.
+                drop(owner);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                return UNAVAILABLE;
+            }
+        }
+    }
+
+    /** @return whether {@code node} was new */
+    synchronized boolean add(URI node) {
+        dropped.remove(node);
+        if (ring.contains(node)) {
+            return false;
+        }
+        List<URI> nodes = new ArrayList<>(ring.nodes());
+        nodes.add(node);
+        ring = new HashRing(nodes);
+        return true;
+    }
+
+    private synchronized void addUnlessDropped(URI node) {
+        if (!dropped.contains(node)) {
+            add(node);
+        }
+    }
+
+    /** Removes a node that could not be reached, to be probed again on each {@link #sync}. */
+    private synchronized void drop(URI node) {
+        if (!node.equals(self)) {
+            remove(node);
+            dropped.add(node);
+        }
+    }
+
+    /** @return whether {@code node} was a member; this node never removes itself */
+    synchronized boolean remove(URI node) {
+        dropped.remove(node);
+        if (node.equals(self) || !ring.contains(node)) {
+            return false;
+        }
+        List<URI> nodes = new ArrayList<>(ring.nodes());
+        nodes.remove(node);
+        ring = new HashRing(nodes);
+        return true;
+    }
+
+    /** Leaves the cluster and closes the connections to its members. */
+    @Override
+    public void close() {
+        Thread syncer = this.syncer;
+        if (syncer != null) {
+            syncer.interrupt();
+        }
+        if (self != null) {
+            leave();
+        }
+        client.close();
+        executor.close();
+    }
+
+    /** Announces this node to {@code member} and returns the members it knows, this node included. */
+    private List<URI> post(URI member) throws IOException {
+        HttpResponse<byte[]> response = send(HttpRequest.newBuilder(member.resolve(MEMBERS_PATH))
+                .POST(HttpRequest.BodyPublishers.ofString(self.toString())));
+        if (response.statusCode() != 200) {
+            throw new IOException("Cannot join through " + member + ": HTTP " + response.statusCode());
+        }
+        return new String(response.body(), StandardCharsets.UTF_8).lines().map(URI::create).toList();
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest.Builder request) throws IOException {
+        try {
+            return client.send(request.timeout(TIMEOUT).build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted");
+        }
+    }
+}
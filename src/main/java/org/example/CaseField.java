@@ -0,0 +1,79 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The five mandatory case metadata fields (REQ-2), in the order the test plan lists them.
+ */
+public enum CaseField {
+    CASE_ID("case_id"),
+    PATIENT_ID("patient_id"),
+    PATIENT_NAME("patient_name"),
+    DOB("dob"),
+    TISSUE_TYPE("tissue_type");
+
+    /** Bitmask with one bit set for every field. */
+    public static final int ALL = (1 << values().length) - 1;
+
+    private static final CaseField[] VALUES = values();
+
+    private final String jsonName;
+    private final byte[] nameBytes;
+    private final String invalidMessage;
+    private final String missingMessage;
+
+    CaseField(String jsonName) {
+        this.jsonName = jsonName;
+        this.nameBytes = jsonName.getBytes(StandardCharsets.US_ASCII);
+        this.invalidMessage = "Invalid " + jsonName;
+        this.missingMessage = "Missing " + jsonName;
+    }
+
+    public String jsonName() {
+        return jsonName;
+    }
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public String invalidMessage() {
+        return invalidMessage;
+    }
+
+    public String missingMessage() {
+        return missingMessage;
+    }
+
+    /** Returns the field with the given ordinal. */
+    public static CaseField of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Resolves a raw (still escaped) JSON key to a field without allocating.
+     * The five names all have distinct lengths, so the length alone picks the candidate.
+     *
+     * @return the matching field, or {@code null} for an unexpected key
+     */
+    public static CaseField match(byte[] buf, int off, int len) {
+        CaseField candidate = switch (len) {
+            case 7 -> CASE_ID;
+            case 10 -> PATIENT_ID;
+            case 12 -> PATIENT_NAME;
+            case 3 -> DOB;
+            case 11 -> TISSUE_TYPE;
+            default -> null;
+        };
+        if (candidate == null) {
+            return null;
+        }
+        byte[] name = candidate.nameBytes;
+        for (int i = 0; i < len; i++) {
+            if (buf[off + i] != name[i]) {
+                return null;
+            }
+        }
+        return candidate;
+    }
+}
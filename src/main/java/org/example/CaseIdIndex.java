@@ -0,0 +1,239 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Set of every {@code case_id} accepted so far, used to reject resubmitted cases.
+ * <p>
+ * Each UUID is stored as its two 64-bit halves in an open-addressing, linear-probing table of
+ * primitive {@code long}s, 16 bytes per slot with no per-entry object, so ten million ids cost
+ * about 256 MiB rather than the gigabytes a {@code HashSet<String>} would, and the GC has nothing
+ * to trace. The table can live off-heap in direct buffers, outside the collected heap entirely.
+ * <p>
+ * The table is split into {@value #SEGMENTS} independently locked segments chosen by hash, so
+ * concurrent inserts from the HTTP and batch handlers rarely contend, and a segment that grows
+ * only blocks its own writers while it rehashes.
+ */
+public final class CaseIdIndex {
+
+    public static final long DEFAULT_EXPECTED = 1 << 20;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int MIN_SLOTS = 1 << 4;
+    // A direct buffer holds at most 2 GiB; 2^26 slots of 16 bytes stay well inside that.
+    private static final int MAX_SLOTS = 1 << 26;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final boolean offHeap;
+    // (0, 0) marks an empty slot, so the nil UUID is tracked on the side.
+    private final AtomicBoolean nil = new AtomicBoolean();
+
+    public CaseIdIndex() {
+        this(DEFAULT_EXPECTED, false);
+    }
+
+    /**
+     * @param expected number of ids to size the table for up front; it grows past that as needed
+     * @param offHeap  whether to keep the table in direct buffers rather than on the Java heap
+     */
+    public CaseIdIndex(long expected, boolean offHeap) {
+        this.offHeap = offHeap;
+        int slots = slotsFor(Math.max(expected, 0) / SEGMENTS + 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(slots);
+        }
+    }
+
+    /**
+     * Records the canonical UUID at {@code buf[off..off+36)}, as accepted by
+     * {@link CaseValidator#isCaseId}. Hex digits are case-insensitive.
+     *
+     * @return {@code true} if the id was new, {@code false} if it had already been added
+     */
+    public boolean add(byte[] buf, int off) {
+        return add(mostSignificantBits(buf, off), leastSignificantBits(buf, off));
+    }
+
+    /** @return {@code true} if the id was new, {@code false} if it had already been added */
+    public boolean add(long msb, long lsb) {
+        if (msb == 0 && lsb == 0) {
+            return nil.compareAndSet(false, true);
+        }
+        long hash = mix(msb, lsb);
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))].add(msb, lsb, (int) hash);
+    }
+
+    public boolean contains(byte[] buf, int off) {
+        return contains(mostSignificantBits(buf, off), leastSignificantBits(buf, off));
+    }
+
+    public boolean contains(long msb, long lsb) {
+        if (msb == 0 && lsb == 0) {
+            return nil.get();
+        }
+        long hash = mix(msb, lsb);
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))].contains(msb, lsb, (int) hash);
+    }
+
+    /**
+     * Admits a verdict's case: a valid case whose id was already added is turned into a
+     * {@link CaseVerdict.Outcome#DUPLICATE}; any other verdict is left as it is.
+     *
+     * @return whether the verdict is still valid
+     */
+    public boolean admit(CaseVerdict verdict) {
+        if (!verdict.isValid()) {
+            return false;
+        }
+        if (!add(verdict.caseIdMostSignificantBits(), verdict.caseIdLeastSignificantBits())) {
+            verdict.duplicate();
+            return false;
+        }
+        return true;
+    }
+
+    public long size() {
+        long size = nil.get() ? 1 : 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /** Bytes held by the tables, on or off the heap. */
+    public long tableBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.capacity() * 16L;
+        }
+        return bytes;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    static long mostSignificantBits(byte[] buf, int off) {
+        return hex(buf, off, 8) << 32 | hex(buf, off + 9, 4) << 16 | hex(buf, off + 14, 4);
+    }
+
+    static long leastSignificantBits(byte[] buf, int off) {
+        return hex(buf, off + 19, 4) << 48 | hex(buf, off + 24, 12);
+    }
+
+    private static long hex(byte[] buf, int off, int digits) {
+        long value = 0;
+        for (int i = 0; i < digits; i++) {
+            int b = buf[off + i];
+            // '0'-'9' are 0x30-0x39; 'A'-'F' and 'a'-'f' differ only in bit 0x20 and end in 1-6.
+            value = value << 4 | (b <= '9' ? b - '0' : (b & 0x0F) + 9);
+        }
+        return value;
+    }
+
+    /** Murmur3's 64-bit finalizer over both halves, so that sequential or non-random ids spread too. */
+    static long mix(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    private static int slotsFor(long entries) {
+        long slots = Long.highestOneBit(Math.max(entries * 3 / 2, MIN_SLOTS) - 1) << 1;
+        return (int) Math.min(slots, MAX_SLOTS);
+    }
+
+    private final class Segment {
+
+        private LongBuffer table;
+        private int mask;
+        private int size;
+        private int resizeAt;
+
+        Segment(int slots) {
+            allocate(slots);
+        }
+
+        synchronized boolean add(long msb, long lsb, int hash) {
+            if (size >= resizeAt) {
+                grow();
+            }
+            int slot = hash & mask;
+            while (true) {
+                long m = table.get(slot << 1);
+                long l = table.get((slot << 1) + 1);
+                if (m == 0 && l == 0) {
+                    break;
+                }
+                if (m == msb && l == lsb) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table.put(slot << 1, msb);
+            table.put((slot << 1) + 1, lsb);
+            size++;
+            return true;
+        }
+
+        synchronized boolean contains(long msb, long lsb, int hash) {
+            int slot = hash & mask;
+            while (true) {
+                long m = table.get(slot << 1);
+                long l = table.get((slot << 1) + 1);
+                if (m == msb && l == lsb) {
+                    return true;
+                }
+                if (m == 0 && l == 0) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int capacity() {
+            return mask + 1;
+        }
+
+        private void grow() {
+            if (mask + 1 >= MAX_SLOTS) {
+                throw new IllegalStateException("case_id index segment is full at " + size + " ids");
+            }
+            LongBuffer old = table;
+            int oldSlots = mask + 1;
+            allocate(oldSlots << 1);
+            for (int slot = 0; slot < oldSlots; slot++) {
+                long msb = old.get(slot << 1);
+                long lsb = old.get((slot << 1) + 1);
+                if (msb != 0 || lsb != 0) {
+                    int i = (int) mix(msb, lsb) & mask;
+                    while (table.get(i << 1) != 0 || table.get((i << 1) + 1) != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    table.put(i << 1, msb);
+                    table.put((i << 1) + 1, lsb);
+                }
+            }
+        }
+
+        private void allocate(int slots) {
+            table = offHeap
+                    ? ByteBuffer.allocateDirect(slots * 16).order(ByteOrder.nativeOrder()).asLongBuffer()
+                    : LongBuffer.wrap(new long[slots * 2]);
+            mask = slots - 1;
+            // Linear probing stays short up to about two thirds full.
+            resizeAt = slots / 3 * 2;
+        }
+    }
+}
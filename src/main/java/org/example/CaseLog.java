@@ -0,0 +1,427 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of every validated case, with its status, kept in a directory of fixed-size
+ * memory-mapped segment files, {@code cases-00000000.log} onwards.
+ * <p>
+ * An append copies the body into the mapped segment under a short lock and returns; nothing is
+ * written to disk until {@link #sync()}. A sync forces every record appended so far with a single
+ * {@code msync}, and syncs that arrive while one is in progress wait for it and are then usually
+ * covered by the next one, so a hundred concurrent requests cost a handful of forces rather than a
+ * hundred (group commit). The server syncs before it answers, so an acknowledged case is durable.
+ * <p>
+ * Each record is framed as
+ * <pre>
+ *   int size | short status | short 0 | long epoch millis | long case_id msb | long case_id lsb | body | int crc32c
+ * </pre>
+ * with the CRC over everything after the size. Opening a log scans the segments, stops at the first
+ * record whose size or CRC does not hold, which is a write torn by a crash, and appends from there.
+ * The scan also rebuilds the index from {@code case_id} to the address of the latest valid case
+ * with that id, an open-addressing table of primitive longs like {@link CaseIdIndex}, so
+ * {@link #find} is a hash probe and a copy out of the mapping.
+ */
+public final class CaseLog implements AutoCloseable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+    private static final String PREFIX = "cases-";
+    private static final String SUFFIX = ".log";
+    private static final int MAGIC = 0x43534C31; // "CSL1"
+    private static final int SEGMENT_HEADER = 8;
+    private static final int RECORD_HEADER = 32;
+    private static final int TRAILER = 4;
+
+    /** A logged case: its status, when it was logged and the body as received. */
+    public record Entry(long address, int status, Instant time, byte[] body) {
+
+        /**
+         * The case as JSON, decoded if it arrived as a {@link BinaryCase}; its tissue_type was
+         * resolved when it was logged, so the reference data in force now does not matter.
+         */
+        public String text() {
+            byte[] json = BinaryCase.isBinary(body, 0, body.length) ? BinaryCase.toJson(body, 0, body.length) : body;
+            return new String(json, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final Offsets index = new Offsets();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final CRC32C crc = new CRC32C();
+
+    // Replaced, never modified, when a segment is added, so that lookups need no lock.
+    private volatile MappedByteBuffer[] segments;
+    private MappedByteBuffer active;
+    private int position;
+    private int flushed;
+    private volatile long appended;
+    private volatile long durable;
+    private volatile long commits;
+    private boolean closed;
+
+    private CaseLog(Path dir, int segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public static CaseLog open(Path dir) throws IOException {
+        return open(dir, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens or creates the log in {@code dir}, recovering whatever was durable in it.
+     *
+     * @param segmentBytes size of each segment file; must hold the largest case
+     */
+    public static CaseLog open(Path dir, long segmentBytes) throws IOException {
+        if (segmentBytes < SEGMENT_HEADER + RECORD_HEADER + CheckCaseHandler.MAX_BODY_BYTES + TRAILER
+                || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentBytes);
+        }
+        Files.createDirectories(dir);
+        CaseLog log = new CaseLog(dir, (int) segmentBytes);
+        log.recover();
+        return log;
+    }
+
+    /**
+     * Appends a validated case and, if it is valid, indexes it by case_id. The record is not
+     * durable until {@link #sync()}.
+     *
+     * @return the address of the record
+     */
+    public long append(byte[] buf, int off, int len, CaseVerdict verdict) throws IOException {
+        long msb = 0;
+        long lsb = 0;
+        if (verdict.isValid()) {
+            msb = verdict.caseIdMostSignificantBits();
+            lsb = verdict.caseIdLeastSignificantBits();
+        }
+        return append(buf, off, len, verdict.status(), msb, lsb);
+    }
+
+    long append(byte[] buf, int off, int len, int status, long msb, long lsb) throws IOException {
+        int size = RECORD_HEADER + len + TRAILER;
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Case log is closed");
+            }
+            if (size > segmentBytes - SEGMENT_HEADER) {
+                throw new IllegalArgumentException("Case of " + len + " bytes does not fit a segment");
+            }
+            if (size > segmentBytes - position) {
+                roll();
+            }
+            int p = position;
+            active.putShort(p + 4, (short) status);
+            active.putShort(p + 6, (short) 0);
+            active.putLong(p + 8, System.currentTimeMillis());
+            active.putLong(p + 16, msb);
+            active.putLong(p + 24, lsb);
+            active.put(p + RECORD_HEADER, buf, off, len);
+            crc.reset();
+            crc.update(active.slice(p + 4, RECORD_HEADER - 4 + len));
+            active.putInt(p + RECORD_HEADER + len, (int) crc.getValue());
+            active.putInt(p, size);
+            position = p + size;
+            long address = (long) (segments.length - 1) << 32 | p;
+            if (status == CaseVerdict.Outcome.VALID.status()) {
+                index.put(msb, lsb, address);
+            }
+            appended++;
+            return address;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /** Blocks until every record appended before the call is on disk. */
+    public void sync() {
+        long target = appended;
+        if (durable >= target) {
+            return;
+        }
+        commitLock.lock();
+        try {
+            // Whoever held the lock may have forced this thread's records along with its own.
+            if (durable >= target) {
+                return;
+            }
+            MappedByteBuffer buffer;
+            int from;
+            int to;
+            long upTo;
+            appendLock.lock();
+            try {
+                buffer = active;
+                from = flushed;
+                to = position;
+                upTo = appended;
+                flushed = to;
+            } finally {
+                appendLock.unlock();
+            }
+            buffer.force(from, to - from);
+            commits++;
+            durable = upTo;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /** The latest valid case logged with {@code caseId}, if any. */
+    public Optional<Entry> find(String caseId) {
+        byte[] id = caseId.getBytes(StandardCharsets.UTF_8);
+        if (!FieldScans.PREFERRED.isCaseId(id, 0, id.length)) {
+            return Optional.empty();
+        }
+        return find(CaseIdIndex.mostSignificantBits(id, 0), CaseIdIndex.leastSignificantBits(id, 0));
+    }
+
+    Optional<Entry> find(long msb, long lsb) {
+        long address = index.get(msb, lsb);
+        return address < 0 ? Optional.empty() : Optional.of(read(address));
+    }
+
+    /** The record at an address returned by {@link #append}. */
+    public Entry read(long address) {
+        MappedByteBuffer segment = segments[(int) (address >>> 32)];
+        int p = (int) address;
+        int size = segment.getInt(p);
+        byte[] body = new byte[size - RECORD_HEADER - TRAILER];
+        segment.get(p + RECORD_HEADER, body);
+        return new Entry(address, segment.getShort(p + 4), Instant.ofEpochMilli(segment.getLong(p + 8)), body);
+    }
+
+    /** Records appended, including those recovered on open. */
+    public long size() {
+        return appended;
+    }
+
+    /** Distinct case_ids with a valid record. */
+    public long indexed() {
+        return index.size();
+    }
+
+    /** Forces done by {@link #sync()} since the log was opened. */
+    public long commits() {
+        return commits;
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    @Override
+    public void close() {
+        sync();
+        appendLock.lock();
+        try {
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(f -> f.getFileName().toString().matches(PREFIX + "\\d{8}\\" + SUFFIX)).sorted().toList();
+        }
+        List<MappedByteBuffer> mapped = new ArrayList<>();
+        for (Path file : files) {
+            if (!file.equals(segmentFile(mapped.size()))) {
+                throw new IOException("Missing case log segment before " + file);
+            }
+            MappedByteBuffer segment;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() != segmentBytes) {
+                    throw new IOException("Case log segment " + file + " is " + channel.size()
+                            + " bytes, expected " + segmentBytes);
+                }
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            }
+            if (segment.getInt(0) != MAGIC) {
+                throw new IOException("Not a case log segment: " + file);
+            }
+            mapped.add(segment);
+        }
+        if (mapped.isEmpty()) {
+            mapped.add(create(0));
+        }
+        segments = mapped.toArray(MappedByteBuffer[]::new);
+        for (int s = 0; s < segments.length; s++) {
+            position = scan(s);
+        }
+        active = segments[segments.length - 1];
+        flushed = position;
+        durable = appended;
+        if (!isZero(active, position)) {
+            // A torn record: clear it so that nothing past the new end can ever read as a record.
+            byte[] zeros = new byte[4096];
+            for (int p = position; p < segmentBytes; p += zeros.length) {
+                active.put(p, zeros, 0, Math.min(zeros.length, segmentBytes - p));
+            }
+            active.force();
+        }
+    }
+
+    /** Indexes the intact records of segment {@code s} and returns where they end. */
+    private int scan(int s) {
+        MappedByteBuffer segment = segments[s];
+        int p = SEGMENT_HEADER;
+        while (p <= segmentBytes - RECORD_HEADER - TRAILER) {
+            int size = segment.getInt(p);
+            if (size < RECORD_HEADER + TRAILER || size > segmentBytes - p) {
+                break;
+            }
+            crc.reset();
+            crc.update(segment.slice(p + 4, size - 4 - TRAILER));
+            if ((int) crc.getValue() != segment.getInt(p + size - TRAILER)) {
+                break;
+            }
+            if (segment.getShort(p + 4) == CaseVerdict.Outcome.VALID.status()) {
+                index.put(segment.getLong(p + 16), segment.getLong(p + 24), (long) s << 32 | p);
+            }
+            appended++;
+            p += size;
+        }
+        return p;
+    }
+
+    private static boolean isZero(MappedByteBuffer segment, int from) {
+        int end = Math.min(segment.capacity(), from + RECORD_HEADER);
+        for (int p = from; p < end; p++) {
+            if (segment.get(p) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Seals the active segment, forcing what is left of it, and starts the next one. */
+    private void roll() throws IOException {
+        active.force(flushed, position - flushed);
+        MappedByteBuffer next = create(segments.length);
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+        grown[grown.length - 1] = next;
+        segments = grown;
+        active = next;
+        position = SEGMENT_HEADER;
+        flushed = SEGMENT_HEADER;
+    }
+
+    private MappedByteBuffer create(int number) throws IOException {
+        Path file = segmentFile(number);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            segment.putInt(0, MAGIC);
+            segment.putInt(4, 1);
+            segment.force(0, SEGMENT_HEADER);
+            channel.force(true);
+            return segment;
+        }
+    }
+
+    private Path segmentFile(int number) {
+        return dir.resolve(String.format("%s%08d%s", PREFIX, number, SUFFIX));
+    }
+
+    /**
+     * case_id to record address, three longs per slot with linear probing. Writers are serialized by
+     * the append lock already, so a single monitor guarding lookups too is all it needs.
+     */
+    private static final class Offsets {
+
+        private static final int MIN_SLOTS = 1 << 10;
+
+        private long[] table = new long[MIN_SLOTS * 3];
+        private int mask = MIN_SLOTS - 1;
+        private int size;
+        // (0, 0) marks an empty slot, so the nil UUID is tracked on the side.
+        private long nil = -1;
+
+        synchronized void put(long msb, long lsb, long address) {
+            if (msb == 0 && lsb == 0) {
+                size += nil < 0 ? 1 : 0;
+                nil = address;
+                return;
+            }
+            if (size >= (mask + 1) / 3 * 2) {
+                grow();
+            }
+            int slot = (int) CaseIdIndex.mix(msb, lsb) & mask;
+            while (true) {
+                int i = slot * 3;
+                if (table[i] == 0 && table[i + 1] == 0) {
+                    table[i] = msb;
+                    table[i + 1] = lsb;
+                    size++;
+                    break;
+                }
+                if (table[i] == msb && table[i + 1] == lsb) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot * 3 + 2] = address;
+        }
+
+        synchronized long get(long msb, long lsb) {
+            if (msb == 0 && lsb == 0) {
+                return nil;
+            }
+            int slot = (int) CaseIdIndex.mix(msb, lsb) & mask;
+            while (true) {
+                int i = slot * 3;
+                if (table[i] == msb && table[i + 1] == lsb) {
+                    return table[i + 2];
+                }
+                if (table[i] == 0 && table[i + 1] == 0) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] old = table;
+            int slots = (mask + 1) << 1;
+            table = new long[slots * 3];
+            mask = slots - 1;
+            for (int i = 0; i < old.length; i += 3) {
+                if (old[i] != 0 || old[i + 1] != 0) {
+                    int slot = (int) CaseIdIndex.mix(old[i], old[i + 1]) & mask;
+                    while (table[slot * 3] != 0 || table[slot * 3 + 1] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    System.arraycopy(old, i, table, slot * 3, 3);
+                }
+            }
+        }
+    }
+}
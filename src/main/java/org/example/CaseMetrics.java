@@ -0,0 +1,305 @@
+package org.example;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the checkcase server, rendered in the Prometheus text format
+ * by {@link #scrape()}.
+ * <ul>
+ *   <li>{@code checkcase_responses_total}: every response by endpoint, status and message; an
+ *       unexpected key is counted under one label rather than one label per key</li>
+ *   <li>{@code checkcase_missing_fields_total} and {@code checkcase_rule_failures_total}: every
+ *       missing field and every failed rule, not just the one reported</li>
+ *   <li>{@code checkcase_request_duration_seconds}: handling time per request, by endpoint</li>
+ *   <li>{@code checkcase_concurrency_limit}, {@code checkcase_in_flight_requests},
+ *       {@code checkcase_queued_requests} and {@code checkcase_shed_requests_total}: the state of
+ *       the {@link AdaptiveLimiter}, if the server has one</li>
+ *   <li>{@code checkcase_rule_duration_seconds}: time spent in each REQ-3 to REQ-7 rule, measured
+ *       on one case in {@value #RULE_SAMPLE_INTERVAL} so that the clock reads do not cost as much as
+ *       the rules themselves</li>
+ * </ul>
+ * Recording is a few uncontended {@link LongAdder} increments and never allocates.
+ */
+public final class CaseMetrics {
+
+    public static final int RULE_SAMPLE_INTERVAL = 64;
+
+    public enum Endpoint {
+        CHECKCASE("checkcase"),
+        BATCH("batch"),
+        BINARY("binary");
+
+        private final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final CaseField[] FIELDS = CaseField.values();
+
+    // Response kinds: the fixed outcomes, then one missing and one invalid kind per field.
+    private static final int VALID = 0;
+    private static final int MALFORMED = 1;
+    private static final int EMPTY = 2;
+    private static final int DUPLICATE = 3;
+    private static final int UNEXPECTED = 4;
+    private static final int NOT_FOUND = 5;
+    private static final int METHOD_NOT_ALLOWED = 6;
+    private static final int TOO_LARGE = 7;
+    private static final int UNSUPPORTED_MEDIA = 8;
+    private static final int OVERLOADED = 9;
+    private static final int TIMEOUT = 10;
+    private static final int MISSING = 11;
+    private static final int INVALID = MISSING + FIELDS.length;
+    private static final int KINDS = INVALID + FIELDS.length;
+    private static final int[] STATUS = new int[KINDS];
+    private static final String[] MESSAGE = new String[KINDS];
+
+    static {
+        kind(VALID, 200, CaseVerdict.VALID_MESSAGE);
+        kind(MALFORMED, 400, CaseVerdict.MALFORMED_MESSAGE);
+        kind(EMPTY, 400, CaseVerdict.EMPTY_MESSAGE);
+        kind(DUPLICATE, 409, CaseVerdict.DUPLICATE_MESSAGE);
+        kind(UNEXPECTED, 422, "Invalid <unexpected field>");
+        kind(NOT_FOUND, 404, CheckCaseHandler.NOT_FOUND_MESSAGE);
+        kind(METHOD_NOT_ALLOWED, 405, CheckCaseHandler.METHOD_NOT_ALLOWED_MESSAGE);
+        kind(TOO_LARGE, 413, CheckCaseHandler.TOO_LARGE_MESSAGE);
+        kind(UNSUPPORTED_MEDIA, 415, CheckCaseHandler.UNSUPPORTED_MEDIA_MESSAGE);
+        kind(OVERLOADED, 503, CheckCaseHandler.OVERLOADED_MESSAGE);
+        kind(TIMEOUT, 408, RequestGate.TIMEOUT_MESSAGE);
+        for (CaseField field : FIELDS) {
+            kind(MISSING + field.ordinal(), 400, field.missingMessage());
+            kind(INVALID + field.ordinal(), 422, field.invalidMessage());
+        }
+    }
+
+    private final LongAdder[][] responses = new LongAdder[Endpoint.values().length][KINDS];
+    private final LongAdder[] missingFields = adders(FIELDS.length);
+    private final LongAdder[] ruleFailures = adders(FIELDS.length);
+    private final LatencyHistogram[] requests = histograms(Endpoint.values().length);
+    private final LatencyHistogram[] rules = histograms(FIELDS.length);
+
+    private volatile ValidationCache cache;
+    private volatile CaseIdIndex caseIds;
+    private volatile AdaptiveLimiter limiter;
+    private volatile PatientIndex patients;
+
+    public CaseMetrics() {
+        for (LongAdder[] endpoint : responses) {
+            for (int kind = 0; kind < KINDS; kind++) {
+                endpoint[kind] = new LongAdder();
+            }
+        }
+    }
+
+    /** Also reports the size and hit rate of {@code cache} and the size of {@code caseIds}; either may be null. */
+    public void register(ValidationCache cache, CaseIdIndex caseIds) {
+        this.cache = cache;
+        this.caseIds = caseIds;
+    }
+
+    /** Also reports the concurrency limit, the requests in flight and queued, and the requests shed. */
+    public void register(AdaptiveLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /** Also reports the patients indexed and the cases flagged as inconsistent with them. */
+    public void register(PatientIndex patients) {
+        this.patients = patients;
+    }
+
+    /** Counts the response to a validated case, and each of its missing fields and failed rules. */
+    public void response(Endpoint endpoint, CaseVerdict verdict) {
+        responses[endpoint.ordinal()][kind(verdict)].increment();
+        // An empty body is counted as such, not as five missing fields.
+        if (verdict.outcome() != CaseVerdict.Outcome.MISSING || verdict.field() != null) {
+            count(missingFields, verdict.missingFields());
+        }
+        count(ruleFailures, verdict.invalidFields());
+    }
+
+    /** Counts a request turned away before validation: a 404, 405, 408, 413, 415 or 503. */
+    public void rejected(Endpoint endpoint, int status) {
+        int kind = switch (status) {
+            case 404 -> NOT_FOUND;
+            case 405 -> METHOD_NOT_ALLOWED;
+            case 413 -> TOO_LARGE;
+            case 415 -> UNSUPPORTED_MEDIA;
+            case 503 -> OVERLOADED;
+            case 408 -> TIMEOUT;
+            default -> throw new IllegalArgumentException("Not a rejection status: " + status);
+        };
+        responses[endpoint.ordinal()][kind].increment();
+    }
+
+    public void request(Endpoint endpoint, long nanos) {
+        requests[endpoint.ordinal()].record(nanos);
+    }
+
+    /** Whether the validation starting now should time its rules; true for one call in {@value #RULE_SAMPLE_INTERVAL}. */
+    public boolean sampleRules() {
+        return ThreadLocalRandom.current().nextInt(RULE_SAMPLE_INTERVAL) == 0;
+    }
+
+    public void rule(CaseField field, long nanos) {
+        rules[field.ordinal()].record(nanos);
+    }
+
+    public long responses(Endpoint endpoint, int status) {
+        long count = 0;
+        for (int kind = 0; kind < KINDS; kind++) {
+            if (STATUS[kind] == status) {
+                count += responses[endpoint.ordinal()][kind].sum();
+            }
+        }
+        return count;
+    }
+
+    public LatencyHistogram requestLatency(Endpoint endpoint) {
+        return requests[endpoint.ordinal()];
+    }
+
+    public LatencyHistogram ruleLatency(CaseField field) {
+        return rules[field.ordinal()];
+    }
+
+    /** All metrics in the Prometheus text exposition format, version 0.0.4. */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8 * 1024);
+        header(out, "checkcase_responses_total", "counter", "Responses by endpoint, status and message.");
+        for (Endpoint endpoint : Endpoint.values()) {
+            for (int kind = 0; kind < KINDS; kind++) {
+                out.append("checkcase_responses_total{endpoint=\"").append(endpoint.label)
+                        .append("\",status=\"").append(STATUS[kind])
+                        .append("\",message=\"").append(MESSAGE[kind]).append("\"} ")
+                        .append(responses[endpoint.ordinal()][kind].sum()).append('\n');
+            }
+        }
+        header(out, "checkcase_missing_fields_total", "counter", "Absent mandatory fields (REQ-2), every one per case.");
+        for (CaseField field : FIELDS) {
+            sample(out, "checkcase_missing_fields_total", "field", field.jsonName(), missingFields[field.ordinal()].sum());
+        }
+        header(out, "checkcase_rule_failures_total", "counter", "Failed field rules (REQ-3 to REQ-7), every one per case.");
+        for (CaseField field : FIELDS) {
+            sample(out, "checkcase_rule_failures_total", "rule", field.jsonName(), ruleFailures[field.ordinal()].sum());
+        }
+        header(out, "checkcase_request_duration_seconds", "summary", "Request handling time by endpoint.");
+        for (Endpoint endpoint : Endpoint.values()) {
+            summary(out, "checkcase_request_duration_seconds", "endpoint", endpoint.label, requests[endpoint.ordinal()]);
+        }
+        header(out, "checkcase_rule_duration_seconds", "summary",
+                "Time per field rule, sampled on one case in " + RULE_SAMPLE_INTERVAL + ".");
+        for (CaseField field : FIELDS) {
+            summary(out, "checkcase_rule_duration_seconds", "rule", field.jsonName(), rules[field.ordinal()]);
+        }
+        ValidationCache cache = this.cache;
+        if (cache != null) {
+            header(out, "checkcase_cache_requests_total", "counter", "Verdict cache lookups by result.");
+            sample(out, "checkcase_cache_requests_total", "result", "hit", cache.hits());
+            sample(out, "checkcase_cache_requests_total", "result", "miss", cache.misses());
+            header(out, "checkcase_cache_evictions_total", "counter", "Verdict cache entries displaced by more frequent bodies.");
+            out.append("checkcase_cache_evictions_total ").append(cache.evictions()).append('\n');
+            header(out, "checkcase_cache_entries", "gauge", "Bodies in the verdict cache.");
+            out.append("checkcase_cache_entries ").append(cache.size()).append('\n');
+        }
+        CaseIdIndex caseIds = this.caseIds;
+        if (caseIds != null) {
+            header(out, "checkcase_case_ids", "gauge", "Distinct case_ids accepted.");
+            out.append("checkcase_case_ids ").append(caseIds.size()).append('\n');
+        }
+        PatientIndex patients = this.patients;
+        if (patients != null) {
+            header(out, "checkcase_patients", "gauge", "Distinct patients in the consistency index.");
+            out.append("checkcase_patients ").append(patients.size()).append('\n');
+            header(out, "checkcase_patient_evictions_total", "counter", "Patients displaced from a full bucket of the index.");
+            out.append("checkcase_patient_evictions_total ").append(patients.evictions()).append('\n');
+            header(out, "checkcase_inconsistent_patients_total", "counter", "Valid cases whose field differs from the patient's first case.");
+            sample(out, "checkcase_inconsistent_patients_total", "field", CaseField.PATIENT_NAME.jsonName(),
+                    patients.inconsistent(CaseField.PATIENT_NAME));
+            sample(out, "checkcase_inconsistent_patients_total", "field", CaseField.DOB.jsonName(),
+                    patients.inconsistent(CaseField.DOB));
+        }
+        AdaptiveLimiter limiter = this.limiter;
+        if (limiter != null) {
+            header(out, "checkcase_concurrency_limit", "gauge", "Current adaptive limit on requests in flight.");
+            out.append("checkcase_concurrency_limit ").append(limiter.limit()).append('\n');
+            header(out, "checkcase_in_flight_requests", "gauge", "Requests holding a slot under the limit.");
+            out.append("checkcase_in_flight_requests ").append(limiter.inFlight()).append('\n');
+            header(out, "checkcase_queued_requests", "gauge", "Requests waiting for a slot.");
+            out.append("checkcase_queued_requests ").append(limiter.queued()).append('\n');
+            header(out, "checkcase_shed_requests_total", "counter", "Requests answered 503 because the limit was reached.");
+            out.append("checkcase_shed_requests_total ").append(limiter.shed()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static int kind(CaseVerdict verdict) {
+        return switch (verdict.outcome()) {
+            case VALID -> VALID;
+            case MALFORMED -> MALFORMED;
+            case MISSING -> verdict.field() == null ? EMPTY : MISSING + verdict.field().ordinal();
+            case INVALID -> verdict.field() == null ? UNEXPECTED : INVALID + verdict.field().ordinal();
+            case DUPLICATE -> DUPLICATE;
+        };
+    }
+
+    private static void count(LongAdder[] adders, int mask) {
+        for (; mask != 0; mask &= mask - 1) {
+            adders[Integer.numberOfTrailingZeros(mask)].increment();
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, long count) {
+        out.append(name).append('{').append(label).append("=\"").append(value).append("\"} ").append(count).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String label, String value, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(label).append("=\"").append(value)
+                    .append("\",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.percentile(quantile * 100))).append('\n');
+        }
+        out.append(name).append("_sum{").append(label).append("=\"").append(value).append("\"} ")
+                .append(seconds(histogram.sum())).append('\n');
+        out.append(name).append("_count{").append(label).append("=\"").append(value).append("\"} ")
+                .append(histogram.count()).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static void kind(int kind, int status, String message) {
+        STATUS[kind] = status;
+        MESSAGE[kind] = message;
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static LatencyHistogram[] histograms(int n) {
+        LatencyHistogram[] histograms = new LatencyHistogram[n];
+        for (int i = 0; i < n; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
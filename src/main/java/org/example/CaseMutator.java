@@ -0,0 +1,304 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Generates fuzz cases by mutating the test plan fixtures in the ways the test plan found bugs:
+ * splitting and dropping {@code ^} components, trailing characters as in Bug #2's {@code MC0},
+ * impossible dates such as {@code 19700230}, extra fields such as {@code patient_title}, plus
+ * blanked, dropped, duplicated and non-string fields, changed case, stray bytes and truncation.
+ * <p>
+ * Case {@code i} of seed {@code s} is a pure function of {@code (s, i)}, so any range of cases can
+ * be generated on any thread, in any order, and regenerated later to reproduce a finding.
+ * Instances are immutable and thread-safe.
+ */
+public final class CaseMutator {
+
+    public static final int MAX_MUTATIONS = 3;
+
+    private record Member(byte[] key, byte[] value) {
+    }
+
+    private static final String[] EXTRA_KEYS = {"patient_title", "Patient_id", "case_id ", "note", "", "dob\\u0000"};
+    private static final byte[] TRAILING = "0X ^-.'/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] STRAY = {
+            bytes("@"), bytes("^"), bytes("0"), bytes(" "), bytes("-"), bytes("\\\""), bytes("\\u0041"),
+            bytes("ü"), bytes("\t"), bytes("A"), bytes("z"), bytes("."), bytes("\\")};
+    private static final byte[][] NON_STRINGS = {bytes("null"), bytes("true"), bytes("19700401"), bytes("-0.5e3"),
+            bytes("{}"), bytes("[\"Smith^John\"]"), bytes("{\"id\":\"1234567\"}")};
+
+    private static final byte[] DOB = bytes(CaseField.DOB.jsonName());
+    private static final byte[] INDENT = bytes("\n    ");
+    private static final byte[] COLON = bytes("\":");
+    private static final byte[] PRETTY_COLON = bytes("\" : ");
+
+    private final List<Member[]> templates;
+
+    /** @throws IllegalArgumentException if a fixture is not a flat JSON object */
+    public CaseMutator(List<byte[]> fixtures) {
+        if (fixtures.isEmpty()) {
+            throw new IllegalArgumentException("No fixtures to mutate");
+        }
+        templates = fixtures.stream().map(CaseMutator::parse).toList();
+    }
+
+    /** Mutates every {@code .json} file in {@code dir}, such as {@code src/test/resources}. */
+    public static CaseMutator fromFixtures(Path dir) throws IOException {
+        List<byte[]> fixtures = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                fixtures.add(Files.readAllBytes(file));
+            }
+        }
+        return new CaseMutator(fixtures);
+    }
+
+    public byte[] generate(long seed, long index) {
+        return generate(seed, index, null);
+    }
+
+    /** Case {@code index} of {@code seed}, appending a description of each step to {@code trail} if given. */
+    public byte[] generate(long seed, long index, List<String> trail) {
+        SplittableRandom random = new SplittableRandom(mix(seed, index));
+        int fixture = random.nextInt(templates.size());
+        List<Member> members = new ArrayList<>(Arrays.asList(templates.get(fixture)));
+        if (trail != null) {
+            trail.add("fixture " + fixture);
+        }
+        boolean truncate = false;
+        for (int n = 1 + random.nextInt(MAX_MUTATIONS); n > 0; n--) {
+            String step = mutate(members, random);
+            truncate |= step == null;
+            if (trail != null) {
+                trail.add(step == null ? "truncate" : step);
+            }
+        }
+        byte[] body = serialize(members, random.nextInt(4) == 0);
+        return truncate ? Arrays.copyOf(body, random.nextInt(body.length)) : body;
+    }
+
+    /** Applies one random mutation and describes it; null means the body is to be truncated. */
+    private static String mutate(List<Member> members, SplittableRandom random) {
+        int at = members.isEmpty() ? -1 : random.nextInt(members.size());
+        int op = random.nextInt(at < 0 ? 1 : 13);
+        if (op == 0) {
+            byte[] key = bytes(EXTRA_KEYS[random.nextInt(EXTRA_KEYS.length)]);
+            members.add(random.nextInt(members.size() + 1), new Member(key, bytes("\"Mr.\"")));
+            return "add field \"" + text(key) + "\"";
+        }
+        Member member = members.get(at);
+        String name = "\"" + text(member.key()) + "\"";
+        byte[] value = member.value();
+        boolean string = value.length >= 2 && value[0] == '"';
+        switch (op) {
+            case 1 -> {
+                members.remove(at);
+                return "drop " + name;
+            }
+            case 2 -> {
+                members.add(at, member);
+                return "duplicate " + name;
+            }
+            case 3 -> {
+                members.set(at, new Member(member.key(), bytes("\"\"")));
+                return "blank " + name;
+            }
+            case 4 -> {
+                byte[] raw = NON_STRINGS[random.nextInt(NON_STRINGS.length)];
+                members.set(at, new Member(member.key(), raw));
+                return "set " + name + " to " + text(raw);
+            }
+            case 5 -> {
+                // Mostly the dob, but a date anywhere else is worth a try too.
+                int dob = indexOf(members, DOB);
+                if (dob >= 0 && random.nextInt(4) != 0) {
+                    at = dob;
+                    member = members.get(at);
+                }
+                String date = date(random);
+                members.set(at, new Member(member.key(), bytes("\"" + date + "\"")));
+                return "set \"" + text(member.key()) + "\" to " + date;
+            }
+            case 6 -> {
+                Member other = members.get(random.nextInt(members.size()));
+                members.set(at, new Member(member.key(), other.value()));
+                return "copy \"" + text(other.key()) + "\" into " + name;
+            }
+            case 7 -> {
+                return null;
+            }
+            default -> {
+                if (!string) {
+                    return "keep " + name;
+                }
+            }
+        }
+        int length = value.length - 2;
+        int pos = 1 + random.nextInt(length + 1);
+        byte[] mutated;
+        String step;
+        switch (op) {
+            case 8 -> {
+                mutated = splice(value, pos, 0, new byte[]{'^'});
+                step = "split a component of ";
+            }
+            case 9 -> {
+                byte[] tail = {TRAILING[random.nextInt(TRAILING.length)]};
+                mutated = splice(value, value.length - 1, 0, tail);
+                step = "append '" + text(tail) + "' to ";
+            }
+            case 10 -> {
+                mutated = dropComponent(value, random);
+                step = "drop a component of ";
+            }
+            case 11 -> {
+                mutated = value.clone();
+                for (int i = 1; i < mutated.length - 1; i++) {
+                    byte b = mutated[i];
+                    if (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z') {
+                        mutated[i] ^= 0x20;
+                    }
+                }
+                step = "flip the case of ";
+            }
+            default -> {
+                byte[] stray = STRAY[random.nextInt(STRAY.length)];
+                int replace = pos < value.length - 1 && random.nextBoolean() ? 1 : 0;
+                mutated = splice(value, pos, replace, stray);
+                step = (replace == 1 ? "replace a byte of " : "insert a byte into ");
+            }
+        }
+        members.set(at, new Member(member.key(), mutated));
+        return step + name;
+    }
+
+    private static int indexOf(List<Member> members, byte[] key) {
+        for (int i = 0; i < members.size(); i++) {
+            if (Arrays.equals(members.get(i).key(), key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] dropComponent(byte[] value, SplittableRandom random) {
+        List<Integer> carets = new ArrayList<>();
+        for (int i = 1; i < value.length - 1; i++) {
+            if (value[i] == '^') {
+                carets.add(i);
+            }
+        }
+        if (carets.isEmpty()) {
+            return value;
+        }
+        int c = random.nextInt(carets.size() + 1);
+        int from = c == 0 ? 1 : carets.get(c - 1);
+        int to = c == carets.size() ? value.length - 1 : carets.get(c) + (c == 0 ? 1 : 0);
+        return splice(value, from, to - from, new byte[0]);
+    }
+
+    /** A date that is as often impossible as not: day 0 to 32, month 0 to 13, leap years and year 0. */
+    private static String date(SplittableRandom random) {
+        int[] years = {0, 1, 1900, 1970, 2000, 2023, 2024, 9999};
+        int year = random.nextBoolean() ? years[random.nextInt(years.length)] : random.nextInt(10_000);
+        int month = random.nextInt(14);
+        int day = random.nextBoolean() ? 28 + random.nextInt(5) : random.nextInt(33);
+        String date = String.format("%04d%02d%02d", year, month, day);
+        return random.nextInt(8) == 0 ? date.substring(0, 4 + random.nextInt(4)) : date;
+    }
+
+    /** Compact, or laid out like the fixtures with {@code "dob" : ...} spacing. */
+    private static byte[] serialize(List<Member> members, boolean pretty) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.write('{');
+        for (int i = 0; i < members.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            if (pretty) {
+                out.writeBytes(INDENT);
+            }
+            out.write('"');
+            out.writeBytes(members.get(i).key());
+            out.writeBytes(pretty ? PRETTY_COLON : COLON);
+            out.writeBytes(members.get(i).value());
+        }
+        if (pretty) {
+            out.write('\n');
+        }
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    private static Member[] parse(byte[] fixture) {
+        List<Member> members = new ArrayList<>();
+        int end = fixture.length;
+        int p = skipSpace(fixture, 0, end);
+        if (p >= end || fixture[p] != '{') {
+            throw new IllegalArgumentException("Fixture is not a JSON object");
+        }
+        p = skipSpace(fixture, p + 1, end);
+        while (p < end && fixture[p] != '}') {
+            int keyEnd = fixture[p] == '"' ? CaseValidator.scanString(fixture, p + 1, end) : -1;
+            if (keyEnd < 0) {
+                throw new IllegalArgumentException("Malformed key in fixture at " + p);
+            }
+            byte[] key = Arrays.copyOfRange(fixture, p + 1, keyEnd);
+            p = skipSpace(fixture, keyEnd + 1, end);
+            if (p >= end || fixture[p] != ':') {
+                throw new IllegalArgumentException("Missing ':' in fixture at " + p);
+            }
+            int valueStart = skipSpace(fixture, p + 1, end);
+            int valueEnd = CaseValidator.skipValue(fixture, valueStart, end, 0);
+            if (valueEnd < 0) {
+                throw new IllegalArgumentException("Malformed value in fixture at " + valueStart);
+            }
+            members.add(new Member(key, Arrays.copyOfRange(fixture, valueStart, valueEnd)));
+            p = skipSpace(fixture, valueEnd, end);
+            if (p < end && fixture[p] == ',') {
+                p = skipSpace(fixture, p + 1, end);
+            }
+        }
+        return members.toArray(Member[]::new);
+    }
+
+    private static int skipSpace(byte[] buf, int p, int end) {
+        while (p < end && (CaseValidator.CLASS[buf[p] & 0xFF] & CaseValidator.SPACE) != 0) {
+            p++;
+        }
+        return p;
+    }
+
+    private static byte[] splice(byte[] value, int at, int remove, byte[] insert) {
+        byte[] out = new byte[value.length - remove + insert.length];
+        System.arraycopy(value, 0, out, 0, at);
+        System.arraycopy(insert, 0, out, at, insert.length);
+        System.arraycopy(value, at + remove, out, at + insert.length, value.length - at - remove);
+        return out;
+    }
+
+    /** A well-spread generator seed per case, so that neighbouring indexes share no random stream. */
+    private static long mix(long seed, long index) {
+        long h = seed * 0x9E3779B97F4A7C15L + index;
+        h = (h ^ h >>> 33) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ h >>> 33) * 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] b) {
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
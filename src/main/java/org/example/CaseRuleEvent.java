@@ -0,0 +1,32 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Registered;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one field rule, emitted only on the cases whose rules
+ * {@link CaseMetrics} samples, so that enabling it does not flood the recording. Registered
+ * along with {@link CheckCaseEvent}.
+ */
+@Name("org.example.CaseRule")
+@Label("Case Rule")
+@Category({"Checkcase"})
+@Description("One REQ-3 to REQ-7 field rule applied to a value")
+@StackTrace(false)
+@Registered(false)
+final class CaseRuleEvent extends Event {
+
+    @Label("Field")
+    String field;
+
+    @Label("Passed")
+    boolean passed;
+
+    @Label("Value Length")
+    int length;
+}
@@ -0,0 +1,161 @@
+package org.example;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the hosted checkcase function.
+ * <p>
+ * Built on the JDK's {@link HttpServer} with one virtual thread per exchange, so blocking reads of
+ * slow request bodies never pin a platform thread and the node is limited by CPU rather than by
+ * thread count. A {@link RequestGate} in front of each case endpoint turns away unsupported and
+ * oversized requests from their headers and disconnects clients that send their body too slowly.
+ */
+public final class CaseServer implements AutoCloseable {
+
+    public static final String CHECKCASE_PATH = "/.netlify/functions/checkcase";
+    public static final String BATCH_PATH = CHECKCASE_PATH + "/batch";
+    public static final String BINARY_PATH = CHECKCASE_PATH + "/binary";
+    public static final String METRICS_PATH = "/metrics";
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int BACKLOG = 1024;
+
+    /** Settings for {@link #start(Options)}; the optional features are off when left {@code null}. */
+    public static final class Options {
+        public InetSocketAddress address = new InetSocketAddress(DEFAULT_PORT);
+        public CaseValidator validator = new CaseValidator();
+        /** Answers 409 to a valid case whose case_id was already accepted on either endpoint. */
+        public CaseIdIndex caseIds;
+        /** Answers resubmitted bodies from cache; must wrap {@link #validator}. */
+        public ValidationCache cache;
+        /**
+         * Served at {@value #METRICS_PATH}; rule timings are only recorded if {@link #validator} was
+         * also built with it.
+         */
+        public CaseMetrics metrics = new CaseMetrics();
+        /** Logs every validated case; a response is only sent once its case is durable. */
+        public CaseLog log;
+        /** Partitions {@link #caseIds} and {@link #log} by case_id across nodes; left and closed with the server. */
+        public CaseCluster cluster;
+        /** Sheds requests over an adaptive concurrency limit with a 503 rather than letting them queue. */
+        public AdaptiveLimiter limiter;
+        /** The time a single case may take to arrive in all; a client that sends it slower is disconnected. */
+        public Duration bodyTimeout = Duration.ofSeconds(10);
+        /** The time a batch stream may go without sending; a stalled stream is disconnected. */
+        public Duration streamIdleTimeout = Duration.ofSeconds(30);
+        /** Records every exchange of the case endpoints for {@link TrafficReplay}; closed by the caller. */
+        public TrafficTrace.Writer capture;
+        /** Flags valid batch lines whose patient_id came with another patient_name or dob; per node. */
+        public PatientIndex patients;
+    }
+
+    static {
+        // The JDK server writes response headers and body separately; without TCP_NODELAY, Nagle's
+        // algorithm holds the body back until the client's delayed ACK, adding ~40 ms per exchange.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /** Registers the Flight Recorder events after an exchange, so that the first one does not wait for it. */
+    private static final Filter REGISTER_EVENTS = new Filter() {
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            chain.doFilter(exchange);
+            CheckCaseEvent.register();
+        }
+
+        @Override
+        public String description() {
+            return "Registers the checkcase JFR events once a response is out";
+        }
+    };
+
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final CaseCluster cluster;
+
+    private CaseServer(HttpServer http, ExecutorService executor, CaseCluster cluster) {
+        this.http = http;
+        this.executor = executor;
+        this.cluster = cluster;
+    }
+
+    /** Starts a server on {@code port} of all interfaces; port 0 picks a free port. */
+    public static CaseServer start(int port) throws IOException {
+        return start(new InetSocketAddress(port), new CaseValidator());
+    }
+
+    public static CaseServer start(InetSocketAddress address, CaseValidator validator) throws IOException {
+        Options options = new Options();
+        options.address = address;
+        options.validator = validator;
+        return start(options);
+    }
+
+    public static CaseServer start(Options options) throws IOException {
+        HttpServer http = HttpServer.create(options.address, BACKLOG);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        http.setExecutor(executor);
+        TrafficCapture capture = options.capture != null ? new TrafficCapture(options.capture) : null;
+        http.createContext(CHECKCASE_PATH, new CheckCaseHandler(options)).getFilters().addAll(filters(capture,
+                RequestGate.single(options, CaseMetrics.Endpoint.CHECKCASE, "application/json")));
+        http.createContext(BATCH_PATH, new BatchHandler(options)).getFilters().addAll(filters(capture,
+                RequestGate.stream(options, CaseMetrics.Endpoint.BATCH, BatchHandler.NDJSON, "application/jsonl")));
+        http.createContext(BINARY_PATH, CheckCaseHandler.binary(options)).getFilters().addAll(filters(capture,
+                RequestGate.single(options, CaseMetrics.Endpoint.BINARY, BinaryCase.MEDIA_TYPE)));
+        if (options.metrics != null) {
+            options.metrics.register(options.cache, options.caseIds);
+            if (options.limiter != null) {
+                options.metrics.register(options.limiter);
+            }
+            if (options.patients != null) {
+                options.metrics.register(options.patients);
+            }
+            http.createContext(METRICS_PATH, new MetricsHandler(options.metrics));
+        }
+        if (options.cluster != null) {
+            http.createContext(CaseCluster.MEMBERS_PATH, new ClusterHandler(options.cluster));
+        }
+        http.start();
+        CaseServer server = new CaseServer(http, executor, options.cluster);
+        if (options.cluster != null) {
+            options.cluster.start(URI.create(server.baseUri()));
+        }
+        return server;
+    }
+
+    /** The filters of a case endpoint, outermost first. */
+    private static List<Filter> filters(TrafficCapture capture, RequestGate gate) {
+        return capture != null ? List.of(capture, gate, REGISTER_EVENTS) : List.of(gate, REGISTER_EVENTS);
+    }
+
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    /** The base URI to configure clients with, e.g. {@code RestAssured.baseURI}. */
+    public String baseUri() {
+        return "http://localhost:" + port();
+    }
+
+    @Override
+    public void close() {
+        if (cluster != null) {
+            // Leave while still serving, so that peers stop forwarding before this node stops answering.
+            cluster.close();
+        }
+        http.stop(0);
+        executor.close();
+    }
+}
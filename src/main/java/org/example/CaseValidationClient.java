@@ -0,0 +1,426 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous checkcase client: {@link #validate} returns at once with a future of the verdict,
+ * so one instance keeps thousands of validations in flight on a handful of threads.
+ * <ul>
+ *   <li>Requests share the connections of one {@link HttpClient}, multiplexed over HTTP/2 where
+ *       the endpoint offers it (the hosted one does; the local server speaks HTTP/1.1).</li>
+ *   <li>At most {@link Options#maxInFlight} requests are outstanding; further calls queue without
+ *       blocking the caller and are sent as responses come back.</li>
+ *   <li>With {@link Options#coalesce} set, cases submitted within that window are sent together as
+ *       one request to the batch endpoint, up to {@link Options#maxBatch} per request. Only the
+ *       local server has the batch endpoint.</li>
+ *   <li>Requests the server cannot have acted on are retried up to {@link Options#maxAttempts}
+ *       times after a fully jittered exponential backoff, so that a burst of failed calls does not
+ *       come back as a synchronized burst of retries: failures to connect, 429, and a 503 with
+ *       {@code Retry-After}, which is how the server sheds a request before handling its body.
+ *       Any other status is the verdict and is returned as is.</li>
+ *   <li>A timeout, a broken connection or another 5xx may come after the server handled the case,
+ *       and a second attempt would then be a duplicate (a 409 with {@code --dedupe}, a second log
+ *       line, a whole batch sent again). Those are retried only with {@link Options#retrySent},
+ *       for servers where a repeated case is harmless.</li>
+ * </ul>
+ */
+public final class CaseValidationClient implements AutoCloseable {
+
+    /** Settings for a client; everything but {@link #baseUri} has a default. */
+    public static final class Options {
+        /** E.g. {@link CaseServer#baseUri()} or the hosted site, without the function path. */
+        public URI baseUri;
+        public int maxInFlight = 256;
+        public Duration timeout = Duration.ofSeconds(30);
+        public int maxAttempts = 4;
+        public Duration backoff = Duration.ofMillis(50);
+        public Duration maxBackoff = Duration.ofSeconds(2);
+        /** Also retry requests that may have reached the server; only for idempotent servers. */
+        public boolean retrySent;
+        /** How long to gather cases into one batch request; zero sends every case on its own. */
+        public Duration coalesce = Duration.ZERO;
+        public int maxBatch = 256;
+    }
+
+    /** The endpoint's answer to one case: its status and the text of its {@code message}. */
+    public record Verdict(int status, String message) {
+
+        public boolean isValid() {
+            return status == 200;
+        }
+    }
+
+    private record Pending(byte[] body, CompletableFuture<Verdict> result) {
+    }
+
+    private static final String JSON = "application/json";
+
+    private final Options options;
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final URI checkcase;
+    private final URI batch;
+    private final Limiter limiter;
+    private final Object batchLock = new Object();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private List<Pending> batchCases = new ArrayList<>();
+
+    /** A client with its own {@link HttpClient}, closed along with it. */
+    public CaseValidationClient(Options options) {
+        this(options, null);
+    }
+
+    /** A client sharing {@code client}, which the caller keeps ownership of. */
+    public CaseValidationClient(Options options, HttpClient client) {
+        if (options.baseUri == null) {
+            throw new IllegalArgumentException("No base URI");
+        }
+        if (options.maxInFlight < 1 || options.maxAttempts < 1 || options.maxBatch < 1) {
+            throw new IllegalArgumentException("maxInFlight, maxAttempts and maxBatch must be positive");
+        }
+        this.options = options;
+        this.executor = client == null ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.client = client == null ? LoadGenerator.client(options.baseUri, executor) : client;
+        String base = options.baseUri.toString().replaceAll("/+$", "");
+        this.checkcase = URI.create(base + CaseServer.CHECKCASE_PATH);
+        this.batch = URI.create(base + CaseServer.BATCH_PATH);
+        this.limiter = new Limiter(options.maxInFlight);
+    }
+
+    public CompletableFuture<Verdict> validate(String body) {
+        return validate(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Validates one case. The future fails with an {@link IOException} only once every attempt has
+     * failed; a rejected case is a normal {@link Verdict}.
+     */
+    public CompletableFuture<Verdict> validate(byte[] body) {
+        CompletableFuture<Verdict> result = new CompletableFuture<>();
+        outstanding.incrementAndGet();
+        result.whenComplete((verdict, failure) -> {
+            if (outstanding.decrementAndGet() == 0) {
+                synchronized (outstanding) {
+                    outstanding.notifyAll();
+                }
+            }
+        });
+        if (options.coalesce.isZero() || !batchable(body)) {
+            send(single(body), result, 1, CaseValidationClient::verdict);
+            return result;
+        }
+        List<Pending> full = null;
+        boolean first;
+        synchronized (batchLock) {
+            first = batchCases.isEmpty();
+            batchCases.add(new Pending(body, result));
+            if (batchCases.size() >= options.maxBatch) {
+                full = takeBatch();
+            }
+        }
+        if (full != null) {
+            sendBatch(full);
+        } else if (first) {
+            CompletableFuture.delayedExecutor(options.coalesce.toNanos(), TimeUnit.NANOSECONDS)
+                    .execute(this::flush);
+        }
+        return result;
+    }
+
+    /** Sends the cases gathered so far without waiting for the rest of the coalescing window. */
+    public void flush() {
+        List<Pending> cases;
+        synchronized (batchLock) {
+            cases = takeBatch();
+        }
+        if (!cases.isEmpty()) {
+            sendBatch(cases);
+        }
+    }
+
+    /** Requests sent and not yet answered. */
+    public int inFlight() {
+        return options.maxInFlight - limiter.permits.get();
+    }
+
+    /**
+     * Sends any gathered cases, waits for every validation to complete, then closes the
+     * {@link HttpClient} if this client created it.
+     */
+    @Override
+    public void close() {
+        flush();
+        synchronized (outstanding) {
+            while (outstanding.get() > 0) {
+                try {
+                    outstanding.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (executor != null) {
+            client.close();
+            executor.close();
+        }
+    }
+
+    private List<Pending> takeBatch() {
+        List<Pending> cases = batchCases;
+        batchCases = new ArrayList<>();
+        return cases;
+    }
+
+    private void sendBatch(List<Pending> cases) {
+        if (cases.size() == 1) {
+            Pending only = cases.getFirst();
+            send(single(only.body()), only.result(), 1, CaseValidationClient::verdict);
+            return;
+        }
+        int length = cases.size();
+        for (Pending pending : cases) {
+            length += pending.body().length;
+        }
+        byte[] body = new byte[length];
+        int pos = 0;
+        for (Pending pending : cases) {
+            System.arraycopy(pending.body(), 0, body, pos, pending.body().length);
+            pos += pending.body().length;
+            body[pos++] = '\n';
+        }
+        HttpRequest request = request(batch, BatchHandler.NDJSON, body);
+        CompletableFuture<List<Verdict>> results = new CompletableFuture<>();
+        send(request, results, 1, response -> lines(response, cases.size()));
+        results.whenComplete((verdicts, failure) -> {
+            for (int i = 0; i < cases.size(); i++) {
+                if (failure != null) {
+                    cases.get(i).result().completeExceptionally(failure);
+                } else {
+                    cases.get(i).result().complete(verdicts.get(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends {@code request} once a request slot is free, retrying as described in the class
+     * comment, and completes {@code result} with the response mapped by {@code decode}.
+     */
+    private <T> void send(HttpRequest request, CompletableFuture<T> result, int attempt,
+                          Decoder<T> decode) {
+        limiter.submit(() -> {
+            CompletableFuture<HttpResponse<String>> response;
+            try {
+                response = client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            } catch (RuntimeException e) {
+                limiter.release();
+                result.completeExceptionally(e);
+                return;
+            }
+            // Async, so that a run of instant failures cannot recurse through release() on one stack.
+            response.whenCompleteAsync((r, failure) -> {
+                limiter.release();
+                complete(request, r, failure, result, attempt, decode);
+            });
+        });
+    }
+
+    private <T> void complete(HttpRequest request, HttpResponse<String> response, Throwable failure,
+                              CompletableFuture<T> result, int attempt, Decoder<T> decode) {
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        boolean retryable = cause != null ? retryable(cause) : retryable(response);
+        if (retryable && attempt < options.maxAttempts) {
+            CompletableFuture.delayedExecutor(backoff(attempt), TimeUnit.NANOSECONDS)
+                    .execute(() -> send(request, result, attempt + 1, decode));
+        } else if (cause != null) {
+            result.completeExceptionally(cause);
+        } else {
+            try {
+                result.complete(decode.apply(response));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /** Full jitter: a uniform delay between zero and the capped exponential backoff. */
+    private long backoff(int attempt) {
+        long ceiling = Math.min(options.maxBackoff.toNanos(), options.backoff.toNanos() << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private boolean retryable(Throwable cause) {
+        for (Throwable t = cause; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException || t instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+        }
+        return options.retrySent && cause instanceof IOException;
+    }
+
+    private boolean retryable(HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status == 429 || status == 503 && response.headers().firstValue("Retry-After").isPresent()) {
+            return true;
+        }
+        return options.retrySent && status >= 500;
+    }
+
+    private HttpRequest single(byte[] body) {
+        return request(checkcase, JSON, body);
+    }
+
+    private HttpRequest request(URI uri, String contentType, byte[] body) {
+        return HttpRequest.newBuilder(uri)
+                .header("Content-Type", contentType)
+                .header("Accept", JSON)
+                .timeout(options.timeout)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    /** Whether a case can travel as one NDJSON line: not blank and without line breaks. */
+    private static boolean batchable(byte[] body) {
+        boolean blank = true;
+        for (byte b : body) {
+            if (b == '\n' || b == '\r') {
+                return false;
+            }
+            blank &= b == ' ' || b == '\t';
+        }
+        return !blank && body.length <= CheckCaseHandler.MAX_BODY_BYTES;
+    }
+
+    private static Verdict verdict(HttpResponse<String> response) throws IOException {
+        return new Verdict(response.statusCode(), field(response.body(), "message"));
+    }
+
+    /** Maps the result lines of a batch, one per case in order, back to the cases. */
+    private static List<Verdict> lines(HttpResponse<String> response, int cases) throws IOException {
+        if (response.statusCode() != 200) {
+            // The whole batch was refused, e.g. with a 415; that is every case's verdict.
+            Verdict verdict = verdict(response);
+            return Collections.nCopies(cases, verdict);
+        }
+        Verdict[] verdicts = new Verdict[cases];
+        for (String line : response.body().split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int index = Integer.parseInt(field(line, "line")) - 1;
+            if (index < 0 || index >= cases) {
+                throw new IOException("Unexpected batch result " + line);
+            }
+            verdicts[index] = new Verdict(Integer.parseInt(field(line, "status")), field(line, "message"));
+        }
+        for (int i = 0; i < cases; i++) {
+            if (verdicts[i] == null) {
+                throw new IOException("No batch result for line " + (i + 1));
+            }
+        }
+        return List.of(verdicts);
+    }
+
+    /**
+     * The value of a top-level string or number member of a flat JSON object, without unescaping;
+     * the checkcase responses carry nothing that needs it.
+     */
+    static String field(String json, String name) throws IOException {
+        String key = "\"" + name + "\"";
+        int p = json.indexOf(key);
+        if (p < 0) {
+            throw new IOException("No " + name + " in response " + json);
+        }
+        p = json.indexOf(':', p + key.length()) + 1;
+        while (p > 0 && p < json.length() && Character.isWhitespace(json.charAt(p))) {
+            p++;
+        }
+        if (p <= 0 || p >= json.length()) {
+            throw new IOException("No value for " + name + " in response " + json);
+        }
+        if (json.charAt(p) != '"') {
+            int end = p;
+            while (end < json.length() && (Character.isDigit(json.charAt(end)) || json.charAt(end) == '-')) {
+                end++;
+            }
+            return json.substring(p, end);
+        }
+        int end = p + 1;
+        while (end < json.length() && json.charAt(end) != '"') {
+            end += json.charAt(end) == '\\' ? 2 : 1;
+        }
+        if (end >= json.length()) {
+            throw new IOException("Unterminated " + name + " in response " + json);
+        }
+        return json.substring(p + 1, end);
+    }
+
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T apply(HttpResponse<String> response) throws IOException;
+    }
+
+    /**
+     * Counts free request slots and queues the sends waiting for one. Never blocks: a send runs on
+     * the thread that finds a slot free, either the caller or the one completing another request.
+     */
+    private static final class Limiter {
+
+        private final AtomicInteger permits;
+        private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+        Limiter(int permits) {
+            this.permits = new AtomicInteger(permits);
+        }
+
+        void submit(Runnable send) {
+            waiting.add(send);
+            drain();
+        }
+
+        void release() {
+            permits.incrementAndGet();
+            drain();
+        }
+
+        private void drain() {
+            while (!waiting.isEmpty()) {
+                int free = permits.get();
+                if (free == 0) {
+                    return;
+                }
+                if (!permits.compareAndSet(free, free - 1)) {
+                    continue;
+                }
+                Runnable send = waiting.poll();
+                if (send == null) {
+                    // Another thread took the last waiting send; hand the slot back and look again.
+                    permits.incrementAndGet();
+                    continue;
+                }
+                send.run();
+            }
+        }
+    }
+}
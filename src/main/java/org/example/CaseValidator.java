@@ -0,0 +1,506 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+/**
+ * In-process implementation of the checkcase rules (REQ-2 to REQ-8).
+ * <p>
+ * The validator walks the raw UTF-8 request body once: it tokenizes the JSON object, resolves each
+ * key to a {@link CaseField} by length and bytes, and checks string values in place as they are
+ * encountered. No regex, no JSON tree and no String is created on any path except
+ * {@link CaseVerdict#message()} for an unexpected key. Instances are thread-safe; the
+ * {@link CaseVerdict} passed in should be reused by the calling thread.
+ * <p>
+ * The tissue types and the patient_id authority, identifier type and facility codes come from a
+ * {@link ReferenceData} snapshot, read once per call so that a reload never lands mid-case.
+ * <p>
+ * Precedence mirrors the hosted endpoint: a body that is not one JSON object is a 400, then a
+ * missing field is a 400, then the first blank, malformed, duplicated or unexpected field in
+ * document order is a 422. Every field is checked regardless, so the verdict also carries the
+ * full set of violations as bitmasks.
+ */
+public final class CaseValidator {
+
+    static final int HEX = 1;
+    static final int DIGIT = 1 << 1;
+    static final int LETTER = 1 << 2;
+    static final int NAME = 1 << 3;
+    static final int SPACE = 1 << 4;
+
+    /** Character classes for every byte value, so each rule is one table lookup per byte. */
+    static final byte[] CLASS = new byte[256];
+
+    /** The delimiter and character class scans; SIMD where available. */
+    static final FieldScans SCANS = FieldScans.PREFERRED;
+
+    private static final int MAX_DEPTH = 64;
+    static final int MAX_ID_DIGITS = 15;
+    private static final int[] DAYS_IN_MONTH = {0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private static final byte[] TRUE = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+    private static final byte[] NULL = bytes("null");
+
+    static {
+        for (int c = '0'; c <= '9'; c++) {
+            CLASS[c] |= HEX | DIGIT;
+        }
+        for (int c = 'a'; c <= 'z'; c++) {
+            CLASS[c] |= LETTER | NAME;
+            CLASS[c - 32] |= LETTER | NAME;
+        }
+        for (int c = 'a'; c <= 'f'; c++) {
+            CLASS[c] |= HEX;
+            CLASS[c - 32] |= HEX;
+        }
+        // Multi-byte UTF-8 sequences are accepted in names so that e.g. "Müller" is valid.
+        for (int c = 0x80; c <= 0xFF; c++) {
+            CLASS[c] |= LETTER | NAME;
+        }
+        CLASS[' '] |= NAME | SPACE;
+        CLASS['\''] |= NAME;
+        CLASS['-'] |= NAME;
+        CLASS['.'] |= NAME;
+        CLASS['\t'] |= SPACE;
+        CLASS['\n'] |= SPACE;
+        CLASS['\r'] |= SPACE;
+    }
+
+    private final Supplier<ReferenceData> reference;
+    private final CaseMetrics metrics;
+
+    /** A validator for the built-in {@link ReferenceData#defaults()}. */
+    public CaseValidator() {
+        this(ReferenceData::defaults);
+    }
+
+    /** A validator that reads the current snapshot from {@code reference}, e.g. a {@link ReferenceDataReloader}. */
+    public CaseValidator(Supplier<ReferenceData> reference) {
+        this(reference, null);
+    }
+
+    /**
+     * A validator that also times its rules on a sample of cases into {@code metrics}, and emits a
+     * {@link CaseRuleEvent} for each sampled rule while Flight Recorder has the event enabled.
+     */
+    public CaseValidator(Supplier<ReferenceData> reference, CaseMetrics metrics) {
+        this.reference = reference;
+        this.metrics = metrics;
+    }
+
+    /** The reference data snapshot that a validation starting now would use. */
+    public ReferenceData reference() {
+        return reference.get();
+    }
+
+    public CaseVerdict validate(byte[] body, CaseVerdict out) {
+        return validate(body, 0, body.length, out);
+    }
+
+    /**
+     * Validates {@code len} bytes of {@code buf} starting at {@code off} and records the outcome in
+     * {@code out}.
+     *
+     * @return {@code out}, for chaining
+     */
+    public CaseVerdict validate(byte[] buf, int off, int len, CaseVerdict out) {
+        ReferenceData data = reference.get();
+        boolean timed = metrics != null && metrics.sampleRules();
+        int end = off + len;
+        int p = skipBom(buf, off, end);
+        p = skipSpace(buf, p, end);
+        if (p == end) {
+            out.empty();
+            return out;
+        }
+        if (buf[p] != '{') {
+            out.malformed();
+            return out;
+        }
+        p = skipSpace(buf, p + 1, end);
+
+        int seen = 0;
+        int invalid = 0;
+        int violation = -1;          // ordinal of the first invalid field, or -2 for an unexpected key
+        int unexpectedOffset = -1;
+        int unexpectedLength = 0;
+        int caseIdOffset = 0;
+
+        if (p < end && buf[p] == '}') {
+            p++;
+        } else {
+            while (true) {
+                if (p >= end || buf[p] != '"') {
+                    out.malformed();
+                    return out;
+                }
+                int keyStart = p + 1;
+                int keyEnd = scanString(buf, keyStart, end);
+                if (keyEnd < 0) {
+                    out.malformed();
+                    return out;
+                }
+                p = skipSpace(buf, keyEnd + 1, end);
+                if (p >= end || buf[p] != ':') {
+                    out.malformed();
+                    return out;
+                }
+                p = skipSpace(buf, p + 1, end);
+
+                CaseField field = CaseField.match(buf, keyStart, keyEnd - keyStart);
+                if (field != null && (seen & field.bit()) == 0) {
+                    seen |= field.bit();
+                    if (p < end && buf[p] == '"') {
+                        int valueStart = p + 1;
+                        int valueEnd = scanString(buf, valueStart, end);
+                        if (valueEnd < 0) {
+                            out.malformed();
+                            return out;
+                        }
+                        boolean passed = timed
+                                ? timedCheck(data, field, buf, valueStart, valueEnd - valueStart)
+                                : check(data, field, buf, valueStart, valueEnd - valueStart);
+                        if (!passed) {
+                            invalid |= field.bit();
+                            if (violation == -1) {
+                                violation = field.ordinal();
+                            }
+                        }
+                        if (field == CaseField.CASE_ID) {
+                            caseIdOffset = valueStart;
+                        }
+                        p = valueEnd + 1;
+                    } else {
+                        p = skipValue(buf, p, end, 0);
+                        if (p < 0) {
+                            out.malformed();
+                            return out;
+                        }
+                        invalid |= field.bit();
+                        if (violation == -1) {
+                            violation = field.ordinal();
+                        }
+                    }
+                } else {
+                    p = skipValue(buf, p, end, 0);
+                    if (p < 0) {
+                        out.malformed();
+                        return out;
+                    }
+                    if (field != null) {
+                        invalid |= field.bit();
+                    } else if (unexpectedOffset < 0) {
+                        unexpectedOffset = keyStart;
+                        unexpectedLength = keyEnd - keyStart;
+                    }
+                    if (violation == -1) {
+                        violation = field != null ? field.ordinal() : -2;
+                    }
+                }
+
+                p = skipSpace(buf, p, end);
+                if (p < end && buf[p] == ',') {
+                    p = skipSpace(buf, p + 1, end);
+                } else if (p < end && buf[p] == '}') {
+                    p++;
+                    break;
+                } else {
+                    out.malformed();
+                    return out;
+                }
+            }
+        }
+
+        if (skipSpace(buf, p, end) != end) {
+            out.malformed();
+            return out;
+        }
+        int missing = ~seen & CaseField.ALL;
+        if (missing != 0) {
+            out.missing(CaseField.of(Integer.numberOfTrailingZeros(missing)));
+        } else if (violation == -2) {
+            out.unexpected(buf, unexpectedOffset, unexpectedLength);
+        } else if (violation >= 0) {
+            out.invalid(CaseField.of(violation));
+        } else {
+            out.valid(buf, caseIdOffset);
+        }
+        out.violations(missing, invalid);
+        if (unexpectedOffset >= 0 && !out.isUnexpectedField()) {
+            out.unexpectedKey(buf, unexpectedOffset, unexpectedLength);
+        }
+        return out;
+    }
+
+    /**
+     * Validates a case in the {@link BinaryCase} encoding, with the same verdicts as the JSON
+     * it was encoded from.
+     *
+     * @return {@code out}, for chaining
+     */
+    public CaseVerdict validateBinary(byte[] buf, int off, int len, CaseVerdict out) {
+        return BinaryCase.validate(this, reference.get(), buf, off, len, out);
+    }
+
+    /** Applies the rule for {@code field} to a raw string value. */
+    public boolean check(CaseField field, byte[] buf, int off, int len) {
+        return check(reference.get(), field, buf, off, len);
+    }
+
+    private boolean timedCheck(ReferenceData data, CaseField field, byte[] buf, int off, int len) {
+        CaseRuleEvent event = new CaseRuleEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean passed = check(data, field, buf, off, len);
+        metrics.rule(field, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.field = field.jsonName();
+            event.passed = passed;
+            event.length = len;
+            event.commit();
+        }
+        return passed;
+    }
+
+    boolean check(ReferenceData data, CaseField field, byte[] buf, int off, int len) {
+        return switch (field) {
+            case CASE_ID -> isCaseId(buf, off, len);
+            case PATIENT_ID -> isPatientId(data, buf, off, len);
+            case PATIENT_NAME -> isPatientName(buf, off, len);
+            case DOB -> isDob(buf, off, len);
+            case TISSUE_TYPE -> data.tissueTypes().contains(buf, off, len);
+        };
+    }
+
+    /** REQ-3: a canonical 8-4-4-4-12 hexadecimal UUID. */
+    public boolean isCaseId(byte[] buf, int off, int len) {
+        return SCANS.isCaseId(buf, off, len);
+    }
+
+    /**
+     * REQ-4: {@code ID^CheckDigit^Authority^IdType^Facility}, e.g. {@code 1234567^1^ISO^NN123^MC}.
+     * The ID is 1 to 15 digits, the check digit flag is {@code 0} or {@code 1}, the authority is a
+     * listed assigning authority, the identifier type is a listed prefix followed by digits and the
+     * facility is exactly a listed assigning facility (Bug #2: trailing characters such as
+     * {@code MC0} are rejected). The lists come from the current {@link ReferenceData}.
+     */
+    public boolean isPatientId(byte[] buf, int off, int len) {
+        return isPatientId(reference.get(), buf, off, len);
+    }
+
+    private static boolean isPatientId(ReferenceData data, byte[] buf, int off, int len) {
+        int end = off + len;
+        int p = SCANS.skipDigits(buf, off, end);
+        int digits = p - off;
+        if (digits == 0 || digits > MAX_ID_DIGITS || p >= end || buf[p] != '^') {
+            return false;
+        }
+        p++;
+        if (p + 1 >= end || (buf[p] != '0' && buf[p] != '1') || buf[p + 1] != '^') {
+            return false;
+        }
+        p += 2;
+        int authority = p;
+        p = SCANS.indexOf(buf, p, end, (byte) '^');
+        if (p < 0 || !data.authorities().contains(buf, authority, p - authority)) {
+            return false;
+        }
+        p++;
+        int idType = p;
+        while (p < end && buf[p] != '^' && (CLASS[buf[p] & 0xFF] & DIGIT) == 0) {
+            p++;
+        }
+        if (!data.idTypes().contains(buf, idType, p - idType)) {
+            return false;
+        }
+        int typeDigits = p;
+        p = SCANS.skipDigits(buf, p, end);
+        if (p == typeDigits || p >= end || buf[p] != '^') {
+            return false;
+        }
+        p++;
+        return data.facilities().contains(buf, p, end - p);
+    }
+
+    /**
+     * REQ-5: {@code Family^Given} or {@code Family^Given^Middle}. Each component starts with a
+     * letter and may continue with letters, spaces, apostrophes, hyphens and periods.
+     */
+    public boolean isPatientName(byte[] buf, int off, int len) {
+        return SCANS.isPatientName(buf, off, len);
+    }
+
+    /** REQ-6: {@code YYYYMMDD} naming a real day of the proleptic Gregorian calendar. */
+    public boolean isDob(byte[] buf, int off, int len) {
+        if (len != 8) {
+            return false;
+        }
+        int value = 0;
+        for (int i = 0; i < 8; i++) {
+            int d = buf[off + i] - '0';
+            if (d < 0 || d > 9) {
+                return false;
+            }
+            value = value * 10 + d;
+        }
+        return isDate(value);
+    }
+
+    /** Whether the digits {@code YYYYMMDD} of {@code value} name a real day. */
+    static boolean isDate(int value) {
+        int year = value / 10000;
+        int month = value / 100 % 100;
+        int day = value % 100;
+        if (year == 0 || month < 1 || month > 12 || day < 1) {
+            return false;
+        }
+        int days = DAYS_IN_MONTH[month];
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            days = 29;
+        }
+        return day <= days;
+    }
+
+    /** REQ-7: exactly one value from the current tissue type vocabulary. */
+    public boolean isTissueType(byte[] buf, int off, int len) {
+        return reference.get().tissueTypes().contains(buf, off, len);
+    }
+
+    private static boolean startsWith(byte[] buf, int p, int end, byte[] prefix) {
+        if (end - p < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf[p + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int skipBom(byte[] buf, int p, int end) {
+        if (end - p >= 3 && buf[p] == (byte) 0xEF && buf[p + 1] == (byte) 0xBB && buf[p + 2] == (byte) 0xBF) {
+            return p + 3;
+        }
+        return p;
+    }
+
+    static int skipSpace(byte[] buf, int p, int end) {
+        while (p < end && (CLASS[buf[p] & 0xFF] & SPACE) != 0) {
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * Finds the closing quote of a string whose contents start at {@code p}.
+     *
+     * @return the index of the closing quote, or -1 if the string is unterminated or contains a raw
+     * control character
+     */
+    static int scanString(byte[] buf, int p, int end) {
+        while (p < end) {
+            byte b = buf[p];
+            if (b == '"') {
+                return p;
+            }
+            if (b == '\\') {
+                p += 2;
+            } else if (b >= 0 && b < 0x20) {
+                return -1;
+            } else {
+                p++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips any JSON value starting at {@code p}.
+     *
+     * @return the index just past the value, or -1 if it is malformed
+     */
+    static int skipValue(byte[] buf, int p, int end, int depth) {
+        if (p >= end || depth > MAX_DEPTH) {
+            return -1;
+        }
+        byte b = buf[p];
+        switch (b) {
+            case '"': {
+                int close = scanString(buf, p + 1, end);
+                return close < 0 ? -1 : close + 1;
+            }
+            case '{':
+            case '[': {
+                byte close = b == '{' ? (byte) '}' : (byte) ']';
+                p = skipSpace(buf, p + 1, end);
+                if (p < end && buf[p] == close) {
+                    return p + 1;
+                }
+                while (true) {
+                    if (b == '{') {
+                        if (p >= end || buf[p] != '"') {
+                            return -1;
+                        }
+                        p = skipValue(buf, p, end, depth + 1);
+                        if (p < 0) {
+                            return -1;
+                        }
+                        p = skipSpace(buf, p, end);
+                        if (p >= end || buf[p] != ':') {
+                            return -1;
+                        }
+                        p = skipSpace(buf, p + 1, end);
+                    }
+                    p = skipValue(buf, p, end, depth + 1);
+                    if (p < 0) {
+                        return -1;
+                    }
+                    p = skipSpace(buf, p, end);
+                    if (p < end && buf[p] == ',') {
+                        p = skipSpace(buf, p + 1, end);
+                    } else if (p < end && buf[p] == close) {
+                        return p + 1;
+                    } else {
+                        return -1;
+                    }
+                }
+            }
+            case 't':
+                return literal(buf, p, end, TRUE);
+            case 'f':
+                return literal(buf, p, end, FALSE);
+            case 'n':
+                return literal(buf, p, end, NULL);
+            default:
+                return skipNumber(buf, p, end);
+        }
+    }
+
+    private static int literal(byte[] buf, int p, int end, byte[] word) {
+        return startsWith(buf, p, end, word) ? p + word.length : -1;
+    }
+
+    private static int skipNumber(byte[] buf, int p, int end) {
+        int start = p;
+        if (p < end && buf[p] == '-') {
+            p++;
+        }
+        int digits = p;
+        while (p < end) {
+            byte b = buf[p];
+            if ((CLASS[b & 0xFF] & DIGIT) != 0 || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-') {
+                p++;
+            } else {
+                break;
+            }
+        }
+        return p == digits || p == start ? -1 : p;
+    }
+
+    private static byte[] bytes(String ascii) {
+        return ascii.getBytes(StandardCharsets.US_ASCII);
+    }
+}
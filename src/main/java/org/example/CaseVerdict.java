@@ -0,0 +1,241 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Mutable outcome of a single {@link CaseValidator} run.
+ * <p>
+ * A verdict is meant to be owned by one thread and reused across calls, so validating a case
+ * allocates nothing. For a valid case or an unexpected field the verdict keeps a reference to the
+ * caller's input buffer instead of copying the case_id or key; it is only meaningful until that
+ * buffer is reused.
+ */
+public final class CaseVerdict {
+
+    public enum Outcome {
+        /** Every field is present and well formed (REQ-8). */
+        VALID(200),
+        /** The body is empty or not a single JSON object. */
+        MALFORMED(400),
+        /** A mandatory field is absent (REQ-2). */
+        MISSING(400),
+        /** A field is blank, badly formatted (REQ-3 to REQ-7), duplicated or unexpected. */
+        INVALID(422),
+        /** The case is valid but its case_id was already accepted; see {@link CaseIdIndex}. */
+        DUPLICATE(409);
+
+        private final int status;
+
+        Outcome(int status) {
+            this.status = status;
+        }
+
+        public int status() {
+            return status;
+        }
+    }
+
+    public static final String VALID_MESSAGE = "Case valid";
+    public static final String MALFORMED_MESSAGE = "Malformed JSON";
+    public static final String EMPTY_MESSAGE = "Missing request body";
+    public static final String DUPLICATE_MESSAGE = "Duplicate case_id";
+
+    private Outcome outcome = Outcome.VALID;
+    private CaseField field;
+    private boolean empty;
+    private byte[] source;
+    private int nameOffset;
+    private int nameLength;
+    private int caseIdOffset;
+    private boolean packedCaseId;
+    private long caseIdMsb;
+    private long caseIdLsb;
+    private int missingFields;
+    private int invalidFields;
+    private boolean unexpectedKey;
+
+    public Outcome outcome() {
+        return outcome;
+    }
+
+    public boolean isValid() {
+        return outcome == Outcome.VALID;
+    }
+
+    public int status() {
+        return outcome.status();
+    }
+
+    /**
+     * The offending field, or {@code null} when the verdict is valid, the body is malformed,
+     * or the violation is an unexpected key. A duplicate is reported against {@link CaseField#CASE_ID}.
+     */
+    public CaseField field() {
+        return field;
+    }
+
+    /** Whether the violation is a key outside the five mandatory fields. */
+    public boolean isUnexpectedField() {
+        return outcome == Outcome.INVALID && field == null;
+    }
+
+    /**
+     * Every absent field as a {@link CaseField#bit()} mask, not just the one {@link #field()} reports;
+     * all five for an empty body, none for a malformed one.
+     */
+    public int missingFields() {
+        return missingFields;
+    }
+
+    /** Every blank, badly formatted or duplicated field as a {@link CaseField#bit()} mask. */
+    public int invalidFields() {
+        return invalidFields;
+    }
+
+    /**
+     * Whether the body has a key outside the five mandatory fields, even if another violation is
+     * reported first; {@link #message()} names the first such key only when it is reported first.
+     */
+    public boolean hasUnexpectedKey() {
+        return unexpectedKey;
+    }
+
+    /** The response message, e.g. {@code "Invalid dob"}, as expected by the checkcase contract. */
+    public String message() {
+        return switch (outcome) {
+            case VALID -> VALID_MESSAGE;
+            case MALFORMED -> MALFORMED_MESSAGE;
+            case MISSING -> empty ? EMPTY_MESSAGE : field.missingMessage();
+            case INVALID -> field != null
+                    ? field.invalidMessage()
+                    : "Invalid " + new String(source, nameOffset, nameLength, StandardCharsets.UTF_8);
+            case DUPLICATE -> DUPLICATE_MESSAGE;
+        };
+    }
+
+    /** The validated buffer, for a valid case or an unexpected key. */
+    byte[] source() {
+        return source;
+    }
+
+    /** Offset of the 36-byte case_id value within the validated buffer of a valid case. */
+    int caseIdOffset() {
+        return caseIdOffset;
+    }
+
+    /** The first half of a valid case's case_id as a UUID, whether it arrived as text or packed. */
+    long caseIdMostSignificantBits() {
+        return packedCaseId ? caseIdMsb : CaseIdIndex.mostSignificantBits(source, caseIdOffset);
+    }
+
+    /** The second half of a valid case's case_id as a UUID. */
+    long caseIdLeastSignificantBits() {
+        return packedCaseId ? caseIdLsb : CaseIdIndex.leastSignificantBits(source, caseIdOffset);
+    }
+
+    /** Offset of the first unexpected key within the validated buffer. */
+    int nameOffset() {
+        return nameOffset;
+    }
+
+    /** Length in bytes of an unexpected key, still JSON-escaped as it appeared in the request. */
+    int nameLength() {
+        return nameLength;
+    }
+
+    void valid(byte[] buf, int caseIdOffset) {
+        set(Outcome.VALID, null);
+        source = buf;
+        this.caseIdOffset = caseIdOffset;
+    }
+
+    /** A valid case whose case_id arrived as a 16-byte UUID rather than as text; see {@link BinaryCase}. */
+    void valid(long msb, long lsb) {
+        set(Outcome.VALID, null);
+        packedCaseId = true;
+        caseIdMsb = msb;
+        caseIdLsb = lsb;
+    }
+
+    /** Valid patient fields that come without a case_id, such as those of an HL7 PID; see {@link Hl7Reader}. */
+    void validPatient() {
+        set(Outcome.VALID, null);
+    }
+
+    void malformed() {
+        set(Outcome.MALFORMED, null);
+    }
+
+    void empty() {
+        set(Outcome.MISSING, null);
+        empty = true;
+        missingFields = CaseField.ALL;
+    }
+
+    void missing(CaseField missing) {
+        set(Outcome.MISSING, missing);
+    }
+
+    void invalid(CaseField invalid) {
+        set(Outcome.INVALID, invalid);
+    }
+
+    /** Records every violation found, after the outcome has been set. */
+    void violations(int missingFields, int invalidFields) {
+        this.missingFields = missingFields;
+        this.invalidFields = invalidFields;
+    }
+
+    /** Records the first unexpected key when another violation is reported first. */
+    void unexpectedKey(byte[] buf, int off, int len) {
+        unexpectedKey = true;
+        source = buf;
+        nameOffset = off;
+        nameLength = len;
+    }
+
+    void duplicate() {
+        set(Outcome.DUPLICATE, CaseField.CASE_ID);
+    }
+
+    void unexpected(byte[] buf, int off, int len) {
+        set(Outcome.INVALID, null);
+        unexpectedKey(buf, off, len);
+    }
+
+    /**
+     * Copies {@code from}, rebased onto an identical copy of its input that starts {@code shift}
+     * bytes further along in {@code source}.
+     */
+    void copy(CaseVerdict from, byte[] source, int shift) {
+        outcome = from.outcome;
+        field = from.field;
+        empty = from.empty;
+        this.source = from.source != null ? source : null;
+        nameOffset = from.nameOffset + shift;
+        nameLength = from.nameLength;
+        caseIdOffset = from.caseIdOffset + shift;
+        packedCaseId = from.packedCaseId;
+        caseIdMsb = from.caseIdMsb;
+        caseIdLsb = from.caseIdLsb;
+        missingFields = from.missingFields;
+        invalidFields = from.invalidFields;
+        unexpectedKey = from.unexpectedKey;
+    }
+
+    private void set(Outcome outcome, CaseField field) {
+        this.outcome = outcome;
+        this.field = field;
+        this.empty = false;
+        this.source = null;
+        this.packedCaseId = false;
+        this.missingFields = 0;
+        this.invalidFields = 0;
+        this.unexpectedKey = false;
+    }
+
+    @Override
+    public String toString() {
+        return status() + " " + message();
+    }
+}
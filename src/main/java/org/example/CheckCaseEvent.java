@@ -0,0 +1,83 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Registered;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one case handled by the server: a single-case request, or one line
+ * of a batch. Enabled and thresholded like any JFR event, e.g.
+ * {@code jcmd <pid> JFR.start settings=profile}; while disabled it costs nothing.
+ * <p>
+ * Neither this event nor {@link CaseRuleEvent} registers itself on load: registering the first
+ * event starts up Flight Recorder, about a third of a second of class loading that would
+ * otherwise land on the first request of a cold start. {@link CaseServer} calls {@link #register()}
+ * once the first response is out; until then the events are disabled.
+ */
+@Name("org.example.CheckCase")
+@Label("Check Case")
+@Category({"Checkcase"})
+@Description("Validation of one case, from reading its body to writing its result")
+@StackTrace(false)
+@Registered(false)
+final class CheckCaseEvent extends Event {
+
+    private static volatile boolean registered;
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Status")
+    int status;
+
+    @Label("Message")
+    String message;
+
+    @Label("Body Size")
+    @DataAmount
+    int bodyBytes;
+
+    /** Registers this event and {@link CaseRuleEvent} with Flight Recorder, on the first call only. */
+    static void register() {
+        if (registered) {
+            return;
+        }
+        synchronized (CheckCaseEvent.class) {
+            if (!registered) {
+                FlightRecorder.register(CheckCaseEvent.class);
+                FlightRecorder.register(CaseRuleEvent.class);
+                registered = true;
+            }
+        }
+    }
+
+    /** Ends the event and, if it passed the recording's threshold, fills it in and commits it. */
+    void end(CaseMetrics.Endpoint endpoint, int status, String message, int bodyBytes) {
+        end();
+        if (shouldCommit()) {
+            commit(endpoint, status, message, bodyBytes);
+        }
+    }
+
+    /** Same as {@link #end(CaseMetrics.Endpoint, int, String, int)}, building the message only if committed. */
+    void end(CaseMetrics.Endpoint endpoint, CaseVerdict verdict, int bodyBytes) {
+        end();
+        if (shouldCommit()) {
+            commit(endpoint, verdict.status(), verdict.message(), bodyBytes);
+        }
+    }
+
+    private void commit(CaseMetrics.Endpoint endpoint, int status, String message, int bodyBytes) {
+        this.endpoint = endpoint.label();
+        this.status = status;
+        this.message = message;
+        this.bodyBytes = bodyBytes;
+        commit();
+    }
+}
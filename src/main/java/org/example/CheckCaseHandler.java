@@ -0,0 +1,270 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@code POST /.netlify/functions/checkcase} with the same status codes and messages as the
+ * hosted endpoint: 200 "Case valid", 400 "Missing ...", 415 "Unsupported media" and
+ * 422 "Invalid &lt;field&gt;". With a {@link CaseIdIndex}, a valid case whose case_id was already
+ * accepted is a 409 "Duplicate case_id". With {@code ?report=all}, a 400 or 422 also lists every
+ * violation; see {@link ViolationReport}. In cluster mode, a valid case that another node owns is
+ * answered by that node; see {@link CaseCluster}. With an {@link AdaptiveLimiter}, a request over
+ * the concurrency limit is a 503 "Overloaded" with {@code Retry-After}. The 415, a 413 for a declared
+ * length and slow bodies are dealt with by the {@link RequestGate} in front of the handler; a chunked
+ * body that outgrows {@link #MAX_BODY_BYTES} is a 413 here.
+ * <p>
+ * The same handler serves {@code POST .../checkcase/binary}, which takes one case in the
+ * {@link BinaryCase} encoding and answers it exactly as the JSON endpoint answers the same case.
+ */
+final class CheckCaseHandler implements HttpHandler {
+
+    static final int MAX_BODY_BYTES = 64 * 1024;
+
+    static final String UNSUPPORTED_MEDIA_MESSAGE = "Unsupported media";
+    static final String METHOD_NOT_ALLOWED_MESSAGE = "Method not allowed";
+    static final String NOT_FOUND_MESSAGE = "Not found";
+    static final String TOO_LARGE_MESSAGE = "Payload too large";
+    static final String OVERLOADED_MESSAGE = "Overloaded";
+    static final String RETRY_AFTER_SECONDS = "1";
+
+    static final byte[] UNSUPPORTED_MEDIA = body(UNSUPPORTED_MEDIA_MESSAGE);
+    static final byte[] METHOD_NOT_ALLOWED = body(METHOD_NOT_ALLOWED_MESSAGE);
+    static final byte[] NOT_FOUND = body(NOT_FOUND_MESSAGE);
+    static final byte[] TOO_LARGE = body(TOO_LARGE_MESSAGE);
+    static final byte[] OVERLOADED = body(OVERLOADED_MESSAGE);
+
+    private static final byte[] VALID = body(CaseVerdict.VALID_MESSAGE);
+    private static final byte[] MALFORMED = body(CaseVerdict.MALFORMED_MESSAGE);
+    private static final byte[] EMPTY = body(CaseVerdict.EMPTY_MESSAGE);
+    private static final byte[] DUPLICATE = body(CaseVerdict.DUPLICATE_MESSAGE);
+    private static final byte[][] MISSING = new byte[CaseField.values().length][];
+    private static final byte[][] INVALID = new byte[CaseField.values().length][];
+    static final byte[] INVALID_PREFIX = "{\"message\":\"Invalid ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MESSAGE_SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (CaseField field : CaseField.values()) {
+            MISSING[field.ordinal()] = body(field.missingMessage());
+            INVALID[field.ordinal()] = body(field.invalidMessage());
+        }
+    }
+
+    private final CaseServer.Options options;
+    private final String path;
+    private final CaseMetrics.Endpoint endpoint;
+
+    CheckCaseHandler(CaseServer.Options options) {
+        this(options, CaseServer.CHECKCASE_PATH, CaseMetrics.Endpoint.CHECKCASE);
+    }
+
+    private CheckCaseHandler(CaseServer.Options options, String path, CaseMetrics.Endpoint endpoint) {
+        this.options = options;
+        this.path = path;
+        this.endpoint = endpoint;
+    }
+
+    /** The handler of {@link CaseServer#BINARY_PATH}. */
+    static CheckCaseHandler binary(CaseServer.Options options) {
+        return new CheckCaseHandler(options, CaseServer.BINARY_PATH, CaseMetrics.Endpoint.BINARY);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        CheckCaseEvent event = new CheckCaseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try (exchange) {
+            if (!path.equals(exchange.getRequestURI().getPath())) {
+                reject(exchange, options, endpoint, 404, NOT_FOUND_MESSAGE, NOT_FOUND, event);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                reject(exchange, options, endpoint, 405, METHOD_NOT_ALLOWED_MESSAGE, METHOD_NOT_ALLOWED, event);
+                return;
+            }
+            AdaptiveLimiter.Permit permit = null;
+            if (options.limiter != null) {
+                permit = options.limiter.tryAcquire();
+                if (permit == null) {
+                    shed(exchange, options, endpoint, event);
+                    return;
+                }
+            }
+            try {
+                respond(exchange, event);
+            } finally {
+                if (permit != null) {
+                    permit.release();
+                }
+            }
+        } finally {
+            if (options.metrics != null) {
+                options.metrics.request(endpoint, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, CheckCaseEvent event) throws IOException {
+        byte[] body = readBody(exchange.getRequestBody());
+        if (body == null) {
+            reject(exchange, options, endpoint, 413, TOO_LARGE_MESSAGE, TOO_LARGE, event);
+            return;
+        }
+        CaseVerdict verdict = endpoint == CaseMetrics.Endpoint.BINARY
+                ? options.validator.validateBinary(body, 0, body.length, new CaseVerdict())
+                : validate(options, body, 0, body.length, new CaseVerdict());
+        CaseCluster.Forwarded forwarded = exchange.getRequestHeaders().containsKey(CaseCluster.FORWARDED_HEADER)
+                ? null : route(options, body, 0, body.length, verdict);
+        if (forwarded != null) {
+            send(exchange, forwarded.status(), forwarded.body());
+            event.end(endpoint, forwarded.status(), forwarded.message(), body.length);
+            return;
+        }
+        admit(options, endpoint, body, 0, body.length, verdict);
+        if (options.log != null) {
+            options.log.sync();
+        }
+        if (ViolationReport.applies(verdict) && ViolationReport.requested(exchange.getRequestURI())) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(verdict.status(), ViolationReport.length(verdict));
+            try (OutputStream out = exchange.getResponseBody()) {
+                ViolationReport.write(verdict, 0, out);
+            }
+        } else {
+            send(exchange, verdict.status(), responseBody(verdict, body));
+        }
+        event.end(endpoint, verdict, body.length);
+    }
+
+    /** Validates a case through the cache if the server has one. */
+    static CaseVerdict validate(CaseServer.Options options, byte[] buf, int off, int len, CaseVerdict out) {
+        if (options.cache != null) {
+            return options.cache.validate(buf, off, len, out);
+        }
+        return options.validator.validate(buf, off, len, out);
+    }
+
+    /**
+     * In cluster mode, hands a valid case that another node owns to that node.
+     *
+     * @return the owner's answer, or {@code null} if the case is to be admitted here
+     */
+    static CaseCluster.Forwarded route(CaseServer.Options options, byte[] buf, int off, int len,
+                                       CaseVerdict verdict) throws IOException {
+        if (options.cluster == null || !verdict.isValid()) {
+            return null;
+        }
+        return options.cluster.route(buf, off, len, verdict);
+    }
+
+    /**
+     * Admits a validated case on this node: if it is valid, its case_id goes to the duplicate index
+     * if the server has one; it is logged if the server has a {@link CaseLog}, a binary case with
+     * its tissue_type resolved against the current reference data; and its outcome is counted. The
+     * caller syncs the log before it answers.
+     */
+    static CaseVerdict admit(CaseServer.Options options, CaseMetrics.Endpoint endpoint,
+                             byte[] buf, int off, int len, CaseVerdict out) throws IOException {
+        if (options.caseIds != null) {
+            options.caseIds.admit(out);
+        }
+        if (options.log != null) {
+            byte[] resolved = BinaryCase.isBinary(buf, off, len)
+                    ? BinaryCase.resolveTissueType(buf, off, len, options.validator.reference()) : null;
+            if (resolved != null) {
+                options.log.append(resolved, 0, resolved.length, out);
+            } else {
+                options.log.append(buf, off, len, out);
+            }
+        }
+        if (options.metrics != null) {
+            options.metrics.response(endpoint, out);
+        }
+        return out;
+    }
+
+    /** Answers a request shed by the {@link AdaptiveLimiter} with a 503 and {@code Retry-After}, and counts it. */
+    static void shed(HttpExchange exchange, CaseServer.Options options, CaseMetrics.Endpoint endpoint,
+                     CheckCaseEvent event) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+        reject(exchange, options, endpoint, 503, OVERLOADED_MESSAGE, OVERLOADED, event);
+    }
+
+    /** Answers a request that is turned away before validation, and counts it. */
+    static void reject(HttpExchange exchange, CaseServer.Options options, CaseMetrics.Endpoint endpoint,
+                       int status, String message, byte[] body, CheckCaseEvent event) throws IOException {
+        send(exchange, status, body);
+        if (options.metrics != null) {
+            options.metrics.rejected(endpoint, status);
+        }
+        event.end(endpoint, status, message, 0);
+    }
+
+    /**
+     * Whether a Content-Type header names one of {@code mediaTypes}, ignoring case and parameters
+     * such as {@code charset}.
+     */
+    static boolean hasMediaType(String contentType, String... mediaTypes) {
+        if (contentType == null) {
+            return false;
+        }
+        int end = contentType.indexOf(';');
+        String essence = (end < 0 ? contentType : contentType.substring(0, end)).trim();
+        for (String mediaType : mediaTypes) {
+            if (essence.equalsIgnoreCase(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the JSON response body for a verdict. Every message except an unexpected key is
+     * precomputed; the unexpected key is copied verbatim from the request, where it is already a
+     * valid JSON string.
+     */
+    static byte[] responseBody(CaseVerdict verdict, byte[] request) {
+        return switch (verdict.outcome()) {
+            case VALID -> VALID;
+            case MALFORMED -> MALFORMED;
+            case MISSING -> verdict.field() == null ? EMPTY : MISSING[verdict.field().ordinal()];
+            case INVALID -> verdict.field() != null
+                    ? INVALID[verdict.field().ordinal()]
+                    : unexpectedBody(request, verdict.nameOffset(), verdict.nameLength());
+            case DUPLICATE -> DUPLICATE;
+        };
+    }
+
+    private static byte[] unexpectedBody(byte[] request, int off, int len) {
+        byte[] out = new byte[INVALID_PREFIX.length + len + MESSAGE_SUFFIX.length];
+        System.arraycopy(INVALID_PREFIX, 0, out, 0, INVALID_PREFIX.length);
+        System.arraycopy(request, off, out, INVALID_PREFIX.length, len);
+        System.arraycopy(MESSAGE_SUFFIX, 0, out, INVALID_PREFIX.length + len, MESSAGE_SUFFIX.length);
+        return out;
+    }
+
+    /** Reads the whole request body, or returns {@code null} once it exceeds {@link #MAX_BODY_BYTES}. */
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        return body.length > MAX_BODY_BYTES ? null : body;
+    }
+
+    static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static byte[] body(String message) {
+        return ("{\"message\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves {@code /cluster/members}: {@code GET} lists the members one URI per line, {@code POST}
+ * adds the node in the body and lists the members, {@code DELETE} removes the node in the body.
+ * A body that is not an absolute URI with a host is answered with a 400 and changes nothing.
+ */
+final class ClusterHandler implements HttpHandler {
+
+    static final String INVALID_NODE_MESSAGE = "Invalid node URI";
+
+    private static final byte[] INVALID_NODE = CheckCaseHandler.body(INVALID_NODE_MESSAGE);
+
+    private final CaseCluster cluster;
+
+    ClusterHandler(CaseCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!CaseCluster.MEMBERS_PATH.equals(exchange.getRequestURI().getPath())) {
+                CheckCaseHandler.send(exchange, 404, CheckCaseHandler.NOT_FOUND);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            URI node = method.equals("POST") || method.equals("DELETE") ? node(exchange) : null;
+            switch (method) {
+                case "GET" -> members(exchange);
+                case "POST", "DELETE" -> {
+                    if (node == null) {
+                        CheckCaseHandler.send(exchange, 400, INVALID_NODE);
+                    } else if (method.equals("POST")) {
+                        cluster.add(node);
+                        members(exchange);
+                    } else {
+                        cluster.remove(node);
+                        exchange.sendResponseHeaders(204, -1);
+                    }
+                }
+                default -> {
+                    exchange.getResponseHeaders().set("Allow", "GET, POST, DELETE");
+                    CheckCaseHandler.send(exchange, 405, CheckCaseHandler.METHOD_NOT_ALLOWED);
+                }
+            }
+        }
+    }
+
+    /** The node URI in the body, or {@code null} if it is not an absolute URI with a host. */
+    private static URI node(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).strip();
+        try {
+            URI node = new URI(body);
+            return node.isAbsolute() && node.getHost() != null ? node : null;
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private void members(HttpExchange exchange) throws IOException {
+        StringBuilder out = new StringBuilder();
+        for (URI member : cluster.members()) {
+            out.append(member).append('\n');
+        }
+        byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
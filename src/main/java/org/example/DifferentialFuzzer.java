@@ -0,0 +1,288 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Differential fuzzing of checkcase implementations against a recorded oracle.
+ * <p>
+ * {@link #record} judges cases {@code 0..n-1} of a seed from {@link CaseMutator} with a reference
+ * implementation (typically the hosted endpoint) and writes one verdict per line to an oracle
+ * file. {@link #check} regenerates the same cases and compares another implementation's verdicts
+ * with the file, status and message both. Cases are regenerated rather than stored, so an oracle
+ * of a hundred million cases is a few gigabytes of verdicts and no bodies.
+ * <p>
+ * Cases are judged in blocks of {@value #BLOCK} across a fixed set of worker threads, and the file
+ * is read and written in case order between blocks. Each disagreement is reported with the
+ * mutations that produced it and, if the reference is still reachable, minimized: bytes are cut
+ * from the body for as long as both sides keep their verdicts, leaving only what causes the
+ * disagreement.
+ * <pre>
+ *   # checkcase oracle seed=42 source=https://lucent-trifle-ba3d62.netlify.app
+ *   200	Case valid
+ *   422	Invalid dob
+ * </pre>
+ */
+public final class DifferentialFuzzer implements AutoCloseable {
+
+    public static final String HEADER = "# checkcase oracle";
+    public static final String LOCAL = "local";
+    public static final int BLOCK = 1 << 14;
+
+    private static final int MAX_MINIMIZE_STEPS = 2_000;
+
+    /** Anything that judges a case: the in-process validator or a server behind a URL. */
+    @FunctionalInterface
+    public interface Target {
+
+        CaseValidationClient.Verdict check(byte[] body) throws IOException;
+
+        static Target local(CaseValidator validator) {
+            ThreadLocal<CaseVerdict> verdicts = ThreadLocal.withInitial(CaseVerdict::new);
+            return body -> {
+                CaseVerdict verdict = validator.validate(body, verdicts.get());
+                return new CaseValidationClient.Verdict(verdict.status(), verdict.message());
+            };
+        }
+
+        static Target remote(CaseValidationClient client) {
+            return body -> {
+                try {
+                    return client.validate(body).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            };
+        }
+    }
+
+    /** The seed and the reference an oracle file was recorded with. */
+    public record Oracle(long seed, String source) {
+    }
+
+    /** A case on which the implementation under test and the oracle disagree. */
+    public record Mismatch(long index, List<String> trail, byte[] body, CaseValidationClient.Verdict expected,
+                           CaseValidationClient.Verdict actual, byte[] minimized) {
+    }
+
+    public record Summary(long cases, long mismatchCount, double seconds, List<Mismatch> mismatches) {
+
+        public double casesPerSecond() {
+            return cases / seconds;
+        }
+    }
+
+    private final CaseMutator mutator;
+    private final int threads;
+    private final ExecutorService workers;
+
+    /** Judges with {@code threads} workers: the core count for local targets, more for remote ones. */
+    public DifferentialFuzzer(CaseMutator mutator, int threads) {
+        this.mutator = mutator;
+        this.threads = threads;
+        this.workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().daemon().name("fuzz-", 0).factory());
+    }
+
+    /** Judges cases {@code 0..cases-1} of {@code seed} with {@code oracle} and writes them to {@code file}. */
+    public Summary record(Target oracle, String source, long seed, long cases, Path file) throws IOException {
+        long start = System.nanoTime();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(HEADER + " seed=" + seed + " source=" + source + "\n");
+            for (long from = 0; from < cases; from += BLOCK) {
+                int n = (int) Math.min(BLOCK, cases - from);
+                for (CaseValidationClient.Verdict verdict : judge(oracle, seed, from, n)) {
+                    out.write(Integer.toString(verdict.status()));
+                    out.write('\t');
+                    out.write(verdict.message());
+                    out.write('\n');
+                }
+            }
+        }
+        return new Summary(cases, 0, (System.nanoTime() - start) / 1e9, List.of());
+    }
+
+    /**
+     * Replays {@code file} against {@code target}, keeping the first {@code maxReports} mismatches
+     * and minimizing them against {@code reference} unless it is null.
+     */
+    public Summary check(Path file, Target target, Target reference, int maxReports) throws IOException {
+        long start = System.nanoTime();
+        List<Mismatch> mismatches = new ArrayList<>();
+        long count = 0;
+        long cases = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long seed = parseHeader(in.readLine(), file).seed();
+            List<CaseValidationClient.Verdict> expected = new ArrayList<>(BLOCK);
+            for (boolean done = false; !done; ) {
+                expected.clear();
+                for (String line; expected.size() < BLOCK && (line = in.readLine()) != null; ) {
+                    expected.add(parseVerdict(line, file, cases + expected.size()));
+                }
+                done = expected.size() < BLOCK;
+                CaseValidationClient.Verdict[] actual = judge(target, seed, cases, expected.size());
+                for (int i = 0; i < actual.length; i++) {
+                    if (actual[i].equals(expected.get(i))) {
+                        continue;
+                    }
+                    count++;
+                    if (mismatches.size() < maxReports) {
+                        mismatches.add(mismatch(seed, cases + i, expected.get(i), actual[i], target, reference));
+                    }
+                }
+                cases += actual.length;
+            }
+        }
+        return new Summary(cases, count, (System.nanoTime() - start) / 1e9, mismatches);
+    }
+
+    /** Reads the header of an oracle file. */
+    public static Oracle oracle(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parseHeader(in.readLine(), file);
+        }
+    }
+
+    /**
+     * Shrinks {@code body} while {@code target} still answers {@code actual} and {@code reference}
+     * still answers {@code expected}: delta debugging over bytes, cutting ever smaller chunks.
+     */
+    public static byte[] minimize(byte[] body, Target target, CaseValidationClient.Verdict actual,
+                                  Target reference, CaseValidationClient.Verdict expected) {
+        byte[] current = body;
+        int chunks = 2;
+        int budget = MAX_MINIMIZE_STEPS;
+        while (current.length > 1 && budget > 0) {
+            int chunk = (current.length + chunks - 1) / chunks;
+            boolean reduced = false;
+            for (int from = 0; from < current.length && budget > 0; from += chunk, budget--) {
+                byte[] candidate = cut(current, from, Math.min(chunk, current.length - from));
+                if (reproduces(candidate, target, actual, reference, expected)) {
+                    current = candidate;
+                    chunks = Math.max(chunks - 1, 2);
+                    reduced = true;
+                    break;
+                }
+            }
+            if (!reduced) {
+                if (chunk == 1) {
+                    break;
+                }
+                chunks = Math.min(chunks * 2, current.length);
+            }
+        }
+        return current;
+    }
+
+    public static void print(Summary summary, PrintStream out) {
+        out.printf("%d cases in %.1f s (%.0f/s), %d mismatches%n", summary.cases(), summary.seconds(),
+                summary.casesPerSecond(), summary.mismatchCount());
+        for (Mismatch m : summary.mismatches()) {
+            out.printf("case %d: %s%n", m.index(), String.join(", ", m.trail()));
+            out.printf("  expected %d %s, got %d %s%n", m.expected().status(), m.expected().message(),
+                    m.actual().status(), m.actual().message());
+            out.println("  body:      " + new String(m.body(), StandardCharsets.UTF_8).replace("\n", "\\n"));
+            if (m.minimized() != null) {
+                out.println("  minimized: " + new String(m.minimized(), StandardCharsets.UTF_8).replace("\n", "\\n"));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private Mismatch mismatch(long seed, long index, CaseValidationClient.Verdict expected,
+                              CaseValidationClient.Verdict actual, Target target, Target reference) {
+        List<String> trail = new ArrayList<>();
+        byte[] body = mutator.generate(seed, index, trail);
+        byte[] minimized = reference == null ? null : minimize(body, target, actual, reference, expected);
+        return new Mismatch(index, trail, body, expected, actual, minimized);
+    }
+
+    /** The verdicts of cases {@code from..from+n-1}, judged by all workers at once. */
+    private CaseValidationClient.Verdict[] judge(Target target, long seed, long from, int n) throws IOException {
+        CaseValidationClient.Verdict[] verdicts = new CaseValidationClient.Verdict[n];
+        AtomicInteger next = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(() -> {
+                for (int i; (i = next.getAndAdd(64)) < n; ) {
+                    for (int j = i; j < Math.min(i + 64, n); j++) {
+                        verdicts[j] = target.check(mutator.generate(seed, from + j));
+                    }
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> done : workers.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException r) {
+                throw r;
+            }
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        }
+        return verdicts;
+    }
+
+    private static boolean reproduces(byte[] body, Target target, CaseValidationClient.Verdict actual,
+                                      Target reference, CaseValidationClient.Verdict expected) {
+        try {
+            return target.check(body).equals(actual) && reference.check(body).equals(expected);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static byte[] cut(byte[] body, int from, int length) {
+        byte[] out = new byte[body.length - length];
+        System.arraycopy(body, 0, out, 0, from);
+        System.arraycopy(body, from + length, out, from, body.length - from - length);
+        return out;
+    }
+
+    private static Oracle parseHeader(String line, Path file) throws IOException {
+        if (line == null || !line.startsWith(HEADER + " seed=")) {
+            throw new IOException("Not an oracle file: " + file);
+        }
+        String[] fields = line.substring(HEADER.length() + 1).split(" ", 2);
+        try {
+            long seed = Long.parseLong(fields[0].substring("seed=".length()));
+            String source = fields.length > 1 && fields[1].startsWith("source=") ? fields[1].substring("source=".length()) : LOCAL;
+            return new Oracle(seed, source);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad oracle header in " + file + ": " + line);
+        }
+    }
+
+    private static CaseValidationClient.Verdict parseVerdict(String line, Path file, long index) throws IOException {
+        int tab = line.indexOf('\t');
+        try {
+            return new CaseValidationClient.Verdict(Integer.parseInt(line, 0, tab, 10), line.substring(tab + 1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IOException("Bad verdict for case " + index + " in " + file + ": " + line);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.example;
+
+import java.util.Optional;
+
+/**
+ * The byte scans that dominate the field rules: the REQ-3 UUID check, the REQ-5 name check, and
+ * the digit runs and delimiter searches of REQ-4 and of record splitting.
+ * <p>
+ * There are two implementations with identical results: a scalar one driven by
+ * {@link CaseValidator#CLASS}, and a SIMD one built on the incubating Vector API, which needs
+ * {@code --add-modules jdk.incubator.vector} at run time. {@link #PREFERRED} is the SIMD one when
+ * the module is present and the CPU has vector registers, unless {@code -Dcheckcase.vector=false}.
+ */
+public sealed interface FieldScans permits ScalarScans, VectorScans {
+
+    String VECTOR_MODULE = "jdk.incubator.vector";
+
+    FieldScans SCALAR = new ScalarScans();
+
+    FieldScans PREFERRED = Boolean.parseBoolean(System.getProperty("checkcase.vector", "true"))
+            ? vector().orElse(SCALAR)
+            : SCALAR;
+
+    /** The SIMD scans, or empty if the Vector API module is not loaded or the CPU lacks vectors. */
+    static Optional<FieldScans> vector() {
+        // VectorScans must not even be loaded without the module, hence the check up front.
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty() || !VectorScans.isSupported()) {
+            return Optional.empty();
+        }
+        return Optional.of(new VectorScans());
+    }
+
+    /** REQ-3: a canonical 8-4-4-4-12 hexadecimal UUID. */
+    boolean isCaseId(byte[] buf, int off, int len);
+
+    /** REQ-5: two or three {@code ^}-separated components, each a letter then name characters. */
+    boolean isPatientName(byte[] buf, int off, int len);
+
+    /** The index of the first byte in {@code [p, end)} that is not an ASCII digit, or {@code end}. */
+    int skipDigits(byte[] buf, int p, int end);
+
+    /** The index of the first {@code b} in {@code [p, end)}, or -1. */
+    int indexOf(byte[] buf, int p, int end, byte b);
+}
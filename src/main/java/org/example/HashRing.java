@@ -0,0 +1,71 @@
+package org.example;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent-hash ring of cluster nodes. Each node is placed at {@value #VIRTUAL_NODES} points so
+ * that ownership is spread evenly, and a case belongs to the first point at or after the hash of
+ * its case_id. Adding or removing a node only moves the keys of the points it takes or gives up,
+ * about {@code 1/n} of them. Immutable; membership changes build a new ring.
+ */
+final class HashRing {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final List<URI> nodes;
+    private final long[] points;
+    private final URI[] owners;
+
+    HashRing(Collection<URI> nodes) {
+        this.nodes = List.copyOf(new TreeSet<>(nodes));
+        long[][] placed = new long[this.nodes.size() * VIRTUAL_NODES][];
+        int n = 0;
+        for (int node = 0; node < this.nodes.size(); node++) {
+            long base = hash(this.nodes.get(node).toString());
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                placed[n++] = new long[]{CaseIdIndex.mix(base, v), node};
+            }
+        }
+        Arrays.sort(placed, (a, b) -> Long.compare(a[0], b[0]));
+        points = new long[placed.length];
+        owners = new URI[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = placed[i][0];
+            owners[i] = this.nodes.get((int) placed[i][1]);
+        }
+    }
+
+    /** The node owning a case_id, or {@code null} on an empty ring. */
+    URI owner(long msb, long lsb) {
+        if (points.length == 0) {
+            return null;
+        }
+        int i = Arrays.binarySearch(points, CaseIdIndex.mix(msb, lsb));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    List<URI> nodes() {
+        return nodes;
+    }
+
+    boolean contains(URI node) {
+        return nodes.contains(node);
+    }
+
+    /** FNV-1a, then mixed per point, so that similar node URIs land far apart. */
+    private static long hash(String node) {
+        long h = 0xCBF29CE484222325L;
+        for (byte b : node.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,364 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams the patient fields of HL7 v2 messages out of a message file or an MLLP connection, so an
+ * ADT feed can be validated without turning each message into a checkcase JSON body first.
+ * <p>
+ * Segments are scanned through a fixed window and the reader only stops at PID segments; no
+ * message, segment or field objects are built. For each PID it locates the values a case takes:
+ * <ul>
+ *   <li>patient_id: the first repetition of PID-3 as it stands, a CX identifier in the
+ *       {@code ID^CheckDigit^Authority^IdType^Facility} layout of REQ-4</li>
+ *   <li>patient_name: the family, given and middle name of the first repetition of PID-5, without
+ *       the later XPN components (suffix, prefix, degree, name type) or empty trailing ones</li>
+ *   <li>dob: the date of PID-7, without a time of day or offset</li>
+ * </ul>
+ * An empty field or the HL7 null {@code ""} is missing. The separators are those of each message's
+ * MSH segment; a component separator other than {@code ^} is rewritten to {@code ^} in place.
+ * <p>
+ * A segment ends at a carriage return or a newline. The MLLP start and end of block bytes also end a
+ * segment, so plain message files and MLLP-framed streams are read the same way. The located values
+ * are only valid until the next call to {@link #next()}. Not thread-safe.
+ */
+public final class Hl7Reader {
+
+    static final int WINDOW_BYTES = 1 << 20;
+    static final byte START_BLOCK = 0x0B;
+    static final byte END_BLOCK = 0x1C;
+
+    private static final CaseField[] FIELDS = {CaseField.PATIENT_ID, CaseField.PATIENT_NAME, CaseField.DOB};
+    private static final int MAX_CONTROL_ID = 64;
+
+    private final InputStream in;
+    private final byte[] buf;
+    private long base;       // stream offset of buf[0]
+    private int pos;         // start of the next segment
+    private int limit;
+    private boolean eof;
+
+    private byte field;
+    private byte component;
+    private byte repetition;
+    private long messageOffset = -1;
+    private final byte[] controlId = new byte[MAX_CONTROL_ID];
+    private int controlIdLength = -1;
+
+    private long segmentOffset = -1;
+    private boolean tooLarge;
+    private final int[] offsets = new int[FIELDS.length];
+    private final int[] lengths = new int[FIELDS.length];
+
+    public Hl7Reader(InputStream in) {
+        this(in, WINDOW_BYTES);
+    }
+
+    /** A reader whose window, and so its longest PID segment, is {@code windowBytes}. */
+    public Hl7Reader(InputStream in, int windowBytes) {
+        this.in = in;
+        this.buf = new byte[windowBytes];
+        defaultSeparators();
+    }
+
+    /**
+     * Advances to the next PID segment.
+     *
+     * @return false at the end of the stream
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            while (pos < limit && isEnd(buf[pos])) {
+                pos++;
+            }
+            if (pos == limit) {
+                if (!fill()) {
+                    return false;
+                }
+                continue;
+            }
+            int end = segmentEnd();
+            int start = pos;
+            if (end < 0) {
+                boolean pid = isPid(start, limit);
+                long offset = base + start;
+                skipSegment();
+                if (pid) {
+                    pid(offset);
+                    tooLarge = true;
+                    return true;
+                }
+                continue;
+            }
+            pos = end;
+            if (isMsh(start, end)) {
+                header(start, end);
+            } else if (isPid(start, end)) {
+                pid(base + start);
+                locate(start, end);
+                return true;
+            }
+        }
+    }
+
+    /** Stream offset of the MSH segment of the current message, or of the PID when it has none. */
+    public long messageOffset() {
+        return messageOffset >= 0 ? messageOffset : segmentOffset;
+    }
+
+    /** Stream offset of the current PID segment. */
+    public long segmentOffset() {
+        return segmentOffset;
+    }
+
+    /** MSH-10 of the current message, or {@code null} if it has none (or one over 64 bytes). */
+    public String controlId() {
+        return controlIdLength < 0 ? null : new String(controlId, 0, controlIdLength, StandardCharsets.UTF_8);
+    }
+
+    /** Whether the PID segment did not fit the window, so none of its fields were located. */
+    public boolean isTooLarge() {
+        return tooLarge;
+    }
+
+    /** The case patient_id of the current PID, or {@code null} if it is missing. */
+    public String patientId() {
+        return value(0);
+    }
+
+    /** The case patient_name of the current PID, or {@code null} if it is missing. */
+    public String patientName() {
+        return value(1);
+    }
+
+    /** The case dob of the current PID, or {@code null} if it is missing. */
+    public String dob() {
+        return value(2);
+    }
+
+    /**
+     * Checks the patient fields of the current PID with the REQ-4 to REQ-6 rules: a missing field is
+     * reported first, then the first invalid one, in the order of the case fields. A valid verdict
+     * has no case_id to record.
+     *
+     * @return {@code out}, for chaining
+     */
+    public CaseVerdict validate(CaseValidator validator, CaseVerdict out) {
+        ReferenceData data = validator.reference();
+        int missing = 0;
+        int invalid = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (lengths[i] == 0) {
+                missing |= FIELDS[i].bit();
+            } else if (!validator.check(data, FIELDS[i], buf, offsets[i], lengths[i])) {
+                invalid |= FIELDS[i].bit();
+            }
+        }
+        if (missing != 0) {
+            out.missing(CaseField.of(Integer.numberOfTrailingZeros(missing)));
+        } else if (invalid != 0) {
+            out.invalid(CaseField.of(Integer.numberOfTrailingZeros(invalid)));
+        } else {
+            out.validPatient();
+        }
+        out.violations(missing, invalid);
+        return out;
+    }
+
+    /** Checks the patient fields of the current PID, once {@link #validate} found them valid, against {@code patients}. */
+    int check(PatientIndex patients) {
+        return patients.check(buf, offsets[0], lengths[0], buf, offsets[1], lengths[1], buf, offsets[2], lengths[2]);
+    }
+
+    private String value(int i) {
+        return lengths[i] == 0 ? null : new String(buf, offsets[i], lengths[i], StandardCharsets.UTF_8);
+    }
+
+    private void pid(long offset) {
+        segmentOffset = offset;
+        tooLarge = false;
+        for (int i = 0; i < FIELDS.length; i++) {
+            offsets[i] = 0;
+            lengths[i] = 0;
+        }
+    }
+
+    /** Starts a message: its separators from MSH-1 and MSH-2, and its control id from MSH-10. */
+    private void header(int start, int end) {
+        defaultSeparators();
+        messageOffset = base + start;
+        controlIdLength = -1;
+        field = buf[start + 3];
+        int encoding = start + 4;
+        if (encoding < end && buf[encoding] != field) {
+            component = buf[encoding];
+            if (encoding + 1 < end && buf[encoding + 1] != field) {
+                repetition = buf[encoding + 1];
+            }
+        }
+        // MSH-1 is the separator itself, so the separator at start + 3 opens MSH-2.
+        int control = nextField(start + 3, end, 9);
+        if (control >= 0) {
+            int length = fieldEnd(control, end) - control;
+            if (length <= MAX_CONTROL_ID) {
+                System.arraycopy(buf, control, controlId, 0, length);
+                controlIdLength = length;
+            }
+        }
+    }
+
+    private void defaultSeparators() {
+        field = '|';
+        component = '^';
+        repetition = '~';
+    }
+
+    /** Finds PID-3, PID-5 and PID-7 and cuts each down to the value its case field takes. */
+    private void locate(int start, int end) {
+        int pid3 = nextField(start + 3, end, 3);
+        int pid5 = pid3 < 0 ? -1 : nextField(pid3, end, 2);
+        int pid7 = pid5 < 0 ? -1 : nextField(pid5, end, 2);
+        set(0, pid3, end, Integer.MAX_VALUE);
+        set(1, pid5, end, 3);
+        set(2, pid7, end, 1);
+        if (lengths[2] > 8 && isTime(offsets[2] + 8, offsets[2] + lengths[2])) {
+            lengths[2] = 8;
+        }
+    }
+
+    /** Sets value {@code i} to the first {@code components} components of the first repetition at {@code p}. */
+    private void set(int i, int p, int end, int components) {
+        if (p < 0) {
+            return;
+        }
+        int stop = p;
+        int last = p;    // just past the last non-empty component
+        for (int n = 1; stop < end; stop++) {
+            byte b = buf[stop];
+            if (b == field || b == repetition) {
+                break;
+            }
+            if (b == component) {
+                if (++n > components) {
+                    break;
+                }
+                buf[stop] = '^';
+            } else {
+                last = stop + 1;
+            }
+        }
+        int length = last - p;
+        if (length == 2 && buf[p] == '"' && buf[p + 1] == '"') {
+            length = 0;
+        }
+        offsets[i] = p;
+        lengths[i] = length;
+    }
+
+    /** Whether {@code [p, end)} is the time and offset part of an HL7 timestamp. */
+    private boolean isTime(int p, int end) {
+        for (; p < end; p++) {
+            byte b = buf[p];
+            if ((b < '0' || b > '9') && b != '.' && b != '+' && b != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Start of the field {@code n} fields after the one that starts at {@code p}, or -1 if the segment ends first. */
+    private int nextField(int p, int end, int n) {
+        for (; p < end; p++) {
+            if (buf[p] == field && --n == 0) {
+                return p + 1;
+            }
+        }
+        return -1;
+    }
+
+    private int fieldEnd(int p, int end) {
+        while (p < end && buf[p] != field) {
+            p++;
+        }
+        return p;
+    }
+
+    private boolean isMsh(int start, int end) {
+        return end - start >= 4 && buf[start] == 'M' && buf[start + 1] == 'S' && buf[start + 2] == 'H';
+    }
+
+    private boolean isPid(int start, int end) {
+        return end - start >= 3 && buf[start] == 'P' && buf[start + 1] == 'I' && buf[start + 2] == 'D'
+                && (end - start == 3 || buf[start + 3] == field);
+    }
+
+    /**
+     * The end of the segment that starts at {@link #pos}, reading further into the window as needed.
+     *
+     * @return the index of the byte that ends the segment, or -1 if the segment does not fit the window
+     */
+    private int segmentEnd() throws IOException {
+        int p = pos;
+        while (true) {
+            while (p < limit && !isEnd(buf[p])) {
+                p++;
+            }
+            if (p < limit) {
+                return p;
+            }
+            if (pos == 0 && limit == buf.length) {
+                return -1;
+            }
+            int shift = pos;
+            boolean more = fill();
+            p -= shift;
+            if (!more) {
+                return limit;
+            }
+        }
+    }
+
+    /** Discards the rest of a segment too long for the window. */
+    private void skipSegment() throws IOException {
+        while (true) {
+            int p = pos;
+            while (p < limit && !isEnd(buf[p])) {
+                p++;
+            }
+            pos = p;
+            if (p < limit || !fill()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops the bytes before {@link #pos} and reads more of the stream behind the rest.
+     *
+     * @return false at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            base += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        if (eof) {
+            return false;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    static boolean isEnd(byte b) {
+        return b == '\r' || b == '\n' || b == START_BLOCK || b == END_BLOCK;
+    }
+}
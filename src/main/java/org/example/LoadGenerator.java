@@ -0,0 +1,293 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Replays the test plan fixtures against a checkcase endpoint and reports latency percentiles
+ * per load step.
+ * <p>
+ * <b>Open loop</b> sends at a fixed schedule whatever the server does, and measures each latency
+ * from the moment the request was <em>due</em>, so a stalled server is charged for every request
+ * it delayed. <b>Closed loop</b> runs a fixed number of workers that each wait for a response
+ * before sending again; when paced with a rate, the stall of each worker is back-filled with
+ * {@link LatencyHistogram#recordCorrected}. Either way the percentiles are free of coordinated
+ * omission.
+ * <p>
+ * Each mode runs a series of steps (rates or concurrency levels) and prints one row per step, which
+ * is the throughput-versus-latency curve used for capacity planning.
+ */
+public final class LoadGenerator {
+
+    public enum Mode { OPEN, CLOSED }
+
+    /** One request per nanosecond: an open loop cannot schedule sends any closer together. */
+    static final long MAX_RATE = TimeUnit.SECONDS.toNanos(1);
+
+    /** Settings for one run; see {@link #parse(String[])} for the command-line form. */
+    public static final class Options {
+        public URI uri;
+        public Mode mode = Mode.OPEN;
+        public long[] steps = {1_000, 2_000, 4_000};
+        public long rate;
+        public Duration duration = Duration.ofSeconds(10);
+        public Duration warmup = Duration.ofSeconds(2);
+        public Duration timeout = Duration.ofSeconds(30);
+        public double invalidRatio = 0.3;
+        public Path fixtures = Path.of("src/test/resources");
+        public int maxInFlight = 10_000;
+        public long seed = 42;
+        public boolean local;
+    }
+
+    /** Result of one load step. */
+    public record Step(long target, long sent, long errors, long mismatches, double seconds, LatencyHistogram latency) {
+
+        public double throughput() {
+            return sent / seconds;
+        }
+    }
+
+    private record Payload(byte[] body, int expectedStatus) {
+    }
+
+    private final Options options;
+    private final HttpClient client;
+    private final List<Payload> valid = new ArrayList<>();
+    private final List<Payload> invalid = new ArrayList<>();
+
+    public LoadGenerator(Options options, HttpClient client) throws IOException {
+        this.options = options;
+        this.client = client;
+        CaseValidator validator = new CaseValidator();
+        CaseVerdict verdict = new CaseVerdict();
+        try (Stream<Path> files = Files.list(options.fixtures)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                byte[] body = Files.readAllBytes(file);
+                validator.validate(body, verdict);
+                (verdict.isValid() ? valid : invalid).add(new Payload(body, verdict.status()));
+            }
+        }
+        if (valid.isEmpty() || invalid.isEmpty()) {
+            throw new IllegalArgumentException("Need both valid and invalid fixtures in " + options.fixtures);
+        }
+    }
+
+    /** Runs the warm-up and every step, returning one result per step. */
+    public List<Step> run() throws InterruptedException {
+        if (!options.warmup.isZero()) {
+            step(options.steps[0], options.warmup);
+        }
+        List<Step> results = new ArrayList<>();
+        for (long step : options.steps) {
+            results.add(step(step, options.duration));
+        }
+        return results;
+    }
+
+    private Step step(long level, Duration duration) throws InterruptedException {
+        return options.mode == Mode.OPEN ? openLoop(level, duration) : closedLoop((int) level, duration);
+    }
+
+    private Step openLoop(long rate, Duration duration) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        LongAdder mismatches = new LongAdder();
+        Semaphore inFlight = new Semaphore(options.maxInFlight);
+        SplittableRandom random = new SplittableRandom(options.seed);
+        double interval = (double) TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long sent = 0;
+        // Due times count from the start rather than adding a rounded interval, which would be zero
+        // above a billion per second and would drift for rates that do not divide a second.
+        for (long due = start; due < end; due = start + (long) (sent * interval)) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // Blocking here is safe: latency is measured from the due time, not the send time.
+            inFlight.acquire();
+            Payload payload = pick(random);
+            long scheduled = due;
+            client.sendAsync(request(payload), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        latency.record(System.nanoTime() - scheduled);
+                        count(payload, response, failure, errors, mismatches);
+                        inFlight.release();
+                    });
+            sent++;
+        }
+        inFlight.acquire(options.maxInFlight);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Step(rate, sent, errors.sum(), mismatches.sum(), seconds, latency);
+    }
+
+    private Step closedLoop(int concurrency, Duration duration) {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        LongAdder mismatches = new LongAdder();
+        LongAdder sent = new LongAdder();
+        long interval = options.rate > 0 ? TimeUnit.SECONDS.toNanos(1) * concurrency / options.rate : 0;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                SplittableRandom random = new SplittableRandom(options.seed + w);
+                workers.submit(() -> {
+                    long due = System.nanoTime();
+                    while (due < end) {
+                        long wait = due - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        Payload payload = pick(random);
+                        long sentAt = System.nanoTime();
+                        HttpResponse<Void> response = null;
+                        Throwable failure = null;
+                        try {
+                            response = client.send(request(payload), HttpResponse.BodyHandlers.discarding());
+                        } catch (IOException | InterruptedException e) {
+                            failure = e;
+                        }
+                        latency.recordCorrected(System.nanoTime() - sentAt, interval);
+                        count(payload, response, failure, errors, mismatches);
+                        sent.increment();
+                        due = interval > 0 ? due + interval : System.nanoTime();
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Step(concurrency, sent.sum(), errors.sum(), mismatches.sum(), seconds, latency);
+    }
+
+    private Payload pick(SplittableRandom random) {
+        List<Payload> from = random.nextDouble() < options.invalidRatio ? invalid : valid;
+        return from.get(random.nextInt(from.size()));
+    }
+
+    private HttpRequest request(Payload payload) {
+        return HttpRequest.newBuilder(options.uri)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .timeout(options.timeout)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload.body()))
+                .build();
+    }
+
+    private static void count(Payload payload, HttpResponse<?> response, Throwable failure,
+                              LongAdder errors, LongAdder mismatches) {
+        if (failure != null || response == null) {
+            errors.increment();
+        } else if (response.statusCode() != payload.expectedStatus()) {
+            mismatches.increment();
+        }
+    }
+
+    /** Prints the throughput-versus-latency table, latencies in milliseconds. */
+    public static void print(Options options, List<Step> steps, PrintStream out) {
+        out.printf("%s loop against %s, %.0f%% invalid%n", options.mode.name().toLowerCase(), options.uri,
+                options.invalidRatio * 100);
+        out.printf("%10s %12s %10s %8s %8s %9s %9s %9s %9s%n",
+                options.mode == Mode.OPEN ? "target/s" : "workers", "achieved/s", "sent", "errors",
+                "mismatch", "p50", "p99", "p99.9", "max");
+        for (Step step : steps) {
+            LatencyHistogram h = step.latency();
+            out.printf("%10d %12.0f %10d %8d %8d %9.3f %9.3f %9.3f %9.3f%n",
+                    step.target(), step.throughput(), step.sent(), step.errors(), step.mismatches(),
+                    h.percentile(50) / 1e6, h.percentile(99) / 1e6, h.percentile(99.9) / 1e6, h.max() / 1e6);
+        }
+    }
+
+    /**
+     * Parses {@code --uri <base> --mode open|closed --rates 1000,2000 --concurrency 8,64
+     * --rate <r> --duration <s> --warmup <s> --timeout <s> --invalid-ratio <0..1> --fixtures <dir>
+     * --seed <n> --local}. The base URI defaults to {@code -Dcheckcase.baseUri}, then to the local server.
+     */
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        String base = System.getProperty("checkcase.baseUri", "http://localhost:" + CaseServer.DEFAULT_PORT);
+        long[] rates = null;
+        long[] concurrency = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--local")) {
+                options.local = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--uri" -> base = value;
+                case "--mode" -> options.mode = Mode.valueOf(value.toUpperCase());
+                case "--rates" -> rates = positive(arg, value, MAX_RATE);
+                case "--concurrency" -> concurrency = positive(arg, value, Integer.MAX_VALUE);
+                case "--rate" -> options.rate = Long.parseLong(value);
+                case "--duration" -> options.duration = Duration.ofSeconds(Long.parseLong(value));
+                case "--warmup" -> options.warmup = Duration.ofSeconds(Long.parseLong(value));
+                case "--timeout" -> options.timeout = Duration.ofSeconds(Long.parseLong(value));
+                case "--invalid-ratio" -> options.invalidRatio = Double.parseDouble(value);
+                case "--fixtures" -> options.fixtures = Path.of(value);
+                case "--max-in-flight" -> options.maxInFlight = Integer.parseInt(value);
+                case "--seed" -> options.seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (options.rate < 0) {
+            throw new IllegalArgumentException("--rate must not be negative: " + options.rate);
+        }
+        if (options.mode == Mode.CLOSED) {
+            options.steps = concurrency != null ? concurrency : new long[]{1, 8, 64};
+        } else if (rates != null) {
+            options.steps = rates;
+        }
+        options.uri = URI.create(base + CaseServer.CHECKCASE_PATH);
+        return options;
+    }
+
+    /**
+     * Parses a comma-separated list of steps; a rate or concurrency of zero or less cannot be run,
+     * nor one over {@code max}.
+     */
+    private static long[] positive(String option, String csv, long max) {
+        long[] values = Stream.of(csv.split(",")).mapToLong(s -> Long.parseLong(s.trim())).toArray();
+        for (long value : values) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(option + " must be positive: " + value);
+            }
+            if (value > max) {
+                throw new IllegalArgumentException(option + " must be at most " + max + ": " + value);
+            }
+        }
+        return values;
+    }
+
+    /** Builds a client suited to the target: HTTP/1.1 keep-alive for plain HTTP, HTTP/2 for TLS. */
+    public static HttpClient client(URI uri, ExecutorService executor) {
+        return HttpClient.newBuilder()
+                .version("https".equals(uri.getScheme()) ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+    }
+}
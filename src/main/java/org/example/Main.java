@@ -1,17 +1,349 @@
 package org.example;
 
-//TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
-// click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Command-line entry point.
+ * <pre>
+ *   serve [port] [options]              run the checkcase server (default port 8080, or $PORT);
+ *                                       --dedupe answers 409 to an already accepted case_id,
+ *                                       --cache answers resubmitted bodies from a verdict cache,
+ *                                       --reference reloads the code lists from a file as it changes,
+ *                                       --log keeps every case in a durable {@link CaseLog},
+ *                                       --join or --cluster runs a node of a {@link CaseCluster},
+ *                                       --adaptive-limit sheds load over an {@link AdaptiveLimiter},
+ *                                       --capture records every exchange in a {@link TrafficTrace},
+ *                                       --patients flags batch lines that contradict a {@link PatientIndex}
+ *   validate &lt;file&gt; [options]          validate an NDJSON or JSON-array case export, or the PID
+ *                                       segments of an HL7 v2 message file, see {@link BulkValidator};
+ *                                       --report writes the failures to a file, --patients also
+ *                                       reports records that contradict a {@link PatientIndex}
+ *   load [options]                      replay the fixtures against a server, see {@link LoadGenerator#parse}
+ *   fuzz record|check &lt;oracle&gt; [options] record fuzz verdicts of a reference, or compare against them,
+ *                                       see {@link DifferentialFuzzer}
+ *   replay &lt;trace&gt; [options]            play a captured trace back and diff it, see {@link TrafficReplay#parse}
+ *   startup [options] [-- jvm options]  time a fresh server to its first valid answer, see {@link StartupBenchmark}
+ *   train [fixtures]                    the training run of the cold-start profile's AOT cache
+ * </pre>
+ */
 public class Main {
-    public static void main(String[] args) {
-        //TIP Press <shortcut actionId="ShowIntentionActions"/> with your caret at the highlighted text
-        // to see how IntelliJ IDEA suggests fixing it.
-        System.out.printf("Hello and welcome!");
 
-        for (int i = 1; i <= 5; i++) {
-            //TIP Press <shortcut actionId="Debug"/> to start debugging your code. We have set one <icon src="AllIcons.Debugger.Db_set_breakpoint"/> breakpoint
-            // for you, but you can always add more by pressing <shortcut actionId="ToggleLineBreakpoint"/>.
-            System.out.println("i = " + i);
+    private static final String USAGE = """
+            Usage:
+              serve [port] [--dedupe] [--patients <capacity>] [--off-heap] [--cache <entries> [--cache-ttl s]]
+                    [--reference <file>] [--log <dir>] [--cluster | --join <member>] [--advertise <uri>]
+                    [--adaptive-limit] [--capture <trace>]
+              validate <file> [--report <out>] [--patients <capacity>]
+              load [--uri <base>] [--local] [--mode open|closed] [--rates r1,r2] [--concurrency c1,c2]
+                   [--rate r] [--duration s] [--warmup s] [--timeout s] [--invalid-ratio f] [--fixtures dir]
+              fuzz record <oracle> [--uri <base>] [--cases n] [--seed s] [--fixtures dir] [--threads n]
+              fuzz check <oracle> [--uri <base>] [--minimize] [--max-reports n] [--fixtures dir] [--threads n]
+              replay <trace> [--uri <base>] [--local] [--speed n|max] [--timeout s] [--max-mismatches n]
+              startup [--runs n] [--fixture file] [--timeout s] [-- <server JVM options>]
+              train [fixtures]""";
+
+    private static final Duration RELOAD_INTERVAL = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String command = args.length > 0 ? args[0] : "serve";
+        switch (command) {
+            case "serve" -> {
+                int status = serve(args);
+                if (status != 0) {
+                    System.exit(status);
+                }
+            }
+            case "validate" -> System.exit(validate(args));
+            case "load" -> load(Arrays.copyOfRange(args, 1, args.length));
+            case "fuzz" -> System.exit(fuzz(args));
+            case "replay" -> System.exit(replay(Arrays.copyOfRange(args, 1, args.length)));
+            case "startup" -> startup(Arrays.copyOfRange(args, 1, args.length));
+            case "train" -> StartupBenchmark.train(Path.of(args.length > 1 ? args[1] : "src/test/resources"));
+            default -> {
+                System.err.println("Unknown command: " + command);
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
+    }
+
+    /**
+     * Starts the server and returns while it runs.
+     *
+     * @return 0 once the server is listening, 2 on bad usage
+     */
+    private static int serve(String[] args) throws IOException {
+        CaseServer.Options options = new CaseServer.Options();
+        int port = System.getenv("PORT") != null ? Integer.parseInt(System.getenv("PORT")) : CaseServer.DEFAULT_PORT;
+        boolean dedupe = false;
+        boolean offHeap = false;
+        int cacheEntries = 0;
+        Duration cacheTtl = Duration.ZERO;
+        Path reference = null;
+        Path log = null;
+        boolean cluster = false;
+        URI join = null;
+        URI advertise = null;
+        boolean adaptiveLimit = false;
+        Path capture = null;
+        long patients = 0;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dedupe" -> dedupe = true;
+                case "--off-heap" -> offHeap = true;
+                case "--cache" -> cacheEntries = Integer.parseInt(args[++i]);
+                case "--cache-ttl" -> cacheTtl = Duration.ofSeconds(Long.parseLong(args[++i]));
+                case "--reference" -> reference = Path.of(args[++i]);
+                case "--log" -> log = Path.of(args[++i]);
+                case "--cluster" -> cluster = true;
+                case "--join" -> join = URI.create(args[++i]);
+                case "--advertise" -> advertise = URI.create(args[++i]);
+                case "--adaptive-limit" -> adaptiveLimit = true;
+                case "--capture" -> capture = Path.of(args[++i]);
+                case "--patients" -> patients = Long.parseLong(args[++i]);
+                default -> {
+                    if (!args[i].matches("\\d{1,5}") || Integer.parseInt(args[i]) > 65_535) {
+                        System.err.println(USAGE);
+                        return 2;
+                    }
+                    port = Integer.parseInt(args[i]);
+                }
+            }
+        }
+        options.address = new InetSocketAddress(port);
+        Supplier<ReferenceData> referenceData = reference != null
+                ? new ReferenceDataReloader(reference, System.err::println).watch(RELOAD_INTERVAL)
+                : ReferenceData::defaults;
+        options.validator = new CaseValidator(referenceData, options.metrics);
+        if (dedupe) {
+            options.caseIds = new CaseIdIndex(CaseIdIndex.DEFAULT_EXPECTED, offHeap);
+        }
+        if (patients > 0) {
+            options.patients = new PatientIndex(patients, offHeap);
+        }
+        if (cacheEntries > 0) {
+            options.cache = new ValidationCache(options.validator, cacheEntries, cacheTtl);
+        }
+        if (log != null) {
+            options.log = CaseLog.open(log);
+        }
+        if (adaptiveLimit) {
+            options.limiter = new AdaptiveLimiter();
+        }
+        if (cluster || join != null) {
+            options.cluster = new CaseCluster(advertise);
+        }
+        if (capture != null) {
+            options.capture = new TrafficTrace.Writer(capture);
+        }
+        CaseServer server = CaseServer.start(options);
+        if (join != null) {
+            options.cluster.join(join);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            if (options.log != null) {
+                options.log.close();
+            }
+            if (options.capture != null) {
+                try {
+                    options.capture.close();
+                } catch (IOException e) {
+                    System.err.println("Cannot finish trace: " + e);
+                }
+            }
+        }));
+        System.out.println("checkcase listening on " + server.baseUri() + CaseServer.CHECKCASE_PATH
+                + ", metrics on " + server.baseUri() + CaseServer.METRICS_PATH);
+        if (options.cluster != null) {
+            System.out.println("cluster members: " + options.cluster.members());
+        }
+        return 0;
+    }
+
+    private static void load(String[] args) throws IOException, InterruptedException {
+        LoadGenerator.Options options = LoadGenerator.parse(args);
+        CaseServer local = options.local ? CaseServer.start(0) : null;
+        if (local != null) {
+            options.uri = URI.create(local.baseUri() + CaseServer.CHECKCASE_PATH);
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = LoadGenerator.client(options.uri, executor)) {
+            List<LoadGenerator.Step> steps = new LoadGenerator(options, client).run();
+            LoadGenerator.print(options, steps, System.out);
+        } finally {
+            if (local != null) {
+                local.close();
+            }
+        }
+    }
+
+    /** @return the process exit code: 0 if the replay matched the trace, 1 otherwise */
+    private static int replay(String[] args) throws IOException, InterruptedException {
+        TrafficReplay.Options options = TrafficReplay.parse(args);
+        // A local target captures its own trace, so its handling times can be diffed against the recorded ones.
+        Path served = options.local ? Files.createTempFile("checkcase-replay", ".trace") : null;
+        TrafficTrace.Writer capture = served != null ? new TrafficTrace.Writer(served) : null;
+        CaseServer local = null;
+        if (served != null) {
+            CaseServer.Options server = new CaseServer.Options();
+            server.address = new InetSocketAddress(0);
+            server.capture = capture;
+            local = CaseServer.start(server);
+            options.baseUri = URI.create(local.baseUri());
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = LoadGenerator.client(options.baseUri, executor)) {
+            TrafficReplay.Result result = new TrafficReplay(options, client).run(TrafficTrace.open(options.trace));
+            if (local != null) {
+                local.close();
+                local = null;
+                capture.close();
+                result = result.withServed(TrafficTrace.open(served));
+            }
+            TrafficReplay.print(options, result, System.out);
+            return result.errors() == 0 && result.mismatchCount() == 0 ? 0 : 1;
+        } finally {
+            if (local != null) {
+                local.close();
+            }
+            if (capture != null) {
+                capture.close();
+                Files.deleteIfExists(served);
+            }
+        }
+    }
+
+    private static void startup(String[] args) throws IOException, InterruptedException {
+        StartupBenchmark.Options options = StartupBenchmark.parse(args);
+        StartupBenchmark.print(options, new StartupBenchmark(options).run(), System.out);
+    }
+
+    /**
+     * Records an oracle file with {@code --uri} (default: the in-process validator), or checks
+     * {@code --uri} (default: in-process) against one, minimizing mismatches against the oracle's
+     * source with {@code --minimize}.
+     *
+     * @return the process exit code: 0 if recorded or no mismatches, 1 on mismatches, 2 on bad usage
+     */
+    private static int fuzz(String[] args) throws IOException {
+        if (args.length < 3 || !(args[1].equals("record") || args[1].equals("check"))) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Path oracle = Path.of(args[2]);
+        URI uri = null;
+        long cases = 1_000_000;
+        long seed = 42;
+        Path fixtures = Path.of("src/test/resources");
+        int threads = 0;
+        boolean minimize = false;
+        int maxReports = 20;
+        for (int i = 3; i < args.length; i++) {
+            switch (args[i]) {
+                case "--uri" -> uri = URI.create(args[++i]);
+                case "--cases" -> cases = Long.parseLong(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--fixtures" -> fixtures = Path.of(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--minimize" -> minimize = true;
+                case "--max-reports" -> maxReports = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    return 2;
+                }
+            }
+        }
+        if (threads == 0) {
+            // Remote targets spend their time waiting, so keep many more cases in flight.
+            threads = uri == null ? Runtime.getRuntime().availableProcessors() : 64;
+        }
+        List<CaseValidationClient> clients = new ArrayList<>();
+        try (DifferentialFuzzer fuzzer = new DifferentialFuzzer(CaseMutator.fromFixtures(fixtures), threads)) {
+            DifferentialFuzzer.Target target = fuzzTarget(uri, clients);
+            DifferentialFuzzer.Summary summary;
+            if (args[1].equals("record")) {
+                summary = fuzzer.record(target, uri == null ? DifferentialFuzzer.LOCAL : uri.toString(), seed, cases, oracle);
+            } else {
+                String source = DifferentialFuzzer.oracle(oracle).source();
+                DifferentialFuzzer.Target reference = !minimize ? null
+                        : fuzzTarget(source.equals(DifferentialFuzzer.LOCAL) ? null : URI.create(source), clients);
+                summary = fuzzer.check(oracle, target, reference, maxReports);
+            }
+            DifferentialFuzzer.print(summary, System.out);
+            return summary.mismatchCount() == 0 ? 0 : 1;
+        } finally {
+            clients.forEach(CaseValidationClient::close);
+        }
+    }
+
+    private static DifferentialFuzzer.Target fuzzTarget(URI uri, List<CaseValidationClient> clients) {
+        if (uri == null) {
+            return DifferentialFuzzer.Target.local(new CaseValidator());
+        }
+        CaseValidationClient.Options options = new CaseValidationClient.Options();
+        options.baseUri = uri;
+        CaseValidationClient client = new CaseValidationClient(options);
+        clients.add(client);
+        return DifferentialFuzzer.Target.remote(client);
+    }
+
+    /**
+     * Prints a summary to stdout and the failing offsets to stdout or the {@code --report} file.
+     *
+     * @return the process exit code: 0 if every record is valid, 1 otherwise
+     */
+    private static int validate(String[] args) throws IOException {
+        if (args.length < 2 || args.length % 2 != 0) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Path reportFile = null;
+        PatientIndex patients = null;
+        for (int i = 2; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--report" -> reportFile = Path.of(args[i + 1]);
+                case "--patients" -> patients = new PatientIndex(Long.parseLong(args[i + 1]), false);
+                default -> {
+                    System.err.println(USAGE);
+                    return 2;
+                }
+            }
+        }
+        BulkReport report = new BulkValidator(new CaseValidator(), BulkValidator.DEFAULT_CHUNK_BYTES,
+                ForkJoinPool.commonPool(), patients).validate(Path.of(args[1]));
+        report.printSummary(System.out);
+        if (reportFile != null) {
+            try (PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(reportFile)), false)) {
+                report.printFailures(out);
+                report.printFlagged(out);
+            }
+        } else {
+            if (report.invalid() > 0) {
+                System.out.println("failures (offset, message):");
+                report.printFailures(System.out);
+            }
+            if (report.flagged() > 0) {
+                System.out.println("flagged (offset, message):");
+                report.printFlagged(System.out);
+            }
         }
+        // Flagged records are valid, so they do not fail the run.
+        return report.invalid() == 0 ? 0 : 1;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only memory mapping of a whole file of any size. A single {@link MappedByteBuffer} is
+ * limited to 2 GiB, so the file is mapped as consecutive 1 GiB segments and reads that cross a
+ * segment edge are stitched together.
+ */
+final class MappedFile {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = (int) (SEGMENT_BYTES - 1);
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private MappedFile(MappedByteBuffer[] segments, long size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    static MappedFile map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int count = (int) ((size + SEGMENT_BYTES - 1) >>> SEGMENT_SHIFT);
+        MappedByteBuffer[] segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long position = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_BYTES, size - position));
+        }
+        return new MappedFile(segments, size);
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) position & SEGMENT_MASK);
+    }
+
+    /** Copies {@code len} bytes starting at file {@code position} into {@code dst}. */
+    void get(long position, byte[] dst, int off, int len) {
+        while (len > 0) {
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int index = (int) position & SEGMENT_MASK;
+            int n = Math.min(len, segment.limit() - index);
+            segment.get(index, dst, off, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/** Serves {@code GET /metrics}: {@link CaseMetrics#scrape()} for a Prometheus scraper. */
+final class MetricsHandler implements HttpHandler {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final CaseMetrics metrics;
+
+    MetricsHandler(CaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!CaseServer.METRICS_PATH.equals(exchange.getRequestURI().getPath())) {
+                CheckCaseHandler.send(exchange, 404, CheckCaseHandler.NOT_FOUND);
+                return;
+            }
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                CheckCaseHandler.send(exchange, 405, CheckCaseHandler.METHOD_NOT_ALLOWED);
+                return;
+            }
+            byte[] body = metrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The patient_name and dob first seen with each patient, used to flag valid cases that contradict
+ * an earlier case of the same patient: data-quality errors that no field format rule can catch.
+ * <p>
+ * A patient is the normalized patient_id: its ID number without leading zeros, assigning authority
+ * and assigning facility; the check digit and identifier type are left out. It is kept as a 64-bit
+ * hash next to a 64-bit fingerprint of the dob and of the family and given names, compared without
+ * regard to ASCII case, so a middle name that one system leaves out does not count as a difference.
+ * A hash collision between two patients is expected about once in 2<sup>64</sup> / n<sup>2</sup>
+ * cases for n patients, so tens of millions of them still collide rarely.
+ * <p>
+ * Memory is fixed when the index is built: 16 bytes per slot in primitive {@code long}s, on or off
+ * the heap, with a quarter more slots than the capacity, rounded up to a power of two. The slots
+ * are grouped in buckets of {@value #WAYS}, and a patient goes to the emptier of two; once both are
+ * full, a new patient replaces one of theirs at random, so the index forgets some patients instead
+ * of growing. Buckets are spread over {@value #SEGMENTS} independently locked segments, as in
+ * {@link CaseIdIndex}.
+ */
+public final class PatientIndex {
+
+    public static final long DEFAULT_CAPACITY = 1 << 24;
+
+    public static final String NAME_MESSAGE = "Inconsistent patient_name";
+    public static final String DOB_MESSAGE = "Inconsistent dob";
+    public static final String BOTH_MESSAGE = "Inconsistent patient_name and dob";
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int WAYS = 8;
+    // A direct buffer holds at most 2 GiB; 2^23 buckets of 8 slots of 16 bytes is 1 GiB.
+    private static final int MAX_BUCKETS = 1 << 23;
+    private static final int NAME_BITS = 37;
+    private static final long NAME_MASK = (1L << NAME_BITS) - 1;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final boolean offHeap;
+    private final LongAdder names = new LongAdder();
+    private final LongAdder dobs = new LongAdder();
+
+    public PatientIndex() {
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * @param capacity number of patients to size the table for
+     * @param offHeap  whether to keep the table in direct buffers rather than on the Java heap
+     */
+    public PatientIndex(long capacity, boolean offHeap) {
+        this.offHeap = offHeap;
+        // A quarter more slots than patients, as buckets fill unevenly and overflow before the table is full.
+        long slots = Math.max(capacity, 1) * 5 / 4 / SEGMENTS + 1;
+        int buckets = (int) Math.min(Long.highestOneBit((slots + WAYS - 1) / WAYS * 2 - 1), MAX_BUCKETS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(buckets);
+        }
+    }
+
+    /**
+     * Checks a case that {@link CaseValidator} found valid against the first case of its patient,
+     * and records it if it is the first.
+     *
+     * @return the {@link CaseField#bit()}s of {@link CaseField#PATIENT_NAME} and {@link CaseField#DOB}
+     * if they differ from the first case's, or 0
+     */
+    public int check(byte[] json, int off, int len) {
+        int end = off + len;
+        int p = CaseValidator.skipSpace(json, CaseValidator.skipBom(json, off, end), end) + 1;
+        int[] offsets = new int[3];
+        int[] lengths = new int[3];
+        int found = 0;
+        while (true) {
+            p = CaseValidator.skipSpace(json, p, end);
+            if (p >= end || json[p] != '"') {
+                break;
+            }
+            int keyEnd = CaseValidator.scanString(json, p + 1, end);
+            if (keyEnd < 0) {
+                return 0;
+            }
+            CaseField field = CaseField.match(json, p + 1, keyEnd - p - 1);
+            p = CaseValidator.skipSpace(json, CaseValidator.skipSpace(json, keyEnd + 1, end) + 1, end);
+            int valueEnd = p < end && json[p] == '"' ? CaseValidator.scanString(json, p + 1, end) : -1;
+            if (valueEnd < 0) {
+                return 0;
+            }
+            int i = field == CaseField.PATIENT_ID ? 0 : field == CaseField.PATIENT_NAME ? 1 : field == CaseField.DOB ? 2 : -1;
+            if (i >= 0) {
+                offsets[i] = p + 1;
+                lengths[i] = valueEnd - p - 1;
+                found |= 1 << i;
+            }
+            p = CaseValidator.skipSpace(json, valueEnd + 1, end);
+            if (p >= end || json[p] != ',') {
+                break;
+            }
+            p++;
+        }
+        if (found != 0b111) {
+            return 0;
+        }
+        return check(json, offsets[0], lengths[0], json, offsets[1], lengths[1], json, offsets[2], lengths[2]);
+    }
+
+    /**
+     * Checks the raw values of a patient's valid patient_id, patient_name and dob against the first
+     * ones seen with that patient_id, and records them if they are the first.
+     *
+     * @return the {@link CaseField#bit()}s of the fields that differ, or 0
+     */
+    public int check(byte[] id, int idOff, int idLen, byte[] name, int nameOff, int nameLen,
+                     byte[] dob, int dobOff, int dobLen) {
+        long key = key(id, idOff, idLen);
+        long fingerprint = (long) date(dob, dobOff, dobLen) << NAME_BITS | nameHash(name, nameOff, nameLen) & NAME_MASK;
+        long stored = segments[(int) (key >>> (64 - SEGMENT_BITS))].putIfAbsent(key, fingerprint);
+        int mismatch = 0;
+        if (stored != fingerprint) {
+            if ((stored & NAME_MASK) != (fingerprint & NAME_MASK)) {
+                mismatch |= CaseField.PATIENT_NAME.bit();
+                names.increment();
+            }
+            if (stored >>> NAME_BITS != fingerprint >>> NAME_BITS) {
+                mismatch |= CaseField.DOB.bit();
+                dobs.increment();
+            }
+        }
+        return mismatch;
+    }
+
+    /** The flag for a non-zero result of {@link #check}, e.g. {@value #DOB_MESSAGE}. */
+    public static String message(int mismatch) {
+        boolean name = (mismatch & CaseField.PATIENT_NAME.bit()) != 0;
+        boolean dob = (mismatch & CaseField.DOB.bit()) != 0;
+        return name && dob ? BOTH_MESSAGE : name ? NAME_MESSAGE : DOB_MESSAGE;
+    }
+
+    /** Cases flagged so far because their {@link CaseField#PATIENT_NAME} or {@link CaseField#DOB} differed. */
+    public long inconsistent(CaseField field) {
+        return field == CaseField.PATIENT_NAME ? names.sum() : field == CaseField.DOB ? dobs.sum() : 0;
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /** Patients replaced by another in a full bucket. */
+    public long evictions() {
+        long evictions = 0;
+        for (Segment segment : segments) {
+            evictions += segment.evictions();
+        }
+        return evictions;
+    }
+
+    /** Bytes held by the tables, on or off the heap. */
+    public long tableBytes() {
+        return (long) SEGMENTS * segments[0].buckets * WAYS * 16L;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /** A non-zero hash of the ID number, authority and facility of {@code ID^CheckDigit^Authority^IdType^Facility}. */
+    static long key(byte[] buf, int off, int len) {
+        int end = off + len;
+        long id = 0;
+        int p = off;
+        for (; p < end && buf[p] != '^'; p++) {
+            id = id * 10 + (buf[p] - '0');
+        }
+        long scope = 0xCBF29CE484222325L;
+        for (int component = 0; p < end; p++) {
+            byte b = buf[p];
+            if (b == '^') {
+                component++;
+                if (component == 4) {
+                    scope = (scope ^ 0xFF) * 0x100000001B3L;
+                }
+            } else if (component == 2 || component == 4) {
+                scope = (scope ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+        }
+        long key = CaseIdIndex.mix(id, scope);
+        return key != 0 ? key : 1;
+    }
+
+    /** The digits of {@code YYYYMMDD} as a number, at most 27 bits. */
+    private static int date(byte[] buf, int off, int len) {
+        int value = 0;
+        for (int i = 0; i < Math.min(len, 8); i++) {
+            value = value * 10 + (buf[off + i] - '0');
+        }
+        return value;
+    }
+
+    /** A hash of the family and given names, with ASCII letters folded to lower case. */
+    private static long nameHash(byte[] buf, int off, int len) {
+        long hash = 0xCBF29CE484222325L;
+        int component = 0;
+        for (int p = off; p < off + len; p++) {
+            byte b = buf[p];
+            if (b == '^' && ++component == 2) {
+                break;
+            }
+            hash = (hash ^ (b >= 'A' && b <= 'Z' ? b | 0x20 : b & 0xFF)) * 0x100000001B3L;
+        }
+        return CaseIdIndex.mix(hash, 0);
+    }
+
+    private final class Segment {
+
+        private final LongBuffer table;
+        private final int buckets;
+        private int size;
+        private long evictions;
+
+        Segment(int buckets) {
+            this.buckets = buckets;
+            int longs = buckets * WAYS * 2;
+            table = offHeap
+                    ? ByteBuffer.allocateDirect(longs * 8).order(ByteOrder.nativeOrder()).asLongBuffer()
+                    : LongBuffer.wrap(new long[longs]);
+        }
+
+        /** @return the fingerprint stored for {@code key}, which is {@code fingerprint} if it was not there yet */
+        synchronized long putIfAbsent(long key, long fingerprint) {
+            // Each key may sit in either of two buckets, and a new one goes to the emptier: that evens
+            // the buckets out, so few overflow before the table is nearly full.
+            int first = ((int) key & (buckets - 1)) * WAYS * 2;
+            int second = ((int) (key >>> 24) & (buckets - 1)) * WAYS * 2;
+            int inFirst = find(first, key);
+            int inSecond = inFirst >= 0 ? inFirst : find(second, key);
+            if (inSecond >= 0) {
+                return table.get(inSecond + 1);
+            }
+            int usedFirst = -inFirst - 1;
+            int usedSecond = -inSecond - 1;
+            int slot;
+            if (Math.min(usedFirst, usedSecond) < WAYS) {
+                slot = usedFirst <= usedSecond ? first + usedFirst * 2 : second + usedSecond * 2;
+                size++;
+            } else {
+                slot = ((key >>> 50 & 1) == 0 ? first : second) + ((int) (key >>> 47) & (WAYS - 1)) * 2;
+                evictions++;
+            }
+            table.put(slot, key);
+            table.put(slot + 1, fingerprint);
+            return fingerprint;
+        }
+
+        /**
+         * A bucket fills from its first slot and slots are only ever replaced, so an empty slot ends the search.
+         *
+         * @return the slot holding {@code key}, or -1 minus the number of slots in use
+         */
+        private int find(int bucket, long key) {
+            for (int way = 0; way < WAYS; way++) {
+                long k = table.get(bucket + way * 2);
+                if (k == key) {
+                    return bucket + way * 2;
+                }
+                if (k == 0) {
+                    return -way - 1;
+                }
+            }
+            return -WAYS - 1;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long evictions() {
+            return evictions;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Immutable snapshot of the code lists behind REQ-4 and REQ-7: the allowed tissue types and the
+ * patient_id assigning authorities, identifier type prefixes and assigning facilities.
+ * <p>
+ * Snapshots are read from a properties file with one comma-separated list per key:
+ * <pre>
+ *   tissue_type=breast,colon,kidney,lung,prostate,skin
+ *   assigning_authority=ISO
+ *   id_type=NN
+ *   assigning_facility=MC
+ * </pre>
+ * The built-in defaults are {@code reference-data.properties} on the classpath. See
+ * {@link ReferenceDataReloader} to swap snapshots while the validator is in use.
+ */
+public final class ReferenceData {
+
+    public static final String RESOURCE = "reference-data.properties";
+
+    /**
+     * Read on the first call to {@link #defaults()} rather than with this class, so that a server
+     * given its own file never parses them and one that is not never parses them before its first case.
+     */
+    private static final class Defaults {
+        static final ReferenceData INSTANCE = loadDefaults();
+    }
+
+    private final Vocabulary tissueTypes;
+    private final Vocabulary authorities;
+    private final Vocabulary idTypes;
+    private final Vocabulary facilities;
+
+    public ReferenceData(Vocabulary tissueTypes, Vocabulary authorities, Vocabulary idTypes, Vocabulary facilities) {
+        this.tissueTypes = tissueTypes;
+        this.authorities = authorities;
+        this.idTypes = idTypes;
+        this.facilities = facilities;
+    }
+
+    public static ReferenceData defaults() {
+        return Defaults.INSTANCE;
+    }
+
+    public static ReferenceData load(Path file) throws IOException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            return parse(properties);
+        }
+    }
+
+    /** @throws IllegalArgumentException if a list is absent, empty or holds a non-ASCII code */
+    public static ReferenceData parse(Properties properties) {
+        return new ReferenceData(
+                list(properties, "tissue_type"),
+                list(properties, "assigning_authority"),
+                list(properties, "id_type"),
+                list(properties, "assigning_facility"));
+    }
+
+    /** REQ-7 values of {@code tissue_type}. */
+    public Vocabulary tissueTypes() {
+        return tissueTypes;
+    }
+
+    /** REQ-4 assigning authorities, the third patient_id component. */
+    public Vocabulary authorities() {
+        return authorities;
+    }
+
+    /** REQ-4 identifier type prefixes; the fourth patient_id component is a prefix then digits. */
+    public Vocabulary idTypes() {
+        return idTypes;
+    }
+
+    /** REQ-4 assigning facilities, the fifth patient_id component, matched exactly (Bug #2). */
+    public Vocabulary facilities() {
+        return facilities;
+    }
+
+    private static Vocabulary list(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing reference data list '" + key + "'");
+        }
+        return Vocabulary.of(Stream.of(value.split(",")).map(String::trim).toList());
+    }
+
+    private static ReferenceData loadDefaults() {
+        try (InputStream in = ReferenceData.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing " + RESOURCE + " on the classpath");
+            }
+            Properties properties = new Properties();
+            properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            return parse(properties);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "tissue_type=" + tissueTypes + " assigning_authority=" + authorities
+                + " id_type=" + idTypes + " assigning_facility=" + facilities;
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the current {@link ReferenceData} for a file and swaps in a new snapshot when the file
+ * changes.
+ * <p>
+ * The snapshot is published through a single volatile field, so {@link #get()} on the validation
+ * path is a plain read that never blocks, and a validation sees either the old lists or the new
+ * ones, never a mix. A file that fails to parse is reported and leaves the previous snapshot in
+ * place. Reloads and failures are reported as one-line messages to a listener, which the caller
+ * prints or logs as it sees fit.
+ */
+public final class ReferenceDataReloader implements Supplier<ReferenceData>, AutoCloseable {
+
+    private final Path file;
+    private final Consumer<String> listener;
+    private volatile ReferenceData current;
+    private FileTime modified;
+    private Thread watcher;
+
+    /** Loads {@code file} now; a file that cannot be read or parsed fails here rather than later. */
+    public ReferenceDataReloader(Path file) throws IOException {
+        this(file, message -> { });
+    }
+
+    /** As {@link #ReferenceDataReloader(Path)}, reporting each reload, or failure to reload, to {@code listener}. */
+    public ReferenceDataReloader(Path file, Consumer<String> listener) throws IOException {
+        this.file = file;
+        this.listener = listener;
+        this.modified = Files.getLastModifiedTime(file);
+        this.current = ReferenceData.load(file);
+    }
+
+    @Override
+    public ReferenceData get() {
+        return current;
+    }
+
+    /**
+     * Re-reads the file if its modification time changed.
+     *
+     * @return whether a new snapshot was installed
+     */
+    public synchronized boolean reload() {
+        try {
+            FileTime time = Files.getLastModifiedTime(file);
+            if (time.equals(modified)) {
+                return false;
+            }
+            ReferenceData next = ReferenceData.load(file);
+            modified = time;
+            current = next;
+            listener.accept("Reloaded reference data from " + file + ": " + next);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            listener.accept("Keeping previous reference data, cannot load " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Polls the file every {@code interval} on a background virtual thread until closed. */
+    public synchronized ReferenceDataReloader watch(Duration interval) {
+        if (watcher == null) {
+            watcher = Thread.ofVirtual().name("reference-data-reloader").start(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Thread.sleep(interval);
+                        reload();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+}
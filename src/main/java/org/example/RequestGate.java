@@ -0,0 +1,289 @@
+package org.example;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.Headers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The first stage of the case endpoints: turns junk away from the request headers alone, before a
+ * handler reads a byte of the body, and bounds how long a client may take to send the rest.
+ * <ul>
+ *   <li>A Content-Type the endpoint does not take is a 415, and a Content-Length beyond what it
+ *       accepts a 413. The rejected body is never buffered: one of up to {@value #DISCARD_BYTES}
+ *       bytes is read past so that the connection can be kept, a longer or chunked one is left
+ *       unread and the connection closed after the answer.</li>
+ *   <li>A single case must arrive within {@link CaseServer.Options#bodyTimeout} in all; a batch
+ *       stream may go no longer than {@link CaseServer.Options#streamIdleTimeout} without sending.
+ *       A client that drips its body slower than that is disconnected and counted as a 408.</li>
+ * </ul>
+ * Requests that are not a POST to the endpoint itself pass through, and the handler answers the
+ * 404 or 405.
+ */
+final class RequestGate extends Filter {
+
+    static final String TIMEOUT_MESSAGE = "Request timeout";
+
+    /** A rejected body this short is cheaper to read past than the reconnect that closing would cost. */
+    static final int DISCARD_BYTES = 8 * 1024;
+
+    private final CaseServer.Options options;
+    private final CaseMetrics.Endpoint endpoint;
+    private final long maxBytes;
+    private final Duration timeout;
+    private final boolean idle;
+    private final String[] mediaTypes;
+
+    private RequestGate(CaseServer.Options options, CaseMetrics.Endpoint endpoint, long maxBytes,
+                        Duration timeout, boolean idle, String... mediaTypes) {
+        this.options = options;
+        this.endpoint = endpoint;
+        this.maxBytes = maxBytes;
+        this.timeout = timeout;
+        this.idle = idle;
+        this.mediaTypes = mediaTypes;
+    }
+
+    /** The gate of an endpoint that takes one case of at most {@link CheckCaseHandler#MAX_BODY_BYTES}. */
+    static RequestGate single(CaseServer.Options options, CaseMetrics.Endpoint endpoint, String mediaType) {
+        return new RequestGate(options, endpoint, CheckCaseHandler.MAX_BODY_BYTES, options.bodyTimeout, false, mediaType);
+    }
+
+    /** The gate of an endpoint that takes a stream of any length, which must keep flowing. */
+    static RequestGate stream(CaseServer.Options options, CaseMetrics.Endpoint endpoint, String... mediaTypes) {
+        return new RequestGate(options, endpoint, Long.MAX_VALUE, options.streamIdleTimeout, true, mediaTypes);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())
+                || !exchange.getHttpContext().getPath().equals(exchange.getRequestURI().getPath())) {
+            chain.doFilter(exchange);
+            return;
+        }
+        CheckCaseEvent event = new CheckCaseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        DeadlineBody body = new DeadlineBody(exchange.getRequestBody(), timeout, idle);
+        try {
+            Headers headers = exchange.getRequestHeaders();
+            long length = contentLength(headers);
+            if (!CheckCaseHandler.hasMediaType(headers.getFirst("Content-Type"), mediaTypes)) {
+                refuse(exchange, body, length, 415, CheckCaseHandler.UNSUPPORTED_MEDIA_MESSAGE,
+                        CheckCaseHandler.UNSUPPORTED_MEDIA, event, start);
+                return;
+            }
+            if (length > maxBytes) {
+                refuse(exchange, body, length, 413, CheckCaseHandler.TOO_LARGE_MESSAGE, CheckCaseHandler.TOO_LARGE, event, start);
+                return;
+            }
+            exchange.setStreams(body, null);
+            chain.doFilter(exchange);
+        } catch (SocketTimeoutException e) {
+            if (options.metrics != null) {
+                options.metrics.rejected(endpoint, 408);
+            }
+            event.end(endpoint, 408, TIMEOUT_MESSAGE, 0);
+            throw e;
+        } finally {
+            body.disarm();
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Rejects unsupported and oversized " + endpoint.label() + " requests and times out slow bodies";
+    }
+
+    private void refuse(HttpExchange exchange, DeadlineBody body, long length, int status, String message,
+                        byte[] response, CheckCaseEvent event, long start) throws IOException {
+        try (exchange) {
+            if (length >= 0 && length <= DISCARD_BYTES) {
+                body.discard();
+                CheckCaseHandler.reject(exchange, options, endpoint, status, message, response, event);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Connection", "close");
+            exchange.sendResponseHeaders(status, response.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(response);
+            out.flush();
+            if (options.metrics != null) {
+                options.metrics.rejected(endpoint, status);
+            }
+            event.end(endpoint, status, message, 0);
+            // Closing the exchange drains the body first, which a client that never sends it would
+            // hold up. On an interrupted thread that read fails at once and the connection is dropped.
+            Thread.currentThread().interrupt();
+        } finally {
+            if (options.metrics != null) {
+                options.metrics.request(endpoint, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /** The declared body length, or -1 for a chunked body. */
+    private static long contentLength(Headers headers) {
+        if (headers.containsKey("Transfer-Encoding")) {
+            return -1;
+        }
+        String length = headers.getFirst("Content-Length");
+        // The server has already refused a request whose Content-Length is not a number.
+        return length == null ? 0 : Long.parseLong(length.trim());
+    }
+
+    /**
+     * A request body whose reads fail with a {@link SocketTimeoutException} once its deadline has
+     * passed: a fixed one for the whole body, or in {@code idle} mode one that restarts with every
+     * read. A read still blocked at the deadline is interrupted from a timer thread, which closes the
+     * connection under it. The reading thread is left interrupted after a timeout, so that the
+     * server's own drain of the body on close fails at once rather than waiting on the client.
+     */
+    static final class DeadlineBody extends InputStream {
+
+        private static final int IDLE = 0;
+        private static final int READING = 1;
+        private static final int EXPIRED = 2;
+        private static final int DONE = 3;
+
+        private final InputStream in;
+        private final long timeoutNanos;
+        private final boolean idle;
+        private final Thread owner = Thread.currentThread();
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+        private final byte[] one = new byte[1];
+        private volatile long deadline;
+        private volatile ScheduledFuture<?> pending;
+
+        DeadlineBody(InputStream in, Duration timeout, boolean idle) {
+            this.in = in;
+            this.timeoutNanos = timeout.toNanos();
+            this.idle = idle;
+            this.deadline = System.nanoTime() + timeoutNanos;
+            schedule(timeoutNanos);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            switch (state.get()) {
+                case DONE -> {
+                    return -1;
+                }
+                case EXPIRED -> throw expired();
+                default -> begin();
+            }
+            int n;
+            try {
+                n = in.read(b, off, len);
+            } catch (IOException e) {
+                if (!state.compareAndSet(READING, IDLE)) {
+                    throw (SocketTimeoutException) expired().initCause(e);
+                }
+                throw e;
+            }
+            if (!state.compareAndSet(READING, IDLE)) {
+                throw expired();
+            }
+            if (n < 0) {
+                disarm();
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /** Reads the rest of the body and drops it, through a small scratch buffer. */
+        void discard() throws IOException {
+            byte[] scratch = new byte[2048];
+            while (read(scratch, 0, scratch.length) >= 0) {
+                // Dropped.
+            }
+        }
+
+        /** Stops the timer; reads from now on see the end of the body. */
+        void disarm() {
+            state.set(DONE);
+            ScheduledFuture<?> current = pending;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+
+        private void begin() throws SocketTimeoutException {
+            long now = System.nanoTime();
+            if (idle) {
+                deadline = now + timeoutNanos;
+            }
+            // Marked before the deadline check, so that a timer firing in between still sees the read.
+            state.set(READING);
+            if (!idle && now - deadline >= 0) {
+                throw expired();
+            }
+        }
+
+        private SocketTimeoutException expired() {
+            state.set(EXPIRED);
+            owner.interrupt();
+            return new SocketTimeoutException("Request body not received within " + Duration.ofNanos(timeoutNanos)
+                    + (idle ? " of the last read" : ""));
+        }
+
+        /** Runs on the timer thread at the deadline: interrupts a read still in progress. */
+        private void expire() {
+            if (state.get() == DONE) {
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                schedule(remaining);
+            } else if (state.compareAndSet(READING, EXPIRED)) {
+                owner.interrupt();
+            } else if (idle) {
+                // Not reading: the handler is busy with what the client sent, which is no stall.
+                schedule(timeoutNanos);
+            }
+            // Otherwise the next read finds the deadline passed.
+        }
+
+        private void schedule(long nanos) {
+            pending = Timer.INSTANCE.schedule(this::expire, nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** One daemon thread for every deadline, created on the first request. */
+    private static final class Timer {
+
+        static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+        private static ScheduledThreadPoolExecutor create() {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+                    Thread.ofPlatform().daemon().name("checkcase-read-deadline").factory());
+            // Nearly every deadline is cancelled; keep the queue to the ones still pending.
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.example;
+
+import static org.example.CaseValidator.CLASS;
+import static org.example.CaseValidator.DIGIT;
+import static org.example.CaseValidator.HEX;
+import static org.example.CaseValidator.LETTER;
+import static org.example.CaseValidator.NAME;
+
+/** {@link FieldScans} one byte at a time, one {@link CaseValidator#CLASS} lookup per byte. */
+final class ScalarScans implements FieldScans {
+
+    @Override
+    public boolean isCaseId(byte[] buf, int off, int len) {
+        if (len != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            byte b = buf[off + i];
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (b != '-') {
+                    return false;
+                }
+            } else if ((CLASS[b & 0xFF] & HEX) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isPatientName(byte[] buf, int off, int len) {
+        int end = off + len;
+        int components = 1;
+        boolean componentStart = true;
+        for (int p = off; p < end; p++) {
+            byte b = buf[p];
+            if (b == '^') {
+                if (componentStart || ++components > 3) {
+                    return false;
+                }
+                componentStart = true;
+            } else if (componentStart) {
+                if ((CLASS[b & 0xFF] & LETTER) == 0) {
+                    return false;
+                }
+                componentStart = false;
+            } else if ((CLASS[b & 0xFF] & NAME) == 0) {
+                return false;
+            }
+        }
+        return !componentStart && components >= 2;
+    }
+
+    @Override
+    public int skipDigits(byte[] buf, int p, int end) {
+        while (p < end && (CLASS[buf[p] & 0xFF] & DIGIT) != 0) {
+            p++;
+        }
+        return p;
+    }
+
+    @Override
+    public int indexOf(byte[] buf, int p, int end, byte b) {
+        while (p < end && buf[p] != b) {
+            p++;
+        }
+        return p < end ? p : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,204 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cold-start benchmark of the checkcase server: launches {@code Main serve} in a fresh JVM, posts
+ * a valid case every millisecond from the moment the process is spawned, and times the first
+ * {@code 200 "Case valid"} answer. That is what a caller of a function that scaled from zero sees:
+ * JVM boot, class loading, server start-up and the first validation together.
+ * <p>
+ * Run it once as is and once with the JVM options of the cold-start profile to compare, e.g.
+ * {@code startup --runs 20 -- -XX:AOTCache=target/checkcase.aot}.
+ * <p>
+ * {@link #train} is the workload that the cold-start profile records its AOT cache from.
+ */
+public final class StartupBenchmark {
+
+    /** Settings for a {@link StartupBenchmark}. */
+    public static final class Options {
+        public int runs = 10;
+        /** A case the server is expected to answer {@code 200 "Case valid"}. */
+        public Path fixture = Path.of("src/test/resources/1-1.json");
+        /** JVM options of the server, before the class path. */
+        public List<String> jvmOptions = List.of();
+        public String classPath = System.getProperty("java.class.path");
+        public Duration timeout = Duration.ofSeconds(30);
+    }
+
+    /** The time to the first valid answer of each run, in run order. */
+    public record Result(List<Duration> times) {
+
+        public Duration min() {
+            return sorted().get(0);
+        }
+
+        public Duration median() {
+            return sorted().get(times.size() / 2);
+        }
+
+        public Duration max() {
+            return sorted().get(times.size() - 1);
+        }
+
+        private List<Duration> sorted() {
+            return times.stream().sorted().toList();
+        }
+    }
+
+    private static final String VALID_BODY = "{\"message\":\"" + CaseVerdict.VALID_MESSAGE + "\"}";
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(1);
+
+    private final Options options;
+    private final byte[] body;
+
+    public StartupBenchmark(Options options) throws IOException {
+        this.options = options;
+        this.body = Files.readAllBytes(options.fixture);
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        List<Duration> times = new ArrayList<>();
+        try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build()) {
+            // The first run would otherwise also time this side's HTTP client warming up.
+            launch(client);
+            for (int run = 0; run < options.runs; run++) {
+                times.add(launch(client));
+            }
+        }
+        return new Result(times);
+    }
+
+    /** Starts a server and returns the time from spawning it to its first valid answer. */
+    private Duration launch(HttpClient client) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options.jvmOptions);
+        command.addAll(List.of("-cp", options.classPath, Main.class.getName(), "serve", Integer.toString(port)));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + CaseServer.CHECKCASE_PATH))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+
+        long start = System.nanoTime();
+        Process server = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try {
+            long deadline = start + options.timeout.toNanos();
+            while (System.nanoTime() < deadline) {
+                HttpResponse<String> response;
+                try {
+                    response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                } catch (IOException e) {
+                    // Not listening yet.
+                    if (!server.isAlive()) {
+                        throw new IOException("Server exited with " + server.exitValue() + ": " + command);
+                    }
+                    Thread.sleep(POLL_INTERVAL);
+                    continue;
+                }
+                if (response.statusCode() != 200 || !response.body().equals(VALID_BODY)) {
+                    throw new IOException("Expected 200 " + VALID_BODY + " for " + options.fixture
+                            + ", got " + response.statusCode() + " " + response.body());
+                }
+                return Duration.ofNanos(System.nanoTime() - start);
+            }
+            throw new IOException("No valid answer within " + options.timeout + ": " + command);
+        } finally {
+            server.destroy();
+            if (!server.waitFor(10, TimeUnit.SECONDS)) {
+                server.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    /**
+     * Runs every fixture through a server in this JVM, on both endpoints and with the metrics
+     * scraped, so that a recording JVM loads and links every class a served case needs.
+     */
+    public static void train(Path fixtures) throws IOException, InterruptedException {
+        List<byte[]> cases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(fixtures)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                cases.add(Files.readAllBytes(file));
+            }
+        }
+        if (cases.isEmpty()) {
+            throw new IllegalArgumentException("No fixtures in " + fixtures);
+        }
+        try (CaseServer server = CaseServer.start(0); HttpClient client = HttpClient.newHttpClient()) {
+            URI single = URI.create(server.baseUri() + CaseServer.CHECKCASE_PATH);
+            URI batch = URI.create(server.baseUri() + CaseServer.BATCH_PATH);
+            StringBuilder lines = new StringBuilder();
+            for (byte[] body : cases) {
+                client.send(HttpRequest.newBuilder(single).header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(), HttpResponse.BodyHandlers.discarding());
+                lines.append(new String(body, StandardCharsets.UTF_8).replace('\r', ' ').replace('\n', ' ')).append('\n');
+            }
+            client.send(HttpRequest.newBuilder(batch).header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(lines.toString())).build(), HttpResponse.BodyHandlers.discarding());
+            client.send(HttpRequest.newBuilder(URI.create(server.baseUri() + CaseServer.METRICS_PATH)).build(),
+                    HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    /** Prints the time to the first valid answer, in milliseconds. */
+    public static void print(Options options, Result result, PrintStream out) {
+        out.printf("time to first 200 \"%s\" over %d runs, JVM options %s%n", CaseVerdict.VALID_MESSAGE,
+                result.times().size(), options.jvmOptions.isEmpty() ? "(none)" : String.join(" ", options.jvmOptions));
+        out.printf("%9s %9s %9s%n", "min", "median", "max");
+        out.printf("%9.1f %9.1f %9.1f%n", millis(result.min()), millis(result.median()), millis(result.max()));
+    }
+
+    /**
+     * Parses {@code --runs <n> --fixture <file> --timeout <s> [-- <server JVM options>]}; the server
+     * runs on this JVM's class path.
+     */
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                options.jvmOptions = List.copyOf(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--runs" -> options.runs = Integer.parseInt(value);
+                case "--fixture" -> options.fixture = Path.of(value);
+                case "--timeout" -> options.timeout = Duration.ofSeconds(Long.parseLong(value));
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        return options;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1e6;
+    }
+}
@@ -0,0 +1,117 @@
+package org.example;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records every exchange of the case endpoints into a {@link TrafficTrace}: the outermost filter,
+ * so rejected requests are captured as well as validated ones. The request and response bodies are
+ * copied as the handler reads and writes them, up to {@value #MAX_CAPTURE_BYTES} each.
+ */
+final class TrafficCapture extends Filter {
+
+    static final int MAX_CAPTURE_BYTES = 16 << 20;
+
+    /** Headers that describe the connection rather than the request, which a replay sets itself. */
+    private static final Set<String> CONNECTION_HEADERS = Set.of(
+            "Host", "Connection", "Content-length", "Transfer-encoding", "Expect", "Upgrade", "Keep-alive");
+
+    private final TrafficTrace.Writer trace;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    TrafficCapture(TrafficTrace.Writer trace) {
+        this.trace = trace;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long start = System.nanoTime();
+        int concurrency = inFlight.incrementAndGet();
+        Copy request = new Copy();
+        Copy response = new Copy();
+        exchange.setStreams(new FilterInputStream(exchange.getRequestBody()) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = in.read(b, off, len);
+                request.write(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b >= 0) {
+                    request.write(b);
+                }
+                return b;
+            }
+        }, new FilterOutputStream(exchange.getResponseBody()) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                response.write(b, off, len);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                response.write(b);
+            }
+        });
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            inFlight.decrementAndGet();
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                if (!CONNECTION_HEADERS.contains(header.getKey()) && !header.getValue().isEmpty()) {
+                    headers.put(header.getKey(), header.getValue().get(0));
+                }
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            String target = exchange.getRequestURI().getRawPath() + (query == null ? "" : "?" + query);
+            trace.record(new TrafficTrace.Exchange(trace.elapsed(start), System.nanoTime() - start, concurrency,
+                    exchange.getRequestMethod(), target, headers, request.toByteArray(),
+                    Math.max(0, exchange.getResponseCode()), response.toByteArray()));
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Records case exchanges into a traffic trace";
+    }
+
+    /** A copy of a body that stops growing at {@link #MAX_CAPTURE_BYTES}. */
+    private static final class Copy extends ByteArrayOutputStream {
+
+        Copy() {
+            super(256);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (len > 0) {
+                super.write(b, off, Math.min(len, MAX_CAPTURE_BYTES - count));
+            }
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (count < MAX_CAPTURE_BYTES) {
+                super.write(b);
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link TrafficTrace} back at a checkcase endpoint and diffs the answers and latencies
+ * against the recorded ones, for regression runs on real traffic shapes without the real traffic.
+ * <p>
+ * At a {@code speed} of 1 every exchange is sent at its recorded offset from the start of the
+ * trace, and at N times that rate with a speed of N, whatever the server does: latency is measured
+ * from when the exchange was due, as in {@link LoadGenerator}'s open loop, and the concurrency of
+ * the original traffic follows from its timing. At a speed of 0 the trace is sent as fast as the
+ * server answers by as many workers as the trace ever had exchanges in flight.
+ * <p>
+ * An exchange mismatches when its status or response body differs from the recorded one. Exchanges
+ * recorded without an answer, such as bodies that timed out, cannot be replayed and are skipped.
+ * The recorded latencies are the server's own handling times, so they are diffed against the
+ * handling times of a target that captures its own trace during the replay ({@link Result#withServed}),
+ * never against the round trips this client saw, which include the client and the network and are
+ * reported on their own.
+ */
+public final class TrafficReplay {
+
+    /** Settings for a replay; see {@link #parse(String[])} for the command-line form. */
+    public static final class Options {
+        public Path trace;
+        /** The server to replay against, e.g. {@code http://localhost:8080}. */
+        public URI baseUri;
+        /** Multiple of the recorded rate; 0 sends as fast as the recorded concurrency allows. */
+        public double speed = 1;
+        public Duration timeout = Duration.ofSeconds(30);
+        public int maxMismatches = 20;
+        public boolean local;
+    }
+
+    /** An exchange whose replayed answer differs from the recorded one. */
+    public record Mismatch(TrafficTrace.Exchange exchange, int status, byte[] response) {
+    }
+
+    /**
+     * The outcome of a replay. {@code recorded} and {@code served} are server handling times, in the
+     * trace and on the replay target; {@code served} is {@code null} until the target's own capture
+     * is added. {@code replayed} holds the round trips this client saw.
+     */
+    public record Result(int exchanges, int skipped, long errors, long mismatchCount, List<Mismatch> mismatches,
+                         double seconds, LatencyHistogram recorded, LatencyHistogram replayed,
+                         LatencyHistogram served) {
+
+        /** This result with the handling times in {@code capture}, the target's trace of the replay. */
+        public Result withServed(TrafficTrace capture) {
+            LatencyHistogram served = new LatencyHistogram();
+            for (int i = 0; i < capture.size(); i++) {
+                TrafficTrace.Exchange exchange = capture.get(i);
+                if (exchange.status() != 0) {
+                    served.record(exchange.durationNanos());
+                }
+            }
+            return new Result(exchanges, skipped, errors, mismatchCount, mismatches, seconds, recorded, replayed, served);
+        }
+    }
+
+    private final Options options;
+    private final HttpClient client;
+
+    public TrafficReplay(Options options, HttpClient client) {
+        this.options = options;
+        this.client = client;
+    }
+
+    public Result run(TrafficTrace trace) throws InterruptedException {
+        List<TrafficTrace.Exchange> exchanges = new ArrayList<>(trace.byStart());
+        int before = exchanges.size();
+        exchanges.removeIf(exchange -> exchange.status() == 0);
+        Outcomes outcomes = new Outcomes(options.maxMismatches);
+        long start = System.nanoTime();
+        if (options.speed > 0) {
+            openLoop(exchanges, outcomes);
+        } else {
+            closedLoop(exchanges, Math.max(1, trace.maxConcurrency()), outcomes);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(exchanges.size(), before - exchanges.size(), outcomes.errors.sum(),
+                outcomes.mismatchCount.sum(), outcomes.mismatches(), seconds, outcomes.recorded, outcomes.replayed, null);
+    }
+
+    private void openLoop(List<TrafficTrace.Exchange> exchanges, Outcomes outcomes) {
+        if (exchanges.isEmpty()) {
+            return;
+        }
+        Phaser pending = new Phaser(1);
+        long first = exchanges.get(0).startNanos();
+        long start = System.nanoTime();
+        for (TrafficTrace.Exchange exchange : exchanges) {
+            long due = start + (long) ((exchange.startNanos() - first) / options.speed);
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            pending.register();
+            client.sendAsync(request(exchange), HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, failure) -> {
+                        outcomes.add(exchange, System.nanoTime() - due, response, failure);
+                        pending.arriveAndDeregister();
+                    });
+        }
+        pending.arriveAndAwaitAdvance();
+    }
+
+    private void closedLoop(List<TrafficTrace.Exchange> exchanges, int concurrency, Outcomes outcomes) {
+        AtomicInteger next = new AtomicInteger();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                workers.submit(() -> {
+                    for (int i; (i = next.getAndIncrement()) < exchanges.size(); ) {
+                        TrafficTrace.Exchange exchange = exchanges.get(i);
+                        long sent = System.nanoTime();
+                        HttpResponse<byte[]> response = null;
+                        Throwable failure = null;
+                        try {
+                            response = client.send(request(exchange), HttpResponse.BodyHandlers.ofByteArray());
+                        } catch (IOException | InterruptedException e) {
+                            failure = e;
+                        }
+                        outcomes.add(exchange, System.nanoTime() - sent, response, failure);
+                    }
+                });
+            }
+        }
+    }
+
+    private HttpRequest request(TrafficTrace.Exchange exchange) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(options.baseUri + exchange.target()))
+                .timeout(options.timeout)
+                .method(exchange.method(), exchange.body().length == 0 && !"POST".equals(exchange.method())
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(exchange.body()));
+        for (Map.Entry<String, String> header : exchange.headers().entrySet()) {
+            request.header(header.getKey(), header.getValue());
+        }
+        return request.build();
+    }
+
+    /** What the replay saw, gathered from every sender. */
+    private static final class Outcomes {
+
+        final LatencyHistogram recorded = new LatencyHistogram();
+        final LatencyHistogram replayed = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final LongAdder mismatchCount = new LongAdder();
+        private final int maxMismatches;
+        private final List<Mismatch> mismatches = new ArrayList<>();
+
+        Outcomes(int maxMismatches) {
+            this.maxMismatches = maxMismatches;
+        }
+
+        void add(TrafficTrace.Exchange exchange, long nanos, HttpResponse<byte[]> response, Throwable failure) {
+            recorded.record(exchange.durationNanos());
+            replayed.record(nanos);
+            if (failure != null || response == null) {
+                errors.increment();
+                return;
+            }
+            if (response.statusCode() != exchange.status() || !Arrays.equals(response.body(), exchange.response())) {
+                mismatchCount.increment();
+                synchronized (mismatches) {
+                    if (mismatches.size() < maxMismatches) {
+                        mismatches.add(new Mismatch(exchange, response.statusCode(), response.body()));
+                    }
+                }
+            }
+        }
+
+        List<Mismatch> mismatches() {
+            synchronized (mismatches) {
+                mismatches.sort((a, b) -> Long.compare(a.exchange().startNanos(), b.exchange().startNanos()));
+                return Collections.unmodifiableList(new ArrayList<>(mismatches));
+            }
+        }
+    }
+
+    /**
+     * Prints the diff: counts, recorded against served handling time in milliseconds, the client's
+     * round trips, and the first mismatches.
+     */
+    public static void print(Options options, Result result, PrintStream out) {
+        out.printf("replayed %d exchanges of %s at %s against %s in %.1f s: %d errors, %d mismatches, %d skipped%n",
+                result.exchanges(), options.trace, options.speed > 0 ? options.speed + "x" : "max speed",
+                options.baseUri, result.seconds(), result.errors(), result.mismatchCount(), result.skipped());
+        out.printf("%9s %9s %9s %9s %9s %9s%n", "ms", "p50", "p90", "p99", "p99.9", "max");
+        row(out, "recorded", result.recorded());
+        if (result.served() != null) {
+            row(out, "served", result.served());
+        } else {
+            out.printf("%9s  unknown: the target's handling times are only captured with --local%n", "served");
+        }
+        row(out, "client", result.replayed());
+        for (Mismatch m : result.mismatches()) {
+            TrafficTrace.Exchange e = m.exchange();
+            out.printf("%s %s at %.3f s: expected %d %s, got %d %s%n", e.method(), e.target(), e.startNanos() / 1e9,
+                    e.status(), e.responseText(), m.status(), new String(m.response(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void row(PrintStream out, String label, LatencyHistogram h) {
+        out.printf("%9s %9.3f %9.3f %9.3f %9.3f %9.3f%n", label, h.percentile(50) / 1e6, h.percentile(90) / 1e6,
+                h.percentile(99) / 1e6, h.percentile(99.9) / 1e6, h.max() / 1e6);
+    }
+
+    /**
+     * Parses {@code <trace> --uri <base> --speed <n>|max --timeout <s> --max-mismatches <n> --local}.
+     * The base URI defaults to {@code -Dcheckcase.baseUri}, then to the local server.
+     */
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        options.baseUri = URI.create(System.getProperty("checkcase.baseUri", "http://localhost:" + CaseServer.DEFAULT_PORT));
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                options.trace = Path.of(arg);
+                continue;
+            }
+            if (arg.equals("--local")) {
+                options.local = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--uri" -> options.baseUri = URI.create(value);
+                case "--speed" -> options.speed = value.equals("max") ? 0 : Double.parseDouble(value);
+                case "--timeout" -> options.timeout = Duration.ofSeconds(Long.parseLong(value));
+                case "--max-mismatches" -> options.maxMismatches = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (options.trace == null) {
+            throw new IllegalArgumentException("Missing trace file");
+        }
+        return options;
+    }
+}
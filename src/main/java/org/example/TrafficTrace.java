@@ -0,0 +1,363 @@
+package org.example;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recorded stream of checkcase exchanges, in a compact binary file that {@link TrafficReplay}
+ * plays back. Traces are captured by the server (see {@link CaseServer.Options#capture}), so any
+ * traffic it serves, from a {@code CaseValidationTest} run to production, can be replayed offline.
+ * <p>
+ * The file is written in one pass, one record per exchange in the order they completed, in blocks
+ * that each carry their own index:
+ * <pre>
+ *   "CCT2"
+ *   block*    "CCTB" | int length | varint string count | (varint length | bytes)*
+ *             | varint record count | (varint record length)* | record*
+ *   record    varint start nanos | varint duration nanos | varint concurrency | string method
+ *             | string target | varint header count | (string name | string value)* | bytes body
+ *             | varint status | string response
+ *   string    varint id shifted left by one, or varint length shifted left by one with the low bit
+ *             set, followed by the bytes
+ * </pre>
+ * Methods, header names and short responses, such as the single-case answers, come from a small
+ * set: they are interned, each written once in the block that first uses it, and referred to by
+ * id. Targets, header values and everything else are written inline, and once
+ * {@link #MAX_INTERNED} strings are interned the rest are inline too, so a long capture of varied
+ * traffic holds no more than that in memory. Strings are ISO-8859-1 so that any bytes survive. A
+ * block is written once it holds {@link #BLOCK_RECORDS} records, a megabyte or a second's worth, so
+ * a trace cut short by a crash is readable up to its last whole block.
+ */
+public final class TrafficTrace {
+
+    private static final int MAGIC = 0x43435432; // "CCT2"
+    private static final int BLOCK_MAGIC = 0x43435442; // "CCTB"
+    private static final int MAX_INTERNED_RESPONSE = 256;
+    static final int MAX_INTERNED = 4096;
+    static final int BLOCK_RECORDS = 1024;
+    private static final int BLOCK_BYTES = 1 << 20;
+    private static final long BLOCK_NANOS = 1_000_000_000L;
+
+    /**
+     * One exchange: when it started relative to the start of the trace, how long the server took,
+     * how many exchanges were in flight when it started, including itself, and what was asked and
+     * answered. A status of 0 means the exchange ended without an answer, e.g. a timed out body.
+     */
+    public record Exchange(long startNanos, long durationNanos, int concurrency, String method, String target,
+                           Map<String, String> headers, byte[] body, int status, byte[] response) {
+
+        /** The response as text, e.g. {@code {"message":"Case valid"}}. */
+        public String responseText() {
+            return new String(response, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final MappedFile file;
+    private final long[] offsets;
+    private final String[] strings;
+
+    private TrafficTrace(MappedFile file, long[] offsets, String[] strings) {
+        this.file = file;
+        this.offsets = offsets;
+        this.strings = strings;
+    }
+
+    /** Opens a trace for reading, up to its last whole block if its writer was never closed. */
+    public static TrafficTrace open(Path path) throws IOException {
+        MappedFile file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = MappedFile.map(channel);
+        }
+        long size = file.size();
+        if (size < 4 || readInt(file, 0) != MAGIC) {
+            throw new IOException("Not a traffic trace: " + path);
+        }
+        List<String> strings = new ArrayList<>();
+        long[] offsets = new long[BLOCK_RECORDS];
+        int count = 0;
+        for (long block = 4; block + 8 <= size && readInt(file, block) == BLOCK_MAGIC; ) {
+            long end = block + 8 + (readInt(file, block + 4) & 0xFFFFFFFFL);
+            if (end > size) {
+                break;
+            }
+            Cursor cursor = new Cursor(file, block + 8);
+            for (long i = cursor.varint(); i > 0; i--) {
+                strings.add(new String(cursor.bytes(), StandardCharsets.ISO_8859_1));
+            }
+            int records = (int) cursor.varint();
+            if (count + records > offsets.length) {
+                offsets = Arrays.copyOf(offsets, Math.max(offsets.length * 2, count + records));
+            }
+            long[] lengths = new long[records];
+            for (int i = 0; i < records; i++) {
+                lengths[i] = cursor.varint();
+            }
+            long offset = cursor.position;
+            for (long length : lengths) {
+                offsets[count++] = offset;
+                offset += length;
+            }
+            block = end;
+        }
+        return new TrafficTrace(file, Arrays.copyOf(offsets, count), strings.toArray(String[]::new));
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    /** The {@code index}th exchange to complete. */
+    public Exchange get(int index) {
+        Cursor cursor = new Cursor(file, offsets[index]);
+        long start = cursor.varint();
+        long duration = cursor.varint();
+        int concurrency = (int) cursor.varint();
+        String method = string(cursor);
+        String target = string(cursor);
+        int headerCount = (int) cursor.varint();
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(string(cursor), string(cursor));
+        }
+        byte[] body = cursor.bytes();
+        int status = (int) cursor.varint();
+        byte[] response = string(cursor).getBytes(StandardCharsets.ISO_8859_1);
+        return new Exchange(start, duration, concurrency, method, target, Collections.unmodifiableMap(headers),
+                body, status, response);
+    }
+
+    /** Every exchange, in the order they started. */
+    public List<Exchange> byStart() {
+        List<Exchange> exchanges = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            exchanges.add(get(i));
+        }
+        exchanges.sort((a, b) -> Long.compare(a.startNanos(), b.startNanos()));
+        return exchanges;
+    }
+
+    /** The most exchanges that were in flight at once. */
+    public int maxConcurrency() {
+        int max = 0;
+        for (int i = 0; i < size(); i++) {
+            max = Math.max(max, (int) new Cursor(file, offsets[i]).skip(2).varint());
+        }
+        return max;
+    }
+
+    private String string(Cursor cursor) {
+        long ref = cursor.varint();
+        return (ref & 1) != 0
+                ? new String(cursor.bytes((int) (ref >>> 1)), StandardCharsets.ISO_8859_1)
+                : strings[(int) (ref >>> 1)];
+    }
+
+    private static int readInt(MappedFile file, long position) {
+        byte[] b = new byte[4];
+        file.get(position, b, 0, 4);
+        return (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | b[3] & 0xFF;
+    }
+
+    /** Reads varints and length-prefixed bytes forward from a position. */
+    private static final class Cursor {
+
+        private final MappedFile file;
+        private long position;
+
+        Cursor(MappedFile file, long position) {
+            this.file = file;
+            this.position = position;
+        }
+
+        long varint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = file.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        Cursor skip(int varints) {
+            for (int i = 0; i < varints; i++) {
+                varint();
+            }
+            return this;
+        }
+
+        byte[] bytes() {
+            return bytes((int) varint());
+        }
+
+        byte[] bytes(int length) {
+            byte[] out = new byte[length];
+            file.get(position, out, 0, length);
+            position += length;
+            return out;
+        }
+    }
+
+    /**
+     * Appends exchanges to a new trace file. Safe for concurrent use; records are buffered a block at
+     * a time, and the last block is written by {@link #close()}.
+     */
+    public static final class Writer implements AutoCloseable {
+
+        private final OutputStream out;
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final Block strings = new Block();
+        private final Block records = new Block();
+        private final int[] lengths = new int[BLOCK_RECORDS];
+        private int blockStrings;
+        private int blockRecords;
+        private long blockStart;
+        private int count;
+        private boolean closed;
+
+        public Writer(Path path) throws IOException {
+            // Plain file I/O rather than a channel: a capturing request thread may be interrupted,
+            // which would close a channel under every other writer.
+            out = new BufferedOutputStream(new FileOutputStream(path.toFile()), 64 * 1024);
+            writeInt(out, MAGIC);
+            out.flush();
+        }
+
+        /** Nanoseconds since the trace started, for the {@code startNanos} of an exchange. */
+        public long elapsed(long nanoTime) {
+            return nanoTime - startNanos;
+        }
+
+        public synchronized void record(Exchange exchange) throws IOException {
+            if (closed) {
+                return;
+            }
+            if (blockRecords == 0) {
+                blockStart = System.nanoTime();
+            }
+            int from = records.size();
+            records.varint(Math.max(0, exchange.startNanos()));
+            records.varint(exchange.durationNanos());
+            records.varint(exchange.concurrency());
+            interned(exchange.method());
+            inline(exchange.target().getBytes(StandardCharsets.ISO_8859_1));
+            records.varint(exchange.headers().size());
+            for (Map.Entry<String, String> header : exchange.headers().entrySet()) {
+                interned(header.getKey());
+                inline(header.getValue().getBytes(StandardCharsets.ISO_8859_1));
+            }
+            records.bytes(exchange.body());
+            records.varint(exchange.status());
+            byte[] response = exchange.response();
+            if (response.length <= MAX_INTERNED_RESPONSE) {
+                interned(new String(response, StandardCharsets.ISO_8859_1));
+            } else {
+                inline(response);
+            }
+            lengths[blockRecords++] = records.size() - from;
+            count++;
+            if (blockRecords == BLOCK_RECORDS || records.size() >= BLOCK_BYTES
+                    || System.nanoTime() - blockStart >= BLOCK_NANOS) {
+                writeBlock();
+            }
+        }
+
+        public synchronized int count() {
+            return count;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try (out) {
+                writeBlock();
+            }
+        }
+
+        /** Writes the buffered records with the strings they introduced and their lengths, then flushes. */
+        private void writeBlock() throws IOException {
+            if (blockRecords == 0) {
+                return;
+            }
+            Block index = new Block();
+            index.varint(blockStrings);
+            strings.writeTo(index);
+            index.varint(blockRecords);
+            for (int i = 0; i < blockRecords; i++) {
+                index.varint(lengths[i]);
+            }
+            writeInt(out, BLOCK_MAGIC);
+            writeInt(out, index.size() + records.size());
+            index.writeTo(out);
+            records.writeTo(out);
+            out.flush();
+            strings.reset();
+            records.reset();
+            blockStrings = 0;
+            blockRecords = 0;
+        }
+
+        private void interned(String s) {
+            Integer id = ids.get(s);
+            if (id == null && ids.size() < MAX_INTERNED) {
+                id = ids.size();
+                ids.put(s, id);
+                strings.bytes(s.getBytes(StandardCharsets.ISO_8859_1));
+                blockStrings++;
+            }
+            if (id == null) {
+                inline(s.getBytes(StandardCharsets.ISO_8859_1));
+            } else {
+                records.varint((long) id << 1);
+            }
+        }
+
+        private void inline(byte[] bytes) {
+            records.varint((long) bytes.length << 1 | 1);
+            records.write(bytes, 0, bytes.length);
+        }
+
+        private static void writeInt(OutputStream out, int value) throws IOException {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+        }
+    }
+
+    /** A growable buffer with the varint and length-prefixed writes of the format. */
+    private static final class Block extends ByteArrayOutputStream {
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void bytes(byte[] bytes) {
+            varint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
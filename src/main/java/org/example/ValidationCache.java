@@ -0,0 +1,268 @@
+package org.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of verdicts in front of a {@link CaseValidator}, for upstream retries that resend
+ * byte-identical bodies.
+ * <p>
+ * Bodies are keyed by a 64-bit hash and compared in full on a hit, so a hash collision can never
+ * return another body's verdict. The table is set-associative: a body may only live in one set of
+ * {@value #WAYS} entries, each set is locked on its own, and a lookup never allocates.
+ * <p>
+ * Eviction is frequency-aware in the TinyLFU style. A small count-min sketch of 4-bit counters
+ * estimates how often each body hash was seen recently, with all counters halved periodically so
+ * that old popularity fades. When a set is full, a new body only replaces the set's least frequent
+ * entry if it has been seen more often, so a flood of one-off payloads cannot flush the retried
+ * ones. Entries can also expire after a fixed time to live.
+ * <p>
+ * Each entry remembers the {@link ReferenceData} snapshot it was validated against, and only
+ * answers while that snapshot is still current, so a reload never serves a stale verdict.
+ */
+public final class ValidationCache {
+
+    /** Larger bodies are validated every time rather than copied into the cache. */
+    public static final int MAX_CACHED_BODY_BYTES = 4 * 1024;
+
+    private static final int WAYS = 8;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final CaseValidator validator;
+    private final Bucket[] buckets;
+    private final int bucketMask;
+    private final long ttlNanos;
+    private final FrequencySketch sketch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries upper bound on cached bodies, rounded up to a power of two
+     * @param ttl        how long a verdict stays cached, or {@link Duration#ZERO} for no expiry
+     */
+    public ValidationCache(CaseValidator validator, int maxEntries, Duration ttl) {
+        this.validator = validator;
+        int bucketCount = Integer.highestOneBit(Math.max(maxEntries / WAYS, 1) * 2 - 1);
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.bucketMask = bucketCount - 1;
+        this.ttlNanos = ttl.toNanos();
+        this.sketch = new FrequencySketch(bucketCount * WAYS);
+    }
+
+    public CaseVerdict validate(byte[] body, CaseVerdict out) {
+        return validate(body, 0, body.length, out);
+    }
+
+    /** Same contract as {@link CaseValidator#validate(byte[], int, int, CaseVerdict)}. */
+    public CaseVerdict validate(byte[] buf, int off, int len, CaseVerdict out) {
+        if (len > MAX_CACHED_BODY_BYTES) {
+            return validator.validate(buf, off, len, out);
+        }
+        long hash = hash(buf, off, len);
+        sketch.increment(hash);
+        Bucket bucket = buckets[(int) hash & bucketMask];
+        long now = ttlNanos > 0 ? System.nanoTime() : 0;
+        // Read before validating: if a reload races the validation, the entry is tagged with the
+        // older snapshot and is simply never hit.
+        ReferenceData reference = validator.reference();
+        if (bucket.get(hash, buf, off, len, reference, now, out)) {
+            hits.increment();
+            return out;
+        }
+        misses.increment();
+        validator.validate(buf, off, len, out);
+        bucket.put(hash, buf, off, len, reference, now, out);
+        return out;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Entries displaced from a full set by a more frequent body; expiries are not counted. */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public int capacity() {
+        return buckets.length * WAYS;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Bucket bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    /** A 64-bit hash of the body, eight bytes per step. */
+    static long hash(byte[] buf, int off, int len) {
+        long h = len * 0x9E3779B97F4A7C15L;
+        int p = off;
+        int end = off + len;
+        for (; p + 8 <= end; p += 8) {
+            h = Long.rotateLeft(h ^ mix((long) LONGS.get(buf, p)), 27) * 0x9E3779B97F4A7C15L;
+        }
+        long tail = 0;
+        for (int shift = 0; p < end; p++, shift += 8) {
+            tail |= (buf[p] & 0xFFL) << shift;
+        }
+        return mix(h ^ mix(tail));
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ h >>> 33;
+    }
+
+    /** One cached body and its verdict, replaced wholesale rather than updated. */
+    private record Entry(long hash, byte[] body, CaseVerdict verdict, ReferenceData reference, long expiresAt) {
+
+        boolean isStale(ReferenceData current, long now, long ttlNanos) {
+            return reference != current || ttlNanos > 0 && now - expiresAt >= 0;
+        }
+    }
+
+    private final class Bucket {
+
+        private final Entry[] ways = new Entry[WAYS];
+
+        synchronized boolean get(long hash, byte[] buf, int off, int len, ReferenceData reference, long now,
+                                 CaseVerdict out) {
+            for (int i = 0; i < WAYS; i++) {
+                Entry entry = ways[i];
+                if (entry != null && entry.hash() == hash
+                        && Arrays.equals(entry.body(), 0, entry.body().length, buf, off, off + len)) {
+                    if (entry.isStale(reference, now, ttlNanos)) {
+                        ways[i] = null;
+                        return false;
+                    }
+                    out.copy(entry.verdict(), buf, off);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized void put(long hash, byte[] buf, int off, int len, ReferenceData reference, long now,
+                              CaseVerdict verdict) {
+            int victim = -1;
+            int victimFrequency = Integer.MAX_VALUE;
+            for (int i = 0; i < WAYS; i++) {
+                Entry entry = ways[i];
+                if (entry == null || entry.isStale(reference, now, ttlNanos)) {
+                    victim = i;
+                    victimFrequency = -1;
+                } else if (entry.hash() == hash) {
+                    // Another thread cached the same body while this one was validating it.
+                    return;
+                } else if (victimFrequency >= 0) {
+                    int frequency = sketch.frequency(entry.hash());
+                    if (frequency < victimFrequency) {
+                        victim = i;
+                        victimFrequency = frequency;
+                    }
+                }
+            }
+            if (victimFrequency >= 0) {
+                if (sketch.frequency(hash) <= victimFrequency) {
+                    return;
+                }
+                evictions.increment();
+            }
+            byte[] body = Arrays.copyOfRange(buf, off, off + len);
+            CaseVerdict snapshot = new CaseVerdict();
+            snapshot.copy(verdict, body, -off);
+            ways[victim] = new Entry(hash, body, snapshot, reference, now + ttlNanos);
+        }
+
+        synchronized int size() {
+            int size = 0;
+            for (Entry entry : ways) {
+                if (entry != null) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Count-min sketch of four 4-bit counters per hash, sixteen counters to a {@code long}.
+     * Updates are not atomic: under contention an increment may be lost, which only makes an
+     * estimate slightly low.
+     */
+    private static final class FrequencySketch {
+
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int entries) {
+            int length = Integer.highestOneBit(Math.max(entries, 16) * 2 - 1);
+            this.table = new long[length];
+            this.mask = length - 1;
+            this.sampleSize = 10 * entries;
+        }
+
+        int frequency(long hash) {
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                long h = rehash(hash, row);
+                int counter = (int) (table[(int) h & mask] >>> ((h >>> 32 & 15) << 2)) & 15;
+                min = Math.min(min, counter);
+            }
+            return min;
+        }
+
+        void increment(long hash) {
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                long h = rehash(hash, row);
+                int index = (int) h & mask;
+                int shift = (int) (h >>> 32 & 15) << 2;
+                // Read once, so that a racing increment can lose a count but never carry into a neighbour.
+                long word = table[index];
+                if ((word >>> shift & 15) < 15) {
+                    table[index] = word + (1L << shift);
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        /** Halves every counter, so that the sketch tracks recent rather than all-time frequency. */
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            additions = 0;
+        }
+
+        private static long rehash(long hash, int row) {
+            return mix(hash + row * 0x9E3779B97F4A7C15L);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.example;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static org.example.CaseValidator.CLASS;
+import static org.example.CaseValidator.LETTER;
+
+/**
+ * {@link FieldScans} a vector of bytes at a time: each step classifies 16 or 32 bytes with a few
+ * lane-wise comparisons and tests the whole mask at once.
+ * <p>
+ * A value that ends before the array does is read in whole vectors, and the lanes past its end are
+ * masked out of the result. At the very end of an array, the searches finish with scalar code,
+ * which beats a masked load for a few bytes; the UUID and name checks use the masked load. Only used
+ * through {@link FieldScans#vector()}, which checks that the Vector API module is present before
+ * this class is loaded.
+ */
+final class VectorScans implements FieldScans {
+
+    // Field values are tens of bytes, so vectors wider than 256 bits would mostly read padding.
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.vectorBitSize() >= 256
+            ? ByteVector.SPECIES_256 : ByteVector.SPECIES_128;
+    private static final int LANES = SPECIES.length();
+
+    /** Where a canonical UUID has its dashes, padded so that any vector of it can be read. */
+    private static final boolean[] DASHES = new boolean[36 + LANES];
+
+    static {
+        DASHES[8] = DASHES[13] = DASHES[18] = DASHES[23] = true;
+    }
+
+    static boolean isSupported() {
+        return ByteVector.SPECIES_PREFERRED.vectorBitSize() >= 128;
+    }
+
+    @Override
+    public boolean isCaseId(byte[] buf, int off, int len) {
+        if (len != 36) {
+            return false;
+        }
+        int end = off + 36;
+        for (int i = 0; i < 36; i += LANES) {
+            ByteVector v = load(buf, off + i, end);
+            VectorMask<Byte> dashAt = VectorMask.fromArray(SPECIES, DASHES, i);
+            VectorMask<Byte> ok = v.eq((byte) '-').and(dashAt).or(isHex(v).andNot(dashAt));
+            if (!ok.or(SPECIES.indexInRange(off + i, end).not()).allTrue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isPatientName(byte[] buf, int off, int len) {
+        int end = off + len;
+        int carets = 0;
+        int first = -1;
+        int second = -1;
+        for (int i = off; i < end; i += LANES) {
+            ByteVector v = load(buf, i, end);
+            VectorMask<Byte> inRange = SPECIES.indexInRange(i, end);
+            VectorMask<Byte> caret = v.eq((byte) '^').and(inRange);
+            VectorMask<Byte> name = isLetter(v).or(v.eq((byte) ' ')).or(v.eq((byte) '\''))
+                    .or(v.eq((byte) '-')).or(v.eq((byte) '.'));
+            if (!name.or(caret).or(inRange.not()).allTrue()) {
+                return false;
+            }
+            for (long bits = caret.toLong(); bits != 0; bits &= bits - 1) {
+                int at = i + Long.numberOfTrailingZeros(bits);
+                if (++carets > 2) {
+                    return false;
+                }
+                if (carets == 1) {
+                    first = at;
+                } else {
+                    second = at;
+                }
+            }
+        }
+        // Every byte is a name character or a caret; what is left is that each component starts
+        // with a letter, which also rules out empty components.
+        return carets > 0 && startsWithLetter(buf, off, end) && startsWithLetter(buf, first + 1, end)
+                && (second < 0 || startsWithLetter(buf, second + 1, end));
+    }
+
+    @Override
+    public int skipDigits(byte[] buf, int p, int end) {
+        int i = p;
+        for (; i < end && i + LANES <= buf.length; i += LANES) {
+            ByteVector v = ByteVector.fromArray(SPECIES, buf, i);
+            int lane = v.compare(VectorOperators.LT, (byte) '0').or(v.compare(VectorOperators.GT, (byte) '9')).firstTrue();
+            if (lane < LANES) {
+                return Math.min(i + lane, end);
+            }
+        }
+        return i < end ? SCALAR.skipDigits(buf, i, end) : end;
+    }
+
+    @Override
+    public int indexOf(byte[] buf, int p, int end, byte b) {
+        int i = p;
+        for (; i < end && i + LANES <= buf.length; i += LANES) {
+            int lane = ByteVector.fromArray(SPECIES, buf, i).eq(b).firstTrue();
+            if (lane < LANES) {
+                return i + lane < end ? i + lane : -1;
+            }
+        }
+        return i < end ? SCALAR.indexOf(buf, i, end, b) : -1;
+    }
+
+    /** The vector at {@code i}; lanes past {@code end} hold whatever follows, or zero past the array. */
+    private static ByteVector load(byte[] buf, int i, int end) {
+        return i + LANES <= buf.length
+                ? ByteVector.fromArray(SPECIES, buf, i)
+                : ByteVector.fromArray(SPECIES, buf, i, SPECIES.indexInRange(i, end));
+    }
+
+    private static VectorMask<Byte> isHex(ByteVector v) {
+        ByteVector lower = v.or((byte) 0x20);
+        return v.compare(VectorOperators.GE, (byte) '0').and(v.compare(VectorOperators.LE, (byte) '9'))
+                .or(lower.compare(VectorOperators.GE, (byte) 'a').and(lower.compare(VectorOperators.LE, (byte) 'f')));
+    }
+
+    /** ASCII letters and, as in {@link CaseValidator#CLASS}, every byte of a multi-byte UTF-8 sequence. */
+    private static VectorMask<Byte> isLetter(ByteVector v) {
+        ByteVector lower = v.or((byte) 0x20);
+        return lower.compare(VectorOperators.GE, (byte) 'a').and(lower.compare(VectorOperators.LE, (byte) 'z'))
+                .or(v.compare(VectorOperators.LT, (byte) 0));
+    }
+
+    private static boolean startsWithLetter(byte[] buf, int p, int end) {
+        return p < end && (CLASS[buf[p] & 0xFF] & LETTER) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "vector" + SPECIES.vectorBitSize();
+    }
+}
@@ -0,0 +1,143 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Response body of the collect-all mode, requested with {@code ?report=all}: the usual message
+ * plus every violated rule from REQ-2 to REQ-7, so that a client can fix all fields in one go.
+ * <pre>
+ *   {"message":"Missing dob","violations":["Invalid patient_id","Missing dob","Invalid patient_title"]}
+ * </pre>
+ * Violations are listed in field order, followed by the first unexpected key. The list for every
+ * combination of missing and invalid fields is encoded once up front, so a report is written as a
+ * few preallocated segments plus, at most, a key copied straight from the request; nothing is
+ * allocated. Only missing and invalid outcomes carry a list; every other outcome keeps its usual
+ * body.
+ */
+final class ViolationReport {
+
+    static final String QUERY = "report=all";
+
+    private static final int FIELDS = CaseField.values().length;
+    private static final byte[][] LISTS = new byte[1 << (2 * FIELDS)][];
+    private static final byte[] INVALID_KEY = "\"Invalid ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOTE = {'"'};
+    private static final byte[] COMMA = {','};
+    private static final byte[] NONE = {};
+    private static final byte[] END = "]}".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (int mask = 0; mask < LISTS.length; mask++) {
+            StringBuilder list = new StringBuilder(",\"violations\":[");
+            for (CaseField field : CaseField.values()) {
+                String message = (mask & field.bit()) != 0 ? field.missingMessage()
+                        : (mask >>> FIELDS & field.bit()) != 0 ? field.invalidMessage() : null;
+                if (message != null) {
+                    list.append(list.charAt(list.length() - 1) == '[' ? "\"" : ",\"").append(message).append('"');
+                }
+            }
+            LISTS[mask] = list.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private ViolationReport() {
+    }
+
+    /** Whether the request asks for every violation, e.g. {@code POST .../checkcase?report=all}. */
+    static boolean requested(URI uri) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return false;
+        }
+        for (int start = 0; start <= query.length(); ) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (query.regionMatches(start, QUERY, 0, QUERY.length()) && end - start == QUERY.length()) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    static boolean applies(CaseVerdict verdict) {
+        return verdict.outcome() == CaseVerdict.Outcome.MISSING || verdict.outcome() == CaseVerdict.Outcome.INVALID;
+    }
+
+    /** Length of the whole report body for a verdict that {@link #applies}. */
+    static int length(CaseVerdict verdict) {
+        int length = verdict.isUnexpectedField()
+                ? CheckCaseHandler.INVALID_PREFIX.length + verdict.nameLength() + QUOTE.length
+                : message(verdict).length - 1;
+        length += list(verdict).length + END.length;
+        if (verdict.hasUnexpectedKey()) {
+            length += separator(verdict).length + INVALID_KEY.length + verdict.nameLength() + QUOTE.length;
+        }
+        return length;
+    }
+
+    /** Writes the report body, leaving out its first {@code skip} bytes (1 to drop the opening brace). */
+    static void write(CaseVerdict verdict, int skip, OutputStream out) throws IOException {
+        if (verdict.isUnexpectedField()) {
+            out.write(CheckCaseHandler.INVALID_PREFIX, skip, CheckCaseHandler.INVALID_PREFIX.length - skip);
+            out.write(verdict.source(), verdict.nameOffset(), verdict.nameLength());
+            out.write(QUOTE);
+        } else {
+            byte[] message = message(verdict);
+            out.write(message, skip, message.length - 1 - skip);
+        }
+        out.write(list(verdict));
+        if (verdict.hasUnexpectedKey()) {
+            out.write(separator(verdict));
+            out.write(INVALID_KEY);
+            out.write(verdict.source(), verdict.nameOffset(), verdict.nameLength());
+            out.write(QUOTE);
+        }
+        out.write(END);
+    }
+
+    /** Same as {@link #write(CaseVerdict, int, OutputStream)}, into {@code dst} at {@code pos}. */
+    static int write(CaseVerdict verdict, int skip, byte[] dst, int pos) {
+        if (verdict.isUnexpectedField()) {
+            pos = put(CheckCaseHandler.INVALID_PREFIX, skip, CheckCaseHandler.INVALID_PREFIX.length - skip, dst, pos);
+            pos = put(verdict.source(), verdict.nameOffset(), verdict.nameLength(), dst, pos);
+            pos = put(QUOTE, 0, QUOTE.length, dst, pos);
+        } else {
+            byte[] message = message(verdict);
+            pos = put(message, skip, message.length - 1 - skip, dst, pos);
+        }
+        byte[] list = list(verdict);
+        pos = put(list, 0, list.length, dst, pos);
+        if (verdict.hasUnexpectedKey()) {
+            byte[] separator = separator(verdict);
+            pos = put(separator, 0, separator.length, dst, pos);
+            pos = put(INVALID_KEY, 0, INVALID_KEY.length, dst, pos);
+            pos = put(verdict.source(), verdict.nameOffset(), verdict.nameLength(), dst, pos);
+            pos = put(QUOTE, 0, QUOTE.length, dst, pos);
+        }
+        return put(END, 0, END.length, dst, pos);
+    }
+
+    /** The precomputed single-message body; never called for an unexpected key, so never copies. */
+    private static byte[] message(CaseVerdict verdict) {
+        return CheckCaseHandler.responseBody(verdict, null);
+    }
+
+    private static byte[] list(CaseVerdict verdict) {
+        return LISTS[verdict.missingFields() | verdict.invalidFields() << FIELDS];
+    }
+
+    private static byte[] separator(CaseVerdict verdict) {
+        return (verdict.missingFields() | verdict.invalidFields()) == 0 ? NONE : COMMA;
+    }
+
+    private static int put(byte[] src, int off, int len, byte[] dst, int pos) {
+        System.arraycopy(src, off, dst, pos, len);
+        return pos + len;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable set of short ASCII codes, such as the tissue types, with a collision-free hash table
+ * built once up front.
+ * <p>
+ * The build searches for a hash seed under which every code lands in its own slot, so a lookup is
+ * one hash of the candidate bytes, one slot and at most one byte comparison, whatever the number
+ * of codes.
+ */
+public final class Vocabulary {
+
+    private static final int MAX_SEEDS = 1 << 12;
+
+    private final List<String> codes;
+    private final byte[][] slots;
+    private final int mask;
+    private final int seed;
+
+    private Vocabulary(List<String> codes, byte[][] slots, int seed) {
+        this.codes = codes;
+        this.slots = slots;
+        this.mask = slots.length - 1;
+        this.seed = seed;
+    }
+
+    public static Vocabulary of(String... codes) {
+        return of(Arrays.asList(codes));
+    }
+
+    /** @throws IllegalArgumentException if a code is blank or not ASCII */
+    public static Vocabulary of(Collection<String> codes) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String code : codes) {
+            if (code.isBlank() || !StandardCharsets.US_ASCII.newEncoder().canEncode(code)) {
+                throw new IllegalArgumentException("Invalid reference code '" + code + "'");
+            }
+            distinct.add(code);
+        }
+        byte[][] keys = distinct.stream().map(c -> c.getBytes(StandardCharsets.US_ASCII)).toArray(byte[][]::new);
+        for (int size = Integer.highestOneBit(Math.max(keys.length, 1) * 2 - 1) * 2; ; size <<= 1) {
+            for (int seed = 0; seed < MAX_SEEDS; seed++) {
+                byte[][] slots = place(keys, size, seed);
+                if (slots != null) {
+                    return new Vocabulary(List.copyOf(distinct), slots, seed);
+                }
+            }
+        }
+    }
+
+    public boolean contains(byte[] buf, int off, int len) {
+        byte[] code = slots[hash(buf, off, len, seed) & mask];
+        return code != null && Arrays.equals(code, 0, code.length, buf, off, off + len);
+    }
+
+    public boolean contains(String code) {
+        byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+        return contains(bytes, 0, bytes.length);
+    }
+
+    public List<String> codes() {
+        return codes;
+    }
+
+    public int size() {
+        return codes.size();
+    }
+
+    private static byte[][] place(byte[][] keys, int size, int seed) {
+        byte[][] slots = new byte[size][];
+        for (byte[] key : keys) {
+            int slot = hash(key, 0, key.length, seed) & (size - 1);
+            if (slots[slot] != null) {
+                return null;
+            }
+            slots[slot] = key;
+        }
+        return slots;
+    }
+
+    private static int hash(byte[] buf, int off, int len, int seed) {
+        int h = seed * 0x9E3779B9 ^ len;
+        for (int i = off; i < off + len; i++) {
+            h = (h ^ buf[i]) * 0x01000193;
+        }
+        return h ^ h >>> 16;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(",", codes);
+    }
+}
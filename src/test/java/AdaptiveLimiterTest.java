@@ -0,0 +1,146 @@
+import org.example.AdaptiveLimiter;
+import org.example.CaseServer;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveLimiterTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+
+    @Test
+    public void validateLimitFollowsLatency() {
+        AtomicLong clock = new AtomicLong();
+        AdaptiveLimiter.Options options = new AdaptiveLimiter.Options();
+        options.initialLimit = 16;
+        options.minLimit = 4;
+        options.maxLimit = 1_000;
+        options.maxQueue = 0;
+        options.clock = clock::get;
+        AdaptiveLimiter limiter = new AdaptiveLimiter(options);
+
+        // A server that serves 100 requests per millisecond; anything beyond that queues.
+        for (int round = 0; round < 300; round++) {
+            saturate(limiter, clock, 100);
+        }
+        assertBetween(limiter, 100, 400);
+
+        // Cases get five times as expensive: the limit backs off within a few windows.
+        for (int round = 0; round < 10; round++) {
+            saturate(limiter, clock, 20);
+        }
+        assertBetween(limiter, 20, 90);
+        for (int round = 0; round < 300; round++) {
+            saturate(limiter, clock, 20);
+        }
+        assertBetween(limiter, 20, 90);
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    public void validateRequestsOverLimitAreShedOrQueued() throws Exception {
+        AdaptiveLimiter.Options options = new AdaptiveLimiter.Options();
+        options.initialLimit = 2;
+        options.minLimit = 2;
+        options.maxLimit = 2;
+        options.maxQueue = 1;
+        options.maxWait = Duration.ofSeconds(5);
+        AdaptiveLimiter limiter = new AdaptiveLimiter(options);
+
+        AdaptiveLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveLimiter.Permit second = limiter.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(second);
+        CompletableFuture<AdaptiveLimiter.Permit> waiting = CompletableFuture.supplyAsync(limiter::tryAcquire);
+        while (limiter.queued() == 0) {
+            Thread.onSpinWait();
+        }
+        // The queue is full: shed at once.
+        assertNull(limiter.tryAcquire());
+        assertEquals(1, limiter.shed());
+
+        first.release();
+        AdaptiveLimiter.Permit third = waiting.get();
+        assertNotNull(third);
+        assertEquals(2, limiter.inFlight());
+        second.release();
+        third.releaseIgnored();
+        assertEquals(0, limiter.inFlight());
+        assertEquals(0, limiter.queued());
+    }
+
+    @Test
+    public void validateServerShedsWith503() throws Exception {
+        AdaptiveLimiter.Options limits = new AdaptiveLimiter.Options();
+        limits.initialLimit = 1;
+        limits.minLimit = 1;
+        limits.maxLimit = 1;
+        limits.maxQueue = 0;
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        options.limiter = new AdaptiveLimiter(limits);
+        try (CaseServer server = CaseServer.start(options); HttpClient http = HttpClient.newHttpClient()) {
+            // A request in progress holds the only slot.
+            AdaptiveLimiter.Permit busy = options.limiter.tryAcquire();
+            assertNotNull(busy);
+
+            HttpResponse<String> shed = http.send(post(server, CaseServer.CHECKCASE_PATH, VALID), HttpResponse.BodyHandlers.ofString());
+            assertEquals(503, shed.statusCode());
+            assertEquals("{\"message\":\"Overloaded\"}", shed.body());
+            assertEquals("1", shed.headers().firstValue("Retry-After").orElseThrow());
+            assertEquals(503, http.send(post(server, CaseServer.BATCH_PATH, VALID + "\n"),
+                    HttpResponse.BodyHandlers.ofString()).statusCode());
+
+            String metrics = http.send(HttpRequest.newBuilder(URI.create(server.baseUri() + CaseServer.METRICS_PATH)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            assertTrue(metrics.contains("checkcase_shed_requests_total 2\n"), metrics);
+            assertTrue(metrics.contains("checkcase_concurrency_limit 1\n"), metrics);
+            assertTrue(metrics.contains("checkcase_in_flight_requests 1\n"), metrics);
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"checkcase\",status=\"503\",message=\"Overloaded\"} 1\n"));
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"batch\",status=\"503\",message=\"Overloaded\"} 1\n"));
+
+            busy.release();
+            assertEquals(200, http.send(post(server, CaseServer.CHECKCASE_PATH, VALID), HttpResponse.BodyHandlers.ofString()).statusCode());
+            // The slot is freed just after the response is written.
+            for (int wait = 0; wait < 1_000 && options.limiter.inFlight() > 0; wait++) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, options.limiter.inFlight());
+        }
+    }
+
+    /**
+     * Holds the whole limit at once, then completes every request after 1 ms per {@code capacity}
+     * requests held, as a server whose requests queue beyond its capacity would.
+     */
+    private static void saturate(AdaptiveLimiter limiter, AtomicLong clock, int capacity) {
+        List<AdaptiveLimiter.Permit> permits = new ArrayList<>();
+        for (AdaptiveLimiter.Permit permit; (permit = limiter.tryAcquire()) != null; ) {
+            permits.add(permit);
+        }
+        clock.addAndGet(1_000_000L * Math.max(1, permits.size() / capacity));
+        permits.forEach(AdaptiveLimiter.Permit::release);
+    }
+
+    private static void assertBetween(AdaptiveLimiter limiter, int min, int max) {
+        int limit = limiter.limit();
+        assertTrue(limit >= min && limit <= max, "limit " + limit + " outside " + min + ".." + max);
+    }
+
+    private static HttpRequest post(CaseServer server, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(server.baseUri() + path))
+                .header("Content-Type", path.equals(CaseServer.BATCH_PATH) ? "application/x-ndjson" : "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+}
@@ -0,0 +1,212 @@
+import org.example.CaseField;
+import org.example.CaseIdIndex;
+import org.example.CaseServer;
+import org.example.CaseValidator;
+import org.example.PatientIndex;
+import org.example.ReferenceData;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchValidationTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+
+    private static CaseServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        server = CaseServer.start(0);
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    public static void teardown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void validateBatchLines() throws IOException, InterruptedException {
+        String body = VALID + "\n"
+                + "\r\n"
+                + VALID.replace("19700401", "19700230") + "\r\n"
+                + "{}\n"
+                + "{\"case_id\":\"a474e3e6-89ad-4bb9-be00-cba347e2a001\",\"patient_title\":\"Mr.\"}\n"
+                + "x".repeat(100_000) + "\n"
+                + VALID;
+
+        List<String> lines = post(body, "application/x-ndjson").body().lines().toList();
+
+        assertEquals(List.of(
+                "{\"line\":1,\"status\":200,\"message\":\"Case valid\"}",
+                "{\"line\":3,\"status\":422,\"message\":\"Invalid dob\"}",
+                "{\"line\":4,\"status\":400,\"message\":\"Missing case_id\"}",
+                "{\"line\":5,\"status\":400,\"message\":\"Missing patient_id\"}",
+                "{\"line\":6,\"status\":413,\"message\":\"Payload too large\"}",
+                "{\"line\":7,\"status\":200,\"message\":\"Case valid\"}"), lines);
+    }
+
+    @Test
+    public void validateOversizedLineWithItsNewline() throws IOException, InterruptedException {
+        // One byte over the limit, so the newline arrives in the same read as the line's last bytes.
+        String oversized = "{\"" + "k".repeat(64 * 1024 - 5) + "\":1}";
+        String body = VALID + "\n" + oversized + "\n" + VALID + "\n";
+
+        List<String> lines = post(server, CaseServer.BATCH_PATH + "?report=all", body, "application/x-ndjson")
+                .body().lines().toList();
+
+        assertEquals(64 * 1024 + 1, oversized.length());
+        assertEquals(List.of(
+                "{\"line\":1,\"status\":200,\"message\":\"Case valid\"}",
+                "{\"line\":2,\"status\":413,\"message\":\"Payload too large\"}",
+                "{\"line\":3,\"status\":200,\"message\":\"Case valid\"}"), lines);
+    }
+
+    @Test
+    public void validateBatchThousandsOfLines() throws IOException, InterruptedException {
+        String body = (VALID + "\n").repeat(20_000);
+
+        List<String> lines = post(body, "application/x-ndjson").body().lines().toList();
+
+        assertEquals(20_000, lines.size());
+        assertEquals("{\"line\":20000,\"status\":200,\"message\":\"Case valid\"}", lines.get(19_999));
+    }
+
+    @Test
+    public void validateBatchContentType() throws IOException, InterruptedException {
+        HttpResponse<String> response = post(VALID, "text/plain");
+
+        assertEquals(415, response.statusCode());
+        assertEquals("{\"message\":\"Unsupported media\"}", response.body());
+    }
+
+    @Test
+    public void validateDuplicateCaseIds() throws IOException, InterruptedException {
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        options.caseIds = new CaseIdIndex();
+        try (CaseServer dedupe = CaseServer.start(options)) {
+            String other = VALID.replace("a001", "a002");
+            String body = VALID + "\n" + VALID.replace("19700401", "19700230") + "\n" + other + "\n" + VALID;
+
+            List<String> lines = post(dedupe, CaseServer.BATCH_PATH, body, "application/x-ndjson").body().lines().toList();
+            HttpResponse<String> single = post(dedupe, CaseServer.CHECKCASE_PATH, other, "application/json");
+
+            assertEquals(List.of(
+                    "{\"line\":1,\"status\":200,\"message\":\"Case valid\"}",
+                    "{\"line\":2,\"status\":422,\"message\":\"Invalid dob\"}",
+                    "{\"line\":3,\"status\":200,\"message\":\"Case valid\"}",
+                    "{\"line\":4,\"status\":409,\"message\":\"Duplicate case_id\"}"), lines);
+            assertEquals(409, single.statusCode());
+            assertEquals("{\"message\":\"Duplicate case_id\"}", single.body());
+        }
+    }
+
+    @Test
+    public void validateReportAllViolations() throws IOException, InterruptedException {
+        String bad = VALID.replace("1234567^1", "1234567^2").replace("19700401", "1970").replace("\"dob\"", "\"dob_\"");
+        String unexpected = VALID.replace("\"case_id\"", "\"patient_title\":\"Mr.\",\"case_id\"");
+
+        HttpResponse<String> single = post(server, CaseServer.CHECKCASE_PATH + "?report=all", bad, "application/json");
+        HttpResponse<String> first = post(server, CaseServer.CHECKCASE_PATH + "?report=all", unexpected, "application/json");
+        HttpResponse<String> plain = post(server, CaseServer.CHECKCASE_PATH, bad, "application/json");
+        List<String> lines = post(server, CaseServer.BATCH_PATH + "?report=all", VALID + "\n" + bad, "application/x-ndjson")
+                .body().lines().toList();
+
+        assertEquals(400, single.statusCode());
+        assertEquals("{\"message\":\"Missing dob\",\"violations\":[\"Invalid patient_id\",\"Missing dob\",\"Invalid dob_\"]}",
+                single.body());
+        assertEquals("{\"message\":\"Invalid patient_title\",\"violations\":[\"Invalid patient_title\"]}", first.body());
+        assertEquals("{\"message\":\"Missing dob\"}", plain.body());
+        assertEquals(List.of(
+                "{\"line\":1,\"status\":200,\"message\":\"Case valid\"}",
+                "{\"line\":2,\"status\":400,\"message\":\"Missing dob\",\"violations\":[\"Invalid patient_id\",\"Missing dob\",\"Invalid dob_\"]}"),
+                lines);
+    }
+
+    @Test
+    public void validateInconsistentPatients() throws IOException, InterruptedException {
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        options.patients = new PatientIndex();
+        try (CaseServer consistent = CaseServer.start(options)) {
+            String body = VALID + "\n"
+                    + VALID.replace("19700401", "19700402") + "\n"
+                    + VALID.replace("19700401", "19700230") + "\n"
+                    + VALID.replace("Smith^John", "SMITH^JOHN^Paul") + "\n"
+                    + VALID.replace("Smith^John", "Smith^Jane").replace("19700401", "19700501");
+
+            List<String> lines = post(consistent, CaseServer.BATCH_PATH, body, "application/x-ndjson").body().lines().toList();
+            String metrics = client.send(HttpRequest.newBuilder(URI.create(consistent.baseUri() + CaseServer.METRICS_PATH)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+
+            assertEquals(List.of(
+                    "{\"line\":1,\"status\":200,\"message\":\"Case valid\"}",
+                    "{\"line\":2,\"status\":200,\"message\":\"Case valid\",\"patient\":\"Inconsistent dob\"}",
+                    "{\"line\":3,\"status\":422,\"message\":\"Invalid dob\"}",
+                    "{\"line\":4,\"status\":200,\"message\":\"Case valid\"}",
+                    "{\"line\":5,\"status\":200,\"message\":\"Case valid\",\"patient\":\"Inconsistent patient_name and dob\"}"),
+                    lines);
+            assertTrue(metrics.contains("checkcase_patients 1\n"));
+            assertTrue(metrics.contains("checkcase_inconsistent_patients_total{field=\"dob\"} 2\n"));
+            assertTrue(metrics.contains("checkcase_inconsistent_patients_total{field=\"patient_name\"} 1\n"));
+        }
+    }
+
+    @Test
+    public void validateMetrics() throws IOException, InterruptedException {
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        options.validator = new CaseValidator(ReferenceData::defaults, options.metrics);
+        try (CaseServer metered = CaseServer.start(options)) {
+            String bad = VALID.replace("1234567^1", "1234567^2").replace("19700401", "1970");
+            post(metered, CaseServer.CHECKCASE_PATH, bad, "application/json");
+            post(metered, CaseServer.CHECKCASE_PATH, "{}", "application/json");
+            post(metered, CaseServer.CHECKCASE_PATH, VALID, "text/plain");
+            post(metered, CaseServer.BATCH_PATH, (VALID + "\n").repeat(2_000) + "x".repeat(100_000), "application/x-ndjson");
+
+            HttpResponse<String> response = client.send(
+                    HttpRequest.newBuilder(URI.create(metered.baseUri() + CaseServer.METRICS_PATH)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            String metrics = response.body();
+
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith("text/plain; version=0.0.4"));
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"checkcase\",status=\"422\",message=\"Invalid patient_id\"} 1\n"));
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"checkcase\",status=\"400\",message=\"Missing case_id\"} 1\n"));
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"checkcase\",status=\"415\",message=\"Unsupported media\"} 1\n"));
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"batch\",status=\"200\",message=\"Case valid\"} 2000\n"));
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"batch\",status=\"413\",message=\"Payload too large\"} 1\n"));
+            assertTrue(metrics.contains("checkcase_rule_failures_total{rule=\"patient_id\"} 1\n"));
+            assertTrue(metrics.contains("checkcase_rule_failures_total{rule=\"dob\"} 1\n"));
+            assertTrue(metrics.contains("checkcase_missing_fields_total{field=\"tissue_type\"} 1\n"));
+            assertTrue(metrics.contains("checkcase_request_duration_seconds_count{endpoint=\"checkcase\"} 3\n"));
+            assertTrue(options.metrics.ruleLatency(CaseField.DOB).count() > 0);
+        }
+    }
+
+    private HttpResponse<String> post(String body, String contentType) throws IOException, InterruptedException {
+        return post(server, CaseServer.BATCH_PATH, body, contentType);
+    }
+
+    private HttpResponse<String> post(CaseServer server, String path, String body, String contentType)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(server.baseUri() + path))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,144 @@
+import org.example.BinaryCase;
+import org.example.CaseIdIndex;
+import org.example.CaseLog;
+import org.example.CaseMutator;
+import org.example.CaseServer;
+import org.example.CaseValidator;
+import org.example.CaseVerdict;
+import org.example.ReferenceData;
+import org.example.Vocabulary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCaseTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+
+    private final CaseValidator validator = new CaseValidator();
+
+    @Test
+    public void validateMutatedCasesMatchJson() throws IOException {
+        CaseMutator mutator = CaseMutator.fromFixtures(Path.of("src/test/resources"));
+        CaseVerdict json = new CaseVerdict();
+        CaseVerdict binary = new CaseVerdict();
+        CaseVerdict decoded = new CaseVerdict();
+        int encoded = 0;
+        for (long i = 0; i < 20_000; i++) {
+            byte[] body = mutator.generate(7, i);
+            validator.validate(body, json);
+            byte[] encoding;
+            try {
+                encoding = BinaryCase.encode(body);
+            } catch (IllegalArgumentException e) {
+                assertEquals(CaseVerdict.MALFORMED_MESSAGE, json.message(), new String(body, StandardCharsets.UTF_8));
+                continue;
+            }
+            encoded++;
+            String describe = new String(body, StandardCharsets.UTF_8);
+            assertSameVerdict(json, validator.validateBinary(encoding, 0, encoding.length, binary), describe);
+            byte[] back = BinaryCase.toJson(encoding, 0, encoding.length);
+            assertSameVerdict(json, validator.validate(back, decoded), describe);
+        }
+        assertTrue(encoded > 15_000, "only " + encoded + " cases were well-formed JSON");
+    }
+
+    @Test
+    public void validateFixturesAreSmallerAndRoundTrip() throws IOException {
+        CaseVerdict verdict = new CaseVerdict();
+        byte[] body = Files.readAllBytes(Path.of("src/test/resources/1-1.json"));
+        byte[] encoding = BinaryCase.encode(body);
+        assertTrue(encoding.length * 2 < body.length, encoding.length + " of " + body.length + " bytes");
+        assertEquals("200 Case valid", validator.validateBinary(encoding, 0, encoding.length, verdict).toString());
+        assertEquals(VALID, new String(BinaryCase.toJson(encoding, 0, encoding.length), StandardCharsets.UTF_8));
+
+        byte[] fields = BinaryCase.encode(UUID.fromString("a474e3e6-89ad-4bb9-be00-cba347e2a001"),
+                "1234567^1^ISO^NN123^MC", "Smith^John", "19700401", "prostate");
+        assertArrayEquals(encoding, fields);
+        byte[] badDob = BinaryCase.encode(UUID.randomUUID(), "1234567^1^ISO^NN123^MC", "Smith^John", "19700230", "prostate");
+        assertEquals("422 Invalid dob", validator.validateBinary(badDob, 0, badDob.length, verdict).toString());
+        byte[] noName = BinaryCase.encode(UUID.randomUUID(), "1234567^1^ISO^NN123^MC", null, "19700401", "lung");
+        assertEquals("400 Missing patient_name", validator.validateBinary(noName, 0, noName.length, verdict).toString());
+
+        // A tissue type code past the end of the list, and a body cut short.
+        encoding[encoding.length - 1] = (byte) 200;
+        assertEquals("422 Invalid tissue_type", validator.validateBinary(encoding, 0, encoding.length, verdict).toString());
+        assertEquals("400 Malformed JSON", validator.validateBinary(encoding, 0, encoding.length - 5, verdict).toString());
+    }
+
+    @Test
+    public void validateServerAnswersBinaryLikeJson() throws Exception {
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        options.caseIds = new CaseIdIndex();
+        try (CaseServer server = CaseServer.start(options); HttpClient http = HttpClient.newHttpClient()) {
+            byte[] valid = BinaryCase.encode(VALID.getBytes(StandardCharsets.UTF_8));
+            assertResponse(http, server, BinaryCase.MEDIA_TYPE, valid, 200, "Case valid");
+            assertResponse(http, server, BinaryCase.MEDIA_TYPE, valid, 409, "Duplicate case_id");
+            byte[] unexpected = BinaryCase.encode(VALID.replace("}", ",\"patient_title\":\"Dr\"}").getBytes(StandardCharsets.UTF_8));
+            assertResponse(http, server, BinaryCase.MEDIA_TYPE, unexpected, 422, "Invalid patient_title");
+            assertResponse(http, server, BinaryCase.MEDIA_TYPE, new byte[]{(byte) 0xCA, 9}, 400, "Malformed JSON");
+            assertResponse(http, server, "application/json", valid, 415, "Unsupported media");
+
+            String metrics = http.send(HttpRequest.newBuilder(URI.create(server.baseUri() + CaseServer.METRICS_PATH)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"binary\",status=\"200\",message=\"Case valid\"} 1\n"), metrics);
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"binary\",status=\"409\",message=\"Duplicate case_id\"} 1\n"), metrics);
+        }
+    }
+
+    @Test
+    public void validateLoggedCaseOutlivesReload(@TempDir Path dir) throws Exception {
+        // A --reference file that lists the same codes in another order.
+        ReferenceData defaults = ReferenceData.defaults();
+        List<String> reversed = new ArrayList<>(defaults.tissueTypes().codes());
+        Collections.reverse(reversed);
+        ReferenceData reordered = new ReferenceData(Vocabulary.of(reversed), defaults.authorities(),
+                defaults.idTypes(), defaults.facilities());
+        AtomicReference<ReferenceData> reference = new AtomicReference<>(reordered);
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        options.validator = new CaseValidator(reference::get);
+        try (CaseLog log = CaseLog.open(dir)) {
+            options.log = log;
+            try (CaseServer server = CaseServer.start(options); HttpClient http = HttpClient.newHttpClient()) {
+                byte[] valid = BinaryCase.encode(VALID.getBytes(StandardCharsets.UTF_8), reordered);
+                assertResponse(http, server, BinaryCase.MEDIA_TYPE, valid, 200, "Case valid");
+            }
+            reference.set(defaults);
+            assertEquals(VALID, log.find("a474e3e6-89ad-4bb9-be00-cba347e2a001").orElseThrow().text());
+        }
+    }
+
+    private static void assertResponse(HttpClient http, CaseServer server, String contentType, byte[] body,
+                                       int status, String message) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(server.baseUri() + CaseServer.BINARY_PATH))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(status, response.statusCode(), response.body());
+        assertEquals("{\"message\":\"" + message + "\"}", response.body());
+    }
+
+    private static void assertSameVerdict(CaseVerdict expected, CaseVerdict actual, String body) {
+        assertEquals(expected.toString(), actual.toString(), body);
+        assertEquals(expected.missingFields(), actual.missingFields(), body);
+        assertEquals(expected.invalidFields(), actual.invalidFields(), body);
+        assertEquals(expected.hasUnexpectedKey(), actual.hasUnexpectedKey(), body);
+    }
+}
@@ -0,0 +1,125 @@
+import org.example.BulkReport;
+import org.example.BulkValidator;
+import org.example.CaseValidator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkValidatorTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+    private static final String INVALID_DOB = VALID.replace("19700401", "19700230");
+
+    @TempDir
+    Path dir;
+
+    // A chunk size of a few records forces many fork-join splits.
+    private final BulkValidator validator = new BulkValidator(new CaseValidator(), 1024, ForkJoinPool.commonPool());
+
+    @Test
+    public void validateNdjson() throws IOException {
+        StringBuilder file = new StringBuilder();
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 7 == 0) {
+                expected.add((long) file.length());
+                file.append(INVALID_DOB);
+            } else {
+                file.append(VALID);
+            }
+            file.append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        expected.add((long) file.length());
+        file.append("{\"case_id\":");
+
+        BulkReport report = validator.validate(write("cases.ndjson", file.toString()));
+
+        assertEquals(1001, report.records());
+        assertFailures(report, expected);
+        assertEquals("Invalid dob", report.failureMessage(0));
+        assertEquals("Malformed JSON", report.failureMessage(expected.size() - 1));
+    }
+
+    @Test
+    public void validatePrettyPrintedArray() throws IOException {
+        StringBuilder file = new StringBuilder("[\n");
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) {
+                file.append(",\n");
+            }
+            String record = i % 5 == 0 ? INVALID_DOB : VALID;
+            if (i % 5 == 0) {
+                expected.add((long) file.length());
+            }
+            file.append(record.replace(",\"", ",\n    \""));
+        }
+        file.append("\n]\n");
+
+        BulkReport report = validator.validate(write("cases.json", file.toString()));
+
+        assertEquals(500, report.records());
+        assertFailures(report, expected);
+    }
+
+    @Test
+    public void validateArrayResyncsAfterMalformedRecord() throws IOException {
+        String file = "[" + VALID + ",\n{\"case_id\": tru,\"dob\":\"x\"},\n" + VALID + ",\n{\"patient_title\":1}]";
+
+        BulkReport report = validator.validate(write("broken.json", file));
+
+        assertEquals(4, report.records());
+        assertEquals(2, report.invalid());
+        assertEquals("Malformed JSON", report.failureMessage(0));
+        assertEquals("Missing case_id", report.failureMessage(1));
+    }
+
+    @Test
+    public void validateOversizedLineInOneWindow() throws IOException {
+        String oversized = "{\"" + "k".repeat(64 * 1024 - 5) + "\":1}";
+        String file = VALID + "\n" + oversized + "\n" + VALID + "\n";
+
+        BulkReport report = new BulkValidator(new CaseValidator()).validate(write("oversized.ndjson", file));
+
+        assertEquals(3, report.records());
+        assertEquals(1, report.invalid());
+        assertEquals(VALID.length() + 1, report.failureOffset(0));
+        assertEquals("Payload too large", report.failureMessage(0));
+    }
+
+    @Test
+    public void validateOversizedArrayRecords() throws IOException {
+        String inWindow = "{\"" + "k".repeat(64 * 1024) + "\":1}";
+        String pastWindow = "{\"k\":[" + "{\"v\":\"}\\\"\"},".repeat(100_000) + "{}]}";
+        String file = "[" + VALID + ",\n" + inWindow + ",\n" + pastWindow + ",\n" + VALID + "]";
+
+        BulkReport report = new BulkValidator(new CaseValidator()).validate(write("oversized.json", file));
+
+        assertEquals(4, report.records());
+        assertEquals(2, report.invalid());
+        assertEquals(file.indexOf(inWindow), report.failureOffset(0));
+        assertEquals("Payload too large", report.failureMessage(0));
+        assertEquals(file.indexOf(pastWindow), report.failureOffset(1));
+        assertEquals("Payload too large", report.failureMessage(1));
+    }
+
+    private static void assertFailures(BulkReport report, List<Long> expected) {
+        assertEquals(expected.size(), report.invalid());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), report.failureOffset(i));
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+import org.example.CaseIdIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaseIdIndexTest {
+
+    @Test
+    public void validateAddRejectsRepeats() {
+        CaseIdIndex index = new CaseIdIndex();
+        byte[] id = bytes("a474e3e6-89ad-4bb9-be00-cba347e2a001");
+
+        assertFalse(index.contains(id, 0));
+        assertTrue(index.add(id, 0));
+        assertFalse(index.add(id, 0));
+        assertFalse(index.add(bytes("A474E3E6-89AD-4BB9-BE00-CBA347E2A001"), 0));
+        assertTrue(index.add(bytes("a474e3e6-89ad-4bb9-be00-cba347e2a002"), 0));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void validateParsesLikeUuid() {
+        CaseIdIndex index = new CaseIdIndex();
+        UUID uuid = UUID.fromString("0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0");
+
+        index.add(bytes(uuid.toString()), 0);
+
+        assertTrue(index.contains(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()));
+    }
+
+    @Test
+    public void validateNilUuid() {
+        CaseIdIndex index = new CaseIdIndex();
+        byte[] nil = bytes("00000000-0000-0000-0000-000000000000");
+
+        assertFalse(index.contains(nil, 0));
+        assertTrue(index.add(nil, 0));
+        assertFalse(index.add(nil, 0));
+        assertEquals(1, index.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void validateGrowsPastExpected(boolean offHeap) {
+        CaseIdIndex index = new CaseIdIndex(16, offHeap);
+        for (long i = 0; i < 200_000; i++) {
+            assertTrue(index.add(i, ~i));
+        }
+        for (long i = 0; i < 200_000; i++) {
+            assertFalse(index.add(i, ~i));
+        }
+
+        assertEquals(200_000, index.size());
+        assertEquals(offHeap, index.isOffHeap());
+    }
+
+    @Test
+    public void validateConcurrentAddsAcceptEachIdOnce() throws Exception {
+        CaseIdIndex index = new CaseIdIndex(16, false);
+        int threads = 8;
+        int ids = 50_000;
+        List<Future<Integer>> accepted = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                accepted.add(executor.submit(() -> {
+                    int n = 0;
+                    for (long i = 0; i < ids; i++) {
+                        if (index.add(i * 0x9E3779B97F4A7C15L, i)) {
+                            n++;
+                        }
+                    }
+                    return n;
+                }));
+            }
+        }
+        int total = 0;
+        for (Future<Integer> f : accepted) {
+            total += f.get();
+        }
+
+        assertEquals(ids, total);
+        assertEquals(ids, index.size());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
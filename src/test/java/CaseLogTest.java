@@ -0,0 +1,174 @@
+import org.example.CaseLog;
+import org.example.CaseServer;
+import org.example.CaseValidationClient;
+import org.example.CaseValidator;
+import org.example.CaseVerdict;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaseLogTest {
+
+    // The valid case with its case_id left to String.format.
+    private static final String VALID = ConformanceRunner.VALID.replace("a474e3e6-89ad-4bb9-be00-cba347e2a001", "%s");
+    private static final long SMALL_SEGMENT = 80 * 1024;
+
+    private final CaseValidator validator = new CaseValidator();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void validateAppendFindAndReopen() throws IOException {
+        List<String> ids = ids(20_000);
+        try (CaseLog log = CaseLog.open(dir)) {
+            for (String id : ids) {
+                append(log, String.format(VALID, id));
+                append(log, String.format(VALID, id).replace("19700401", "19700230"));
+            }
+            log.sync();
+            assertFound(log, ids);
+            assertTrue(log.find(UUID.randomUUID().toString()).isEmpty());
+            assertTrue(log.find("not-a-uuid").isEmpty());
+        }
+        try (CaseLog log = CaseLog.open(dir)) {
+            assertEquals(40_000, log.size());
+            assertEquals(20_000, log.indexed());
+            assertFound(log, ids);
+
+            long start = System.nanoTime();
+            for (String id : ids) {
+                assertTrue(log.find(id).isPresent());
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / ids.size();
+            assertTrue(micros < 1_000, "lookup took " + micros + " µs");
+        }
+    }
+
+    @Test
+    public void validateLatestCaseWins() throws IOException {
+        String id = UUID.randomUUID().toString();
+        try (CaseLog log = CaseLog.open(dir)) {
+            append(log, String.format(VALID, id));
+            append(log, String.format(VALID, id).replace("Smith^John", "Smith^Jane"));
+            append(log, String.format(VALID, id).replace("19700401", "19700230"));
+            assertEquals("Smith^Jane", field(log.find(id).orElseThrow()));
+        }
+        try (CaseLog log = CaseLog.open(dir)) {
+            assertEquals("Smith^Jane", field(log.find(id).orElseThrow()));
+        }
+    }
+
+    @Test
+    public void validateSegmentsRollOver() throws IOException {
+        List<String> ids = ids(2_000);
+        try (CaseLog log = CaseLog.open(dir, SMALL_SEGMENT)) {
+            for (String id : ids) {
+                append(log, String.format(VALID, id));
+            }
+            assertTrue(log.segmentCount() > 1, "segments: " + log.segmentCount());
+        }
+        try (CaseLog log = CaseLog.open(dir, SMALL_SEGMENT)) {
+            assertEquals(ids.size(), log.size());
+            assertFound(log, ids);
+            String more = UUID.randomUUID().toString();
+            append(log, String.format(VALID, more));
+            assertTrue(log.find(more).isPresent());
+        }
+    }
+
+    @Test
+    public void validateTornRecordIsDropped() throws IOException {
+        List<String> ids = ids(100);
+        long last;
+        try (CaseLog log = CaseLog.open(dir, SMALL_SEGMENT)) {
+            last = 0;
+            for (String id : ids) {
+                last = append(log, String.format(VALID, id));
+            }
+        }
+        // A crash half-way through writing the last record leaves part of its body behind.
+        try (FileChannel file = FileChannel.open(dir.resolve("cases-00000000.log"), StandardOpenOption.WRITE)) {
+            file.write(ByteBuffer.wrap("XXXX".getBytes(StandardCharsets.US_ASCII)), (int) last + 60);
+        }
+        String replacement = UUID.randomUUID().toString();
+        try (CaseLog log = CaseLog.open(dir, SMALL_SEGMENT)) {
+            assertEquals(99, log.size());
+            assertFound(log, ids.subList(0, 99));
+            assertTrue(log.find(ids.get(99)).isEmpty());
+            append(log, String.format(VALID, replacement));
+        }
+        try (CaseLog log = CaseLog.open(dir, SMALL_SEGMENT)) {
+            assertEquals(100, log.size());
+            assertTrue(log.find(replacement).isPresent());
+        }
+    }
+
+    @Test
+    public void validateServerLogsBeforeAnswering() throws Exception {
+        List<String> ids = ids(500);
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        try (CaseLog log = CaseLog.open(dir)) {
+            options.log = log;
+            try (CaseServer server = CaseServer.start(options)) {
+                CaseValidationClient.Options clientOptions = new CaseValidationClient.Options();
+                clientOptions.baseUri = URI.create(server.baseUri());
+                clientOptions.maxInFlight = 32;
+                try (CaseValidationClient client = new CaseValidationClient(clientOptions)) {
+                    List<CompletableFuture<CaseValidationClient.Verdict>> results = new ArrayList<>();
+                    for (String id : ids) {
+                        results.add(client.validate(String.format(VALID, id)));
+                    }
+                    for (CompletableFuture<CaseValidationClient.Verdict> result : results) {
+                        assertTrue(result.get().isValid());
+                    }
+                }
+            }
+            assertEquals(ids.size(), log.size());
+            assertTrue(log.commits() <= ids.size(), "commits: " + log.commits());
+            assertFound(log, ids);
+        }
+    }
+
+    private long append(CaseLog log, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        return log.append(body, 0, body.length, validator.validate(body, new CaseVerdict()));
+    }
+
+    private static void assertFound(CaseLog log, List<String> ids) {
+        for (String id : ids) {
+            CaseLog.Entry entry = log.find(id).orElseThrow(() -> new AssertionError("not found: " + id));
+            assertEquals(200, entry.status());
+            assertEquals(String.format(VALID, id), entry.text());
+        }
+    }
+
+    private static String field(CaseLog.Entry entry) {
+        String text = entry.text();
+        int start = text.indexOf("\"patient_name\":\"") + 16;
+        return text.substring(start, text.indexOf('"', start));
+    }
+
+    private static List<String> ids(int n) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+}
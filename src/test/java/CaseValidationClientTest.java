@@ -0,0 +1,155 @@
+import com.sun.net.httpserver.HttpServer;
+import org.example.CaseServer;
+import org.example.CaseValidationClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaseValidationClientTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+    private static final String INVALID_DOB = VALID.replace("19700401", "19700230");
+
+    private static CaseServer server;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        server = CaseServer.start(0);
+    }
+
+    @AfterAll
+    public static void teardown() {
+        server.close();
+    }
+
+    @Test
+    public void validateConcurrently() throws Exception {
+        CaseValidationClient.Options options = options(server.baseUri());
+        options.maxInFlight = 32;
+        try (CaseValidationClient client = new CaseValidationClient(options)) {
+            assertVerdicts(client, 2_000);
+        }
+    }
+
+    @Test
+    public void validateCoalesced() throws Exception {
+        CaseValidationClient.Options options = options(server.baseUri());
+        options.coalesce = Duration.ofMillis(2);
+        options.maxBatch = 100;
+        try (CaseValidationClient client = new CaseValidationClient(options)) {
+            assertVerdicts(client, 2_000);
+            // Not batchable: a pretty-printed case and an empty body go to the single endpoint.
+            assertEquals(new CaseValidationClient.Verdict(200, "Case valid"),
+                    client.validate(VALID.replace(",", ",\n")).get());
+            assertEquals(new CaseValidationClient.Verdict(400, "Missing request body"), client.validate("").get());
+        }
+    }
+
+    @Test
+    public void validateRetriesShedRequests() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        HttpServer flaky = flaky(attempts, true);
+        try {
+            CaseValidationClient.Options options = options("http://localhost:" + flaky.getAddress().getPort());
+            try (CaseValidationClient client = new CaseValidationClient(options)) {
+                assertEquals(new CaseValidationClient.Verdict(200, "Case valid"), client.validate(VALID).get());
+                assertEquals(3, attempts.get());
+            }
+            attempts.set(-10);
+            options.maxAttempts = 3;
+            try (CaseValidationClient client = new CaseValidationClient(options)) {
+                assertEquals(new CaseValidationClient.Verdict(503, "Unavailable"), client.validate(VALID).get());
+                assertEquals(-7, attempts.get());
+            }
+        } finally {
+            flaky.stop(0);
+        }
+    }
+
+    @Test
+    public void validateRetriesServerErrorsOnlyWhenAskedTo() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        HttpServer flaky = flaky(attempts, false);
+        try {
+            CaseValidationClient.Options options = options("http://localhost:" + flaky.getAddress().getPort());
+            try (CaseValidationClient client = new CaseValidationClient(options)) {
+                assertEquals(new CaseValidationClient.Verdict(503, "Unavailable"), client.validate(VALID).get());
+                assertEquals(1, attempts.get());
+            }
+            attempts.set(0);
+            options.retrySent = true;
+            try (CaseValidationClient client = new CaseValidationClient(options)) {
+                assertEquals(new CaseValidationClient.Verdict(200, "Case valid"), client.validate(VALID).get());
+                assertEquals(3, attempts.get());
+            }
+        } finally {
+            flaky.stop(0);
+        }
+    }
+
+    @Test
+    public void validateFailsAfterLastAttempt() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        CaseValidationClient.Options options = options("http://localhost:" + port);
+        try (CaseValidationClient client = new CaseValidationClient(options)) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> client.validate(VALID).get());
+            assertInstanceOf(IOException.class, failure.getCause());
+        }
+    }
+
+    /** A server answering its first two requests with a 503, shed with {@code Retry-After} or not. */
+    private static HttpServer flaky(AtomicInteger attempts, boolean shed) throws IOException {
+        HttpServer flaky = HttpServer.create(new InetSocketAddress(0), 0);
+        flaky.createContext(CaseServer.CHECKCASE_PATH, exchange -> {
+            try (exchange) {
+                boolean fail = attempts.incrementAndGet() <= 2;
+                byte[] body = (fail ? "{\"message\":\"Unavailable\"}" : "{\"message\":\"Case valid\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                if (fail && shed) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                }
+                exchange.sendResponseHeaders(fail ? 503 : 200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        flaky.start();
+        return flaky;
+    }
+
+    private static CaseValidationClient.Options options(String baseUri) {
+        CaseValidationClient.Options options = new CaseValidationClient.Options();
+        options.baseUri = URI.create(baseUri);
+        options.backoff = Duration.ofMillis(1);
+        options.maxBackoff = Duration.ofMillis(10);
+        return options;
+    }
+
+    private static void assertVerdicts(CaseValidationClient client, int cases) throws Exception {
+        List<CompletableFuture<CaseValidationClient.Verdict>> results = new ArrayList<>();
+        for (int i = 0; i < cases; i++) {
+            results.add(client.validate(i % 3 == 0 ? INVALID_DOB : VALID));
+        }
+        for (int i = 0; i < cases; i++) {
+            CaseValidationClient.Verdict verdict = results.get(i).get();
+            assertEquals(i % 3 == 0 ? new CaseValidationClient.Verdict(422, "Invalid dob")
+                    : new CaseValidationClient.Verdict(200, "Case valid"), verdict, "case " + i);
+        }
+    }
+}
@@ -1,666 +1,179 @@
 import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
 import io.restassured.parsing.Parser;
-import io.restassured.response.ValidatableResponse;
+import org.example.CaseServer;
+import org.example.TrafficTrace;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeAll;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
+import java.net.InetSocketAddress;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Objects;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
-import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
-
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+// p95 response time per requirement, about 3x its worst in full test runs on one core with 16
+// client threads. The service budgets, the validator's time per case, only apply with
+// -Dcheckcase.latency.service=true; -Dcheckcase.latency.repeat=n times n sequential runs instead.
+// Reports go to target/latency-CaseValidationTest.*
+@ExtendWith(LatencyBudgetExtension.class)
+@LatencyBudget(req = "REQ-1", p95Micros = 400_000, serviceP95Nanos = 1_500)
+@LatencyBudget(req = "REQ-2", p95Micros = 650_000, serviceP95Nanos = 1_500)
+@LatencyBudget(req = "REQ-3", p95Micros = 350_000, serviceP95Nanos = 1_200)
+@LatencyBudget(req = "REQ-4", p95Micros = 600_000, serviceP95Nanos = 1_500)
+@LatencyBudget(req = "REQ-5", p95Micros = 400_000, serviceP95Nanos = 1_500)
+@LatencyBudget(req = "REQ-6", p95Micros = 1_200_000, serviceP95Nanos = 2_500)
+@LatencyBudget(req = "REQ-7", p95Micros = 350_000, serviceP95Nanos = 1_500)
+@LatencyBudget(req = "REQ-8", p95Micros = 350_000, serviceP95Nanos = 1_500)
 public class CaseValidationTest {
 
+    // Run against the hosted endpoint with -Dcheckcase.baseUri=https://lucent-trifle-ba3d62.netlify.app
+    public static final String BASE_URI_PROPERTY = "checkcase.baseUri";
+    // Record the local run for TrafficReplay with -Dcheckcase.capture=target/checkcase.trace
+    public static final String CAPTURE_PROPERTY = "checkcase.capture";
+
+    // One row per scenario of TestPlanForCaseMetadataValidations.md
+    static final List<ConformanceRunner.Scenario> SCENARIOS = List.of(
+            // 1. Content-Type JSON Validation (REQ-1)
+            ConformanceRunner.fixture("1.1", "Valid JSON, correct CONTENT-TYPE `JSON`", "1-1.json", ContentType.JSON, 200, equalTo("Case valid")),
+            ConformanceRunner.fixture("1.2", "Valid JSON, correct CONTENT-TYPE `JSON` but blank", "1-2.json", ContentType.JSON, 400, containsString("Missing")),
+            ConformanceRunner.fixture("1.3", "Invalid, CONTENT-TYPE 'TEXT'", "1-3.json", ContentType.TEXT, 415, equalTo("Unsupported media")),
+
+            // 2. Required Fields (REQ-2)
+            // 2.1 Missing Field
+            ConformanceRunner.fixture("2.1.1", "Missing Field / case_id", "2-1-1.json", ContentType.JSON, 400, containsString("Missing")),
+            ConformanceRunner.fixture("2.1.2", "Missing Field / patient_id", "2-1-2.json", ContentType.JSON, 400, containsString("Missing")),
+            ConformanceRunner.fixture("2.1.3", "Missing Field / patient_name", "2-1-3.json", ContentType.JSON, 400, containsString("Missing")),
+            ConformanceRunner.fixture("2.1.4", "Missing Field / dob", "2-1-4.json", ContentType.JSON, 400, containsString("Missing")),
+            ConformanceRunner.fixture("2.1.5", "Missing Field / tissue_type", "2-1-5.json", ContentType.JSON, 400, containsString("Missing")),
+            // 2.2 Blank Field ("")
+            ConformanceRunner.fixture("2.2.1", "Blank Field / case_id", "2-2-1.json", ContentType.JSON, 422, equalTo("Invalid case_id")),
+            ConformanceRunner.fixture("2.2.2", "Blank Field / patient_id", "2-2-2.json", ContentType.JSON, 422, equalTo("Invalid patient_id")),
+            ConformanceRunner.fixture("2.2.3", "Blank Field / patient_name", "2-2-3.json", ContentType.JSON, 422, equalTo("Invalid patient_name")),
+            ConformanceRunner.fixture("2.2.4", "Blank Field / dob", "2-2-4.json", ContentType.JSON, 422, equalTo("Invalid dob")),
+            ConformanceRunner.fixture("2.2.5", "Blank Field / tissue_type", "2-2-5.json", ContentType.JSON, 422, equalTo("Invalid tissue_type")),
+            // 2.3 Unexpected Field
+            ConformanceRunner.fixture("2.3", "Unexpected Field", "2-3.json", ContentType.JSON, 422, equalTo("Invalid patient_title")),
+
+            // 3. Field / Data Format Validations
+            // 3.1 case_id (REQ-3)
+            ConformanceRunner.fixture("3.1.1", "Valid UUID", "3-1-1.json", ContentType.JSON, 200, equalTo("Case valid")),
+            ConformanceRunner.fixture("3.1.2", "Invalid UUID with special character(s)", "3-1-2.json", ContentType.JSON, 422, equalTo("Invalid case_id")),
+            ConformanceRunner.fixture("3.1.3", "Invalid format UUID", "3-1-3.json", ContentType.JSON, 422, equalTo("Invalid case_id")),
+            // 3.2 patient_id (REQ-4)
+            ConformanceRunner.fixture("3.2.1", "Valid data in all 5 components", "3-2-1.json", ContentType.JSON, 200, equalTo("Case valid")),
+            ConformanceRunner.fixture("3.2.2", "Missing component", "3-2-2.json", ContentType.JSON, 422, equalTo("Invalid patient_id")),
+            ConformanceRunner.fixture("3.2.3", "Exceeding 15 digits in ID", "3-2-3.json", ContentType.JSON, 422, equalTo("Invalid patient_id")),
+            ConformanceRunner.fixture("3.2.4", "Invalid Digit Flag", "3-2-4.json", ContentType.JSON, 422, equalTo("Invalid patient_id")),
+            ConformanceRunner.fixture("3.2.5", "Invalid Assigning Authority", "3-2-5.json", ContentType.JSON, 422, equalTo("Invalid patient_id")),
+            ConformanceRunner.fixture("3.2.6", "Invalid ID Type Code", "3-2-6.json", ContentType.JSON, 422, equalTo("Invalid patient_id")),
+            ConformanceRunner.fixture("3.2.7", "Wrong Assigning Facility", "3-2-7.json", ContentType.JSON, 422, equalTo("Invalid patient_id")),
+            ConformanceRunner.fixture("3.2.8", "Missing delimiter '^'", "3-2-8.json", ContentType.JSON, 422, equalTo("Invalid patient_id")),
+            // 3.3 patient_name (REQ-5)
+            ConformanceRunner.fixture("3.3.1", "Valid data in 2 components", "3-3-1.json", ContentType.JSON, 200, equalTo("Case valid")),
+            ConformanceRunner.fixture("3.3.2", "Valid data in 3 components", "3-3-2.json", ContentType.JSON, 200, equalTo("Case valid")),
+            ConformanceRunner.fixture("3.3.3", "Invalid data in 1 component", "3-3-3.json", ContentType.JSON, 422, equalTo("Invalid patient_name")),
+            ConformanceRunner.fixture("3.3.4", "Invalid data in 5 components", "3-3-4.json", ContentType.JSON, 422, equalTo("Invalid patient_name")),
+            ConformanceRunner.fixture("3.3.5", "Missing delimiter '^'", "3-3-5.json", ContentType.JSON, 422, equalTo("Invalid patient_name")),
+            // 3.4 dob (REQ-6)
+            ConformanceRunner.fixture("3.4.1", "Valid date format", "3-4-1.json", ContentType.JSON, 200, equalTo("Case valid")),
+            ConformanceRunner.fixture("3.4.2", "Wrong date format", "3-4-2.json", ContentType.JSON, 422, equalTo("Invalid dob")),
+            ConformanceRunner.fixture("3.4.3", "Invalid date", "3-4-3.json", ContentType.JSON, 422, equalTo("Invalid dob")),
+            // 3.5 tissue_type (REQ-7)
+            ConformanceRunner.fixture("3.5.1", "Valid tissue_type", "3-5-1.json", ContentType.JSON, 200, equalTo("Case valid")),
+            ConformanceRunner.fixture("3.5.2", "Unacceptable tissue_type", "3-5-2.json", ContentType.JSON, 422, equalTo("Invalid tissue_type")),
+            ConformanceRunner.fixture("3.5.3", "Multiple values of tissue_type", "3-5-3.json", ContentType.JSON, 422, equalTo("Invalid tissue_type")),
+
+            // 4. Valid Input Test (REQ-8)
+            ConformanceRunner.fixture("4.1", "Valid Case JSON", "4-1.json", ContentType.JSON, 200, equalTo("Case valid"))
+    );
+
+    private static CaseServer server;
+    private static TrafficTrace.Writer capture;
+
     @BeforeAll
-    public static void setup() {
-        RestAssured.baseURI = "https://lucent-trifle-ba3d62.netlify.app";
-        RestAssured.basePath = "/.netlify/functions/checkcase";
+    public static void setup() throws IOException {
+        String baseUri = System.getProperty(BASE_URI_PROPERTY);
+        if (baseUri == null) {
+            CaseServer.Options options = new CaseServer.Options();
+            options.address = new InetSocketAddress(0);
+            if (System.getProperty(CAPTURE_PROPERTY) != null) {
+                capture = new TrafficTrace.Writer(Path.of(System.getProperty(CAPTURE_PROPERTY)));
+                options.capture = capture;
+            }
+            server = CaseServer.start(options);
+            baseUri = server.baseUri();
+        }
+        RestAssured.baseURI = baseUri;
+        RestAssured.basePath = CaseServer.CHECKCASE_PATH;
         RestAssured.registerParser("text/plain", Parser.JSON);
-    }
-
-    // 1. Content-Type JSON Validation (REQ-1)
-    // 1.1 Valid JSON, correct CONTENT-TYPE `JSON`
-    @Test
-    public void validateContentTypeJSON() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("1-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(200).
-                body("message", equalTo("Case valid"));
-    }
-
-    // 1.2 Valid JSON, correct CONTENT-TYPE `JSON` but blank
-    @Test
-    public void validateContentTypeJSONBlank() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("1-2.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(400).
-                body("message", containsString("Missing"));
-    }
-
-    // 1.3 Invalid, CONTENT-TYPE 'TEXT'
-    @Test
-    public void validateContentTypeText() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("1-3.json")).toURI());
-
-        given().
-                header("Accept", "text/plain").
-                contentType(ContentType.TEXT).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(415).
-                body("message", equalTo("Unsupported media"));
-    }
-
-    // 2. Required Fields (REQ-2)
-    // 2.1 Missing Field
-    // 2.1.1 Missing Field / case_id
-    @Test
-    public void validateMissingFieldCaseId() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-1-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(400).
-                body("message", containsString("Missing"));
-    }
-
-    // 2.1.2 Missing Field / patient_id
-    @Test
-    public void validateMissingFieldPatientId() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-1-2.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(400).
-                body("message", containsString("Missing"));
-    }
-
-    // 2.1.3 Missing Field / patient_name
-    @Test
-    public void validateMissingFieldPatientName() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-1-3.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(400).
-                body("message", containsString("Missing"));
-    }
-
-    // 2.1.4 Missing Field / dob
-    @Test
-    public void validateMissingFieldDob() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-1-4.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(400).
-                body("message", containsString("Missing"));
-    }
-
-    // 2.1.5 Missing Field / tissue_type
-    @Test
-    public void validateMissingFieldTissueType() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-1-5.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(400).
-                body("message", containsString("Missing"));
-    }
-
-    // 2.2 Blank Field ("")
-    // 2.2.1 Blank Field / case_id
-    @Test
-    public void validateBlankFieldCaseId() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-2-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid case_id"));
-    }
-
-    // 2.2.2 Blank Field / patient_id
-    @Test
-    public void validateBlankFieldPatientId() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-2-2.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_id"));
-    }
-
-    // 2.2.3 Blank Field / patient_name
-    @Test
-    public void validateBlankFieldPatientName() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-2-3.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_name"));
-    }
-
-    // 2.2.4 Blank Field / dob
-    @Test
-    public void validateBlankFieldDob() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-2-4.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid dob"));
-    }
-
-    // 2.2.5 Blank Field / tissue_type
-    @Test
-    public void validateBlankFieldTissueType() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-2-5.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid tissue_type"));
-    }
-
-    // 2.3 Unexpected Field
-    @Test
-    public void validateUnexpectedField() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("2-3.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_title"));
-    }
-
-    // 3. Field / Data Format Validations
-    // 3.1 case_id (REQ-3)
-    // 3.1.1 Valid UUID
-    @Test
-    public void validateCaseIdValidUUID() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-1-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(200).
-                body("message", equalTo("Case valid"));
-    }
-
-    // 3.1.2 Invalid UUID with special character(s)
-    @Test
-    public void validateCaseIdInvalidUUID() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-1-2.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid case_id"));
-    }
-
-    // 3.1.3 Invalid format UUID
-    @Test
-    public void validateCaseIdInvalidFormatUUID() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-1-3.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid case_id"));
-    }
-
-    // 3.2 patient_id (REQ-4)
-    // 3.2.1 Valid data in all 5 components
-    @Test
-    public void validatePatientId5Components() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-2-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(200).
-                body("message", equalTo("Case valid"));
-    }
-
-    // 3.2.2 Missing component
-    @Test
-    public void validatePatientIdMissingComponent() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-2-2.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_id"));
-    }
-
-    // 3.2.3 Exceeding 15 digits in ID
-    @Test
-    public void validatePatientIdExceedingDigitInID() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-2-3.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_id"));
-    }
-
-    // 3.2.4 Invalid Digit Flag
-    @Test
-    public void validatePatientIdInvalidDigitFlag() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-2-4.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_id"));
-    }
-
-    // 3.2.5 Invalid Assigning Authority
-    @Test
-    public void validatePatientIdInvalidAssigningAuth() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-2-5.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_id"));
-    }
-
-    // 3.2.6 Invalid ID Type Code
-    @Test
-    public void validatePatientIdInvalidIDTypeCode() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-2-6.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_id"));
-    }
-
-    // 3.2.7 Wrong Assigning Facility
-    @Test
-    public void validatePatientIdWrongAssigningFacility() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-2-7.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_id"));
-    }
-
-    // 3.2.8 Missing delimiter '^'
-    @Test
-    public void validatePatientIdMissingDelimiter() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-2-8.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_id"));
-    }
-
-    // 3.3 patient_name (REQ-5)
-    // 3.3.1 Valid data in 2 components
-    @Test
-    public void validatePatientName2Components() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-3-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(200).
-                body("message", equalTo("Case valid"));
-    }
-
-    // 3.3.2 Valid data in 3 components
-    @Test
-    public void validatePatientName3Components() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-3-2.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(200).
-                body("message", equalTo("Case valid"));
-    }
-
-    // 3.3.3 Invalid data in 1 component
-    @Test
-    public void validatePatientName1Component() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-3-3.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_name"));
-    }
-
-    // 3.3.4 Invalid data in 5 components
-    @Test
-    public void validatePatientName5Components() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-3-4.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_name"));
-    }
-
-    // 3.3.5 Missing delimiter '^'
-    @Test
-    public void validatePatientNameMissingDelimiter() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-3-5.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid patient_name"));
-    }
-
-    // 3.4 dob (REQ-6)
-    // 3.4.1 Valid date format
-    @Test
-    public void validateDobValidDate() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-4-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(200).
-                body("message", equalTo("Case valid"));
-    }
-
-    // 3.4.2 Wrong date format
-    @Test
-    public void validateDobWrongDateFormat() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-4-2.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid dob"));
-    }
-
-    // 3.4.3 Invalid date
-    @Test
-    public void validateDobInvalidDate() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-4-3.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid dob"));
-    }
-
-    // 3.5 tissue_type (REQ-7)
-    // 3.5.1 Valid tissue_type
-    @Test
-    public void validateTissueTypeValid() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-5-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(200).
-                body("message", equalTo("Case valid"));
-    }
-
-    // 3.5.2 Unacceptable tissue_type
-    @Test
-    public void validateTissueTypeUnacceptable() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-5-2.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid tissue_type"));
-    }
-
-    // 3.5.3 Multiple values of tissue_type
-    @Test
-    public void validateTissueTypeMultipleValues() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("3-5-3.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(422).
-                body("message", equalTo("Invalid tissue_type"));
-    }
-
-    // 4. Valid Input Test (REQ-8)
-    // 4.1 Valid Case JSON
-    @Test
-    public void validateValidCaseJSON() throws IOException, URISyntaxException {
-        Path path = Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("4-1.json")).toURI());
-
-        given().
-                header("Accept", "application/json").
-                contentType(ContentType.JSON).
-                body(Files.readString(path)).
-        when().
-                post().
-        then().
-                assertThat().
-                statusCode(200).
-                body("message", equalTo("Case valid"));
+        ConformanceRunner.configure();
+    }
+
+    @AfterAll
+    public static void teardown() throws IOException {
+        RestAssured.reset();
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+        if (capture != null) {
+            capture.close();
+            capture = null;
+        }
+    }
+
+    @TestFactory
+    public Stream<DynamicTest> validateTestPlan(LatencyBudgetExtension.Latencies latencies) throws InterruptedException {
+        return tests(SCENARIOS, latencies);
+    }
+
+    // 3.4 dob (REQ-6), generated: the days around every month end in common, leap and century
+    // years, checked against java.time. Only run locally, to keep load off the hosted endpoint.
+    @TestFactory
+    public Stream<DynamicTest> validateGeneratedDobs(LatencyBudgetExtension.Latencies latencies) throws InterruptedException {
+        Assumptions.assumeTrue(server != null, "generated scenarios only run against the local server");
+        String template = ConformanceRunner.read("3-4-1.json");
+        List<ConformanceRunner.Scenario> scenarios = new ArrayList<>();
+        for (int year : new int[]{1900, 2000, 2023, 2024}) {
+            for (int month = 1; month <= 12; month++) {
+                for (int day : new int[]{0, 1, 28, 29, 30, 31, 32}) {
+                    String dob = String.format("%04d%02d%02d", year, month, day);
+                    boolean valid = isDate(year, month, day);
+                    scenarios.add(ConformanceRunner.generated("3.4.g", "dob " + dob,
+                            template.replace("19700401", dob),
+                            valid ? 200 : 422, equalTo(valid ? "Case valid" : "Invalid dob")));
+                }
+            }
+        }
+        return tests(scenarios, latencies);
+    }
+
+    private static Stream<DynamicTest> tests(List<ConformanceRunner.Scenario> scenarios,
+                                             LatencyBudgetExtension.Latencies latencies) throws InterruptedException {
+        List<ConformanceRunner.Result> results = ConformanceRunner.run(scenarios, latencies.repeat(), latencies.service());
+        for (ConformanceRunner.Result result : results) {
+            latencies.record(result.scenario().displayName(), result.scenario().req(), result.micros(), result.serviceNanos());
+        }
+        return results.stream().map(result -> dynamicTest(result.scenario().displayName(), result::assertConforms));
+    }
+
+    private static boolean isDate(int year, int month, int day) {
+        try {
+            LocalDate.of(year, month, day);
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
     }
 }
@@ -0,0 +1,124 @@
+import org.example.CaseField;
+import org.example.CaseValidator;
+import org.example.CaseVerdict;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaseValidatorTest {
+
+    private final CaseValidator validator = new CaseValidator();
+
+    // Same scenarios as CaseValidationTest, checked in-process (1-3.json is the 415 case, which is
+    // decided by the Content-Type header and not by the validator).
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({
+            "1-1.json,   200, Case valid",
+            "1-2.json,   400, Missing case_id",
+            "2-1-1.json, 400, Missing case_id",
+            "2-1-2.json, 400, Missing patient_id",
+            "2-1-3.json, 400, Missing patient_name",
+            "2-1-4.json, 400, Missing dob",
+            "2-1-5.json, 400, Missing tissue_type",
+            "2-2-1.json, 422, Invalid case_id",
+            "2-2-2.json, 422, Invalid patient_id",
+            "2-2-3.json, 422, Invalid patient_name",
+            "2-2-4.json, 422, Invalid dob",
+            "2-2-5.json, 422, Invalid tissue_type",
+            "2-3.json,   422, Invalid patient_title",
+            "3-1-1.json, 200, Case valid",
+            "3-1-2.json, 422, Invalid case_id",
+            "3-1-3.json, 422, Invalid case_id",
+            "3-2-1.json, 200, Case valid",
+            "3-2-2.json, 422, Invalid patient_id",
+            "3-2-3.json, 422, Invalid patient_id",
+            "3-2-4.json, 422, Invalid patient_id",
+            "3-2-5.json, 422, Invalid patient_id",
+            "3-2-6.json, 422, Invalid patient_id",
+            "3-2-7.json, 422, Invalid patient_id",
+            "3-2-8.json, 422, Invalid patient_id",
+            "3-3-1.json, 200, Case valid",
+            "3-3-2.json, 200, Case valid",
+            "3-3-3.json, 422, Invalid patient_name",
+            "3-3-4.json, 422, Invalid patient_name",
+            "3-3-5.json, 422, Invalid patient_name",
+            "3-4-1.json, 200, Case valid",
+            "3-4-2.json, 422, Invalid dob",
+            "3-4-3.json, 422, Invalid dob",
+            "3-5-1.json, 200, Case valid",
+            "3-5-2.json, 422, Invalid tissue_type",
+            "3-5-3.json, 422, Invalid tissue_type",
+            "4-1.json,   200, Case valid"
+    })
+    public void validateFixture(String fixture, int status, String message) throws IOException {
+        CaseVerdict verdict = validator.validate(read(fixture), new CaseVerdict());
+
+        assertEquals(status, verdict.status());
+        assertEquals(message, verdict.message());
+    }
+
+    @Test
+    public void validateMalformedBodies() {
+        assertEquals(CaseVerdict.Outcome.MISSING, verdict("  ").outcome());
+        assertEquals(CaseVerdict.Outcome.MALFORMED, verdict("[]").outcome());
+        assertEquals(CaseVerdict.Outcome.MALFORMED, verdict("{\"case_id\": \"x\"").outcome());
+        assertEquals(CaseVerdict.Outcome.MALFORMED, verdict("{} {}").outcome());
+    }
+
+    @Test
+    public void validateNonStringAndDuplicateFields() {
+        String valid = "\"case_id\":\"a474e3e6-89ad-4bb9-be00-cba347e2a001\",\"patient_id\":\"1234567^1^ISO^NN123^MC\","
+                + "\"patient_name\":\"Smith^John\",\"tissue_type\":\"prostate\"";
+
+        assertEquals(CaseField.DOB, verdict("{" + valid + ",\"dob\":19700401}").field());
+        assertEquals(CaseField.DOB, verdict("{" + valid + ",\"dob\":\"19700401\",\"dob\":\"19700401\"}").field());
+        assertEquals("Invalid extra", verdict("{" + valid + ",\"dob\":\"19700401\",\"extra\":{\"a\":[1,true,null]}}").message());
+    }
+
+    @Test
+    public void validateAllViolationsAreCollected() {
+        CaseVerdict verdict = verdict("{\"patient_title\":\"Mr.\",\"case_id\":\"x\",\"patient_id\":\"1^1^ISO^NN1^MC\","
+                + "\"patient_name\":\"Smith\",\"tissue_type\":\"liver\",\"extra\":1}");
+
+        assertEquals("Missing dob", verdict.message());
+        assertEquals(CaseField.DOB.bit(), verdict.missingFields());
+        assertEquals(CaseField.CASE_ID.bit() | CaseField.PATIENT_NAME.bit() | CaseField.TISSUE_TYPE.bit(), verdict.invalidFields());
+        assertTrue(verdict.hasUnexpectedKey());
+        assertEquals(0, verdict("  ").invalidFields());
+        assertEquals(CaseField.ALL, verdict("  ").missingFields());
+        assertEquals(0, verdict("{}").invalidFields());
+    }
+
+    @Test
+    public void validateDobCalendar() {
+        assertTrue(dob("20000229"));
+        assertTrue(dob("20241231"));
+        assertFalse(dob("19000229"));
+        assertFalse(dob("20230229"));
+        assertFalse(dob("20240431"));
+        assertFalse(dob("00000101"));
+        assertFalse(dob("2024010"));
+    }
+
+    private boolean dob(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        return validator.isDob(bytes, 0, bytes.length);
+    }
+
+    private CaseVerdict verdict(String body) {
+        return validator.validate(body.getBytes(StandardCharsets.UTF_8), new CaseVerdict());
+    }
+
+    private byte[] read(String fixture) throws IOException {
+        try (InputStream in = Objects.requireNonNull(getClass().getClassLoader().getResourceAsStream(fixture))) {
+            return in.readAllBytes();
+        }
+    }
+}
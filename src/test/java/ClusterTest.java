@@ -0,0 +1,231 @@
+import org.example.CaseCluster;
+import org.example.CaseIdIndex;
+import org.example.CaseServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClusterTest {
+
+    // The valid case with its case_id left to String.format.
+    private static final String VALID = ConformanceRunner.VALID.replace("a474e3e6-89ad-4bb9-be00-cba347e2a001", "%s");
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final List<CaseServer> servers = new ArrayList<>();
+    private final List<CaseServer.Options> nodes = new ArrayList<>();
+
+    @AfterEach
+    public void teardown() {
+        servers.forEach(CaseServer::close);
+        http.close();
+    }
+
+    @Test
+    public void validateNodesJoinAndPartitionCaseIds() throws Exception {
+        start(3);
+        Set<URI> all = nodes.stream().map(n -> n.cluster.self()).collect(Collectors.toSet());
+        for (CaseServer.Options node : nodes) {
+            assertEquals(all, Set.copyOf(node.cluster.members()));
+        }
+
+        List<String> ids = ids(300);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(200, post(i % 3, ids.get(i)), "case " + i);
+        }
+        // Resubmitted through another node, every case still reaches the one node that admitted it.
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(409, post((i + 1) % 3, ids.get(i)), "case " + i);
+        }
+        long total = 0;
+        for (CaseServer.Options node : nodes) {
+            long owned = node.caseIds.size();
+            assertTrue(owned > 300 / 3 / 2, "a node owns only " + owned + " of 300 ids");
+            total += owned;
+        }
+        assertEquals(300, total);
+        // Invalid cases are answered where they arrive.
+        assertEquals(422, post(0, "not-a-uuid"));
+    }
+
+    @Test
+    public void validateBatchLinesAreRouted() throws Exception {
+        start(2);
+        List<String> ids = ids(100);
+        for (String id : ids) {
+            assertEquals(200, post(1, id));
+        }
+        StringBuilder batch = new StringBuilder();
+        for (String id : ids) {
+            batch.append(String.format(VALID, id)).append('\n');
+        }
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(
+                        URI.create(servers.get(0).baseUri() + CaseServer.BATCH_PATH))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(batch.toString())).build(), HttpResponse.BodyHandlers.ofString());
+        List<String> lines = response.body().lines().toList();
+        assertEquals(100, lines.size());
+        for (String line : lines) {
+            assertTrue(line.contains("\"status\":409,\"message\":\"Duplicate case_id\""), line);
+        }
+    }
+
+    @Test
+    public void validateRingRebalancesWhenNodesLeave() throws Exception {
+        start(3);
+        servers.remove(2).close();
+        nodes.remove(2);
+        for (CaseServer.Options node : nodes) {
+            assertEquals(2, node.cluster.members().size(), node.cluster.members().toString());
+        }
+        List<String> ids = ids(100);
+        for (String id : ids) {
+            assertEquals(200, post(0, id));
+            assertEquals(409, post(1, id));
+        }
+        assertEquals(100, nodes.get(0).caseIds.size() + nodes.get(1).caseIds.size());
+    }
+
+    @Test
+    public void validateUnreachableNodeIsDropped() throws Exception {
+        start(2);
+        URI dead = URI.create("http://localhost:1");
+        // Announce a member that does not answer; forwarding to it fails over to the next owner.
+        http.send(HttpRequest.newBuilder(URI.create(servers.get(0).baseUri() + CaseCluster.MEMBERS_PATH))
+                .POST(HttpRequest.BodyPublishers.ofString(dead.toString())).build(), HttpResponse.BodyHandlers.discarding());
+        assertTrue(nodes.get(0).cluster.members().contains(dead));
+        for (String id : ids(50)) {
+            assertEquals(200, post(0, id));
+            assertEquals(409, post(1, id));
+        }
+        assertFalse(nodes.get(0).cluster.members().contains(dead));
+    }
+
+    @Test
+    public void validateOwnerFailingAfterSendIsNotFailedOver() throws Exception {
+        start(2);
+        // A member that takes each forwarded case and hangs up without answering.
+        try (ServerSocket hangUp = new ServerSocket(0)) {
+            Thread.ofVirtual().start(() -> {
+                while (!hangUp.isClosed()) {
+                    try (Socket socket = hangUp.accept()) {
+                        socket.getInputStream().read(new byte[4096]);
+                    } catch (IOException e) {
+                        // Closed by the test.
+                    }
+                }
+            });
+            URI member = URI.create("http://localhost:" + hangUp.getLocalPort());
+            announce(0, member.toString());
+
+            int accepted = 0;
+            int unavailable = 0;
+            for (String id : ids(60)) {
+                int status = post(0, id);
+                assertTrue(status == 200 || status == 503, "status " + status);
+                if (status == 200) {
+                    accepted++;
+                } else {
+                    unavailable++;
+                }
+            }
+
+            assertTrue(unavailable > 0);
+            assertTrue(nodes.get(0).cluster.members().contains(member));
+            // No case that the failing member may have taken was admitted elsewhere.
+            assertEquals(accepted, nodes.get(0).caseIds.size() + nodes.get(1).caseIds.size());
+        }
+    }
+
+    @Test
+    public void validateDroppedNodeIsTakenBackOnSync() throws Exception {
+        start(1);
+        int port;
+        try (ServerSocket free = new ServerSocket(0)) {
+            port = free.getLocalPort();
+        }
+        URI later = URI.create("http://localhost:" + port);
+        announce(0, later.toString());
+        for (String id : ids(20)) {
+            assertEquals(200, post(0, id));
+        }
+        assertFalse(nodes.get(0).cluster.members().contains(later));
+
+        // The node comes up at that address without joining; the next sync finds it and announces this one.
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(port);
+        options.caseIds = new CaseIdIndex();
+        options.cluster = new CaseCluster();
+        servers.add(CaseServer.start(options));
+        nodes.add(options);
+        nodes.get(0).cluster.sync();
+
+        Set<URI> both = Set.of(nodes.get(0).cluster.self(), later);
+        assertEquals(both, Set.copyOf(nodes.get(0).cluster.members()));
+        assertEquals(both, Set.copyOf(nodes.get(1).cluster.members()));
+    }
+
+    @Test
+    public void validateInvalidMembersAreRejected() throws Exception {
+        start(1);
+        Set<URI> members = Set.copyOf(nodes.get(0).cluster.members());
+        for (String member : List.of("not a uri", "localhost:8080", "/cluster/members", "mailto:ops@example.org", "")) {
+            assertEquals(400, announce(0, member), member);
+            assertEquals(400, http.send(HttpRequest.newBuilder(
+                            URI.create(servers.get(0).baseUri() + CaseCluster.MEMBERS_PATH))
+                    .method("DELETE", HttpRequest.BodyPublishers.ofString(member)).build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode(), member);
+        }
+        assertEquals(members, Set.copyOf(nodes.get(0).cluster.members()));
+    }
+
+    private int announce(int node, String member) throws IOException, InterruptedException {
+        return http.send(HttpRequest.newBuilder(URI.create(servers.get(node).baseUri() + CaseCluster.MEMBERS_PATH))
+                .POST(HttpRequest.BodyPublishers.ofString(member)).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private void start(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            CaseServer.Options options = new CaseServer.Options();
+            options.address = new InetSocketAddress(0);
+            options.caseIds = new CaseIdIndex();
+            options.cluster = new CaseCluster();
+            CaseServer server = CaseServer.start(options);
+            if (i > 0) {
+                options.cluster.join(URI.create(servers.get(i - 1).baseUri()));
+            }
+            servers.add(server);
+            nodes.add(options);
+        }
+    }
+
+    private int post(int node, String id) throws IOException, InterruptedException {
+        return http.send(HttpRequest.newBuilder(URI.create(servers.get(node).baseUri() + CaseServer.CHECKCASE_PATH))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(String.format(VALID, id))).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static List<String> ids(int n) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+}
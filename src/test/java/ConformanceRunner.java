@@ -0,0 +1,258 @@
+import io.restassured.RestAssured;
+import io.restassured.config.HttpClientConfig;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import org.example.CaseValidator;
+import org.example.CaseVerdict;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.hamcrest.Matcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+
+/**
+ * Sends a table of checkcase scenarios concurrently through REST-assured and asserts each response
+ * on the worker that received it; on request it also times each on its own and times the
+ * validator on its body.
+ * All requests share one pooled, keep-alive Apache HTTP client, and every fixture is read from the
+ * classpath only once.
+ */
+final class ConformanceRunner {
+
+    /** One row of the test plan: what to send and what the endpoint must answer. */
+    record Scenario(String id, String description, String fixture, String body, ContentType contentType,
+                    int status, Matcher<String> message) {
+
+        String displayName() {
+            return id + " " + description;
+        }
+
+        /** The requirement the scenario checks: REQ-1 and REQ-2, then REQ-3 to REQ-7 for 3.1 to 3.5, and REQ-8. */
+        String req() {
+            String[] section = id.split("\\.");
+            return switch (section[0]) {
+                case "3" -> "REQ-" + (Integer.parseInt(section[1]) + 2);
+                case "4" -> "REQ-8";
+                default -> "REQ-" + section[0];
+            };
+        }
+    }
+
+    /**
+     * A scenario's response, and the assertion error or exception it produced, if any. With several
+     * runs these are the first failing run's, and {@code micros} holds the response time of every
+     * timed run that got a response. {@code serviceNanos} holds the validator's own time per case for
+     * the scenario's body, one sample per batch; it is empty if service times were not measured or
+     * the body is turned away unvalidated.
+     */
+    record Result(Scenario scenario, Response response, Throwable failure, long[] micros, long[] serviceNanos) {
+
+        void assertConforms() throws Throwable {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    static final int THREADS = 16;
+
+    private static final int SERVICE_BATCHES = 50;
+    private static final int SERVICE_BATCH = 200;
+
+    private static final ConcurrentHashMap<String, String> FIXTURES = new ConcurrentHashMap<>();
+
+    /** The valid case of fixture 1-1.json on one line, as the tests that send single cases and batches use it. */
+    static final String VALID = compact(read("1-1.json"));
+
+    private ConformanceRunner() {
+    }
+
+    /** Points REST-assured at one shared client with a connection pool sized for {@link #THREADS}. */
+    // REST-assured only accepts an AbstractHttpClient, which takes these deprecated classes and not their replacements.
+    @SuppressWarnings("deprecation")
+    static void configure() {
+        RestAssured.config = RestAssured.config().httpClient(HttpClientConfig.httpClientConfig()
+                .reuseHttpClientInstance()
+                .httpClientFactory(() -> {
+                    PoolingClientConnectionManager pool = new PoolingClientConnectionManager();
+                    pool.setMaxTotal(THREADS);
+                    pool.setDefaultMaxPerRoute(THREADS);
+                    return new DefaultHttpClient(pool);
+                }));
+    }
+
+    /** A scenario that posts the contents of a classpath fixture. */
+    static Scenario fixture(String id, String description, String fixture, ContentType contentType,
+                            int status, Matcher<String> message) {
+        return new Scenario(id, description, fixture, read(fixture), contentType, status, message);
+    }
+
+    /** A scenario that posts a generated JSON body. */
+    static Scenario generated(String id, String description, String body, int status, Matcher<String> message) {
+        return new Scenario(id, description, null, body, ContentType.JSON, status, message);
+    }
+
+    /**
+     * Runs every scenario once on {@link #THREADS} threads and returns one result per scenario in
+     * table order, timed by that run. A first wave of one request per thread warms up the client and
+     * server and is neither timed nor asserted. With a {@code repeat} above 1, every scenario is then
+     * sent that many more times one request at a time, and those runs are timed instead, so that no
+     * time includes queueing behind other requests; every run is asserted. With {@code service},
+     * the validator's own time on each body is measured as well, see {@link #serviceTimes}.
+     */
+    static List<Result> run(List<Scenario> scenarios, int repeat, boolean service) throws InterruptedException {
+        List<Result> concurrent = new ArrayList<>(scenarios.size());
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<Result>> warmUp = new ArrayList<>(THREADS);
+            for (int i = 0; i < Math.min(THREADS, scenarios.size()); i++) {
+                Scenario scenario = scenarios.get(i);
+                warmUp.add(executor.submit(() -> execute(scenario)));
+            }
+            for (Future<Result> future : warmUp) {
+                get(future);
+            }
+            List<Future<Result>> futures = new ArrayList<>(scenarios.size());
+            for (Scenario scenario : scenarios) {
+                futures.add(executor.submit(() -> execute(scenario)));
+            }
+            for (Future<Result> future : futures) {
+                concurrent.add(get(future));
+            }
+        }
+        Result[] first = concurrent.toArray(new Result[0]);
+        long[][] micros = new long[scenarios.size()][];
+        for (int i = 0; i < scenarios.size(); i++) {
+            micros[i] = first[i].response() != null ? first[i].micros() : new long[0];
+        }
+        if (repeat > 1) {
+            int[] timed = new int[scenarios.size()];
+            for (int i = 0; i < scenarios.size(); i++) {
+                micros[i] = new long[repeat];
+            }
+            for (int pass = 0; pass < repeat; pass++) {
+                for (int i = 0; i < scenarios.size(); i++) {
+                    Result result = execute(scenarios.get(i));
+                    if (first[i].failure() == null && result.failure() != null) {
+                        first[i] = result;
+                    }
+                    if (result.response() != null) {
+                        micros[i][timed[i]++] = result.micros()[0];
+                    }
+                }
+            }
+            for (int i = 0; i < scenarios.size(); i++) {
+                micros[i] = Arrays.copyOf(micros[i], timed[i]);
+            }
+        }
+        long[][] serviceNanos = service ? serviceTimes(scenarios) : new long[scenarios.size()][0];
+        List<Result> results = new ArrayList<>(scenarios.size());
+        for (int i = 0; i < scenarios.size(); i++) {
+            results.add(new Result(first[i].scenario(), first[i].response(), first[i].failure(),
+                    micros[i], serviceNanos[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Times {@link CaseValidator} on each JSON scenario's body in this JVM, without HTTP: the rule
+     * path that a round trip of a few milliseconds would hide. Each sample is the mean of a batch of
+     * {@value #SERVICE_BATCH} validations, after as many untimed batches to warm the JIT.
+     */
+    static long[][] serviceTimes(List<Scenario> scenarios) {
+        CaseValidator validator = new CaseValidator();
+        CaseVerdict verdict = new CaseVerdict();
+        byte[][] bodies = new byte[scenarios.size()][];
+        for (int i = 0; i < bodies.length; i++) {
+            if (scenarios.get(i).contentType() == ContentType.JSON) {
+                bodies[i] = scenarios.get(i).body().getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        long[][] nanos = new long[bodies.length][];
+        for (int timed = 0; timed < 2; timed++) {
+            for (int i = 0; i < bodies.length; i++) {
+                nanos[i] = new long[bodies[i] == null ? 0 : SERVICE_BATCHES];
+                for (int batch = 0; batch < nanos[i].length; batch++) {
+                    long start = System.nanoTime();
+                    for (int k = 0; k < SERVICE_BATCH; k++) {
+                        validator.validate(bodies[i], 0, bodies[i].length, verdict);
+                    }
+                    nanos[i][batch] = (System.nanoTime() - start) / SERVICE_BATCH;
+                }
+            }
+        }
+        return nanos;
+    }
+
+    private static Result get(Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Sends a scenario once; the result's time covers the request and response, not the assertions. */
+    private static Result execute(Scenario scenario) {
+        Response response = null;
+        long[] micros = new long[1];
+        try {
+            long start = System.nanoTime();
+            response = given().
+                    header("Accept", scenario.contentType() == ContentType.TEXT ? "text/plain" : "application/json").
+                    contentType(scenario.contentType()).
+                    body(scenario.body()).
+            when().
+                    post().
+            andReturn();
+            micros[0] = (System.nanoTime() - start) / 1_000;
+            response.
+                    then().
+                    assertThat().
+                    statusCode(scenario.status()).
+                    body("message", scenario.message());
+            return new Result(scenario, response, null, micros, null);
+        } catch (Throwable failure) {
+            return new Result(scenario, response, failure, micros, null);
+        }
+    }
+
+    /** A JSON document without the whitespace between its tokens. */
+    static String compact(String json) {
+        StringBuilder out = new StringBuilder(json.length());
+        boolean quoted = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"' && (i == 0 || json.charAt(i - 1) != '\\')) {
+                quoted = !quoted;
+            }
+            if (quoted || !Character.isWhitespace(c)) {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    static String read(String fixture) {
+        return FIXTURES.computeIfAbsent(fixture, name -> {
+            try (InputStream in = Objects.requireNonNull(ConformanceRunner.class.getClassLoader().getResourceAsStream(name))) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+import org.example.CaseMutator;
+import org.example.CaseValidator;
+import org.example.DifferentialFuzzer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DifferentialFuzzerTest {
+
+    private static CaseMutator mutator;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        mutator = CaseMutator.fromFixtures(Path.of("src/test/resources"));
+    }
+
+    @Test
+    public void validateCasesAreDeterministic() {
+        Set<String> distinct = new HashSet<>();
+        for (long i = 0; i < 1_000; i++) {
+            List<String> trail = new ArrayList<>();
+            byte[] body = mutator.generate(42, i, trail);
+            assertArrayEquals(body, mutator.generate(42, i), "case " + i);
+            assertTrue(trail.size() >= 2 && trail.size() <= 1 + CaseMutator.MAX_MUTATIONS, "trail " + trail);
+            distinct.add(new String(body, StandardCharsets.UTF_8));
+        }
+        assertTrue(distinct.size() > 900, "only " + distinct.size() + " distinct cases");
+        assertFalse(Arrays.equals(mutator.generate(42, 0), mutator.generate(43, 0))
+                && Arrays.equals(mutator.generate(42, 1), mutator.generate(43, 1)));
+    }
+
+    @Test
+    public void validateSameImplementationAgrees() throws IOException {
+        Path oracle = dir.resolve("oracle.tsv");
+        DifferentialFuzzer.Target local = DifferentialFuzzer.Target.local(new CaseValidator());
+        try (DifferentialFuzzer fuzzer = new DifferentialFuzzer(mutator, 4)) {
+            fuzzer.record(local, DifferentialFuzzer.LOCAL, 7, 40_000, oracle);
+            DifferentialFuzzer.Summary summary = fuzzer.check(oracle, local, null, 10);
+
+            assertEquals(new DifferentialFuzzer.Oracle(7, DifferentialFuzzer.LOCAL), DifferentialFuzzer.oracle(oracle));
+            assertEquals(40_000, summary.cases());
+            assertEquals(0, summary.mismatchCount());
+        }
+    }
+
+    @Test
+    public void validateDisagreementsAreFoundAndMinimized() throws IOException {
+        Path oracle = dir.resolve("oracle.tsv");
+        CaseValidator validator = new CaseValidator();
+        DifferentialFuzzer.Target reference = DifferentialFuzzer.Target.local(validator);
+        // Bug #2 reintroduced: a facility with trailing characters is accepted.
+        DifferentialFuzzer.Target buggy = body -> reference.check(new String(body, StandardCharsets.UTF_8)
+                .replaceAll("\\^MC[0X .'/-]+\"", "^MC\"").getBytes(StandardCharsets.UTF_8));
+        try (DifferentialFuzzer fuzzer = new DifferentialFuzzer(mutator, 4)) {
+            fuzzer.record(reference, DifferentialFuzzer.LOCAL, 7, 40_000, oracle);
+            DifferentialFuzzer.Summary summary = fuzzer.check(oracle, buggy, reference, 3);
+
+            assertTrue(summary.mismatchCount() > 0);
+            assertEquals(3, summary.mismatches().size());
+            for (DifferentialFuzzer.Mismatch mismatch : summary.mismatches()) {
+                String minimized = new String(mismatch.minimized(), StandardCharsets.UTF_8);
+                assertEquals(mismatch.expected(), reference.check(mismatch.minimized()));
+                assertEquals(mismatch.actual(), buggy.check(mismatch.minimized()));
+                assertTrue(mismatch.minimized().length < mismatch.body().length, minimized);
+                assertTrue(minimized.contains("^MC"), minimized);
+            }
+        }
+    }
+}
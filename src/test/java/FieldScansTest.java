@@ -0,0 +1,90 @@
+import org.example.FieldScans;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class FieldScansTest {
+
+    // Weighted towards the bytes the rules care about, plus a UTF-8 sequence and control bytes.
+    private static final byte[] ALPHABET = ("0123456789abcdefABCDEFxyzXYZ^^^^---- '.@[`{/:\t"
+            + "ü").getBytes(StandardCharsets.UTF_8);
+    private static final String[] SEEDS = {
+            "a474e3e6-89ad-4bb9-be00-cba347e2a001", "A474E3E6-89AD-4BB9-BE00-CBA347E2A001",
+            "1234567^1^ISO^NN123^MC", "123456789012345^0^ISO^NN1^MC",
+            "Smith^John", "O'Brien^Mary-Jane^St. Clair", "Müller^J", "Smith^^John", "^Smith^John",
+            "Smith^John^", "Smith", "Smith^John^A^B", "Smith^ John", "",
+    };
+
+    private static FieldScans vector;
+
+    @BeforeAll
+    public static void setup() {
+        vector = FieldScans.vector().orElse(null);
+        assumeTrue(vector != null, "Vector API not available");
+    }
+
+    @Test
+    public void validateSeedsMatchScalar() {
+        for (String seed : SEEDS) {
+            assertSame(seed.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void validateRandomValuesMatchScalar() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int n = 0; n < 200_000; n++) {
+            byte[] value;
+            if (random.nextInt(4) == 0) {
+                // Mutate a real value so that near misses are well covered.
+                value = SEEDS[random.nextInt(SEEDS.length)].getBytes(StandardCharsets.UTF_8);
+                if (value.length > 0) {
+                    value[random.nextInt(value.length)] = ALPHABET[random.nextInt(ALPHABET.length)];
+                }
+            } else {
+                value = new byte[random.nextInt(80)];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+                }
+            }
+            assertSame(value);
+        }
+    }
+
+    @Test
+    public void validatePreferredIsVector() {
+        // Surefire runs with --add-modules jdk.incubator.vector.
+        assertEquals(vector.toString(), FieldScans.PREFERRED.toString());
+    }
+
+    /** Checks the value alone in its array, and embedded between other bytes as in a request body. */
+    private static void assertSame(byte[] value) {
+        assertSame(value, value, 0);
+        byte[] body = new byte[value.length + 80];
+        for (int off : new int[]{0, 1, 17, 40}) {
+            Arrays.fill(body, (byte) '^');
+            System.arraycopy(value, 0, body, off, value.length);
+            assertSame(value, body, off);
+        }
+    }
+
+    private static void assertSame(byte[] value, byte[] buf, int off) {
+        int len = value.length;
+        int end = off + len;
+        String what = new String(value, StandardCharsets.UTF_8) + " at " + off + " of " + buf.length;
+        assertEquals(FieldScans.SCALAR.isCaseId(buf, off, len), vector.isCaseId(buf, off, len), "isCaseId " + what);
+        assertEquals(FieldScans.SCALAR.isPatientName(buf, off, len), vector.isPatientName(buf, off, len),
+                "isPatientName " + what);
+        for (int p = off; p <= end; p++) {
+            assertEquals(FieldScans.SCALAR.skipDigits(buf, p, end), vector.skipDigits(buf, p, end), "skipDigits " + what);
+            assertEquals(FieldScans.SCALAR.indexOf(buf, p, end, (byte) '^'), vector.indexOf(buf, p, end, (byte) '^'),
+                    "indexOf " + what);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import org.example.BulkReport;
+import org.example.BulkValidator;
+import org.example.CaseValidator;
+import org.example.CaseVerdict;
+import org.example.Hl7Reader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Hl7ReaderTest {
+
+    private static final String VALID_PID = pid("1234567^1^ISO^NN123^MC", "Smith^John", "19700401");
+
+    @TempDir
+    Path dir;
+
+    private final CaseValidator validator = new CaseValidator();
+
+    @Test
+    public void validateMapsPidFieldsToCaseFields() throws IOException {
+        String stream = message("MSG1", pid("1234567^1^ISO^NN123^MC~7654321^0^ISO^NN9^MC", "Smith^John^^^^^L~Smyth^Jon",
+                "197004011230+0100"))
+                + message("MSG2", pid("1234567^1^ISO^NN123^MC0", "O'Brien^Mary-Ann^T^Jr", "19700230"))
+                + message("MSG3", pid("1234567^1^ISO^NN123^MC", "Smith^John", "\"\""))
+                + "MSH|$~\\&|ADT|LAB|||20240101||ADT$A08|MSG4|P|2.5\r" + pid("1234567$1$ISO$NN123$MC", "Smith$John", "19700401");
+        Hl7Reader reader = new Hl7Reader(new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)));
+        CaseVerdict verdict = new CaseVerdict();
+
+        assertTrue(reader.next());
+        assertEquals("MSG1", reader.controlId());
+        assertEquals(0, reader.messageOffset());
+        assertEquals("1234567^1^ISO^NN123^MC", reader.patientId());
+        assertEquals("Smith^John", reader.patientName());
+        assertEquals("19700401", reader.dob());
+        assertTrue(reader.validate(validator, verdict).isValid(), verdict.toString());
+
+        assertTrue(reader.next());
+        assertEquals("MSG2", reader.controlId());
+        assertEquals(stream.indexOf("MSH", 1), reader.messageOffset());
+        assertEquals("O'Brien^Mary-Ann^T", reader.patientName());
+        assertEquals("422 Invalid patient_id", reader.validate(validator, verdict).toString());
+        assertEquals(0b1010, verdict.invalidFields());
+
+        assertTrue(reader.next());
+        assertNull(reader.dob());
+        assertEquals("400 Missing dob", reader.validate(validator, verdict).toString());
+
+        // Another component separator is rewritten to the ^ of the case fields.
+        assertTrue(reader.next());
+        assertEquals("MSG4", reader.controlId());
+        assertEquals("1234567^1^ISO^NN123^MC", reader.patientId());
+        assertEquals("Smith^John", reader.patientName());
+        assertTrue(reader.validate(validator, verdict).isValid(), verdict.toString());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void validateReadsMllpFramesThroughASmallWindow() throws IOException {
+        String blob = "OBX|1|ED|PDF||" + "A".repeat(5_000) + "\r";
+        String stream = "\u000B" + message("MSG1", VALID_PID).replace("PV1", blob + "PV1") + "\u001C\r"
+                + "\u000B" + message("MSG2", pid("1234567^1^ISO^NN123^MC", "Smith^" + "J".repeat(5_000), "19700401"))
+                + "\u001C\r"
+                + "\u000B" + message("MSG3", VALID_PID).replace('\r', '\n') + "\u001C\r";
+        Hl7Reader reader = new Hl7Reader(new ByteArrayInputStream(stream.getBytes(StandardCharsets.US_ASCII)), 1024);
+
+        assertTrue(reader.next());
+        assertEquals("MSG1", reader.controlId());
+        assertFalse(reader.isTooLarge());
+        assertEquals("19700401", reader.dob());
+        assertTrue(reader.next());
+        assertEquals("MSG2", reader.controlId());
+        assertTrue(reader.isTooLarge());
+        assertTrue(reader.next());
+        assertEquals("MSG3", reader.controlId());
+        assertEquals(stream.lastIndexOf("MSH"), reader.messageOffset());
+        assertTrue(reader.validate(validator, new CaseVerdict()).isValid());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void validateHl7File() throws IOException {
+        // A chunk size of a few messages forces many fork-join splits, each at a message start.
+        BulkValidator bulk = new BulkValidator(validator, 1024, ForkJoinPool.commonPool());
+        for (boolean mllp : new boolean[]{false, true}) {
+            StringBuilder file = new StringBuilder();
+            List<Long> expected = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                if (mllp) {
+                    file.append('\u000B');
+                }
+                if (i % 7 == 0) {
+                    expected.add((long) file.length());
+                }
+                file.append(message("MSG" + i, i % 7 == 0 ? VALID_PID.replace("19700401", "19700230") : VALID_PID));
+                if (mllp) {
+                    file.append("\u001C\r");
+                }
+            }
+            Path path = dir.resolve(mllp ? "adt.mllp" : "adt.hl7");
+            Files.writeString(path, file, StandardCharsets.US_ASCII);
+
+            BulkReport report = bulk.validate(path);
+
+            assertEquals(1000, report.records());
+            assertEquals(expected.size(), report.invalid());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), report.failureOffset(i));
+                assertEquals("Invalid dob", report.failureMessage(i));
+            }
+        }
+    }
+
+    private static String message(String control, String pid) {
+        return "MSH|^~\\&|ADT|LAB|CHECKCASE|LAB|20240101120000||ADT^A04|" + control + "|P|2.5\r"
+                + "EVN|A04|20240101120000\r"
+                + pid
+                + "PV1|1|O\r";
+    }
+
+    private static String pid(String id, String name, String dob) {
+        return "PID|1||" + id + "||" + name + "||" + dob + "|M\r";
+    }
+}
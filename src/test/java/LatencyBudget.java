@@ -0,0 +1,34 @@
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The p95 times that every scenario of a requirement must stay within: the REST-assured response
+ * time and, on request, the validator's time per case for its body. Enforced by
+ * {@link LatencyBudgetExtension} on the test class it is declared on.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(LatencyBudget.List.class)
+public @interface LatencyBudget {
+
+    /** The requirement of the test plan, e.g. {@code REQ-6}. */
+    String req();
+
+    /** The p95 round trip, in microseconds. */
+    long p95Micros();
+
+    /**
+     * The p95 validation time per case in this JVM, without HTTP, in nanoseconds; only enforced with
+     * {@code -Dcheckcase.latency.service=true}.
+     */
+    long serviceP95Nanos();
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @interface List {
+        LatencyBudget[] value();
+    }
+}
@@ -0,0 +1,214 @@
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.DynamicTestInvocationContext;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Holds the scenarios of a test class to the {@link LatencyBudget}s declared on it.
+ * <p>
+ * A test factory takes a {@link Latencies} parameter, runs each scenario and records the response
+ * times it saw. Each dynamic test named after a scenario then fails when it conforms but the p95
+ * of its times exceeds the budget of its requirement. After the class, every scenario's times are
+ * written to {@code target/latency-<class>.json} and {@code .txt}.
+ * <p>
+ * By default each scenario is sent once, concurrently with the rest of the table, and that run is
+ * timed. {@code -Dcheckcase.latency.repeat=n} sends each one n more times, one request at a time,
+ * so that neither queueing nor one slow request decides the p95. {@code -Dcheckcase.latency.service=true}
+ * also times the validator on each body in this JVM and holds it to the service budgets, which
+ * show a slow rule that a round trip of a few milliseconds hides but depend on the machine.
+ */
+public class LatencyBudgetExtension implements BeforeAllCallback, AfterAllCallback, ParameterResolver,
+        InvocationInterceptor {
+
+    public static final String REPEAT_PROPERTY = "checkcase.latency.repeat";
+    public static final String REPORT_PROPERTY = "checkcase.latency.report";
+    public static final String SERVICE_PROPERTY = "checkcase.latency.service";
+    public static final int DEFAULT_REPEAT = 1;
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(LatencyBudgetExtension.class);
+
+    /**
+     * The response times of a scenario in microseconds, the validator's times on its body in
+     * nanoseconds (none if it is turned away before validation), and the requirement it checks.
+     */
+    record Samples(String scenario, String req, long[] micros, long[] serviceNanos) {
+
+        long percentile(double percentile) {
+            return percentile(micros, percentile);
+        }
+
+        /** -1 if there are no service times. */
+        long servicePercentile(double percentile) {
+            return serviceNanos.length == 0 ? -1 : percentile(serviceNanos, percentile);
+        }
+
+        /** The nearest-rank percentile: the smallest time that {@code percentile}% of the runs took at most. */
+        private static long percentile(long[] times, double percentile) {
+            long[] sorted = times.clone();
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(percentile / 100 * sorted.length) - 1)];
+        }
+
+        boolean within(LatencyBudget budget) {
+            return budget == null || (percentile(95) <= budget.p95Micros()
+                    && servicePercentile(95) <= budget.serviceP95Nanos());
+        }
+    }
+
+    /** The budgets of a test class and the times recorded against them, by scenario display name. */
+    public static final class Latencies {
+
+        private final Map<String, LatencyBudget> budgets;
+        private final int repeat;
+        private final boolean service;
+        private final Map<String, Samples> samples = new LinkedHashMap<>();
+
+        Latencies(Map<String, LatencyBudget> budgets, int repeat, boolean service) {
+            this.budgets = budgets;
+            this.repeat = repeat;
+            this.service = service;
+        }
+
+        /** How many times to run each scenario. */
+        public int repeat() {
+            return repeat;
+        }
+
+        /** Whether to time the validator on each body and hold it to the service budgets. */
+        public boolean service() {
+            return service;
+        }
+
+        public synchronized void record(String scenario, String req, long[] micros, long[] serviceNanos) {
+            if (micros.length > 0) {
+                samples.put(scenario, new Samples(scenario, req, micros, serviceNanos));
+            }
+        }
+
+        synchronized Samples get(String scenario) {
+            return samples.get(scenario);
+        }
+
+        synchronized List<Samples> all() {
+            return List.copyOf(samples.values());
+        }
+
+        LatencyBudget budget(String req) {
+            return budgets.get(req);
+        }
+    }
+
+    @Override
+    public void beforeAll(ExtensionContext context) {
+        Map<String, LatencyBudget> budgets = new LinkedHashMap<>();
+        Class<?> testClass = context.getRequiredTestClass();
+        for (LatencyBudget budget : testClass.getAnnotationsByType(LatencyBudget.class)) {
+            budgets.put(budget.req(), budget);
+        }
+        int repeat = Math.max(1, Integer.getInteger(REPEAT_PROPERTY, DEFAULT_REPEAT));
+        context.getStore(NAMESPACE).put(Latencies.class,
+                new Latencies(budgets, repeat, Boolean.getBoolean(SERVICE_PROPERTY)));
+    }
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameter, ExtensionContext context) {
+        return parameter.getParameter().getType() == Latencies.class;
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameter, ExtensionContext context) {
+        return latencies(context);
+    }
+
+    @Override
+    public void interceptDynamicTest(Invocation<Void> invocation, DynamicTestInvocationContext invocationContext,
+                                     ExtensionContext context) throws Throwable {
+        invocation.proceed();
+        Latencies latencies = latencies(context);
+        Samples samples = latencies.get(context.getDisplayName());
+        LatencyBudget budget = samples == null ? null : latencies.budget(samples.req());
+        if (budget == null) {
+            return;
+        }
+        if (samples.percentile(95) > budget.p95Micros()) {
+            fail(String.format("p95 of %d us over %d runs exceeds the %s budget of %d us: %s", samples.percentile(95),
+                    samples.micros().length, samples.req(), budget.p95Micros(), Arrays.toString(samples.micros())));
+        }
+        if (samples.servicePercentile(95) > budget.serviceP95Nanos()) {
+            fail(String.format("Service p95 of %d ns over %d batches exceeds the %s budget of %d ns: %s",
+                    samples.servicePercentile(95), samples.serviceNanos().length, samples.req(),
+                    budget.serviceP95Nanos(), Arrays.toString(samples.serviceNanos())));
+        }
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) throws IOException {
+        Latencies latencies = latencies(context);
+        List<Samples> all = latencies.all();
+        if (all.isEmpty()) {
+            return;
+        }
+        Path dir = Path.of(System.getProperty(REPORT_PROPERTY, "target"));
+        Files.createDirectories(dir);
+        String name = "latency-" + context.getRequiredTestClass().getSimpleName();
+        Files.writeString(dir.resolve(name + ".json"), json(latencies, all), StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve(name + ".txt"), table(latencies, all), StandardCharsets.UTF_8);
+    }
+
+    private static Latencies latencies(ExtensionContext context) {
+        return context.getStore(NAMESPACE).get(Latencies.class, Latencies.class);
+    }
+
+    private static String json(Latencies latencies, List<Samples> all) {
+        StringBuilder out = new StringBuilder().append("{\"repeat\":").append(latencies.repeat()).append(",\"scenarios\":[");
+        for (int i = 0; i < all.size(); i++) {
+            Samples s = all.get(i);
+            LatencyBudget budget = latencies.budget(s.req());
+            out.append(i == 0 ? "\n" : ",\n").append("{\"scenario\":\"").append(escape(s.scenario()))
+                    .append("\",\"req\":\"").append(s.req())
+                    .append("\",\"micros\":").append(Arrays.toString(s.micros()).replace(" ", ""))
+                    .append(",\"p50\":").append(s.percentile(50))
+                    .append(",\"p95\":").append(s.percentile(95))
+                    .append(",\"max\":").append(s.percentile(100))
+                    .append(",\"budget\":").append(budget == null ? null : budget.p95Micros())
+                    .append(",\"serviceNanos\":").append(Arrays.toString(s.serviceNanos()).replace(" ", ""))
+                    .append(",\"serviceP95\":").append(s.servicePercentile(95))
+                    .append(",\"serviceBudget\":").append(budget == null ? null : budget.serviceP95Nanos())
+                    .append(",\"withinBudget\":").append(s.within(budget)).append('}');
+        }
+        return out.append("\n]}\n").toString();
+    }
+
+    private static String table(Latencies latencies, List<Samples> all) {
+        int width = Math.max(8, all.stream().mapToInt(s -> s.scenario().length()).max().orElse(0));
+        StringBuilder out = new StringBuilder(String.format("%-" + width + "s %-6s %5s %8s %8s %8s %8s %8s %8s%n",
+                "scenario", "req", "runs", "p50 us", "p95 us", "max us", "budget", "p95 ns", "budget"));
+        for (Samples s : all) {
+            LatencyBudget budget = latencies.budget(s.req());
+            out.append(String.format("%-" + width + "s %-6s %5d %8d %8d %8d %8s %8s %8s%s%n", s.scenario(), s.req(),
+                    s.micros().length, s.percentile(50), s.percentile(95), s.percentile(100),
+                    budget == null ? "-" : budget.p95Micros(),
+                    s.servicePercentile(95) < 0 ? "-" : s.servicePercentile(95),
+                    budget == null ? "-" : budget.serviceP95Nanos(), s.within(budget) ? "" : "  OVER"));
+        }
+        return out.toString();
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
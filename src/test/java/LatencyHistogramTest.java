@@ -0,0 +1,50 @@
+import org.example.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void validatePercentilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) {
+            histogram.record(v * 1_000);
+        }
+
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000_000, histogram.max());
+        assertWithin(50_000_000, histogram.percentile(50));
+        assertWithin(99_000_000, histogram.percentile(99));
+        assertWithin(99_900_000, histogram.percentile(99.9));
+        assertEquals(100_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    public void validateSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 0; v < 128; v++) {
+            histogram.record(v);
+        }
+
+        assertEquals(63, histogram.percentile(50));
+        assertEquals(127, histogram.percentile(100));
+    }
+
+    @Test
+    public void validateCoordinatedOmissionCorrection() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.recordCorrected(1_000_000, 10_000_000);
+        }
+        // One 1 s stall of a worker pacing every 10 ms hides 99 requests that would have waited too.
+        histogram.recordCorrected(1_000_000_000, 10_000_000);
+
+        assertEquals(99 + 100, histogram.count());
+        assertTrue(histogram.percentile(75) > 400_000_000);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertEquals(expected, actual, expected * 0.016);
+    }
+}
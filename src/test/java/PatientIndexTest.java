@@ -0,0 +1,172 @@
+import org.example.BulkReport;
+import org.example.BulkValidator;
+import org.example.CaseField;
+import org.example.CaseValidator;
+import org.example.PatientIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatientIndexTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+
+    private static final int NAME = CaseField.PATIENT_NAME.bit();
+    private static final int DOB = CaseField.DOB.bit();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void validateFlagsAnotherNameOrDob() {
+        PatientIndex index = new PatientIndex();
+
+        assertEquals(0, check(index, "1234567^1^ISO^NN123^MC", "Smith^John", "19700401"));
+        assertEquals(0, check(index, "1234567^1^ISO^NN123^MC", "Smith^John", "19700401"));
+        assertEquals(DOB, check(index, "1234567^1^ISO^NN123^MC", "Smith^John", "19700402"));
+        assertEquals(NAME, check(index, "1234567^1^ISO^NN123^MC", "Smyth^John", "19700401"));
+        assertEquals(NAME | DOB, check(index, "1234567^1^ISO^NN123^MC", "Smith^Jon", "19710401"));
+        // The first values stay the reference.
+        assertEquals(0, check(index, "1234567^1^ISO^NN123^MC", "Smith^John", "19700401"));
+        assertEquals(1, index.size());
+        assertEquals(2, index.inconsistent(CaseField.PATIENT_NAME));
+        assertEquals(2, index.inconsistent(CaseField.DOB));
+        assertEquals("Inconsistent dob", PatientIndex.message(DOB));
+        assertEquals("Inconsistent patient_name", PatientIndex.message(NAME));
+        assertEquals("Inconsistent patient_name and dob", PatientIndex.message(NAME | DOB));
+    }
+
+    @Test
+    public void validateNormalizesPatient() {
+        PatientIndex index = new PatientIndex();
+        check(index, "1234567^1^ISO^NN123^MC", "Smith^John^Paul", "19700401");
+
+        // Check digit, ID type, case and middle name do not matter; authority and facility do.
+        assertEquals(0, check(index, "01234567^7^ISO^MR9^MC", "SMITH^john", "19700401"));
+        assertEquals(0, check(index, "1234567^1^ISO^NN123^MCB", "Doe^Jane", "19800101"));
+        assertEquals(0, check(index, "1234567^1^ANSI^NN123^MC", "Doe^Jane", "19800101"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void validateLocatesFieldsInJson() {
+        PatientIndex index = new PatientIndex();
+        byte[] first = bytes(" {\"dob\" : \"19700401\", \"tissue_type\":\"prostate\",\"patient_name\":\"Smith^John\","
+                + "\"case_id\":\"a474e3e6-89ad-4bb9-be00-cba347e2a001\",\"patient_id\":\"1234567^1^ISO^NN123^MC\"}\n");
+        byte[] second = bytes(VALID.replace("19700401", "19700402"));
+
+        assertEquals(0, index.check(first, 0, first.length));
+        assertEquals(DOB, index.check(second, 0, second.length));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void validateStaysWithinCapacity(boolean offHeap) {
+        PatientIndex index = new PatientIndex(10_000, offHeap);
+        long bytes = index.tableBytes();
+        for (int i = 0; i < 100_000; i++) {
+            check(index, (1_000_000 + i) + "^1^ISO^NN123^MC", "Smith^John", "19700401");
+        }
+
+        assertEquals(bytes, index.tableBytes());
+        assertTrue(bytes <= 2 * 10_000 * 5 / 4 * 16, "table bytes " + bytes);
+        assertTrue(index.size() <= bytes / 16);
+        assertEquals(100_000, index.size() + index.evictions());
+        // Recent patients are still known.
+        assertEquals(DOB, check(index, "1099999^1^ISO^NN123^MC", "Smith^John", "19700402"));
+    }
+
+    @Test
+    public void validateFewEvictionsUpToCapacity() {
+        PatientIndex index = new PatientIndex(100_000, false);
+        for (int i = 0; i < 100_000; i++) {
+            check(index, (1_000_000 + i) + "^1^ISO^NN123^MC", "Smith^John", "19700401");
+        }
+
+        assertTrue(index.evictions() < 100, "evictions " + index.evictions());
+    }
+
+    @Test
+    public void validateConcurrentChecks() throws Exception {
+        PatientIndex index = new PatientIndex(1 << 20, false);
+        int threads = 8;
+        int patients = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> flagged = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                flagged.add(pool.submit(() -> {
+                    int n = 0;
+                    for (int i = 0; i < patients; i++) {
+                        // Every thread agrees on each patient's name; only thread 0 sends odd patients a dob of its own.
+                        String dob = thread == 0 && i % 2 == 1 ? "19700402" : "19700401";
+                        n += check(index, (1_000_000 + i) + "^1^ISO^NN123^MC", "Smith^John", dob) != 0 ? 1 : 0;
+                    }
+                    return n;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> f : flagged) {
+                total += f.get();
+            }
+
+            assertEquals(patients, index.size());
+            assertEquals(0, index.evictions());
+            // Each odd patient is flagged by whoever came second: thread 0 once, or the other threads each once.
+            assertTrue(total >= patients / 2 && total <= patients / 2 * (threads - 1), "flagged " + total);
+            assertEquals(total, index.inconsistent(CaseField.DOB));
+            assertEquals(0, index.inconsistent(CaseField.PATIENT_NAME));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void validateBulkFileFlagsInconsistentPatients() throws IOException {
+        String renamed = VALID.replace("Smith^John", "Smith^Jane");
+        String redated = VALID.replace("19700401", "19711231").replace("a001", "a002");
+        String invalid = VALID.replace("19700401", "19700230");
+        String file = VALID + "\n" + invalid + "\n" + VALID + "\n" + renamed + "\n" + redated + "\n";
+        Path path = dir.resolve("cases.ndjson");
+        Files.writeString(path, file, StandardCharsets.UTF_8);
+
+        BulkReport report = new BulkValidator(new CaseValidator(), BulkValidator.DEFAULT_CHUNK_BYTES,
+                ForkJoinPool.commonPool(), new PatientIndex()).validate(path);
+
+        assertEquals(5, report.records());
+        assertEquals(1, report.invalid());
+        assertEquals(4, report.valid());
+        assertEquals("Invalid dob", report.failureMessage(0));
+        assertEquals(2, report.flagged());
+        assertEquals(file.indexOf(renamed), report.flaggedOffset(0));
+        assertEquals("Inconsistent patient_name", report.flaggedMessage(0));
+        assertEquals(file.indexOf(redated), report.flaggedOffset(1));
+        assertEquals("Inconsistent dob", report.flaggedMessage(1));
+    }
+
+    private static int check(PatientIndex index, String id, String name, String dob) {
+        byte[] i = bytes(id);
+        byte[] n = bytes(name);
+        byte[] d = bytes(dob);
+        return index.check(i, 0, i.length, n, 0, n.length, d, 0, d.length);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
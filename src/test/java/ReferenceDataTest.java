@@ -0,0 +1,125 @@
+import org.example.CaseField;
+import org.example.CaseValidator;
+import org.example.CaseVerdict;
+import org.example.ReferenceData;
+import org.example.ReferenceDataReloader;
+import org.example.ValidationCache;
+import org.example.Vocabulary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReferenceDataTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+    private static final String DEFAULTS = """
+            tissue_type=breast,colon,kidney,lung,prostate,skin
+            assigning_authority=ISO
+            id_type=NN
+            assigning_facility=MC
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void validateVocabularyLookups() {
+        Vocabulary vocabulary = Vocabulary.of("breast", "colon", "kidney", "lung", "prostate", "skin", "liver");
+
+        for (String code : vocabulary.codes()) {
+            assertTrue(vocabulary.contains(code), code);
+        }
+        assertFalse(vocabulary.contains("Lung"));
+        assertFalse(vocabulary.contains("lun"));
+        assertFalse(vocabulary.contains("lungs"));
+        assertFalse(vocabulary.contains(""));
+        assertThrows(IllegalArgumentException.class, () -> Vocabulary.of("lung", " "));
+    }
+
+    @Test
+    public void validateDefaultsMatchRules() {
+        ReferenceData defaults = ReferenceData.defaults();
+
+        assertEquals(6, defaults.tissueTypes().size());
+        assertTrue(defaults.authorities().contains("ISO"));
+        assertTrue(defaults.idTypes().contains("NN"));
+        assertTrue(defaults.facilities().contains("MC"));
+        assertFalse(defaults.facilities().contains("MC0"));
+    }
+
+    @Test
+    public void validateReloadSwapsSnapshot() throws IOException {
+        Path file = write(DEFAULTS, Instant.parse("2024-01-01T00:00:00Z"));
+        try (ReferenceDataReloader reloader = new ReferenceDataReloader(file)) {
+            CaseValidator validator = new CaseValidator(reloader);
+            String liver = VALID.replace("prostate", "liver");
+            String facility = VALID.replace("^MC\"", "^MD\"");
+
+            assertEquals(CaseField.TISSUE_TYPE, verdict(validator, liver).field());
+            assertEquals(CaseField.PATIENT_ID, verdict(validator, facility).field());
+            assertFalse(reloader.reload());
+
+            write(DEFAULTS.replace("skin", "skin,liver").replace("=MC", "=MC,MD"), Instant.parse("2024-01-02T00:00:00Z"));
+
+            assertTrue(reloader.reload());
+            assertTrue(verdict(validator, liver).isValid());
+            assertTrue(verdict(validator, facility).isValid());
+            assertTrue(verdict(validator, VALID).isValid());
+        }
+    }
+
+    @Test
+    public void validateBrokenFileKeepsSnapshot() throws IOException {
+        Path file = write(DEFAULTS, Instant.parse("2024-01-01T00:00:00Z"));
+        List<String> reports = new ArrayList<>();
+        try (ReferenceDataReloader reloader = new ReferenceDataReloader(file, reports::add)) {
+            ReferenceData before = reloader.get();
+
+            write("tissue_type=lung\n", Instant.parse("2024-01-02T00:00:00Z"));
+
+            assertFalse(reloader.reload());
+            assertSame(before, reloader.get());
+            assertEquals(1, reports.size());
+            assertTrue(reports.get(0).startsWith("Keeping previous reference data"), reports.get(0));
+        }
+    }
+
+    @Test
+    public void validateCacheDropsVerdictsAfterReload() throws IOException {
+        Path file = write(DEFAULTS, Instant.parse("2024-01-01T00:00:00Z"));
+        try (ReferenceDataReloader reloader = new ReferenceDataReloader(file)) {
+            ValidationCache cache = new ValidationCache(new CaseValidator(reloader), 64, Duration.ZERO);
+            byte[] liver = VALID.replace("prostate", "liver").getBytes(StandardCharsets.UTF_8);
+
+            assertFalse(cache.validate(liver, new CaseVerdict()).isValid());
+            assertFalse(cache.validate(liver, new CaseVerdict()).isValid());
+            write(DEFAULTS.replace("skin", "skin,liver"), Instant.parse("2024-01-02T00:00:00Z"));
+            reloader.reload();
+
+            assertTrue(cache.validate(liver, new CaseVerdict()).isValid());
+            assertEquals(1, cache.hits());
+        }
+    }
+
+    private Path write(String properties, Instant modified) throws IOException {
+        Path file = dir.resolve("reference-data.properties");
+        Files.writeString(file, properties);
+        Files.setLastModifiedTime(file, FileTime.from(modified));
+        return file;
+    }
+
+    private static CaseVerdict verdict(CaseValidator validator, String body) {
+        return validator.validate(body.getBytes(StandardCharsets.UTF_8), new CaseVerdict());
+    }
+}
@@ -0,0 +1,111 @@
+import org.example.CaseServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestGateTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+
+    @Test
+    public void validateRejectionsFromHeadersKeepOrCloseTheConnection() throws Exception {
+        try (CaseServer server = start(Duration.ofSeconds(10)); Socket socket = connect(server)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            // A short rejected body is read past, and the connection serves the next request.
+            out.write(request(CaseServer.CHECKCASE_PATH, "text/plain", VALID.length(), VALID));
+            assertResponse(in, "415", "Unsupported media");
+            out.write(request(CaseServer.CHECKCASE_PATH, "application/json", VALID.length(), VALID));
+            assertResponse(in, "200", "Case valid");
+
+            // A huge declared body is refused before a byte of it is sent.
+            out.write(request(CaseServer.CHECKCASE_PATH, "application/json", 1L << 40, ""));
+            String response = assertResponse(in, "413", "Payload too large");
+            assertTrue(response.toLowerCase().contains("connection: close"), response);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void validateSlowBodiesAreDisconnected() throws Exception {
+        try (CaseServer server = start(Duration.ofMillis(300)); HttpClient http = HttpClient.newHttpClient()) {
+            // A single case that stops halfway.
+            try (Socket socket = connect(server)) {
+                socket.getOutputStream().write(request(CaseServer.CHECKCASE_PATH, "application/json",
+                        VALID.length(), VALID.substring(0, 40)));
+                assertEquals(-1, socket.getInputStream().read());
+            }
+            // A batch stream that answers its first line and then stalls.
+            try (Socket socket = connect(server)) {
+                String line = VALID + "\n";
+                String head = "POST " + CaseServer.BATCH_PATH + " HTTP/1.1\r\nHost: localhost\r\n"
+                        + "Content-Type: application/x-ndjson\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + Integer.toHexString(line.length()) + "\r\n" + line + "\r\n";
+                socket.getOutputStream().write(head.getBytes(StandardCharsets.US_ASCII));
+                assertTrue(readAll(socket.getInputStream()).contains("\"status\":200"));
+            }
+
+            String metrics = http.send(HttpRequest.newBuilder(URI.create(server.baseUri() + CaseServer.METRICS_PATH)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"checkcase\",status=\"408\",message=\"Request timeout\"} 1\n"), metrics);
+            assertTrue(metrics.contains("checkcase_responses_total{endpoint=\"batch\",status=\"408\",message=\"Request timeout\"} 1\n"), metrics);
+            // The server still answers once the slow clients are gone.
+            assertEquals(200, http.send(HttpRequest.newBuilder(URI.create(server.baseUri() + CaseServer.CHECKCASE_PATH))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(VALID)).build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+    }
+
+    private static CaseServer start(Duration timeout) throws IOException {
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        options.bodyTimeout = timeout;
+        options.streamIdleTimeout = timeout;
+        return CaseServer.start(options);
+    }
+
+    private static Socket connect(CaseServer server) throws IOException {
+        Socket socket = new Socket("localhost", server.port());
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static byte[] request(String path, String contentType, long length, String body) {
+        return ("POST " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: " + contentType
+                + "\r\nContent-Length: " + length + "\r\n\r\n" + body).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Reads one response with a Content-Length and checks its status and message. */
+    private static String assertResponse(InputStream in, String status, String message) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n")) {
+            int b = in.read();
+            assertNotEquals(-1, b, "connection closed after " + head);
+            head.write(b);
+        }
+        String headers = head.toString(StandardCharsets.US_ASCII);
+        assertTrue(headers.startsWith("HTTP/1.1 " + status + " "), headers);
+        int length = Integer.parseInt(headers.replaceAll("(?is).*content-length: *(\\d+).*", "$1"));
+        assertEquals("{\"message\":\"" + message + "\"}", new String(in.readNBytes(length), StandardCharsets.UTF_8));
+        return headers;
+    }
+
+    /** Reads until the server closes the connection. */
+    private static String readAll(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,161 @@
+import org.example.CaseIdIndex;
+import org.example.CaseServer;
+import org.example.TrafficReplay;
+import org.example.TrafficTrace;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrafficTraceTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void validateTraceRoundTripsAndIsCompact() throws IOException {
+        Path file = dir.resolve("round-trip.trace");
+        byte[] large = "x".repeat(1_000).getBytes(StandardCharsets.UTF_8);
+        try (TrafficTrace.Writer writer = new TrafficTrace.Writer(file)) {
+            for (int i = 0; i < 1_000; i++) {
+                writer.record(new TrafficTrace.Exchange(1_000L * (1_000 - i), 50_000 + i, 1 + i % 3, "POST",
+                        CaseServer.CHECKCASE_PATH, Map.of("Content-Type", "application/json"),
+                        VALID.getBytes(StandardCharsets.UTF_8), 200, "{\"message\":\"Case valid\"}".getBytes(StandardCharsets.UTF_8)));
+            }
+            writer.record(new TrafficTrace.Exchange(0, 1, 1, "POST", CaseServer.BATCH_PATH + "?report=all",
+                    Map.of(), new byte[]{(byte) 0xFF, 0}, 200, large));
+        }
+        // Each record is its body, its target and header value inline, and about fifteen bytes.
+        assertTrue(Files.size(file) < 1_000L * (VALID.length() + CaseServer.CHECKCASE_PATH.length() + 40),
+                Files.size(file) + " bytes");
+
+        TrafficTrace trace = TrafficTrace.open(file);
+        assertEquals(1_001, trace.size());
+        assertEquals(3, trace.maxConcurrency());
+        TrafficTrace.Exchange exchange = trace.get(999);
+        assertEquals(1_000, exchange.startNanos());
+        assertEquals(50_999, exchange.durationNanos());
+        assertEquals("application/json", exchange.headers().get("Content-Type"));
+        assertEquals(VALID, new String(exchange.body(), StandardCharsets.UTF_8));
+        assertEquals("{\"message\":\"Case valid\"}", exchange.responseText());
+        TrafficTrace.Exchange last = trace.get(1_000);
+        assertEquals(CaseServer.BATCH_PATH + "?report=all", last.target());
+        assertArrayEquals(new byte[]{(byte) 0xFF, 0}, last.body());
+        assertArrayEquals(large, last.response());
+        assertEquals(0, trace.byStart().get(0).startNanos());
+    }
+
+    @Test
+    public void validateTraceIsReadableUpToItsLastBlock() throws IOException {
+        Path file = dir.resolve("unclosed.trace");
+        try (TrafficTrace.Writer writer = new TrafficTrace.Writer(file)) {
+            for (int i = 0; i < 1_500; i++) {
+                // Distinct targets and header values are written inline rather than interned.
+                writer.record(new TrafficTrace.Exchange(i, 1, 1, "POST", CaseServer.CHECKCASE_PATH + "?n=" + i,
+                        Map.of("X-Request-Id", Integer.toString(i)), VALID.getBytes(StandardCharsets.UTF_8), 200,
+                        "{\"message\":\"Case valid\"}".getBytes(StandardCharsets.UTF_8)));
+            }
+            // As after a crash: only the first block of 1024 records has been written.
+            TrafficTrace trace = TrafficTrace.open(file);
+            assertEquals(1_024, trace.size());
+            assertEquals(CaseServer.CHECKCASE_PATH + "?n=1023", trace.get(1_023).target());
+            assertEquals("1023", trace.get(1_023).headers().get("X-Request-Id"));
+
+            Path truncated = dir.resolve("truncated.trace");
+            Files.write(truncated, Arrays.copyOf(Files.readAllBytes(file), (int) Files.size(file) - 1));
+            assertEquals(0, TrafficTrace.open(truncated).size());
+        }
+        TrafficTrace trace = TrafficTrace.open(file);
+        assertEquals(1_500, trace.size());
+        assertEquals("{\"message\":\"Case valid\"}", trace.get(1_499).responseText());
+    }
+
+    @Test
+    public void validateCapturedTrafficReplaysAndDiffs() throws Exception {
+        Path file = dir.resolve("captured.trace");
+        CaseServer.Options options = new CaseServer.Options();
+        options.address = new InetSocketAddress(0);
+        options.caseIds = new CaseIdIndex();
+        try (TrafficTrace.Writer writer = new TrafficTrace.Writer(file)) {
+            options.capture = writer;
+            try (CaseServer server = CaseServer.start(options); HttpClient http = HttpClient.newHttpClient()) {
+                post(http, server, CaseServer.CHECKCASE_PATH, "application/json", VALID);
+                post(http, server, CaseServer.CHECKCASE_PATH, "application/json", VALID);
+                post(http, server, CaseServer.CHECKCASE_PATH + "?report=all", "application/json", VALID.replace("19700401", "1970"));
+                post(http, server, CaseServer.CHECKCASE_PATH, "text/plain", VALID);
+                post(http, server, CaseServer.BATCH_PATH, "application/x-ndjson", VALID.replace("a001", "a002") + "\n{}\n");
+            }
+        }
+
+        TrafficTrace trace = TrafficTrace.open(file);
+        assertEquals(5, trace.size());
+        TrafficTrace.Exchange duplicate = trace.byStart().get(1);
+        assertEquals(409, duplicate.status());
+        assertEquals("{\"message\":\"Duplicate case_id\"}", duplicate.responseText());
+        assertTrue(duplicate.durationNanos() > 0);
+        assertEquals("text/plain", trace.byStart().get(3).headers().get("Content-type"));
+        assertEquals(415, trace.byStart().get(3).status());
+
+        // The same server configuration answers the same: no mismatches, at any speed.
+        options.capture = null;
+        options.caseIds = new CaseIdIndex();
+        assertEquals(0, replay(options, trace, 1).mismatchCount());
+        options.caseIds = new CaseIdIndex();
+        TrafficReplay.Result max = replay(options, trace, 0);
+        assertEquals(0, max.mismatchCount());
+        assertEquals(5, max.exchanges());
+        assertEquals(5, max.replayed().count());
+        assertNull(max.served());
+
+        // A target that captures its own trace gives handling times to diff against the recorded ones.
+        Path served = dir.resolve("served.trace");
+        options.caseIds = new CaseIdIndex();
+        TrafficReplay.Result timed;
+        try (TrafficTrace.Writer writer = new TrafficTrace.Writer(served)) {
+            options.capture = writer;
+            timed = replay(options, trace, 1);
+        }
+        options.capture = null;
+        assertEquals(5, timed.withServed(TrafficTrace.open(served)).served().count());
+
+        // Without the duplicate index the second case is accepted: one mismatch.
+        options.caseIds = null;
+        TrafficReplay.Result diff = replay(options, trace, 10);
+        assertEquals(1, diff.mismatchCount());
+        TrafficReplay.Mismatch mismatch = diff.mismatches().get(0);
+        assertEquals(409, mismatch.exchange().status());
+        assertEquals(200, mismatch.status());
+    }
+
+    private static TrafficReplay.Result replay(CaseServer.Options server, TrafficTrace trace, double speed)
+            throws IOException, InterruptedException {
+        try (CaseServer target = CaseServer.start(server); HttpClient http = HttpClient.newHttpClient()) {
+            TrafficReplay.Options options = new TrafficReplay.Options();
+            options.baseUri = URI.create(target.baseUri());
+            options.speed = speed;
+            TrafficReplay.Result result = new TrafficReplay(options, http).run(trace);
+            assertEquals(0, result.errors());
+            return result;
+        }
+    }
+
+    private static void post(HttpClient http, CaseServer server, String path, String contentType, String body)
+            throws IOException, InterruptedException {
+        http.send(HttpRequest.newBuilder(URI.create(server.baseUri() + path)).header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.discarding());
+    }
+}
@@ -0,0 +1,80 @@
+import org.example.CaseField;
+import org.example.CaseValidator;
+import org.example.CaseVerdict;
+import org.example.ValidationCache;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidationCacheTest {
+
+    private static final String VALID = ConformanceRunner.VALID;
+
+    @Test
+    public void validateRepeatedBodiesHitTheCache() {
+        ValidationCache cache = new ValidationCache(new CaseValidator(), 64, Duration.ZERO);
+        CaseVerdict verdict = new CaseVerdict();
+        byte[] invalid = bytes(VALID.replace("19700401", "19700230"));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(cache.validate(bytes(VALID), verdict).isValid());
+            assertEquals(CaseField.DOB, cache.validate(invalid, verdict).field());
+        }
+
+        assertEquals(2, cache.misses());
+        assertEquals(4, cache.hits());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void validateHitMatchesValidatorAtAnyOffset() {
+        ValidationCache cache = new ValidationCache(new CaseValidator(), 64, Duration.ZERO);
+        String unexpected = VALID.replace("\"dob\"", "\"patient_title\":\"Mr.\",\"dob\"");
+        byte[] padded = bytes("xxxx" + unexpected);
+
+        cache.validate(bytes(unexpected), new CaseVerdict());
+        CaseVerdict verdict = cache.validate(padded, 4, padded.length - 4, new CaseVerdict());
+
+        assertEquals(1, cache.hits());
+        assertEquals("Invalid patient_title", verdict.message());
+    }
+
+    @Test
+    public void validateFrequentBodiesSurviveOneOffFlood() {
+        ValidationCache cache = new ValidationCache(new CaseValidator(), 8, Duration.ZERO);
+        CaseVerdict verdict = new CaseVerdict();
+        for (int i = 0; i < 4; i++) {
+            cache.validate(bytes(VALID), verdict);
+        }
+        // Fewer than the sketch's aging period (ten times the capacity), so the popularity still counts.
+        for (int i = 0; i < 60; i++) {
+            cache.validate(bytes(VALID.replace("Smith", "Smith" + (char) ('a' + i % 26) + i)), verdict);
+        }
+        long hits = cache.hits();
+
+        cache.validate(bytes(VALID), verdict);
+
+        assertEquals(hits + 1, cache.hits());
+        assertTrue(cache.size() <= cache.capacity());
+    }
+
+    @Test
+    public void validateEntriesExpire() throws InterruptedException {
+        ValidationCache cache = new ValidationCache(new CaseValidator(), 64, Duration.ofMillis(1));
+        CaseVerdict verdict = new CaseVerdict();
+
+        cache.validate(bytes(VALID), verdict);
+        Thread.sleep(5);
+        cache.validate(bytes(VALID), verdict);
+
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}